@@ -0,0 +1,37 @@
+package net.kawinski.logging.agent;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * Java agent instrumenting methods annotated with {@link net.kawinski.logging.NkTraced}.
+ *
+ * Usage: java -javaagent:nktrace-agent-&lt;version&gt;.jar ...
+ *
+ * Every annotated method is rewritten when its class is loaded, as if its body was wrapped in:
+ * try(final NkTrace trace = NkTrace.debug(SITE, logger, "a: {}, b: {}", a, b)) {
+ *     return trace.returning(body);
+ * } catch(Throwable t) {
+ *     throw trace.throwing(t);
+ * }
+ * The call site (class, method and first line of the body) is known when the class is rewritten, so no stack walking happens.
+ * The level is checked before anything else. With a disabled level, the method only pays for that check.
+ * The logger is the one of the declaring class ({@code LoggerFactory.getLogger(className)}).
+ *
+ * Parameter names come from the "MethodParameters" or "LocalVariableTable" attributes (javac's "-parameters" or "-g").
+ * Without them, parameters are named "arg0", "arg1" and so on.
+ *
+ * Attaching the agent to a running JVM instruments only the classes loaded afterwards.
+ * Classes which can't be instrumented are loaded untouched. Set "NKTRACE_AGENT_DEBUG" property to true to see why.
+ */
+public final class NkTraceAgent {
+    private NkTraceAgent() {
+    }
+
+    public static void premain(final String args, final Instrumentation instrumentation) {
+        instrumentation.addTransformer(new NkTraceTransformer(), false);
+    }
+
+    public static void agentmain(final String args, final Instrumentation instrumentation) {
+        premain(args, instrumentation);
+    }
+}
@@ -0,0 +1,123 @@
+package net.kawinski.logging.agent;
+
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.NkTrace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+
+import java.util.Arrays;
+
+/**
+ * Call sites of instrumented methods. Instrumented code refers to them by their index, baked in as a constant.
+ *
+ * Methods are public, because they're called by the instrumented code. They aren't meant to be called otherwise.
+ */
+public final class NkTraceAgentSites {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private static final Object lock = new Object();
+    private static volatile Site[] sites = new Site[64];
+    // Guarded by lock
+    private static int count;
+
+    private NkTraceAgentSites() {
+    }
+
+    /**
+     * @return Whether the span of given site has to be opened. Checked before anything else is done
+     */
+    public static boolean enabled(final int siteId) {
+        final Site site = sites[siteId];
+        // Also counts disabled spans in NkTraceStats
+        switch(site.level) {
+            case TRACE: return NkTrace.isTraceEnabled(site.caller, site.logger());
+            case INFO: return NkTrace.isInfoEnabled(site.caller, site.logger());
+            default: return NkTrace.isDebugEnabled(site.caller, site.logger());
+        }
+    }
+
+    /**
+     * @param args arguments of the instrumented method or null if they aren't logged
+     * @return Opened span
+     */
+    public static NkTrace open(final int siteId, final Object[] args) {
+        final Site site = sites[siteId];
+        final Object[] formatArgs = args != null ? args : NO_ARGS;
+        switch(site.level) {
+            case TRACE: return NkTrace.trace(site.caller, site.logger(), site.format, formatArgs);
+            case INFO: return NkTrace.info(site.caller, site.logger(), site.format, formatArgs);
+            default: return NkTrace.debug(site.caller, site.logger(), site.format, formatArgs);
+        }
+    }
+
+    /**
+     * Closes the span of a method which returned given value.
+     */
+    public static void exit(final Object returnValue, final NkTrace trace) {
+        trace.returning(returnValue);
+        trace.close();
+    }
+
+    /**
+     * Closes the span of a void method.
+     */
+    public static void exit(final NkTrace trace) {
+        trace.close();
+    }
+
+    /**
+     * Closes the span of a method which threw given error.
+     */
+    public static void fail(final Throwable error, final NkTrace trace) {
+        trace.throwing(error);
+        trace.close();
+    }
+
+    /**
+     * @return Id of the new site
+     */
+    static int register(final String className, final String methodName, final int lineNumber, final Level level, final String format) {
+        final Site site = new Site(CallerInfo.of(className, methodName, lineNumber), className, level, format);
+        synchronized(lock) {
+            Site[] current = sites;
+            if(count == current.length) {
+                current = Arrays.copyOf(current, count * 2);
+            }
+            current[count] = site;
+            // Publishes the new site before its id is baked into the code
+            sites = current;
+            return count++;
+        }
+    }
+
+    static CallerInfo getCaller(final int siteId) {
+        return sites[siteId].caller;
+    }
+
+    private static final class Site {
+        private final CallerInfo caller;
+        private final String className;
+        private final Level level;
+        private final String format;
+        // Created on first use, so the agent doesn't initialize logging while classes are being loaded
+        private Logger logger;
+
+        private Site(final CallerInfo caller, final String className, final Level level, final String format) {
+            this.caller = caller;
+            this.className = className;
+            this.level = level;
+            this.format = format;
+        }
+
+        private Logger logger() {
+            Logger current = logger;
+            if(current == null) {
+                // Racing threads get the same logger from the factory anyway
+                current = LoggerFactory.getLogger(className);
+                logger = current;
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package net.kawinski.logging.agent;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.AdviceAdapter;
+import org.objectweb.asm.commons.Method;
+import org.slf4j.event.Level;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.nio.charset.StandardCharsets;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites methods annotated with {@link net.kawinski.logging.NkTraced}. See {@link NkTraceAgent}.
+ *
+ * Classes are read twice: first to find the annotated methods, their first lines and parameter names,
+ * then to rewrite them. Classes without the annotation are returned untouched after a quick scan of their bytes.
+ */
+public final class NkTraceTransformer implements ClassFileTransformer {
+    private static final String ANNOTATION = "Lnet/kawinski/logging/NkTraced;";
+    private static final byte[] ANNOTATION_BYTES = ANNOTATION.getBytes(StandardCharsets.UTF_8);
+
+    private static final Type SITES = Type.getType(NkTraceAgentSites.class);
+    private static final Type TRACE = Type.getObjectType("net/kawinski/logging/NkTrace");
+    private static final Method ENABLED = Method.getMethod("boolean enabled(int)");
+    private static final Method OPEN = new Method("open", TRACE, new Type[]{Type.INT_TYPE, Type.getType(Object[].class)});
+    private static final Method EXIT = new Method("exit", Type.VOID_TYPE, new Type[]{Type.getType(Object.class), TRACE});
+    private static final Method EXIT_VOID = new Method("exit", Type.VOID_TYPE, new Type[]{TRACE});
+    private static final Method FAIL = new Method("fail", Type.VOID_TYPE, new Type[]{Type.getType(Throwable.class), TRACE});
+
+    /**
+     * Whether classes which failed to be instrumented should be reported on the standard error.
+     * Can be enabled with "NKTRACE_AGENT_DEBUG" property.
+     */
+    public static boolean debug = Boolean.parseBoolean(System.getProperty("NKTRACE_AGENT_DEBUG", "false"));
+
+    @Override
+    public byte[] transform(final ClassLoader loader, final String className, final Class<?> classBeingRedefined,
+                            final ProtectionDomain protectionDomain, final byte[] classfileBuffer) {
+        try {
+            return instrument(classfileBuffer, loader);
+        } catch(final RuntimeException | LinkageError e) {
+            // Failing here would only make the JVM ignore the transformation. The class just stays untraced.
+            // Logging isn't an option: the transformer runs while classes (possibly of the logging backend) are loaded
+            if(debug) {
+                System.err.println("NkTrace agent failed to instrument " + className + ": " + e);
+                e.printStackTrace();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @param classBytes class file
+     * @param loader class loader defining the class. Used to compute stack frames
+     * @return Instrumented class file or null if the class has no annotated methods
+     */
+    public static byte[] instrument(final byte[] classBytes, final ClassLoader loader) {
+        if(!contains(classBytes, ANNOTATION_BYTES)) {
+            return null;
+        }
+        final ClassReader reader = new ClassReader(classBytes);
+        final Scanner scanner = new Scanner();
+        reader.accept(scanner, ClassReader.SKIP_FRAMES);
+        if(scanner.traced.isEmpty()) {
+            return null;
+        }
+
+        final ClassWriter writer = new FrameComputingWriter(loader);
+        final String className = reader.getClassName().replace('/', '.');
+        reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+            @Override
+            public MethodVisitor visitMethod(final int access, final String name, final String descriptor, final String signature, final String[] exceptions) {
+                final MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
+                final TracedMethod traced = scanner.traced.get(name + descriptor);
+                if(traced == null || (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+                    return mv;
+                }
+                final int siteId = NkTraceAgentSites.register(className, name, traced.firstLine, traced.level, traced.format());
+                return new SpanAdapter(mv, access, name, descriptor, siteId, traced.logArgs && traced.paramNames.length > 0);
+            }
+        }, ClassReader.EXPAND_FRAMES);
+        return writer.toByteArray();
+    }
+
+    private static boolean contains(final byte[] bytes, final byte[] pattern) {
+        outer:
+        for(int i = 0; i <= bytes.length - pattern.length; ++i) {
+            for(int j = 0; j < pattern.length; ++j) {
+                if(bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Annotated method found by the {@link Scanner}.
+     */
+    private static final class TracedMethod {
+        private Level level = Level.DEBUG;
+        private boolean logArgs = true;
+        private int firstLine;
+        private final String[] paramNames;
+        // Local variable slots of the parameters
+        private final int[] paramSlots;
+
+        private TracedMethod(final int access, final String descriptor) {
+            final Type[] params = Type.getArgumentTypes(descriptor);
+            paramNames = new String[params.length];
+            paramSlots = new int[params.length];
+            int slot = (access & Opcodes.ACC_STATIC) != 0 ? 0 : 1;
+            for(int i = 0; i < params.length; ++i) {
+                paramSlots[i] = slot;
+                slot += params[i].getSize();
+            }
+        }
+
+        private String format() {
+            if(!logArgs) {
+                return "";
+            }
+            final StringBuilder sb = new StringBuilder();
+            for(int i = 0; i < paramNames.length; ++i) {
+                if(i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(paramNames[i] != null ? paramNames[i] : "arg" + i).append(": {}");
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Finds annotated methods with their first lines and parameter names.
+     */
+    private static final class Scanner extends ClassVisitor {
+        private final Map<String, TracedMethod> traced = new HashMap<>();
+
+        private Scanner() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(final int access, final String name, final String descriptor, final String signature, final String[] exceptions) {
+            return new MethodVisitor(Opcodes.ASM9) {
+                // From the MethodParameters attribute. It comes before the annotations
+                private final String[] parameterNames = new String[Type.getArgumentTypes(descriptor).length];
+                private int parameterIndex;
+                private TracedMethod method;
+
+                @Override
+                public AnnotationVisitor visitAnnotation(final String annotationDescriptor, final boolean visible) {
+                    if(!ANNOTATION.equals(annotationDescriptor)) {
+                        return null;
+                    }
+                    method = new TracedMethod(access, descriptor);
+                    traced.put(name + descriptor, method);
+                    return new AnnotationVisitor(Opcodes.ASM9) {
+                        @Override
+                        public void visit(final String attribute, final Object value) {
+                            if("logArgs".equals(attribute)) {
+                                method.logArgs = (Boolean) value;
+                            }
+                        }
+
+                        @Override
+                        public void visitEnum(final String attribute, final String enumDescriptor, final String value) {
+                            if("level".equals(attribute)) {
+                                // Spans have no WARN and ERROR factories
+                                final Level level = Level.valueOf(value);
+                                method.level = level.toInt() > Level.INFO.toInt() ? Level.INFO : level;
+                            }
+                        }
+                    };
+                }
+
+                @Override
+                public void visitParameter(final String parameterName, final int access) {
+                    if(parameterIndex < parameterNames.length) {
+                        parameterNames[parameterIndex++] = parameterName;
+                    }
+                }
+
+                @Override
+                public void visitLineNumber(final int line, final Label start) {
+                    if(method != null && method.firstLine == 0) {
+                        method.firstLine = line;
+                    }
+                }
+
+                @Override
+                public void visitLocalVariable(final String localName, final String localDescriptor, final String localSignature,
+                                               final Label start, final Label end, final int index) {
+                    if(method == null) {
+                        return;
+                    }
+                    for(int i = 0; i < method.paramSlots.length; ++i) {
+                        if(method.paramSlots[i] == index && method.paramNames[i] == null) {
+                            method.paramNames[i] = localName;
+                        }
+                    }
+                }
+
+                @Override
+                public void visitEnd() {
+                    if(method == null) {
+                        return;
+                    }
+                    for(int i = 0; i < parameterNames.length; ++i) {
+                        if(parameterNames[i] != null) {
+                            method.paramNames[i] = parameterNames[i];
+                        }
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Wraps the method's body in a span.
+     */
+    private static final class SpanAdapter extends AdviceAdapter {
+        private final int siteId;
+        private final boolean passArgs;
+        private final Type returnType;
+        private final Label handler = new Label();
+        // Start and end labels of the ranges covered by the handler. Exit calls lie between the ranges
+        private final List<Label> ranges = new ArrayList<>();
+        private int trace;
+
+        private SpanAdapter(final MethodVisitor mv, final int access, final String name, final String descriptor, final int siteId, final boolean passArgs) {
+            super(Opcodes.ASM9, mv, access, name, descriptor);
+            this.siteId = siteId;
+            this.passArgs = passArgs;
+            this.returnType = Type.getReturnType(descriptor);
+        }
+
+        @Override
+        protected void onMethodEnter() {
+            // NkTrace trace = null; if(enabled(id)) trace = open(id, args);
+            trace = newLocal(TRACE);
+            visitInsn(ACONST_NULL);
+            storeLocal(trace);
+            final Label disabled = new Label();
+            push(siteId);
+            invokeStatic(SITES, ENABLED);
+            ifZCmp(EQ, disabled);
+            push(siteId);
+            if(passArgs) {
+                loadArgArray();
+            } else {
+                visitInsn(ACONST_NULL);
+            }
+            invokeStatic(SITES, OPEN);
+            storeLocal(trace);
+            mark(disabled);
+            ranges.add(mark());
+            // Keeps the first range non-empty even if the body starts with a return
+            visitInsn(NOP);
+        }
+
+        @Override
+        protected void onMethodExit(final int opcode) {
+            if(opcode == ATHROW) {
+                // Handled by the handler covering the whole body
+                return;
+            }
+            // if(trace != null) exit(returnValue, trace);
+            // Not covered by the handler, so an exit call which throws doesn't close the span once more
+            ranges.add(mark());
+            final Label skip = new Label();
+            loadLocal(trace);
+            ifNull(skip);
+            if(opcode == RETURN) {
+                loadLocal(trace);
+                invokeStatic(SITES, EXIT_VOID);
+            } else {
+                if(returnType.getSize() == 2) {
+                    dup2();
+                } else {
+                    dup();
+                }
+                box(returnType);
+                loadLocal(trace);
+                invokeStatic(SITES, EXIT);
+            }
+            mark(skip);
+            // Followed by the return instruction, so the range isn't empty
+            ranges.add(mark());
+        }
+
+        @Override
+        public void visitMaxs(final int maxStack, final int maxLocals) {
+            // catch(Throwable t) { if(trace != null) fail(t, trace); throw t; }
+            ranges.add(handler);
+            for(int i = 0; i < ranges.size(); i += 2) {
+                visitTryCatchBlock(ranges.get(i), ranges.get(i + 1), handler, "java/lang/Throwable");
+            }
+            mark(handler);
+            final Label rethrow = new Label();
+            loadLocal(trace);
+            ifNull(rethrow);
+            dup();
+            loadLocal(trace);
+            invokeStatic(SITES, FAIL);
+            mark(rethrow);
+            throwException();
+            super.visitMaxs(maxStack, maxLocals);
+        }
+    }
+
+    /**
+     * Computes stack frames with the classes of the instrumented class's loader.
+     * If some class can't be loaded, its common super class is assumed to be Object.
+     */
+    private static final class FrameComputingWriter extends ClassWriter {
+        private final ClassLoader loader;
+
+        private FrameComputingWriter(final ClassLoader loader) {
+            super(ClassWriter.COMPUTE_FRAMES);
+            this.loader = loader;
+        }
+
+        @Override
+        protected ClassLoader getClassLoader() {
+            return loader != null ? loader : super.getClassLoader();
+        }
+
+        @Override
+        protected String getCommonSuperClass(final String type1, final String type2) {
+            try {
+                return super.getCommonSuperClass(type1, type2);
+            } catch(final RuntimeException | LinkageError e) {
+                return "java/lang/Object";
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package net.kawinski.logging.agent;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class NkTraceTransformerTest {
+    private static final String FIXTURE = TracedFixture.class.getName();
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(FIXTURE);
+    private final LineAppender appender = new LineAppender();
+    private Object fixture;
+
+    @Before
+    public void instrumentFixture() throws Exception {
+        logger.setLevel(Level.DEBUG);
+        logger.setAdditive(false);
+        appender.start();
+        logger.addAppender(appender);
+        fixture = new InstrumentingLoader(getClass().getClassLoader()).loadClass(FIXTURE).getConstructor().newInstance();
+    }
+
+    @After
+    public void detachAppender() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    public void span_should_log_arguments_and_returned_value() throws Exception {
+        assertThat(call("add", 1, 2), is(3));
+        assertThat(call("half", 3.0, 7L), is(1.5));
+        assertLogged(
+                "DEBUG >> TracedFixture.add:14 a: 1, b: 2",
+                "DEBUG << TracedFixture.add:14 returning(3)",
+                "DEBUG >> TracedFixture.half:24 value: 3.0, unused: 7",
+                "DEBUG << TracedFixture.half:24 returning(1.5)");
+    }
+
+    @Test
+    public void disabled_level_should_skip_span() throws Exception {
+        call("record", "x");
+        assertThat(call("getCalls"), is("x"));
+        assertLogged();
+
+        logger.setLevel(Level.TRACE);
+        call("record", "y");
+        assertThat(call("getCalls"), is("xy"));
+        assertLogged(
+                "TRACE >> TracedFixture.record:19 name: y",
+                "TRACE << TracedFixture.record:19");
+    }
+
+    @Test
+    public void span_should_be_closed_when_method_throws() throws Exception {
+        try {
+            call("fail", 1);
+            fail();
+        } catch(final InvocationTargetException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+        try {
+            call("fail", 0);
+            fail();
+        } catch(final InvocationTargetException e) {
+            // Thrown by a called method, not by "athrow" of the instrumented one
+            assertThat(e.getCause(), instanceOf(NumberFormatException.class));
+        }
+        assertLogged(
+                "DEBUG >> TracedFixture.fail:29 code: 1",
+                "DEBUG << TracedFixture.fail:29",
+                "DEBUG >> TracedFixture.fail:29 code: 0",
+                "DEBUG << TracedFixture.fail:29");
+    }
+
+    @Test
+    public void nested_spans_should_be_indented() throws Exception {
+        assertThat(call("nested", 5), is(10));
+        assertLogged(
+                "DEBUG >> TracedFixture.nested:43 a: 5",
+                "DEBUG    >> TracedFixture.fail:29 code: 1",
+                "DEBUG    << TracedFixture.fail:29",
+                "DEBUG    >> TracedFixture.add:14 a: 5, b: 5",
+                "DEBUG    << TracedFixture.add:14 returning(10)",
+                "DEBUG << TracedFixture.nested:43 returning(10)");
+    }
+
+    @Test
+    public void arguments_should_be_hidden_when_requested() throws Exception {
+        assertThat(call("secret", "password1"), is("hidden"));
+        assertLogged(
+                "DEBUG >> TracedFixture.secret:37",
+                "DEBUG << TracedFixture.secret:37 returning(hidden)");
+    }
+
+    @Test
+    public void span_should_be_closed_once_when_exit_log_throws() throws Exception {
+        final Error failure = new AssertionError("appender failed");
+        appender.failOnExit = failure;
+        try {
+            call("add", 1, 2);
+            fail();
+        } catch(final InvocationTargetException e) {
+            assertThat(e.getCause(), is(failure));
+        }
+        assertLogged(
+                "DEBUG >> TracedFixture.add:14 a: 1, b: 2",
+                "DEBUG << TracedFixture.add:14 returning(3)");
+    }
+
+    @Test
+    public void classes_without_annotation_should_be_left_alone() throws IOException {
+        assertThat(NkTraceTransformer.instrument(readClass(NkTraceTransformerTest.class.getName()), null), is(nullValue()));
+    }
+
+    private Object call(final String name, final Object... args) throws Exception {
+        for(final Method method : fixture.getClass().getMethods()) {
+            if(method.getName().equals(name)) {
+                return method.invoke(fixture, args);
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    private void assertLogged(final String... expected) {
+        final List<String> lines = new ArrayList<>(appender.lines);
+        appender.lines.clear();
+        assertThat(lines, is(Arrays.asList(expected)));
+    }
+
+    private static byte[] readClass(final String className) throws IOException {
+        try(final InputStream in = NkTraceTransformerTest.class.getClassLoader().getResourceAsStream(className.replace('.', '/') + ".class")) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Formats events like the core tests do ("%5level %mdc{NkTrace_Indent}%msg"). MDC has to be read while logging.
+     */
+    private static final class LineAppender extends AppenderBase<ILoggingEvent> {
+        private final List<String> lines = new ArrayList<>();
+        // Thrown once by the next "exit" log. Logback passes errors (unlike exceptions) to the caller
+        private Error failOnExit;
+
+        @Override
+        protected void append(final ILoggingEvent event) {
+            final String indent = event.getMDCPropertyMap().getOrDefault("NkTrace_Indent", "");
+            lines.add(String.format("%5s %s%s", event.getLevel(), indent, event.getFormattedMessage()));
+            final Error failure = failOnExit;
+            if(failure != null && event.getFormattedMessage().startsWith("<<")) {
+                failOnExit = null;
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Loads an instrumented copy of the fixture. Everything else comes from the parent.
+     */
+    private static final class InstrumentingLoader extends ClassLoader {
+        private InstrumentingLoader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            if(!name.equals(FIXTURE)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized(getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if(loaded == null) {
+                    try {
+                        final byte[] instrumented = NkTraceTransformer.instrument(readClass(name), this);
+                        loaded = defineClass(name, instrumented, 0, instrumented.length);
+                    } catch(final IOException e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                }
+                return loaded;
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package net.kawinski.logging.agent;
+
+import net.kawinski.logging.NkTraced;
+import org.slf4j.event.Level;
+
+/**
+ * Instrumented by {@link NkTraceTransformerTest}. Line numbers matter.
+ */
+public class TracedFixture {
+    private final StringBuilder calls = new StringBuilder();
+
+    @NkTraced
+    public int add(final int a, final int b) {
+        return a + b;
+    }
+
+    @NkTraced(level = Level.TRACE)
+    public void record(final String name) {
+        calls.append(name);
+    }
+
+    @NkTraced
+    public static double half(final double value, final long unused) {
+        return value / 2;
+    }
+
+    @NkTraced
+    public int fail(final int code) {
+        if(code > 0) {
+            throw new IllegalStateException("code " + code);
+        }
+        return Integer.parseInt("not a number");
+    }
+
+    @NkTraced(logArgs = false)
+    public String secret(final String password) {
+        return "hidden";
+    }
+
+    @NkTraced
+    public int nested(final int a) {
+        try {
+            return add(a, fail(1));
+        } catch(final IllegalStateException e) {
+            return add(a, a);
+        }
+    }
+
+    public String getCalls() {
+        return calls.toString();
+    }
+}
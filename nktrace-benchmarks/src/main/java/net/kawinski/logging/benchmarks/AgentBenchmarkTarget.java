@@ -0,0 +1,16 @@
+package net.kawinski.logging.benchmarks;
+
+import net.kawinski.logging.NkTraced;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Method instrumented by {@link NkTraceAgentBenchmark}. Loaded as is, it's the un-instrumented baseline.
+ */
+public class AgentBenchmarkTarget implements IntBinaryOperator {
+    @Override
+    @NkTraced
+    public int applyAsInt(final int a, final int b) {
+        return a * b + 1;
+    }
+}
@@ -0,0 +1,88 @@
+package net.kawinski.logging.benchmarks;
+
+import net.kawinski.logging.log4j2.NkTraceLog4j2Logger;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.builder.api.AppenderComponentBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.api.LoggerComponentBuilder;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+import org.apache.logging.slf4j.Log4jLoggerFactory;
+import org.apache.logging.slf4j.Log4jMarkerFactory;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Configures Log4j2 for benchmarks, like {@link BenchmarkLogging} configures Logback.
+ *
+ * Supported appenders:
+ * - noop: Null appender. Measures NkTrace and Log4j2 dispatch only.
+ * - file: RandomAccessFile appender with NkTrace-friendly pattern writing to a temporary file.
+ *
+ * The JVM has to be started with "-Dlog4j2.contextDataInjector=net.kawinski.logging.log4j2.NkTraceContextDataInjector".
+ * Garbage-free runs need "-Dlog4j2.clock=SystemMillisClock" too. The default clock allocates a timestamp per event.
+ */
+public final class BenchmarkLog4j2 {
+    public static final String PATTERN = "%5level %nkindent%msg%n";
+
+    // Logback is the SLF4J provider of the benchmarks, so the binding's factory is used directly
+    private static final Log4jLoggerFactory slf4jLoggers = new Log4jLoggerFactory(new Log4jMarkerFactory());
+
+    private BenchmarkLog4j2() {
+    }
+
+    /**
+     * @param appenderName "noop" or "file"
+     * @param async whether the benchmark logger should be an async logger
+     * @return Configured benchmark logger, passing events straight to Log4j2 ({@link NkTraceLog4j2Logger})
+     */
+    public static Logger configure(final String appenderName, final boolean async) {
+        final ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+        builder.setStatusLevel(Level.ERROR);
+        // The uber jar keeps only the plugin index of log4j-core. "%nkindent" is found by scanning its package
+        builder.setPackages("net.kawinski.logging.log4j2");
+        builder.add(createAppender(builder, appenderName));
+
+        final LoggerComponentBuilder logger = async
+                ? builder.newAsyncLogger(BenchmarkLogging.LOGGER_NAME, Level.ALL)
+                : builder.newLogger(BenchmarkLogging.LOGGER_NAME, Level.ALL);
+        builder.add(logger.add(builder.newAppenderRef(appenderName)).addAttribute("additivity", false));
+        builder.add(builder.newRootLogger(Level.OFF));
+        Configurator.reconfigure(builder.build());
+        return NkTraceLog4j2Logger.getLogger(BenchmarkLogging.LOGGER_NAME);
+    }
+
+    /**
+     * Same as {@link #configure}, but the benchmark logger comes from the log4j-slf4j2-impl binding,
+     * like in applications logging to Log4j2 through SLF4J.
+     */
+    public static Logger configureSlf4j(final String appenderName, final boolean async) {
+        configure(appenderName, async);
+        return slf4jLoggers.getLogger(BenchmarkLogging.LOGGER_NAME);
+    }
+
+    private static AppenderComponentBuilder createAppender(final ConfigurationBuilder<BuiltConfiguration> builder, final String appenderName) {
+        switch(appenderName) {
+            case "noop": return builder.newAppender(appenderName, "Null");
+            case "file": return builder.newAppender(appenderName, "RandomAccessFile")
+                    .addAttribute("fileName", createTempFile().getAbsolutePath())
+                    .addAttribute("append", false)
+                    .add(builder.newLayout("PatternLayout").addAttribute("pattern", PATTERN));
+        }
+        throw new IllegalArgumentException("Unknown appender: " + appenderName);
+    }
+
+    private static File createTempFile() {
+        try {
+            final File file = File.createTempFile("nktrace-log4j2-benchmark", ".log");
+            file.deleteOnExit();
+            return file;
+        } catch(final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net.kawinski.logging.benchmarks;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Configures Logback for benchmarks.
+ *
+ * Supported appenders:
+ * - noop: Accepts the events and throws them away. Measures NkTrace and Logback dispatch only.
+ * - file: Regular FileAppender with NkTrace-friendly pattern writing to a temporary file.
+ */
+public final class BenchmarkLogging {
+    public static final String LOGGER_NAME = "net.kawinski.logging.benchmarks";
+    public static final String PATTERN = "%5level %mdc{NkTrace_Indent}%msg%n";
+
+    private BenchmarkLogging() {
+    }
+
+    /**
+     * @param appenderName "noop" or "file"
+     * @param enabled whether the benchmark logger should log everything (true) or nothing (false)
+     * @return Configured benchmark logger
+     */
+    public static org.slf4j.Logger configure(final String appenderName, final boolean enabled) {
+        final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+        lc.reset();
+
+        final Logger rootLogger = lc.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        rootLogger.setLevel(Level.OFF);
+
+        final Logger logger = lc.getLogger(LOGGER_NAME);
+        logger.setLevel(enabled ? Level.ALL : Level.OFF);
+        logger.setAdditive(false);
+        logger.addAppender(createAppender(lc, appenderName));
+        return logger;
+    }
+
+    private static Appender<ILoggingEvent> createAppender(final LoggerContext lc, final String appenderName) {
+        switch(appenderName) {
+            case "noop": return createNoopAppender(lc);
+            case "file": return createFileAppender(lc);
+        }
+        throw new IllegalArgumentException("Unknown appender: " + appenderName);
+    }
+
+    private static Appender<ILoggingEvent> createNoopAppender(final LoggerContext lc) {
+        final NoopAppender appender = new NoopAppender();
+        appender.setContext(lc);
+        appender.start();
+        return appender;
+    }
+
+    private static Appender<ILoggingEvent> createFileAppender(final LoggerContext lc) {
+        final PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setPattern(PATTERN);
+        encoder.setContext(lc);
+        encoder.start();
+
+        final FileAppender<ILoggingEvent> appender = new FileAppender<>();
+        appender.setFile(createTempFile().getAbsolutePath());
+        appender.setAppend(false);
+        appender.setEncoder(encoder);
+        appender.setContext(lc);
+        appender.start();
+        return appender;
+    }
+
+    private static File createTempFile() {
+        try {
+            final File file = File.createTempFile("nktrace-benchmark", ".log");
+            file.deleteOnExit();
+            return file;
+        } catch(final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class NoopAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+        @Override
+        protected void append(final ILoggingEvent event) {
+        }
+    }
+}
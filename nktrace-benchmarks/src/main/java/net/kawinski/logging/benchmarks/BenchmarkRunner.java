@@ -0,0 +1,41 @@
+package net.kawinski.logging.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs selected benchmarks with 1, 4 and 32 threads and reports allocations through the GC profiler.
+ *
+ * Usage: java -cp target/benchmarks.jar net.kawinski.logging.benchmarks.BenchmarkRunner [regexp...]
+ * Without arguments all benchmarks are run.
+ * Results are additionally stored as JSON in "target/nktrace-benchmarks-N-threads.json".
+ */
+public final class BenchmarkRunner {
+    private static final int[] THREADS = {1, 4, 32};
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        for(final int threads : THREADS) {
+            final OptionsBuilder builder = new OptionsBuilder();
+            if(args.length == 0) {
+                builder.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+            }
+            for(final String include : args) {
+                builder.include(include);
+            }
+            final Options options = builder
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .result("target/nktrace-benchmarks-" + threads + "-threads.json")
+                    .resultFormat(ResultFormatType.JSON)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package net.kawinski.logging.benchmarks;
+
+import net.kawinski.logging.CallerInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CallerInfo#getCaller(String)} with different number of frames between the caller and the FQCN.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallerInfoBenchmark {
+    private static final String FQCN = CallerInfoBenchmark.class.getName() + "$Tracer";
+
+    @Param({"0", "10", "50"})
+    public int depth;
+
+    @Benchmark
+    public CallerInfo getCaller() {
+        return Tracer.resolve(depth);
+    }
+
+    private static final class Tracer {
+        private static CallerInfo resolve(final int depth) {
+            return Deep.call(depth);
+        }
+    }
+
+    private static final class Deep {
+        private static CallerInfo call(final int depth) {
+            if(depth <= 0) {
+                return CallerInfo.getCaller(FQCN);
+            }
+            return call(depth - 1);
+        }
+    }
+}
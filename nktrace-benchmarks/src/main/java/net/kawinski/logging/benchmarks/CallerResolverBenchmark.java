@@ -0,0 +1,55 @@
+package net.kawinski.logging.benchmarks;
+
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.CallerResolver;
+import net.kawinski.logging.CallerResolvers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link CallerResolver} strategies.
+ *
+ * The resolver is called through a "tracer" frame (like NkTrace's constructor),
+ * so the resolvers have to skip it the same way they do in real usage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallerResolverBenchmark {
+    @Param({"legacy", "stackwalker", "interning", "none"})
+    public String resolverName;
+
+    private CallerResolver resolver;
+
+    @Setup
+    public void setup() {
+        resolver = CallerResolvers.fromName(resolverName);
+    }
+
+    @Benchmark
+    public CallerInfo resolve() {
+        return Tracer.resolve(resolver);
+    }
+
+    private static final class Tracer {
+        private static final String FQCN = Tracer.class.getName();
+
+        private static CallerInfo resolve(final CallerResolver resolver) {
+            return resolver.resolve(FQCN);
+        }
+    }
+}
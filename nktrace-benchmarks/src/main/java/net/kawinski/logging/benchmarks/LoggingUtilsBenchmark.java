@@ -0,0 +1,46 @@
+package net.kawinski.logging.benchmarks;
+
+import net.kawinski.logging.LoggingUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LoggingUtils#prepend(Object[], Object)} used by the exit log with returned value.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoggingUtilsBenchmark {
+    @Param({"0", "2", "8"})
+    public int size;
+
+    private Object[] array;
+    private final Object element = "result";
+
+    @Setup
+    public void setup() {
+        array = new Object[size];
+        for(int i = 0; i < size; ++i) {
+            array[i] = i;
+        }
+    }
+
+    @Benchmark
+    public Object[] prepend() {
+        return LoggingUtils.prepend(array, element);
+    }
+}
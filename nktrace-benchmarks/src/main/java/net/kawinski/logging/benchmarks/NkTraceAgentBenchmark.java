@@ -0,0 +1,106 @@
+package net.kawinski.logging.benchmarks;
+
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.agent.NkTraceTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Compares a method instrumented by the agent ("instrumented") with the same method left alone ("plain")
+ * and with a hand-written span at an explicit call site ("manual").
+ * With "enabled" set to false, it measures the overhead of instrumented methods whose level is disabled.
+ *
+ * The instrumented copy is loaded by its own class loader with {@link NkTraceTransformer}, like the agent would do it,
+ * so the benchmark doesn't need "-javaagent".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NkTraceAgentBenchmark {
+    private static final CallerInfo SITE = CallerInfo.of("net.kawinski.logging.benchmarks.NkTraceAgentBenchmark", "manual", 42);
+
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private Logger logger;
+    private IntBinaryOperator plain;
+    private IntBinaryOperator instrumented;
+    private int a = 3;
+    private int b = 6;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        logger = BenchmarkLogging.configure("noop", enabled);
+        plain = new AgentBenchmarkTarget();
+        instrumented = (IntBinaryOperator) new InstrumentingLoader().loadClass(AgentBenchmarkTarget.class.getName()).getConstructor().newInstance();
+    }
+
+    @Benchmark
+    public int plain() {
+        return plain.applyAsInt(a, b);
+    }
+
+    @Benchmark
+    public int instrumented() {
+        return instrumented.applyAsInt(a, b);
+    }
+
+    @Benchmark
+    public int manual() {
+        try(final NkTrace trace = NkTrace.debug(SITE, logger, "a: {}, b: {}", a, b)) {
+            return trace.returning(a * b + 1);
+        }
+    }
+
+    /**
+     * Loads an instrumented copy of {@link AgentBenchmarkTarget}. Everything else comes from the parent.
+     */
+    private static final class InstrumentingLoader extends ClassLoader {
+        private static final String TARGET = AgentBenchmarkTarget.class.getName();
+
+        private InstrumentingLoader() {
+            super(NkTraceAgentBenchmark.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            if(!name.equals(TARGET)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized(getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if(loaded == null) {
+                    try(final InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        in.transferTo(out);
+                        final byte[] instrumented = NkTraceTransformer.instrument(out.toByteArray(), this);
+                        loaded = defineClass(name, instrumented, 0, instrumented.length);
+                    } catch(final IOException e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                }
+                return loaded;
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package net.kawinski.logging.benchmarks;
+
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.NkTraceAsync;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of an enabled span on the tracing thread with {@link NkTraceAsync} enabled.
+ * Compare with {@link NkTraceBenchmark} (synchronous).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NkTraceAsyncBenchmark {
+    @Param({"noop", "file"})
+    public String appender;
+
+    @Param({"BLOCK", "DROP"})
+    public NkTraceAsync.BackPressure backPressure;
+
+    private Logger logger;
+    private final double a = 3.0;
+    private final double b = 6.0;
+
+    @Setup
+    public void setup() {
+        logger = BenchmarkLogging.configure(appender, true);
+        NkTraceAsync.backPressure = backPressure;
+        NkTraceAsync.enabled = true;
+    }
+
+    @TearDown
+    public void tearDown() {
+        NkTraceAsync.flush(10, TimeUnit.SECONDS);
+        NkTraceAsync.enabled = false;
+        System.out.println("Dropped: " + NkTraceAsync.getDroppedCount() + ", max lag: " + NkTraceAsync.getMaxLagNanos() + "ns");
+    }
+
+    @Benchmark
+    public void debug() {
+        try(final NkTrace trace = NkTrace.debug(logger)) {
+        }
+    }
+
+    @Benchmark
+    public double exitWithReturningAndMessage() {
+        try(final NkTrace trace = NkTrace.debug(logger)) {
+            return trace.returning(a * b, "a: {}, b: {}", a, b);
+        }
+    }
+}
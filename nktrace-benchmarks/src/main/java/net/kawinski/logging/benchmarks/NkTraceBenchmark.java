@@ -0,0 +1,108 @@
+package net.kawinski.logging.benchmarks;
+
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.NkTraceFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the full NkTrace span: entry log, indentation and exit log.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NkTraceBenchmark {
+    @Param({"noop", "file"})
+    public String appender;
+
+    @Param({"true", "false"})
+    public boolean enabled;
+
+    private Logger logger;
+    private final double a = 3.0;
+    private final double b = 6.0;
+
+    @Setup
+    public void setup() {
+        logger = BenchmarkLogging.configure(appender, enabled);
+    }
+
+    @Benchmark
+    public void info() {
+        try(final NkTrace trace = NkTrace.info(logger)) {
+        }
+    }
+
+    @Benchmark
+    public void debug() {
+        try(final NkTrace trace = NkTrace.debug(logger)) {
+        }
+    }
+
+    @Benchmark
+    public void trace() {
+        try(final NkTrace trace = NkTrace.trace(logger)) {
+        }
+    }
+
+    @Benchmark
+    public void debugWithArgs() {
+        try(final NkTrace trace = NkTrace.debug(logger, "a: {}, b: {}", a, b)) {
+        }
+    }
+
+    @Benchmark
+    public void debugWithLazyArgs() {
+        try(final NkTrace trace = NkTrace.debug(logger, "a: {}, b: {}", () -> a, () -> b)) {
+        }
+    }
+
+    @Benchmark
+    public double exitWithReturning() {
+        try(final NkTrace trace = NkTrace.debug(logger)) {
+            return trace.returning(a * b);
+        }
+    }
+
+    @Benchmark
+    public double exitWithReturningAndMessage() {
+        try(final NkTrace trace = NkTrace.debug(logger)) {
+            return trace.returning(a * b, "a: {}, b: {}", a, b);
+        }
+    }
+
+    @Benchmark
+    public void exitWithMessage() {
+        try(final NkTrace trace = NkTrace.debug(logger)) {
+            trace.setExitMsg("a: {}, b: {}", a, b);
+        }
+    }
+
+    @Benchmark
+    public void debugFrame() {
+        try(final NkTraceFrame frame = NkTraceFrame.debug(logger)) {
+        }
+    }
+
+    @Benchmark
+    public double exitWithReturningFrame() {
+        try(final NkTraceFrame frame = NkTraceFrame.debug(logger)) {
+            return frame.returning(a * b);
+        }
+    }
+}
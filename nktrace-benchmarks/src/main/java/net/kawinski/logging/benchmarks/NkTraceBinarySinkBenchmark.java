@@ -0,0 +1,84 @@
+package net.kawinski.logging.benchmarks;
+
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.NkTraceBinarySink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing spans with {@link NkTraceBinarySink} ("binary") with the regular text logs ("file").
+ * Call sites are given explicitly, so the cost of finding the caller doesn't hide the difference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NkTraceBinarySinkBenchmark {
+    private static final CallerInfo SITE = CallerInfo.of("net.kawinski.logging.benchmarks.NkTraceBinarySinkBenchmark", "span", 42);
+
+    @Param({"binary", "file"})
+    public String output;
+
+    private Logger logger;
+    private File file;
+    private NkTraceBinarySink sink;
+    private final double a = 3.0;
+    private final double b = 6.0;
+
+    @Setup
+    public void setup() {
+        logger = BenchmarkLogging.configure("binary".equals(output) ? "noop" : "file", true);
+    }
+
+    @Setup(Level.Iteration)
+    public void openSink() throws IOException {
+        if("binary".equals(output)) {
+            file = File.createTempFile("nktrace-benchmark", ".bin");
+            file.deleteOnExit();
+            sink = NkTraceBinarySink.open(file.toPath(), 512L * 1024 * 1024);
+            NkTraceBinarySink.install(sink);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeSink() throws IOException {
+        if(sink != null) {
+            System.out.println("Dropped: " + sink.getDroppedCount());
+            sink.close();
+            file.delete();
+            sink = null;
+        }
+    }
+
+    @Benchmark
+    public void span() {
+        try(final NkTrace trace = NkTrace.debug(SITE, logger)) {
+        }
+    }
+
+    @Benchmark
+    public double spanWithReturningAndMessage() {
+        try(final NkTrace trace = NkTrace.debug(SITE, logger, "a: {}", a)) {
+            return trace.returning(a * b, "b: {}", b);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package net.kawinski.logging.benchmarks;
+
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.NkTraceFlightRecorder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of a span whose level is disabled, with and without {@link NkTraceFlightRecorder}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NkTraceFlightRecorderBenchmark {
+    private static final CallerInfo SITE = CallerInfo.of("net.kawinski.logging.benchmarks.NkTraceFlightRecorderBenchmark", "span", 42);
+
+    @Param({"false", "true"})
+    public boolean recorder;
+
+    private Logger logger;
+    private final double a = 3.0;
+    private final double b = 6.0;
+
+    @Setup
+    public void setup() {
+        logger = BenchmarkLogging.configure("noop", false);
+        NkTraceFlightRecorder.enabled = recorder;
+    }
+
+    @TearDown
+    public void tearDown() {
+        NkTraceFlightRecorder.enabled = false;
+    }
+
+    @Benchmark
+    public double spanWithReturningAndMessage() {
+        try(final NkTrace trace = NkTrace.debug(SITE, logger, "a: {}", a)) {
+            return trace.returning(a * b, "b: {}", b);
+        }
+    }
+
+    @Benchmark
+    public double spanWithResolvedCaller() {
+        try(final NkTrace trace = NkTrace.debug(logger, "a: {}", a)) {
+            return trace.returning(a * b, "b: {}", b);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package net.kawinski.logging.benchmarks;
+
+import net.kawinski.logging.NkTraceIndent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NkTraceIndent#increment()} and {@link NkTraceIndent#decrement()}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NkTraceIndentBenchmark {
+    /**
+     * Number of nested levels entered (and left) in a single operation
+     */
+    @Param({"1", "8", "32"})
+    public int nesting;
+
+    @Benchmark
+    public int incrementDecrement() {
+        for(int i = 0; i < nesting; ++i) {
+            NkTraceIndent.increment();
+        }
+        final int level = NkTraceIndent.getIndentLevel();
+        for(int i = 0; i < nesting; ++i) {
+            NkTraceIndent.decrement();
+        }
+        return level;
+    }
+}
@@ -0,0 +1,73 @@
+package net.kawinski.logging.benchmarks;
+
+import jdk.jfr.Recording;
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.NkTraceJfr;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares spans written as text ("OFF" with file appender) with spans committed as JFR events only ("ONLY").
+ * A JFR recording with NkTrace events enabled is running in both cases.
+ * Call sites are given explicitly, so the cost of finding the caller doesn't hide the difference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NkTraceJfrBenchmark {
+    private static final CallerInfo SITE = CallerInfo.of("net.kawinski.logging.benchmarks.NkTraceJfrBenchmark", "span", 42);
+
+    @Param({"OFF", "ONLY"})
+    public NkTraceJfr.Mode mode;
+
+    private Logger logger;
+    private Recording recording;
+    private final double a = 3.0;
+    private final double b = 6.0;
+
+    @Setup
+    public void setup() {
+        logger = BenchmarkLogging.configure(mode == NkTraceJfr.Mode.OFF ? "file" : "noop", true);
+        recording = new Recording();
+        recording.enable("net.kawinski.logging.NkTraceSpan").withoutThreshold();
+        recording.setToDisk(true);
+        recording.start();
+        NkTraceJfr.mode = mode;
+    }
+
+    @TearDown
+    public void tearDown() {
+        NkTraceJfr.mode = NkTraceJfr.Mode.OFF;
+        recording.close();
+    }
+
+    @Benchmark
+    public void span() {
+        try(final NkTrace trace = NkTrace.debug(SITE, logger)) {
+        }
+    }
+
+    @Benchmark
+    public double spanWithReturningAndMessage() {
+        try(final NkTrace trace = NkTrace.debug(SITE, logger, "a: {}", a)) {
+            return trace.returning(a * b, "b: {}", b);
+        }
+    }
+}
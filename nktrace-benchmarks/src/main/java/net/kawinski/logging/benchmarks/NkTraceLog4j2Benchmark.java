@@ -0,0 +1,87 @@
+package net.kawinski.logging.benchmarks;
+
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.NkTraceFrame;
+import net.kawinski.logging.NkTraceIndent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares enabled spans logged to Log4j2:
+ * - log4j2-slf4j: through the log4j-slf4j2-impl binding, the plain SLF4J path,
+ * - log4j2, log4j2-async: straight to Log4j2 by nktrace-log4j2 ({@link net.kawinski.logging.log4j2.NkTraceLog4j2Logger}),
+ *   synchronously and with an async logger,
+ * - logback: through SLF4J to Logback (the MDC indent), for reference.
+ * Log4j2 backends get the indent from the injector.
+ *
+ * Spans are pooled and have constant call sites, so whatever is allocated comes from the logging path.
+ * Run with "-prof gc" to see it. "log4j2" with the "noop" appender should report gc.alloc.rate.norm of 0 B/op,
+ * which NkTraceLog4j2AllocationTest of nktrace-log4j2 checks too.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Dlog4j2.contextDataInjector=net.kawinski.logging.log4j2.NkTraceContextDataInjector",
+        "-Dlog4j2.clock=SystemMillisClock"})
+@State(Scope.Benchmark)
+public class NkTraceLog4j2Benchmark {
+    private static final CallerInfo CALLER = CallerInfo.of(NkTraceLog4j2Benchmark.class.getName(), "span", 1);
+
+    @Param({"log4j2-slf4j", "log4j2", "log4j2-async", "logback"})
+    public String backend;
+
+    @Param({"noop", "file"})
+    public String appender;
+
+    private Logger logger;
+    private final Object[] args = {3, "x"};
+    private final double a = 3.0;
+    private final double b = 6.0;
+
+    @Setup
+    public void setup() {
+        if(backend.equals("logback")) {
+            logger = BenchmarkLogging.configure(appender, true);
+            return;
+        }
+        NkTraceIndent.useMdc = false;
+        if(backend.equals("log4j2-slf4j")) {
+            logger = BenchmarkLog4j2.configureSlf4j(appender, false);
+        } else {
+            logger = BenchmarkLog4j2.configure(appender, backend.equals("log4j2-async"));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        NkTraceIndent.useMdc = true;
+    }
+
+    @Benchmark
+    public void span() {
+        try(final NkTraceFrame frame = NkTraceFrame.debug(CALLER, logger, "a: {}, b: {}", args)) {
+        }
+    }
+
+    @Benchmark
+    public double spanWithReturning() {
+        try(final NkTraceFrame frame = NkTraceFrame.debug(CALLER, logger, "a: {}, b: {}", args)) {
+            return frame.returning(a * b);
+        }
+    }
+}
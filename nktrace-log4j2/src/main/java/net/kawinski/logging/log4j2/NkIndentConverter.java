@@ -0,0 +1,44 @@
+package net.kawinski.logging.log4j2;
+
+import net.kawinski.logging.NkTraceIndent;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.pattern.ConverterKeys;
+import org.apache.logging.log4j.core.pattern.LogEventPatternConverter;
+import org.apache.logging.log4j.core.pattern.PatternConverter;
+
+/**
+ * "%nkindent" pattern converter. Writes NkTrace indentation of the event.
+ *
+ * The indentation is taken from the event's context data, put there by {@link NkTraceContextDataInjector}.
+ * Without the injector, it's read from {@link NkTraceIndent} while formatting, which is only correct on the logging thread.
+ * Either way, a cached string is appended, so formatting doesn't allocate.
+ *
+ * The plugin is found by Log4j2 automatically, as long as this module is on the classpath.
+ */
+@Plugin(name = "NkIndentConverter", category = PatternConverter.CATEGORY)
+@ConverterKeys({NkIndentConverter.CONVERSION_WORD})
+public final class NkIndentConverter extends LogEventPatternConverter {
+    public static final String CONVERSION_WORD = "nkindent";
+
+    private static final NkIndentConverter INSTANCE = new NkIndentConverter();
+
+    private NkIndentConverter() {
+        super("NkIndent", "nkindent");
+    }
+
+    /**
+     * Called by Log4j2 to create the converter.
+     *
+     * @param options ignored
+     */
+    public static NkIndentConverter newInstance(final String[] options) {
+        return INSTANCE;
+    }
+
+    @Override
+    public void format(final LogEvent event, final StringBuilder toAppendTo) {
+        final String indent = event.getContextData().getValue(NkTraceIndent.MDC_INDENT_KEY);
+        toAppendTo.append(indent != null ? indent : NkTraceIndent.getIndent(NkTraceIndent.getEventIndentLevel()));
+    }
+}
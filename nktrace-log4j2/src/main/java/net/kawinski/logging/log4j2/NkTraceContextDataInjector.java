@@ -0,0 +1,63 @@
+package net.kawinski.logging.log4j2;
+
+import net.kawinski.logging.NkTraceIndent;
+import org.apache.logging.log4j.ThreadContext;
+import org.apache.logging.log4j.core.ContextDataInjector;
+import org.apache.logging.log4j.core.config.Property;
+import org.apache.logging.log4j.core.impl.ThreadContextDataInjector;
+import org.apache.logging.log4j.spi.CopyOnWrite;
+import org.apache.logging.log4j.spi.DefaultThreadContextMap;
+import org.apache.logging.log4j.spi.ReadOnlyThreadContextMap;
+import org.apache.logging.log4j.util.ReadOnlyStringMap;
+import org.apache.logging.log4j.util.StringMap;
+
+import java.util.List;
+
+/**
+ * Adds NkTrace indentation to the context data of every Log4j2 event, under {@link NkTraceIndent#MDC_INDENT_KEY}.
+ *
+ * The indentation is read from {@link NkTraceIndent} on the logging thread when the event is created,
+ * so it's correct with async loggers and appenders too. The ThreadContext map is never modified,
+ * so {@link NkTraceIndent#useMdc} can be disabled ("-DNKTRACE_INDENT_MDC=false").
+ * Indents are cached strings, so injecting them doesn't allocate.
+ *
+ * Enable with "-Dlog4j2.contextDataInjector=net.kawinski.logging.log4j2.NkTraceContextDataInjector"
+ * and use "%X{NkTrace_Indent}" or {@link NkIndentConverter} ("%nkindent") in the pattern.
+ */
+public class NkTraceContextDataInjector implements ContextDataInjector {
+    // Copies the ThreadContext map, the way Log4j2 would without this injector
+    private final ContextDataInjector delegate = createDefaultInjector();
+
+    @Override
+    public StringMap injectContextData(final List<Property> properties, final StringMap reusable) {
+        StringMap contextData = delegate.injectContextData(properties, reusable);
+        if(contextData.isFrozen()) {
+            // Shared copy of a copy-on-write ThreadContext map
+            reusable.clear();
+            reusable.putAll(contextData);
+            contextData = reusable;
+        }
+        contextData.putValue(NkTraceIndent.MDC_INDENT_KEY, NkTraceIndent.getIndent(NkTraceIndent.getEventIndentLevel()));
+        return contextData;
+    }
+
+    @Override
+    public ReadOnlyStringMap rawContextData() {
+        return delegate.rawContextData();
+    }
+
+    /**
+     * Same choice as Log4j2's ContextDataInjectorFactory makes when no injector is configured.
+     * The factory itself can't be used, because it would create this injector again.
+     */
+    private static ContextDataInjector createDefaultInjector() {
+        final ReadOnlyThreadContextMap threadContextMap = ThreadContext.getThreadContextMap();
+        if(threadContextMap instanceof DefaultThreadContextMap || threadContextMap == null) {
+            return new ThreadContextDataInjector.ForDefaultThreadContextMap();
+        }
+        if(threadContextMap instanceof CopyOnWrite) {
+            return new ThreadContextDataInjector.ForCopyOnWriteThreadContextMap();
+        }
+        return new ThreadContextDataInjector.ForGarbageFreeThreadContextMap();
+    }
+}
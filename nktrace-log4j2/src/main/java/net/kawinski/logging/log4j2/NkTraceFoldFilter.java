@@ -0,0 +1,162 @@
+package net.kawinski.logging.log4j2;
+
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.NkTraceFold;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.Logger;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+import org.apache.logging.log4j.core.filter.AbstractFilter;
+import org.apache.logging.log4j.message.Message;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports regular logs to {@link NkTraceFold}, which folds spans only when such a hook is running.
+ *
+ * Context-wide filters see every log before Log4j2 creates an event for it, so the "entry" logs held back by the logging thread
+ * are written before the log and the span it's written in isn't folded. NkTrace "entry" and "exit" logs are passed through.
+ * Never denies anything. Filters of loggers and appenders see events too late, so it has to be context-wide.
+ *
+ * Example (log4j2.xml):
+ * &lt;Configuration&gt;
+ *     &lt;NkTraceFoldFilter/&gt;
+ *     ...
+ */
+@Plugin(name = "NkTraceFoldFilter", category = Node.CATEGORY, elementType = Filter.ELEMENT_TYPE, printObject = true)
+public final class NkTraceFoldFilter extends AbstractFilter {
+    private NkTraceFoldFilter() {
+    }
+
+    @PluginFactory
+    public static NkTraceFoldFilter createFilter() {
+        return new NkTraceFoldFilter();
+    }
+
+    @Override
+    public Result filter(final Logger logger, final Level level, final Marker marker, final String msg, final Object... params) {
+        // isDebugEnabled() etc. come without a message. Nothing is written then
+        if(msg != null || params != null) {
+            report(logger, level, marker);
+        }
+        return Result.NEUTRAL;
+    }
+
+    @Override
+    public Result filter(final Logger logger, final Level level, final Marker marker, final Object msg, final Throwable t) {
+        if(msg != null || t != null) {
+            report(logger, level, marker);
+        }
+        return Result.NEUTRAL;
+    }
+
+    @Override
+    public Result filter(final Logger logger, final Level level, final Marker marker, final Message msg, final Throwable t) {
+        if(msg != null || t != null) {
+            report(logger, level, marker);
+        }
+        return Result.NEUTRAL;
+    }
+
+    @Override
+    public Result filter(final Logger logger, final Level level, final Marker marker, final String msg, final Object p0) {
+        report(logger, level, marker);
+        return Result.NEUTRAL;
+    }
+
+    @Override
+    public Result filter(final Logger logger, final Level level, final Marker marker, final String msg, final Object p0, final Object p1) {
+        report(logger, level, marker);
+        return Result.NEUTRAL;
+    }
+
+    @Override
+    public Result filter(final Logger logger, final Level level, final Marker marker, final String msg, final Object p0, final Object p1,
+                         final Object p2) {
+        report(logger, level, marker);
+        return Result.NEUTRAL;
+    }
+
+    @Override
+    public Result filter(final Logger logger, final Level level, final Marker marker, final String msg, final Object p0, final Object p1,
+                         final Object p2, final Object p3) {
+        report(logger, level, marker);
+        return Result.NEUTRAL;
+    }
+
+    @Override
+    public Result filter(final Logger logger, final Level level, final Marker marker, final String msg, final Object p0, final Object p1,
+                         final Object p2, final Object p3, final Object p4) {
+        report(logger, level, marker);
+        return Result.NEUTRAL;
+    }
+
+    @Override
+    public Result filter(final Logger logger, final Level level, final Marker marker, final String msg, final Object p0, final Object p1,
+                         final Object p2, final Object p3, final Object p4, final Object p5) {
+        report(logger, level, marker);
+        return Result.NEUTRAL;
+    }
+
+    @Override
+    public Result filter(final Logger logger, final Level level, final Marker marker, final String msg, final Object p0, final Object p1,
+                         final Object p2, final Object p3, final Object p4, final Object p5, final Object p6) {
+        report(logger, level, marker);
+        return Result.NEUTRAL;
+    }
+
+    @Override
+    public Result filter(final Logger logger, final Level level, final Marker marker, final String msg, final Object p0, final Object p1,
+                         final Object p2, final Object p3, final Object p4, final Object p5, final Object p6, final Object p7) {
+        report(logger, level, marker);
+        return Result.NEUTRAL;
+    }
+
+    @Override
+    public Result filter(final Logger logger, final Level level, final Marker marker, final String msg, final Object p0, final Object p1,
+                         final Object p2, final Object p3, final Object p4, final Object p5, final Object p6, final Object p7, final Object p8) {
+        report(logger, level, marker);
+        return Result.NEUTRAL;
+    }
+
+    @Override
+    public Result filter(final Logger logger, final Level level, final Marker marker, final String msg, final Object p0, final Object p1,
+                         final Object p2, final Object p3, final Object p4, final Object p5, final Object p6, final Object p7, final Object p8,
+                         final Object p9) {
+        report(logger, level, marker);
+        return Result.NEUTRAL;
+    }
+
+    @Override
+    public void start() {
+        if(!isStarted()) {
+            NkTraceFold.nestedOutputHookStarted();
+        }
+        super.start();
+    }
+
+    @Override
+    public boolean stop(final long timeout, final TimeUnit timeUnit) {
+        if(isStarted()) {
+            NkTraceFold.nestedOutputHookStopped();
+        }
+        return super.stop(timeout, timeUnit);
+    }
+
+    private static void report(final Logger logger, final Level level, final Marker marker) {
+        if(marker != null) {
+            // Compared by name, like NkTraceLog4j2Logger and the log4j-slf4j binding convert them
+            final String name = marker.getName();
+            if(NkTrace.MARKER_TRACE_ENTRY_NAME.equals(name) || NkTrace.MARKER_TRACE_EXIT_NAME.equals(name)) {
+                return;
+            }
+        }
+        // Level check of the logger comes after context-wide filters. Logs which won't be written aren't nested output
+        if(level.isMoreSpecificThan(logger.getLevel())) {
+            NkTraceFold.nestedOutput();
+        }
+    }
+}
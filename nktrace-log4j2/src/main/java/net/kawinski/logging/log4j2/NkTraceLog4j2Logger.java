@@ -0,0 +1,150 @@
+package net.kawinski.logging.log4j2;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.ReusableMessageFactory;
+import org.apache.logging.log4j.spi.ExtendedLogger;
+import org.slf4j.Marker;
+import org.slf4j.helpers.AbstractLogger;
+import org.slf4j.spi.LocationAwareLogger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * SLF4J logger passing NkTrace events straight to a Log4j2 logger, without the log4j-slf4j binding.
+ *
+ * The binding wraps every event in a new message and converts its marker. This logger doesn't allocate either:
+ * - messages come from the Log4j2 logger's message factory. In garbage-free mode, that's a reusable thread-local message,
+ * - markers are looked up by name in Log4j2's {@link MarkerManager}, so NkTrace entry/exit markers stay usable in filters.
+ *
+ * Example:
+ * private static final Logger log = NkTraceLog4j2Logger.getLogger(Calculator.class);
+ * ...
+ * try(final NkTrace trace = NkTrace.debug(log)) {
+ *
+ * Indentation is provided by {@link NkTraceContextDataInjector} and {@link NkIndentConverter}.
+ */
+public final class NkTraceLog4j2Logger extends AbstractLogger implements LocationAwareLogger {
+    private static final long serialVersionUID = 1L;
+    private static final String FQCN = NkTraceLog4j2Logger.class.getName();
+    private static final ConcurrentMap<String, NkTraceLog4j2Logger> loggers = new ConcurrentHashMap<>();
+
+    private final transient ExtendedLogger logger;
+
+    private NkTraceLog4j2Logger(final ExtendedLogger logger) {
+        this.name = logger.getName();
+        this.logger = logger;
+    }
+
+    /**
+     * @return Logger named after given class
+     */
+    public static NkTraceLog4j2Logger getLogger(final Class<?> clazz) {
+        return getLogger(clazz.getName());
+    }
+
+    /**
+     * @return Logger of given name. Loggers are cached, so the same instance is returned for the same name
+     */
+    public static NkTraceLog4j2Logger getLogger(final String name) {
+        return loggers.computeIfAbsent(name, n -> new NkTraceLog4j2Logger(LogManager.getContext(false).getLogger(n)));
+    }
+
+    @Override
+    public void log(final Marker marker, final String fqcn, final int level, final String message, final Object[] argArray, final Throwable t) {
+        final Level log4jLevel = toLevel(level);
+        final org.apache.logging.log4j.Marker log4jMarker = toMarker(marker);
+        if(t == null) {
+            // Takes a reusable message from the logger's message factory
+            logger.logIfEnabled(fqcn, log4jLevel, log4jMarker, message, argArray);
+        } else if(logger.isEnabled(log4jLevel, log4jMarker, message, t)) {
+            final Message msg = logger.getMessageFactory().newMessage(message, argArray);
+            try {
+                logger.logMessage(fqcn, log4jLevel, log4jMarker, msg, t);
+            } finally {
+                // Otherwise the thread's reusable message stays taken and every later event gets a new one
+                ReusableMessageFactory.release(msg);
+            }
+        }
+    }
+
+    @Override
+    protected String getFullyQualifiedCallerName() {
+        return FQCN;
+    }
+
+    @Override
+    protected void handleNormalizedLoggingCall(final org.slf4j.event.Level level, final Marker marker, final String msg, final Object[] arguments, final Throwable throwable) {
+        log(marker, FQCN, level.toInt(), msg, arguments, throwable);
+    }
+
+    @Override
+    public boolean isTraceEnabled() {
+        return logger.isTraceEnabled();
+    }
+
+    @Override
+    public boolean isTraceEnabled(final Marker marker) {
+        return logger.isTraceEnabled(toMarker(marker));
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+
+    @Override
+    public boolean isDebugEnabled(final Marker marker) {
+        return logger.isDebugEnabled(toMarker(marker));
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return logger.isInfoEnabled();
+    }
+
+    @Override
+    public boolean isInfoEnabled(final Marker marker) {
+        return logger.isInfoEnabled(toMarker(marker));
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return logger.isWarnEnabled();
+    }
+
+    @Override
+    public boolean isWarnEnabled(final Marker marker) {
+        return logger.isWarnEnabled(toMarker(marker));
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return logger.isErrorEnabled();
+    }
+
+    @Override
+    public boolean isErrorEnabled(final Marker marker) {
+        return logger.isErrorEnabled(toMarker(marker));
+    }
+
+    static Level toLevel(final int level) {
+        switch(level) {
+            case TRACE_INT: return Level.TRACE;
+            case DEBUG_INT: return Level.DEBUG;
+            case INFO_INT: return Level.INFO;
+            case WARN_INT: return Level.WARN;
+            default: return Level.ERROR;
+        }
+    }
+
+    /**
+     * Marker references aren't converted. Only the name matters for filters and layouts.
+     */
+    static org.apache.logging.log4j.Marker toMarker(final Marker marker) {
+        return marker == null ? null : MarkerManager.getMarker(marker.getName());
+    }
+}
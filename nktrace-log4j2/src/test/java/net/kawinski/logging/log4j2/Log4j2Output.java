@@ -0,0 +1,45 @@
+package net.kawinski.logging.log4j2;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.WriterAppender;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.LoggerConfig;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+
+import java.io.StringWriter;
+
+/**
+ * Captures the formatted output of a single Log4j2 logger.
+ */
+final class Log4j2Output implements AutoCloseable {
+    private final String loggerName;
+    private final StringWriter writer = new StringWriter();
+
+    Log4j2Output(final String loggerName, final Level level, final String pattern) {
+        this.loggerName = loggerName;
+        final LoggerContext ctx = (LoggerContext) LogManager.getContext(false);
+        final Configuration config = ctx.getConfiguration();
+        final PatternLayout layout = PatternLayout.newBuilder().withPattern(pattern).withConfiguration(config).build();
+        final WriterAppender appender = WriterAppender.createAppender(layout, null, writer, loggerName, false, true);
+        appender.start();
+
+        final LoggerConfig loggerConfig = new LoggerConfig(loggerName, level, false);
+        loggerConfig.addAppender(appender, null, null);
+        config.addLogger(loggerName, loggerConfig);
+        ctx.updateLoggers();
+    }
+
+    @Override
+    public String toString() {
+        return writer.toString();
+    }
+
+    @Override
+    public void close() {
+        final LoggerContext ctx = (LoggerContext) LogManager.getContext(false);
+        ctx.getConfiguration().removeLogger(loggerName);
+        ctx.updateLoggers();
+    }
+}
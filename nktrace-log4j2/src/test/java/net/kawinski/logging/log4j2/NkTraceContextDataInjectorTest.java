@@ -0,0 +1,74 @@
+package net.kawinski.logging.log4j2;
+
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.NkTraceIndent;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceContextDataInjectorTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Calc", "outer", 1);
+    private static final CallerInfo INNER = CallerInfo.of("net.kawinski.Calc", "inner", 2);
+    private static final String LOGGER_NAME = "test.nkTraceContextDataInjector";
+    private static final String NL = System.lineSeparator();
+
+    private final NkTraceLog4j2Logger logger = NkTraceLog4j2Logger.getLogger(LOGGER_NAME);
+    // Plain Log4j2 logger, not aware of NkTrace at all
+    private final Logger log4jLogger = LogManager.getLogger(LOGGER_NAME);
+    private Log4j2Output output;
+
+    @Before
+    public void disableMdc() {
+        NkTraceIndent.useMdc = false;
+        NkTraceIndent.reset();
+        ThreadContext.clearMap();
+    }
+
+    @After
+    public void enableMdc() {
+        output.close();
+        ThreadContext.clearMap();
+        NkTraceIndent.useMdc = true;
+        NkTraceIndent.reset();
+    }
+
+    @Test
+    public void converter_should_write_indent() {
+        output = new Log4j2Output(LOGGER_NAME, Level.DEBUG, "%5level %nkindent%msg%n");
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger)) {
+            log4jLogger.info("inside");
+            try(final NkTrace innerTrace = NkTrace.debug(INNER, logger)) {
+            }
+        }
+        assertThat(output.toString(), is(
+                "DEBUG >> Calc.outer:1" + NL
+                + " INFO    inside" + NL
+                + "DEBUG    >> Calc.inner:2" + NL
+                + "DEBUG    << Calc.inner:2" + NL
+                + "DEBUG << Calc.outer:1" + NL));
+        assertThat(ThreadContext.isEmpty(), is(true));
+    }
+
+    @Test
+    public void indent_should_be_added_to_thread_context_data() {
+        output = new Log4j2Output(LOGGER_NAME, Level.DEBUG, "%X{user} %X{NkTrace_Indent}%msg%n");
+        ThreadContext.put("user", "alice");
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            log4jLogger.warn("inside");
+        }
+        assertThat(output.toString(), is(
+                "alice >> Calc.outer:1" + NL
+                + "alice    inside" + NL
+                + "alice << Calc.outer:1" + NL));
+        assertThat(ThreadContext.getContext().keySet().toString(), is("[user]"));
+    }
+}
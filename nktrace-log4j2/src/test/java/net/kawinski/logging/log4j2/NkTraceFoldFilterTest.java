@@ -0,0 +1,99 @@
+package net.kawinski.logging.log4j2;
+
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.NkTraceFold;
+import net.kawinski.logging.NkTraceIndent;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceFoldFilterTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Batch", "outer", 1);
+    private static final CallerInfo HELPER = CallerInfo.of("net.kawinski.Batch", "helper", 2);
+    private static final String LOGGER_NAME = "test.nkTraceFoldFilter";
+    private static final String NL = System.lineSeparator();
+
+    private final NkTraceLog4j2Logger logger = NkTraceLog4j2Logger.getLogger(LOGGER_NAME);
+    private final NkTraceFoldFilter filter = NkTraceFoldFilter.createFilter();
+    private Log4j2Output output;
+
+    @Before
+    public void attachFilter() {
+        NkTraceIndent.useMdc = false;
+        NkTraceIndent.reset();
+        NkTraceFold.enabled = true;
+        NkTraceFold.foldReturning = false;
+        output = new Log4j2Output(LOGGER_NAME, Level.INFO, "%msg%n");
+        filter.start();
+        getConfiguration().addFilter(filter);
+    }
+
+    @After
+    public void detachFilter() {
+        getConfiguration().removeFilter(filter);
+        filter.stop();
+        output.close();
+        NkTraceFold.enabled = false;
+        NkTraceFold.foldReturning = true;
+        NkTraceIndent.useMdc = true;
+        NkTraceIndent.reset();
+    }
+
+    @Test
+    public void regular_log_should_keep_its_span_and_end_fold() {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            for(int i = 0; i < 2; ++i) {
+                try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+                }
+            }
+            try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+                logger.info("inside {}", "span");
+            }
+            try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+                logger.debug("disabled");
+            }
+        }
+        final String[] lines = output.toString().split(NL);
+        assertThat(lines.length, is(8));
+        assertThat(lines[0], is(">> Batch.outer:1"));
+        assertThat(lines[1].startsWith("<< Batch.helper:2 (folded 2x, total "), is(true));
+        assertThat(lines[2], is(">> Batch.helper:2"));
+        assertThat(lines[3], is("inside span"));
+        assertThat(lines[4], is("<< Batch.helper:2"));
+        // Disabled logs aren't written, so the span has no nested output. A fold of 1 span is written as it was
+        assertThat(lines[5], is(">> Batch.helper:2"));
+        assertThat(lines[6], is("<< Batch.helper:2"));
+        assertThat(lines[7], is("<< Batch.outer:1"));
+    }
+
+    @Test
+    public void spans_should_not_be_folded_once_filter_is_stopped() {
+        filter.stop();
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            for(int i = 0; i < 2; ++i) {
+                try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+                }
+            }
+        }
+        assertThat(output.toString(), is(
+                ">> Batch.outer:1" + NL
+                + ">> Batch.helper:2" + NL
+                + "<< Batch.helper:2" + NL
+                + ">> Batch.helper:2" + NL
+                + "<< Batch.helper:2" + NL
+                + "<< Batch.outer:1" + NL));
+    }
+
+    private static Configuration getConfiguration() {
+        return ((LoggerContext) LogManager.getContext(false)).getConfiguration();
+    }
+}
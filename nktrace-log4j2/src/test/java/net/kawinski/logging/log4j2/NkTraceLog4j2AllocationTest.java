@@ -0,0 +1,93 @@
+package net.kawinski.logging.log4j2;
+
+import com.sun.management.ThreadMXBean;
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.NkTraceFrame;
+import net.kawinski.logging.NkTraceIndent;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.NullAppender;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.LoggerConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Enabled spans logged by {@link NkTraceLog4j2Logger} to a Log4j2 appender which doesn't allocate itself.
+ * Same path as the "log4j2" backend of NkTraceLog4j2Benchmark with the "noop" appender.
+ *
+ * Needs "-Dlog4j2.clock=SystemMillisClock" (set by the pom). Log4j2's default clock allocates a timestamp per event.
+ */
+public class NkTraceLog4j2AllocationTest {
+    private static final CallerInfo CALLER = CallerInfo.of("net.kawinski.Calc", "span", 1);
+    private static final String LOGGER_NAME = "test.nkTraceLog4j2Allocation";
+
+    private static final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final NkTraceLog4j2Logger logger = NkTraceLog4j2Logger.getLogger(LOGGER_NAME);
+    private final Object[] args = {3, "x"};
+
+    @Before
+    public void attachNullAppender() {
+        NkTraceIndent.useMdc = false;
+        NkTraceIndent.reset();
+        final LoggerContext ctx = (LoggerContext) LogManager.getContext(false);
+        final Configuration config = ctx.getConfiguration();
+        final NullAppender appender = NullAppender.createAppender(LOGGER_NAME);
+        appender.start();
+        final LoggerConfig loggerConfig = new LoggerConfig(LOGGER_NAME, Level.DEBUG, false);
+        loggerConfig.addAppender(appender, null, null);
+        config.addLogger(LOGGER_NAME, loggerConfig);
+        ctx.updateLoggers();
+    }
+
+    @After
+    public void detachNullAppender() {
+        final LoggerContext ctx = (LoggerContext) LogManager.getContext(false);
+        ctx.getConfiguration().removeLogger(LOGGER_NAME);
+        ctx.updateLoggers();
+        NkTraceIndent.useMdc = true;
+        NkTraceIndent.reset();
+    }
+
+    @Test
+    public void enabled_spans_should_not_allocate() {
+        assertThat(logger.isDebugEnabled(), is(true));
+        assertThat(spansAllocatedBytes(), is(0L));
+    }
+
+    @Test
+    public void logged_throwable_should_not_make_later_spans_allocate() {
+        // Takes the reusable message of the thread, like spans do
+        logger.error("failed", new IllegalStateException("broken"));
+        assertThat(spansAllocatedBytes(), is(0L));
+    }
+
+    private long spansAllocatedBytes() {
+        spans(200_000);
+
+        // Compilation might still kick in during the measurement. It's a one-time cost, so take the best run
+        long minAllocated = Long.MAX_VALUE;
+        for(int run = 0; run < 3; ++run) {
+            final long before = threadBean.getCurrentThreadAllocatedBytes();
+            spans(10_000);
+            minAllocated = Math.min(minAllocated, threadBean.getCurrentThreadAllocatedBytes() - before);
+        }
+        return minAllocated;
+    }
+
+    @SuppressWarnings("EmptyTryBlock")
+    private void spans(final int count) {
+        for(int i = 0; i < count; ++i) {
+            try(final NkTraceFrame frame = NkTraceFrame.debug(CALLER, logger, "a: {}, b: {}", args)) {
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package net.kawinski.logging.log4j2;
+
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.NkTraceIndent;
+import org.apache.logging.log4j.Level;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceLog4j2LoggerTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Calc", "outer", 1);
+    private static final String LOGGER_NAME = "test.nkTraceLog4j2Logger";
+    private static final String NL = System.lineSeparator();
+
+    private final NkTraceLog4j2Logger logger = NkTraceLog4j2Logger.getLogger(LOGGER_NAME);
+    private Log4j2Output output;
+
+    @Before
+    public void disableMdc() {
+        NkTraceIndent.useMdc = false;
+        NkTraceIndent.reset();
+    }
+
+    @After
+    public void enableMdc() {
+        output.close();
+        NkTraceIndent.useMdc = true;
+        NkTraceIndent.reset();
+    }
+
+    @Test
+    public void span_should_be_logged_with_markers() {
+        output = new Log4j2Output(LOGGER_NAME, Level.DEBUG, "%5level [%marker] %msg%n");
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger, "a: {}", 1)) {
+            logger.info("inside {}", "span");
+            trace.returning(2);
+        }
+        assertThat(output.toString(), is(
+                "DEBUG [NkTraceEntry] >> Calc.outer:1 a: 1" + NL
+                + " INFO [] inside span" + NL
+                + "DEBUG [NkTraceExit] << Calc.outer:1 returning(2)" + NL));
+    }
+
+    @Test
+    public void disabled_level_should_not_be_logged() {
+        output = new Log4j2Output(LOGGER_NAME, Level.INFO, "%5level %msg%n");
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger)) {
+            logger.debug("hidden");
+            logger.warn("visible");
+        }
+        assertThat(logger.isDebugEnabled(), is(false));
+        assertThat(logger.isWarnEnabled(), is(true));
+        assertThat(output.toString(), is(" WARN visible" + NL));
+    }
+
+    @Test
+    public void throwable_should_be_passed_to_log4j2() {
+        output = new Log4j2Output(LOGGER_NAME, Level.DEBUG, "%5level %msg %throwable{short.message}%n");
+        logger.error("failed {}", "call", new IllegalStateException("broken"));
+        assertThat(output.toString(), is("ERROR failed call broken" + NL));
+    }
+
+    @Test
+    public void loggers_should_be_cached() {
+        output = new Log4j2Output(LOGGER_NAME, Level.DEBUG, "%msg%n");
+        assertThat(NkTraceLog4j2Logger.getLogger(LOGGER_NAME), is(sameInstance(logger)));
+        assertThat(logger.getName(), is(LOGGER_NAME));
+    }
+}
@@ -0,0 +1,31 @@
+package net.kawinski.logging.logback;
+
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import net.kawinski.logging.NkTraceIndent;
+
+/**
+ * "%nkindent" conversion word. Writes NkTrace indentation of the event, read straight from {@link NkTraceIndent}.
+ *
+ * Unlike "%mdc{NkTrace_Indent}", it doesn't need the indent in MDC, so {@link NkTraceIndent#useMdc} can be disabled.
+ * The indentation is read when the event is formatted, which has to happen on the logging thread.
+ * For asynchronous logging, use {@link NkTraceAsyncAppender} which captures it earlier.
+ *
+ * {@link NkPatternLayout} knows the word. For other layouts, register it in logback.xml:
+ * &lt;conversionRule conversionWord="nkindent" converterClass="net.kawinski.logging.logback.NkIndentConverter"/&gt;
+ */
+public class NkIndentConverter extends ClassicConverter {
+    public static final String CONVERSION_WORD = "nkindent";
+
+    @Override
+    public String convert(final ILoggingEvent event) {
+        return NkTraceIndent.getIndent(indentLevelOf(event));
+    }
+
+    static int indentLevelOf(final ILoggingEvent event) {
+        if(event instanceof IndentedLoggingEvent) {
+            return ((IndentedLoggingEvent) event).indentLevel;
+        }
+        return NkTraceIndent.getEventIndentLevel();
+    }
+}
@@ -0,0 +1,112 @@
+package net.kawinski.logging.logback;
+
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Context;
+import ch.qos.logback.core.LayoutBase;
+import net.kawinski.logging.NkTrace;
+import org.slf4j.Marker;
+
+/**
+ * Layout with separate patterns for NkTrace "entry" logs, "exit" logs and everything else.
+ *
+ * Logback doesn't allow choosing the layout by the marker, so this class holds 3 pattern layouts
+ * and switches between them based on {@link NkTrace#MARKER_TRACE_ENTRY} and {@link NkTrace#MARKER_TRACE_EXIT}.
+ * Entry and exit patterns default to the regular one. All of them know "%nkindent" ({@link NkIndentConverter}).
+ *
+ * Example (logback.xml):
+ * &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+ *     &lt;layout class="net.kawinski.logging.logback.NkPatternLayout"&gt;
+ *         &lt;pattern&gt;%5level %nkindent%msg%n&lt;/pattern&gt;
+ *         &lt;entryPattern&gt;%5level %nkindent%msg \(%file:%line\)%n&lt;/entryPattern&gt;
+ *     &lt;/layout&gt;
+ * &lt;/encoder&gt;
+ */
+public class NkPatternLayout extends LayoutBase<ILoggingEvent> {
+    private final PatternLayout regularLayout = createLayout();
+    private final PatternLayout entryLayout = createLayout();
+    private final PatternLayout exitLayout = createLayout();
+
+    /**
+     * @param pattern pattern of regular logs, also used for "entry" and "exit" logs unless they have their own
+     */
+    public void setPattern(final String pattern) {
+        regularLayout.setPattern(pattern);
+    }
+
+    public String getPattern() {
+        return regularLayout.getPattern();
+    }
+
+    public void setEntryPattern(final String pattern) {
+        entryLayout.setPattern(pattern);
+    }
+
+    public String getEntryPattern() {
+        return entryLayout.getPattern();
+    }
+
+    public void setExitPattern(final String pattern) {
+        exitLayout.setPattern(pattern);
+    }
+
+    public String getExitPattern() {
+        return exitLayout.getPattern();
+    }
+
+    @Override
+    public void setContext(final Context context) {
+        super.setContext(context);
+        regularLayout.setContext(context);
+        entryLayout.setContext(context);
+        exitLayout.setContext(context);
+    }
+
+    @Override
+    public void start() {
+        if(regularLayout.getPattern() == null) {
+            addError("No pattern set for " + getClass().getSimpleName());
+            return;
+        }
+        if(entryLayout.getPattern() == null) {
+            entryLayout.setPattern(regularLayout.getPattern());
+        }
+        if(exitLayout.getPattern() == null) {
+            exitLayout.setPattern(regularLayout.getPattern());
+        }
+        regularLayout.start();
+        entryLayout.start();
+        exitLayout.start();
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        regularLayout.stop();
+        entryLayout.stop();
+        exitLayout.stop();
+    }
+
+    @Override
+    public String doLayout(final ILoggingEvent event) {
+        final Marker marker = event.getMarker();
+        if(marker != null) {
+            // Compared by name, so events deserialized from other JVMs work too
+            final String name = marker.getName();
+            if(NkTrace.MARKER_TRACE_ENTRY_NAME.equals(name)) {
+                return entryLayout.doLayout(event);
+            }
+            if(NkTrace.MARKER_TRACE_EXIT_NAME.equals(name)) {
+                return exitLayout.doLayout(event);
+            }
+        }
+        return regularLayout.doLayout(event);
+    }
+
+    private static PatternLayout createLayout() {
+        final PatternLayout layout = new PatternLayout();
+        layout.getInstanceConverterMap().put(NkIndentConverter.CONVERSION_WORD, NkIndentConverter.class.getName());
+        return layout;
+    }
+}
@@ -0,0 +1,18 @@
+package net.kawinski.logging.logback;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import net.kawinski.logging.NkTraceIndent;
+
+/**
+ * Logback's {@link AsyncAppender} which keeps NkTrace indentation for "%nkindent" ({@link NkIndentConverter}).
+ *
+ * Events are formatted by the appender's worker thread, which doesn't know the indentation of the logging thread.
+ * This appender captures it with the event (a small wrapper instead of a copy of the MDC).
+ */
+public class NkTraceAsyncAppender extends AsyncAppender {
+    @Override
+    protected void append(final ILoggingEvent event) {
+        super.append(new IndentedLoggingEvent(event, NkTraceIndent.getEventIndentLevel()));
+    }
+}
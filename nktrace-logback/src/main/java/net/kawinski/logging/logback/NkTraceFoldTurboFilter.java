@@ -0,0 +1,52 @@
+package net.kawinski.logging.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.NkTraceFold;
+import org.slf4j.Marker;
+
+/**
+ * Reports regular logs to {@link NkTraceFold}, which folds spans only when such a hook is running.
+ *
+ * Turbo filters see every log before Logback creates an event for it, so the "entry" logs held back by the logging thread
+ * are written before the log and the span it's written in isn't folded. NkTrace "entry" and "exit" logs are passed through.
+ * Never denies anything.
+ *
+ * Example (logback.xml):
+ * &lt;turboFilter class="net.kawinski.logging.logback.NkTraceFoldTurboFilter"/&gt;
+ */
+public class NkTraceFoldTurboFilter extends TurboFilter {
+    @Override
+    public FilterReply decide(final Marker marker, final Logger logger, final Level level, final String format, final Object[] params, final Throwable t) {
+        if(format == null && t == null) {
+            // isDebugEnabled() etc. Nothing is written
+            return FilterReply.NEUTRAL;
+        }
+        if(marker == NkTrace.MARKER_TRACE_ENTRY || marker == NkTrace.MARKER_TRACE_EXIT) {
+            return FilterReply.NEUTRAL;
+        }
+        if(level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            NkTraceFold.nestedOutput();
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    @Override
+    public void start() {
+        if(!isStarted()) {
+            NkTraceFold.nestedOutputHookStarted();
+        }
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        if(isStarted()) {
+            NkTraceFold.nestedOutputHookStopped();
+        }
+        super.stop();
+    }
+}
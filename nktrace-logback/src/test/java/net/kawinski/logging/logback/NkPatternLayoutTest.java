@@ -0,0 +1,105 @@
+package net.kawinski.logging.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.NkTraceIndent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkPatternLayoutTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Layout", "outer", 1);
+    private static final CallerInfo INNER = CallerInfo.of("net.kawinski.Layout", "inner", 2);
+
+    private static final String NL = System.lineSeparator();
+
+    private final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+    private final Logger logger = lc.getLogger("test.nkPatternLayout");
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private OutputStreamAppender<ILoggingEvent> appender;
+
+    @Before
+    public void disableMdc() {
+        NkTraceIndent.useMdc = false;
+        NkTraceIndent.reset();
+        MDC.remove(NkTraceIndent.MDC_INDENT_KEY);
+        logger.setLevel(Level.DEBUG);
+        logger.setAdditive(false);
+    }
+
+    @After
+    public void enableMdc() {
+        logger.detachAndStopAllAppenders();
+        NkTraceIndent.useMdc = true;
+        NkTraceIndent.reset();
+    }
+
+    @Test
+    public void layout_should_be_chosen_by_marker() {
+        attach("%nkindent%msg%n", "%nkindent[entry] %msg%n", "%nkindent[exit] %msg%n");
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger)) {
+            logger.info("inside");
+            try(final NkTrace innerTrace = NkTrace.debug(INNER, logger)) {
+            }
+        }
+        assertThat(output.toString(), is(
+                "[entry] >> Layout.outer:1" + NL
+                + "   inside" + NL
+                + "   [entry] >> Layout.inner:2" + NL
+                + "   [exit] << Layout.inner:2" + NL
+                + "[exit] << Layout.outer:1" + NL));
+        assertThat(MDC.get(NkTraceIndent.MDC_INDENT_KEY), is(nullValue()));
+    }
+
+    @Test
+    public void entry_and_exit_should_default_to_regular_pattern() {
+        attach("%5level %nkindent%msg%n", null, null);
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            logger.warn("inside");
+        }
+        assertThat(output.toString(), is(
+                " INFO >> Layout.outer:1" + NL
+                + " WARN    inside" + NL
+                + " INFO << Layout.outer:1" + NL));
+    }
+
+    private void attach(final String pattern, final String entryPattern, final String exitPattern) {
+        final NkPatternLayout layout = new NkPatternLayout();
+        layout.setContext(lc);
+        layout.setPattern(pattern);
+        if(entryPattern != null) {
+            layout.setEntryPattern(entryPattern);
+        }
+        if(exitPattern != null) {
+            layout.setExitPattern(exitPattern);
+        }
+        layout.start();
+
+        final LayoutWrappingEncoder<ILoggingEvent> encoder = new LayoutWrappingEncoder<>();
+        encoder.setContext(lc);
+        encoder.setLayout(layout);
+        encoder.start();
+
+        appender = new OutputStreamAppender<>();
+        appender.setContext(lc);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(output);
+        appender.start();
+        logger.addAppender(appender);
+    }
+}
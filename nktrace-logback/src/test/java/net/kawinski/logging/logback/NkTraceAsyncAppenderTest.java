@@ -0,0 +1,84 @@
+package net.kawinski.logging.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.NkTraceIndent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class NkTraceAsyncAppenderTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Async", "outer", 1);
+    private static final CallerInfo INNER = CallerInfo.of("net.kawinski.Async", "inner", 2);
+
+    private static final String NL = System.lineSeparator();
+
+    private final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+    private final Logger logger = lc.getLogger("test.nkTraceAsyncAppender");
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private NkTraceAsyncAppender asyncAppender;
+
+    @Before
+    public void attachAppender() {
+        NkTraceIndent.useMdc = false;
+        NkTraceIndent.reset();
+        logger.setLevel(Level.DEBUG);
+        logger.setAdditive(false);
+
+        final NkPatternLayout layout = new NkPatternLayout();
+        layout.setContext(lc);
+        layout.setPattern("%nkindent%msg%n");
+        layout.start();
+        final LayoutWrappingEncoder<ILoggingEvent> encoder = new LayoutWrappingEncoder<>();
+        encoder.setContext(lc);
+        encoder.setLayout(layout);
+        encoder.start();
+        final OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(lc);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(output);
+        appender.start();
+
+        asyncAppender = new NkTraceAsyncAppender();
+        asyncAppender.setContext(lc);
+        asyncAppender.addAppender(appender);
+        asyncAppender.start();
+        logger.addAppender(asyncAppender);
+    }
+
+    @After
+    public void detachAppender() {
+        logger.detachAndStopAllAppenders();
+        NkTraceIndent.useMdc = true;
+        NkTraceIndent.reset();
+    }
+
+    @Test
+    public void indentation_should_be_captured_on_logging_thread() {
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger)) {
+            try(final NkTrace innerTrace = NkTrace.debug(INNER, logger, "{}", 1)) {
+                logger.info("inside");
+            }
+        }
+        // Flushes the queue
+        asyncAppender.stop();
+        assertThat(output.toString(), is(
+                ">> Async.outer:1" + NL
+                + "   >> Async.inner:2 1" + NL
+                + "      inside" + NL
+                + "   << Async.inner:2" + NL
+                + "<< Async.outer:1" + NL));
+    }
+}
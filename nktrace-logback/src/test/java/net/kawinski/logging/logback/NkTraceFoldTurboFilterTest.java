@@ -0,0 +1,121 @@
+package net.kawinski.logging.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import net.kawinski.logging.CallerInfo;
+import net.kawinski.logging.NkTrace;
+import net.kawinski.logging.NkTraceFold;
+import net.kawinski.logging.NkTraceIndent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceFoldTurboFilterTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Batch", "outer", 1);
+    private static final CallerInfo HELPER = CallerInfo.of("net.kawinski.Batch", "helper", 2);
+
+    private static final String NL = System.lineSeparator();
+
+    private final LoggerContext lc = (LoggerContext) LoggerFactory.getILoggerFactory();
+    private final Logger logger = lc.getLogger("test.nkTraceFoldTurboFilter");
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private NkTraceFoldTurboFilter filter;
+
+    @Before
+    public void attachFilter() {
+        NkTraceIndent.useMdc = false;
+        NkTraceIndent.reset();
+        NkTraceFold.enabled = true;
+        NkTraceFold.foldReturning = false;
+        logger.setLevel(Level.INFO);
+        logger.setAdditive(false);
+
+        final NkPatternLayout layout = new NkPatternLayout();
+        layout.setContext(lc);
+        layout.setPattern("%nkindent%msg%n");
+        layout.start();
+        final LayoutWrappingEncoder<ILoggingEvent> encoder = new LayoutWrappingEncoder<>();
+        encoder.setContext(lc);
+        encoder.setLayout(layout);
+        encoder.start();
+        final OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(lc);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(output);
+        appender.start();
+        logger.addAppender(appender);
+
+        filter = new NkTraceFoldTurboFilter();
+        filter.setContext(lc);
+        filter.start();
+        lc.addTurboFilter(filter);
+    }
+
+    @After
+    public void detachFilter() {
+        lc.getTurboFilterList().remove(filter);
+        filter.stop();
+        logger.detachAndStopAllAppenders();
+        NkTraceFold.enabled = false;
+        NkTraceFold.foldReturning = true;
+        NkTraceIndent.useMdc = true;
+        NkTraceIndent.reset();
+    }
+
+    @Test
+    public void regular_log_should_keep_its_span_and_end_fold() {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            for(int i = 0; i < 2; ++i) {
+                try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+                }
+            }
+            try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+                logger.info("inside");
+            }
+            try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+                logger.debug("disabled");
+            }
+        }
+        final String[] lines = output.toString().split(NL);
+        assertThat(lines.length, is(8));
+        assertThat(lines[0], is(">> Batch.outer:1"));
+        assertThat(lines[1].startsWith("   << Batch.helper:2 (folded 2x, total "), is(true));
+        assertThat(lines[2], is("   >> Batch.helper:2"));
+        assertThat(lines[3], is("      inside"));
+        assertThat(lines[4], is("   << Batch.helper:2"));
+        // Disabled logs aren't written, so the span has no nested output. A fold of 1 span is written as it was
+        assertThat(lines[5], is("   >> Batch.helper:2"));
+        assertThat(lines[6], is("   << Batch.helper:2"));
+        assertThat(lines[7], is("<< Batch.outer:1"));
+    }
+
+    @Test
+    public void spans_should_not_be_folded_once_filter_is_stopped() {
+        filter.stop();
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            for(int i = 0; i < 2; ++i) {
+                try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+                }
+            }
+        }
+        assertThat(output.toString(), is(String.join(NL,
+                ">> Batch.outer:1",
+                "   >> Batch.helper:2",
+                "   << Batch.helper:2",
+                "   >> Batch.helper:2",
+                "   << Batch.helper:2",
+                "<< Batch.outer:1",
+                "")));
+    }
+}
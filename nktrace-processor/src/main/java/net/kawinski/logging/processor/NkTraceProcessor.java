@@ -0,0 +1,258 @@
+package net.kawinski.logging.processor;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.Trees;
+import net.kawinski.logging.NkTraced;
+import org.slf4j.event.Level;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates compile-time call sites for methods annotated with {@link NkTraced}.
+ *
+ * For every class with annotated methods, a companion class "&lt;Class&gt;_NkTrace" is generated in the same package.
+ * It holds a CallerInfo constant, a constant entry format and a span factory for every annotated method.
+ * Spans opened with these factories never walk the stack to find their caller.
+ * Factories declare the parameters with their own (erased) types and call fixed-arity NkTrace overloads,
+ * so disabled spans don't box primitives nor allocate argument arrays.
+ *
+ * Line numbers come from the javac tree API. With other compilers, they're 0.
+ */
+@SupportedAnnotationTypes("net.kawinski.logging.NkTraced")
+public class NkTraceProcessor extends AbstractProcessor {
+    static final String SUFFIX = "_NkTrace";
+
+    private Trees trees;
+
+    @Override
+    public synchronized void init(final ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        try {
+            trees = Trees.instance(processingEnv);
+        } catch(final IllegalArgumentException | LinkageError e) {
+            // Not javac. Sites are generated without line numbers
+            trees = null;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final Map<TypeElement, List<ExecutableElement>> methodsByType = new LinkedHashMap<>();
+        for(final Element element : roundEnv.getElementsAnnotatedWith(NkTraced.class)) {
+            if(element.getKind() != ElementKind.METHOD && element.getKind() != ElementKind.CONSTRUCTOR) {
+                continue;
+            }
+            final TypeElement type = (TypeElement) element.getEnclosingElement();
+            methodsByType.computeIfAbsent(type, t -> new ArrayList<>()).add((ExecutableElement) element);
+        }
+        for(final Map.Entry<TypeElement, List<ExecutableElement>> entry : methodsByType.entrySet()) {
+            generate(entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+
+    private void generate(final TypeElement type, final List<ExecutableElement> methods) {
+        final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        final String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        final String simpleName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+        final String generatedName = simpleName.replace('$', '_') + SUFFIX;
+
+        final StringBuilder src = new StringBuilder();
+        src.append("// Generated by NkTraceProcessor from ").append(type.getQualifiedName()).append(". Do not edit\n");
+        if(!packageName.isEmpty()) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+        src.append("final class ").append(generatedName).append(" {\n");
+
+        final StringBuilder factories = new StringBuilder();
+        // Factories, CallerInfo constants and format constants share it, so no generated identifiers collide
+        final Set<String> usedNames = new HashSet<>();
+        for(final ExecutableElement method : methods) {
+            final NkTraced traced = method.getAnnotation(NkTraced.class);
+            if(traced.level().toInt() > Level.INFO.toInt()) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "NkTrace spans support only TRACE, DEBUG and INFO levels", method);
+                continue;
+            }
+            final boolean constructor = method.getKind() == ElementKind.CONSTRUCTOR;
+            final String methodName = method.getSimpleName().toString();
+            final String factoryName = uniqueName(constructor ? "init" : methodName, usedNames);
+            final String constantName = uniqueName(toConstantName(factoryName), usedNames);
+            final String formatName = uniqueName(constantName + "_FORMAT", usedNames);
+
+            final List<String> paramNames = new ArrayList<>();
+            final List<TypeMirror> paramTypes = new ArrayList<>();
+            if(traced.logArgs()) {
+                for(final VariableElement param : method.getParameters()) {
+                    paramNames.add(param.getSimpleName().toString());
+                    paramTypes.add(param.asType());
+                }
+            }
+            final StringBuilder format = new StringBuilder();
+            for(final String paramName : paramNames) {
+                if(format.length() > 0) {
+                    format.append(", ");
+                }
+                format.append(paramName).append(": {}");
+            }
+
+            src.append("    static final net.kawinski.logging.CallerInfo ").append(constantName)
+                    .append(" = net.kawinski.logging.CallerInfo.of(\"").append(binaryName).append("\", \"").append(methodName)
+                    .append("\", ").append(lineOf(method)).append(");\n");
+            src.append("    static final String ").append(formatName).append(" = \"").append(format).append("\";\n");
+
+            String loggerName = "logger";
+            while(paramNames.contains(loggerName)) {
+                loggerName += "_";
+            }
+            final String levelName = traced.level().name().toLowerCase(Locale.ROOT);
+            factories.append("\n    static net.kawinski.logging.NkTrace ").append(factoryName)
+                    .append("(final org.slf4j.Logger ").append(loggerName);
+            boolean anyPrimitive = false;
+            for(int i = 0; i < paramNames.size(); ++i) {
+                factories.append(", final ").append(sourceType(paramTypes.get(i))).append(' ').append(paramNames.get(i));
+                anyPrimitive |= paramTypes.get(i).getKind().isPrimitive();
+            }
+            factories.append(") {\n");
+            // A single primitive has its own overload. More of them would be boxed before the level is checked
+            if(anyPrimitive && paramNames.size() > 1) {
+                factories.append("        if(!net.kawinski.logging.NkTrace.is").append(Character.toUpperCase(levelName.charAt(0))).append(levelName.substring(1))
+                        .append("Enabled(").append(generatedName).append('.').append(constantName).append(", ").append(loggerName).append(")) {\n")
+                        .append("            return net.kawinski.logging.NkTrace.disabled();\n")
+                        .append("        }\n");
+            }
+            factories.append("        return net.kawinski.logging.NkTrace.").append(levelName)
+                    // Qualified, as parameters may shadow the constants
+                    .append('(').append(generatedName).append('.').append(constantName).append(", ").append(loggerName)
+                    .append(", ").append(generatedName).append('.').append(formatName);
+            if(paramNames.size() == 1 && isReferenceArray(paramTypes.get(0))) {
+                // Otherwise the array would be taken for the format args
+                factories.append(", new Object[]{").append(paramNames.get(0)).append('}');
+            } else {
+                for(final String paramName : paramNames) {
+                    factories.append(", ").append(paramName);
+                }
+            }
+            factories.append(");\n    }\n");
+        }
+
+        src.append("\n    private ").append(generatedName).append("() {\n    }\n");
+        src.append(factories);
+        src.append("}\n");
+
+        final String qualifiedName = packageName.isEmpty() ? generatedName : packageName + "." + generatedName;
+        try {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, methods.toArray(new Element[0]));
+            try(final Writer writer = file.openWriter()) {
+                writer.write(src.toString());
+            }
+        } catch(final IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to generate " + qualifiedName + ": " + e, type);
+        }
+    }
+
+    /**
+     * @return Line of the method's declaration (its return type or name, not its annotations) or 0 if unknown
+     */
+    private long lineOf(final ExecutableElement method) {
+        if(trees == null) {
+            return 0;
+        }
+        final TreePath path = trees.getPath(method);
+        if(path == null || !(path.getLeaf() instanceof MethodTree)) {
+            return 0;
+        }
+        final CompilationUnitTree unit = path.getCompilationUnit();
+        final MethodTree tree = (MethodTree) path.getLeaf();
+        final SourcePositions positions = trees.getSourcePositions();
+        // Constructors have no return type. Their body usually starts on the line of the declaration
+        final Tree anchor = tree.getReturnType() != null ? tree.getReturnType() : tree.getBody();
+        long position = anchor != null ? positions.getStartPosition(unit, anchor) : -1;
+        if(position < 0) {
+            position = positions.getStartPosition(unit, tree);
+        }
+        return position < 0 ? 0 : unit.getLineMap().getLineNumber(position);
+    }
+
+    /**
+     * @return Type of a factory parameter as written in the source: erased, so type variables of the method aren't needed.
+     * Object if the type isn't accessible from the generated class
+     */
+    private String sourceType(final TypeMirror type) {
+        final TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        TypeMirror component = erased;
+        while(component.getKind() == TypeKind.ARRAY) {
+            component = ((ArrayType) component).getComponentType();
+        }
+        if(component.getKind() == TypeKind.DECLARED) {
+            for(Element element = ((DeclaredType) component).asElement(); element instanceof TypeElement; element = element.getEnclosingElement()) {
+                if(element.getModifiers().contains(Modifier.PRIVATE)) {
+                    return "Object";
+                }
+            }
+        }
+        return erased.toString();
+    }
+
+    private static boolean isReferenceArray(final TypeMirror type) {
+        return type.getKind() == TypeKind.ARRAY && !((ArrayType) type).getComponentType().getKind().isPrimitive();
+    }
+
+    private static String uniqueName(final String name, final Set<String> usedNames) {
+        String unique = name;
+        for(int i = 2; !usedNames.add(unique); ++i) {
+            unique = name + "_" + i;
+        }
+        return unique;
+    }
+
+    /**
+     * @return Name in constant case, e.g. "computeSum_2" -&gt; "COMPUTE_SUM_2"
+     */
+    static String toConstantName(final String name) {
+        final StringBuilder sb = new StringBuilder(name.length() + 4);
+        for(int i = 0; i < name.length(); ++i) {
+            final char c = name.charAt(i);
+            if(Character.isUpperCase(c) && i > 0 && name.charAt(i - 1) != '_') {
+                sb.append('_');
+            }
+            sb.append(Character.toUpperCase(c));
+        }
+        return sb.toString();
+    }
+}
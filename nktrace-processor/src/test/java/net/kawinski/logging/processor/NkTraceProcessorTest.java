@@ -0,0 +1,179 @@
+package net.kawinski.logging.processor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class NkTraceProcessorTest {
+    private static final String CALCULATOR = String.join("\n",
+            "package com.example;",
+            "",
+            "import net.kawinski.logging.NkTrace;",
+            "import net.kawinski.logging.NkTraced;",
+            "import org.slf4j.Logger;",
+            "import org.slf4j.LoggerFactory;",
+            "import org.slf4j.event.Level;",
+            "",
+            "public class Calculator {",
+            "    private static final Logger log = LoggerFactory.getLogger(Calculator.class);",
+            "",
+            "    @NkTraced",
+            "    public int add(final int a, final int b) {",
+            "        try(final NkTrace trace = Calculator_NkTrace.add(log, a, b)) {",
+            "            return trace.returning(a + b);",
+            "        }",
+            "    }",
+            "",
+            "    @NkTraced(level = Level.TRACE)",
+            "    public int add(final int a, final int b, final int c) {",
+            "        return add(add(a, b), c);",
+            "    }",
+            "",
+            "    @NkTraced(logArgs = false)",
+            "    void resetAll(final Object logger) {",
+            "    }",
+            "",
+            "    static class Inner {",
+            "        @NkTraced",
+            "        Inner() {",
+            "        }",
+            "    }",
+            "}",
+            "");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void companion_class_should_hold_sites_formats_and_factories() throws Exception {
+        final File out = compile();
+        final String generated = new String(Files.readAllBytes(out.toPath().resolve("com/example/Calculator_NkTrace.java")), StandardCharsets.UTF_8);
+        assertThat(generated, containsString(
+                "static final net.kawinski.logging.CallerInfo ADD = net.kawinski.logging.CallerInfo.of(\"com.example.Calculator\", \"add\", 13);"));
+        assertThat(generated, containsString("static final String ADD_FORMAT = \"a: {}, b: {}\";"));
+        assertThat(generated, containsString("static final String ADD_2_FORMAT = \"a: {}, b: {}, c: {}\";"));
+        assertThat(generated, containsString("static final String RESET_ALL_FORMAT = \"\";"));
+        assertThat(generated, containsString(
+                "static net.kawinski.logging.NkTrace add(final org.slf4j.Logger logger, final int a, final int b) {\n"
+                + "        if(!net.kawinski.logging.NkTrace.isDebugEnabled(Calculator_NkTrace.ADD, logger)) {\n"
+                + "            return net.kawinski.logging.NkTrace.disabled();\n"
+                + "        }\n"
+                + "        return net.kawinski.logging.NkTrace.debug(Calculator_NkTrace.ADD, logger, Calculator_NkTrace.ADD_FORMAT, a, b);"));
+        assertThat(generated, containsString("return net.kawinski.logging.NkTrace.trace(Calculator_NkTrace.ADD_2, logger, Calculator_NkTrace.ADD_2_FORMAT, a, b, c);"));
+        assertThat(generated, containsString("static net.kawinski.logging.NkTrace resetAll(final org.slf4j.Logger logger) {"));
+    }
+
+    @Test
+    public void sites_should_match_what_stack_walking_would_find() throws Exception {
+        final File out = compile();
+        try(final URLClassLoader loader = new URLClassLoader(new URL[]{out.toURI().toURL()}, getClass().getClassLoader())) {
+            assertThat(site(loader, "com.example.Calculator_NkTrace", "ADD"), is("Calculator.add:13"));
+            assertThat(site(loader, "com.example.Calculator_NkTrace", "ADD_2"), is("Calculator.add:20"));
+            assertThat(site(loader, "com.example.Calculator_Inner_NkTrace", "INIT"), is("Calculator$Inner.<init>:30"));
+        }
+    }
+
+    @Test
+    public void generated_identifiers_should_not_collide() throws Exception {
+        final File out = compile("com/example/Parser.java", String.join("\n",
+                "package com.example;",
+                "",
+                "import net.kawinski.logging.NkTraced;",
+                "",
+                "public class Parser {",
+                "    @NkTraced",
+                "    void parse(final String[] lines) {",
+                "    }",
+                "",
+                "    @NkTraced",
+                "    void parseFormat(final java.util.List<String> lines) {",
+                "    }",
+                "",
+                "    @NkTraced",
+                "    void fooBar(final double x) {",
+                "    }",
+                "",
+                "    @NkTraced",
+                "    void foo_bar(final char c) {",
+                "    }",
+                "",
+                "    @NkTraced",
+                "    <T extends Number> void convert(final T FOO_BAR, final Secret secret) {",
+                "    }",
+                "",
+                "    private static class Secret {",
+                "    }",
+                "}",
+                ""));
+        final String generated = new String(Files.readAllBytes(out.toPath().resolve("com/example/Parser_NkTrace.java")), StandardCharsets.UTF_8);
+        assertThat(generated, containsString("static final String PARSE_FORMAT = \"lines: {}\";"));
+        assertThat(generated, containsString("static final net.kawinski.logging.CallerInfo PARSE_FORMAT_2 = "));
+        assertThat(generated, containsString("static final String PARSE_FORMAT_2_FORMAT = \"lines: {}\";"));
+        assertThat(generated, containsString("static final net.kawinski.logging.CallerInfo FOO_BAR_2 = "));
+        assertThat(generated, containsString("return net.kawinski.logging.NkTrace.debug(Parser_NkTrace.PARSE, logger, Parser_NkTrace.PARSE_FORMAT, new Object[]{lines});"));
+        assertThat(generated, containsString("static net.kawinski.logging.NkTrace parseFormat(final org.slf4j.Logger logger, final java.util.List lines) {"));
+        assertThat(generated, containsString("static net.kawinski.logging.NkTrace fooBar(final org.slf4j.Logger logger, final double x) {\n"
+                + "        return net.kawinski.logging.NkTrace.debug("));
+        assertThat(generated, containsString("static net.kawinski.logging.NkTrace convert(final org.slf4j.Logger logger, final java.lang.Number FOO_BAR, final Object secret) {"));
+    }
+
+    @Test
+    public void constant_names_should_use_constant_case() {
+        assertThat(NkTraceProcessor.toConstantName("computeSum_2"), is("COMPUTE_SUM_2"));
+        assertThat(NkTraceProcessor.toConstantName("run"), is("RUN"));
+    }
+
+    private File compile() throws Exception {
+        return compile("com/example/Calculator.java", CALCULATOR);
+    }
+
+    private File compile(final String path, final String code) throws Exception {
+        final File out = folder.newFolder();
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final JavaFileObject source = new SimpleJavaFileObject(URI.create("string:///" + path), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+        final JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-d", out.getPath(), "-s", out.getPath(), "-classpath", System.getProperty("java.class.path")),
+                null, Collections.singletonList(source));
+        task.setProcessors(Collections.singletonList(new NkTraceProcessor()));
+        final boolean success = task.call();
+        final StringBuilder errors = new StringBuilder();
+        for(final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            errors.append(diagnostic).append('\n');
+        }
+        assertTrue(errors.toString(), success);
+        return out;
+    }
+
+    private static String site(final ClassLoader loader, final String className, final String constant) throws Exception {
+        final Field field = loader.loadClass(className).getDeclaredField(constant);
+        field.setAccessible(true);
+        return field.get(null).toString();
+    }
+}
@@ -0,0 +1,147 @@
+package net.kawinski.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.spi.LocationAwareLogger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free ring buffer of trace events with many producers and a single consumer.
+ *
+ * Events are preallocated and filled in place, so publishing doesn't allocate.
+ * Every slot has a sequence number telling whether it's free for the producer of a given position
+ * or ready for the consumer (D. Vyukov's bounded queue):
+ * - sequence == position: free, producer can claim it
+ * - sequence == position + 1: published, consumer can read it
+ */
+final class AsyncRing {
+    static final int ENTRY = 0;
+    static final int EXIT = 1;
+    static final int FORMATTED = 2;
+
+    private final Event[] events;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Written only by the consumer. Volatile, so producers and flush() can see the progress
+    private volatile long head;
+
+    /**
+     * @param capacity number of events. Rounded up to a power of 2
+     */
+    AsyncRing(final int capacity) {
+        final int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        events = new Event[size];
+        sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; ++i) {
+            events[i] = new Event();
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    int capacity() {
+        return events.length;
+    }
+
+    /**
+     * @return Approximate number of events waiting for the consumer
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    /**
+     * @return Position of the next event to claim. Everything before it was claimed already
+     */
+    long claimedPosition() {
+        return tail.get();
+    }
+
+    /**
+     * @return Position of the next event to consume. Everything before it was consumed already
+     */
+    long consumedPosition() {
+        return head;
+    }
+
+    /**
+     * Claims a free event. It has to be filled and then passed to {@link #publish(Event)}.
+     *
+     * @return Claimed event or null if the ring is full
+     */
+    Event claim() {
+        while(true) {
+            final long position = tail.get();
+            final int slot = (int) (position & mask);
+            final long sequence = sequences.get(slot);
+            if(sequence == position) {
+                if(tail.compareAndSet(position, position + 1)) {
+                    final Event event = events[slot];
+                    event.position = position;
+                    return event;
+                }
+            } else if(sequence < position) {
+                // Slot still holds an event from the previous lap
+                return null;
+            }
+            // Another producer was faster. Try the next position
+        }
+    }
+
+    void publish(final Event event) {
+        sequences.lazySet((int) (event.position & mask), event.position + 1);
+    }
+
+    /**
+     * Passes the oldest event to the handler. Must be called by the single consumer thread only.
+     *
+     * @return false if there was no published event
+     */
+    boolean consume(final Consumer<Event> handler) {
+        final long position = head;
+        final int slot = (int) (position & mask);
+        if(sequences.get(slot) != position + 1) {
+            return false;
+        }
+        final Event event = events[slot];
+        try {
+            handler.accept(event);
+        } finally {
+            event.clear();
+            sequences.lazySet(slot, position + events.length);
+            head = position + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Raw parts of a single log. Formatting happens on the consumer thread.
+     */
+    static final class Event {
+        private long position;
+        int kind;
+        LocationAwareLogger logger;
+        Marker marker;
+        String fqcn;
+        int level;
+        CallerInfo caller;
+        int depth;
+        long nanoTime;
+        String format;
+        Object[] args;
+        Object returnValue;
+        long elapsedNanos;
+
+        private void clear() {
+            logger = null;
+            marker = null;
+            caller = null;
+            format = null;
+            args = null;
+            returnValue = null;
+        }
+    }
+}
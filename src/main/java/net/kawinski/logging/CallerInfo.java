@@ -1,10 +1,17 @@
 package net.kawinski.logging;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * Helper class for collecting method's caller information.
  */
 public final class CallerInfo {
-    public static final CallerInfo UNKNOWN = new CallerInfo("unknown", "unknown", 0);
+    private static final ConcurrentMap<Key, CallerInfo> interned = new ConcurrentHashMap<>();
+    // Reused for lookups, so finding an already interned call site doesn't allocate
+    private static final ThreadLocal<Key> lookupKeys = ThreadLocal.withInitial(Key::new);
+
+    public static final CallerInfo UNKNOWN = intern(new CallerInfo("unknown", "unknown", 0));
 
     @SuppressWarnings("FieldNotUsedInToString") // Too much noise. Short name is good enough
     public final String fullClassName;
@@ -12,6 +19,10 @@ public final class CallerInfo {
     public final String methodName;
     public final int lineNumber;
 
+    // State of the call site. Only the shared instance returned by of(...) has it.
+    // Set before the instance is published by the interning cache
+    private SiteState state;
+
     /**
      * Extracts caller info from StackFrame
      * @param frame stack frame from which to extract information about the caller
@@ -20,7 +31,7 @@ public final class CallerInfo {
         this(frame.getClassName(), frame.getMethodName(), frame.getLineNumber());
     }
 
-    private CallerInfo(final String fullClassName, final String methodName, final int lineNumber) {
+    CallerInfo(final String fullClassName, final String methodName, final int lineNumber) {
         this.fullClassName = fullClassName;
         int shortClassNameIndex = fullClassName.lastIndexOf(".");
         this.shortClassName = fullClassName.substring(shortClassNameIndex + 1);
@@ -28,11 +39,79 @@ public final class CallerInfo {
         this.lineNumber = lineNumber;
     }
 
+    @Override
+    public boolean equals(final Object o) {
+        if(this == o)
+            return true;
+        if(!(o instanceof CallerInfo))
+            return false;
+        final CallerInfo other = (CallerInfo) o;
+        return lineNumber == other.lineNumber
+                && fullClassName.equals(other.fullClassName)
+                && methodName.equals(other.methodName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Key.hash(fullClassName, methodName, lineNumber);
+    }
+
     @Override
     public String toString() {
         return shortClassName + "." + methodName + ":" + lineNumber;
     }
 
+    /**
+     * Returns shared (interned) caller info.
+     * Every call with the same class, method and line returns the same instance,
+     * so it can be used as a cheap per-call-site key or kept in a static constant.
+     *
+     * @param fullClassName fully qualified name of the calling class
+     * @param methodName name of the calling method
+     * @param lineNumber line number of the call
+     * @return Shared caller info for given call site
+     */
+    public static CallerInfo of(final String fullClassName, final String methodName, final int lineNumber) {
+        final Key lookupKey = lookupKeys.get().set(fullClassName, methodName, lineNumber);
+        final CallerInfo existing = interned.get(lookupKey);
+        // Don't keep user strings alive
+        lookupKey.set(null, null, 0);
+        if(existing != null) {
+            return existing;
+        }
+        return intern(new CallerInfo(fullClassName, methodName, lineNumber));
+    }
+
+    private static CallerInfo intern(final CallerInfo callerInfo) {
+        // If another thread wins the race, this instance is dropped together with its state
+        callerInfo.state = new SiteState();
+        final CallerInfo previous = interned.putIfAbsent(
+                new Key(callerInfo.fullClassName, callerInfo.methodName, callerInfo.lineNumber), callerInfo);
+        return previous != null ? previous : callerInfo;
+    }
+
+    /**
+     * @return Shared instance for this call site. See {@link #of(String, String, int)}
+     */
+    CallerInfo intern() {
+        return state != null ? this : of(fullClassName, methodName, lineNumber);
+    }
+
+    /**
+     * @return State of this call site, shared by all its CallerInfo instances
+     */
+    SiteState state() {
+        final SiteState current = state;
+        return current != null ? current : intern().state;
+    }
+
+    /**
+     * @return All shared call sites created so far
+     */
+    static Iterable<CallerInfo> allInterned() {
+        return interned.values();
+    }
+
     /**
      * @return Immediate caller of this function
      */
@@ -59,4 +138,55 @@ public final class CallerInfo {
                 .findFirst()
                 .orElse(UNKNOWN));
     }
-}
\ No newline at end of file
+
+    /**
+     * Lookup key of the interning cache.
+     * It's much cheaper to create than CallerInfo itself as it doesn't compute the short class name.
+     * Keys in the cache are never modified. Only the per-thread lookup keys are reused.
+     */
+    private static final class Key {
+        private String fullClassName;
+        private String methodName;
+        private int lineNumber;
+
+        private Key() {
+        }
+
+        private Key(final String fullClassName, final String methodName, final int lineNumber) {
+            set(fullClassName, methodName, lineNumber);
+        }
+
+        private Key set(final String fullClassName, final String methodName, final int lineNumber) {
+            this.fullClassName = fullClassName;
+            this.methodName = methodName;
+            this.lineNumber = lineNumber;
+            return this;
+        }
+
+        private static int hash(final String fullClassName, final String methodName, final int lineNumber) {
+            return (fullClassName.hashCode() * 31 + methodName.hashCode()) * 31 + lineNumber;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if(this == o)
+                return true;
+            if(!(o instanceof Key))
+                return false;
+            final Key other = (Key) o;
+            return lineNumber == other.lineNumber
+                    && fullClassName.equals(other.fullClassName)
+                    && methodName.equals(other.methodName);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash(fullClassName, methodName, lineNumber);
+        }
+
+        @Override
+        public String toString() {
+            return fullClassName + "." + methodName + ":" + lineNumber;
+        }
+    }
+}
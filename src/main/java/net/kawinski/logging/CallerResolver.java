@@ -0,0 +1,17 @@
+package net.kawinski.logging;
+
+/**
+ * Strategy used by {@link NkTrace} to find out where the trace was created.
+ *
+ * Resolving the caller is the most expensive part of an enabled trace,
+ * so NkTrace lets you choose how it's done. See {@link CallerResolvers} for available implementations.
+ */
+@FunctionalInterface
+public interface CallerResolver {
+    /**
+     * @param fqcn class name to filter for the stacktrace.
+     *             The first caller after fqcn is considered to be the caller.
+     * @return Caller information or {@link CallerInfo#UNKNOWN} if it can't be determined. Never null.
+     */
+    CallerInfo resolve(String fqcn);
+}
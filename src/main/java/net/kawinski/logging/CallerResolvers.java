@@ -0,0 +1,126 @@
+package net.kawinski.logging;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Built-in {@link CallerResolver} implementations.
+ *
+ * - legacy: {@link CallerInfo#getCaller(String)}. Creates a new StackWalker and CallerInfo for every call.
+ * - stackwalker: Reuses a single StackWalker, doesn't retain class references
+ *   and stops after a bounded number of frames.
+ * - interning: Same as "stackwalker", but returns shared CallerInfo for every call site (see {@link CallerInfo#of}).
+ * - none: Doesn't walk the stack at all. Use it if you pass the caller explicitly (e.g. {@link NkTrace#info(CallerInfo, org.slf4j.Logger)}).
+ */
+public final class CallerResolvers {
+    /**
+     * Default number of frames inspected before giving up on finding the caller.
+     * NkTrace itself only needs a handful of them.
+     */
+    public static final int DEFAULT_MAX_FRAMES = 32;
+
+    private static final CallerResolver LEGACY = CallerInfo::getCaller;
+    private static final CallerResolver STACK_WALKER = new StackWalkerResolver(DEFAULT_MAX_FRAMES, false);
+    private static final CallerResolver INTERNING = new StackWalkerResolver(DEFAULT_MAX_FRAMES, true);
+    private static final CallerResolver NONE = fqcn -> CallerInfo.UNKNOWN;
+
+    private CallerResolvers() {
+    }
+
+    /**
+     * @return Resolver which uses {@link CallerInfo#getCaller(String)}
+     */
+    public static CallerResolver legacy() {
+        return LEGACY;
+    }
+
+    /**
+     * @return Resolver which uses a shared StackWalker and inspects at most {@link #DEFAULT_MAX_FRAMES} frames
+     */
+    public static CallerResolver stackWalker() {
+        return STACK_WALKER;
+    }
+
+    /**
+     * @param maxFrames maximum number of frames to inspect
+     * @return Resolver which uses a shared StackWalker and inspects at most maxFrames frames
+     */
+    public static CallerResolver stackWalker(final int maxFrames) {
+        return new StackWalkerResolver(maxFrames, false);
+    }
+
+    /**
+     * @return Same as {@link #stackWalker()}, but every call site maps to a single shared CallerInfo
+     */
+    public static CallerResolver interning() {
+        return INTERNING;
+    }
+
+    /**
+     * @param maxFrames maximum number of frames to inspect
+     * @return Same as {@link #stackWalker(int)}, but every call site maps to a single shared CallerInfo
+     */
+    public static CallerResolver interning(final int maxFrames) {
+        return new StackWalkerResolver(maxFrames, true);
+    }
+
+    /**
+     * @return Resolver which always returns {@link CallerInfo#UNKNOWN}
+     */
+    public static CallerResolver none() {
+        return NONE;
+    }
+
+    /**
+     * @param name one of: "legacy", "stackwalker", "interning", "none" (case insensitive)
+     * @return Resolver with given name or {@link #interning()} if the name isn't recognized
+     */
+    public static CallerResolver fromName(final String name) {
+        switch(name.toLowerCase(Locale.ROOT)) {
+            case "legacy": return legacy();
+            case "stackwalker": return stackWalker();
+            case "none": return none();
+            case "interning": return interning();
+        }
+        // Unknown name. Let's not fail in the logger code and just use the default.
+        return interning();
+    }
+
+    private static final class StackWalkerResolver implements CallerResolver {
+        private final StackWalker walker;
+        private final int maxFrames;
+        private final boolean interning;
+
+        private StackWalkerResolver(final int maxFrames, final boolean interning) {
+            // No RETAIN_CLASS_REFERENCE. We only need names.
+            // Default depth estimate on purpose. Bigger estimates make the JVM fill bigger batches of frames
+            // while the caller is usually just a few frames away.
+            this.walker = StackWalker.getInstance();
+            this.maxFrames = maxFrames;
+            this.interning = interning;
+        }
+
+        @Override
+        public CallerInfo resolve(final String fqcn) {
+            return walker.walk(frames -> findCaller(frames, fqcn));
+        }
+
+        private CallerInfo findCaller(final Stream<StackWalker.StackFrame> frames, final String fqcn) {
+            // Single pass equivalent of dropWhile(!fqcn).dropWhile(fqcn).findFirst()
+            final Iterator<StackWalker.StackFrame> it = frames.iterator();
+            boolean fqcnFound = false;
+            for(int i = 0; i < maxFrames && it.hasNext(); ++i) {
+                final StackWalker.StackFrame frame = it.next();
+                if(frame.getClassName().equals(fqcn)) {
+                    fqcnFound = true;
+                } else if(fqcnFound) {
+                    return interning
+                            ? CallerInfo.of(frame.getClassName(), frame.getMethodName(), frame.getLineNumber())
+                            : new CallerInfo(frame.getClassName(), frame.getMethodName(), frame.getLineNumber());
+                }
+            }
+            return CallerInfo.UNKNOWN;
+        }
+    }
+}
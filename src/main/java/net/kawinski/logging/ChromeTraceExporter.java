@@ -0,0 +1,103 @@
+package net.kawinski.logging;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes spans to a file in Chrome Trace Event format (JSON array of "complete" events),
+ * which can be opened in Perfetto (ui.perfetto.dev) or chrome://tracing.
+ *
+ * Every span becomes a single event named "Class.method:line". Level is its category.
+ * Message and returned value (if any) are its arguments. Threads are named with metadata events.
+ */
+public final class ChromeTraceExporter implements NkTraceSpanExporter {
+    private final Writer writer;
+    private final long pid = ProcessHandle.current().pid();
+    private final Set<Long> namedThreads = new HashSet<>();
+    private final StringBuilder sb = new StringBuilder(256);
+    private boolean first = true;
+
+    /**
+     * @param file file to write to. Overwritten if it exists
+     * @throws IOException if the file can't be created
+     */
+    public ChromeTraceExporter(final Path file) throws IOException {
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        writer.write('[');
+    }
+
+    @Override
+    public void export(final List<NkTraceSpan> spans) throws IOException {
+        for(final NkTraceSpan span : spans) {
+            if(namedThreads.add(span.getThreadId())) {
+                sb.setLength(0);
+                sb.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":").append(pid)
+                        .append(",\"tid\":").append(span.getThreadId())
+                        .append(",\"args\":{\"name\":");
+                Json.appendString(sb, span.getThreadName()).append("}}");
+                writeEvent();
+            }
+            final CallerInfo caller = span.getCaller();
+            sb.setLength(0);
+            sb.append("{\"name\":");
+            Json.appendString(sb, caller.shortClassName + '.' + caller.methodName + ':' + caller.lineNumber);
+            sb.append(",\"cat\":\"").append(span.getLevel().name()).append('"')
+                    .append(",\"ph\":\"X\",\"ts\":");
+            appendMicros(span.getStartEpochNanos());
+            sb.append(",\"dur\":");
+            appendMicros(span.getDurationNanos());
+            sb.append(",\"pid\":").append(pid)
+                    .append(",\"tid\":").append(span.getThreadId())
+                    .append(",\"args\":{\"class\":");
+            Json.appendString(sb, caller.fullClassName);
+            final String message = span.formatMessage();
+            if(!message.isEmpty()) {
+                sb.append(",\"message\":");
+                Json.appendString(sb, message);
+            }
+            if(span.getReturnValue() != null) {
+                sb.append(",\"returning\":");
+                Json.appendString(sb, Json.toString(span.getReturnValue()));
+            }
+            sb.append("}}");
+            writeEvent();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.write("\n]\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void appendMicros(final long nanos) {
+        sb.append(nanos / 1000).append('.');
+        final long fraction = nanos % 1000;
+        if(fraction < 100) {
+            sb.append('0');
+        }
+        if(fraction < 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+
+    private void writeEvent() throws IOException {
+        if(!first) {
+            writer.write(',');
+        }
+        first = false;
+        writer.write('\n');
+        writer.append(sb);
+    }
+}
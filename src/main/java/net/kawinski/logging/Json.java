@@ -0,0 +1,46 @@
+package net.kawinski.logging;
+
+/**
+ * Bare minimum of JSON writing needed by the exporters.
+ */
+final class Json {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Json() {
+    }
+
+    /**
+     * Appends the value as a quoted and escaped JSON string.
+     */
+    static StringBuilder appendString(final StringBuilder sb, final String value) {
+        sb.append('"');
+        for(int i = 0; i < value.length(); ++i) {
+            final char c = value.charAt(i);
+            switch(c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if(c < 0x20) {
+                        sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+
+    /**
+     * @return String representation of the value. Never throws
+     */
+    static String toString(final Object value) {
+        try {
+            return String.valueOf(value);
+        } catch(final RuntimeException e) {
+            return "<failed to format: " + e + ">";
+        }
+    }
+}
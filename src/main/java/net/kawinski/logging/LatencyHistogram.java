@@ -0,0 +1,159 @@
+package net.kawinski.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of span durations (in nanoseconds) with log-linear buckets.
+ *
+ * Every power of 2 is split into {@link #SUB_BUCKETS} linear buckets, so the relative error of reported
+ * percentiles is at most 1/{@link #SUB_BUCKETS} (~6%) across the whole range of long values.
+ * Memory is fixed (~8 KB) no matter how many values are recorded.
+ *
+ * Recording is a few atomic increments. Reads aren't atomic with respect to concurrent writes,
+ * so percentiles computed while spans are recorded may be slightly off. That's fine for monitoring.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * Number of linear buckets every power of 2 is split into
+     */
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Values below SUB_BUCKETS have their own buckets. Every other exponent (up to 62) adds SUB_BUCKETS of them
+    static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    // Striped, so threads finishing spans of the same call site don't fight over a single counter
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param nanos duration of the span. Negative values are treated as 0
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(bucketIndex(value));
+        totalNanos.add(value);
+        long max = maxNanos.get();
+        while(value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * @return Number of recorded spans
+     */
+    public long getCount() {
+        long count = 0;
+        for(int i = 0; i < BUCKET_COUNT; ++i) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return Sum of durations of all recorded spans
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * @return Duration of the longest recorded span or 0 if nothing was recorded
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @param percentile percentile between 0 and 100 (e.g. 99.9)
+     * @return Highest value of the bucket containing given percentile (but not more than {@link #getMaxNanos()}),
+     * or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        final long total = getCount();
+        if(total == 0) {
+            return 0;
+        }
+        final double clamped = Math.min(Math.max(percentile, 0.0), 100.0);
+        final long rank = Math.max(1, (long) Math.ceil(clamped / 100.0 * total));
+        long seen = 0;
+        for(int i = 0; i < BUCKET_COUNT; ++i) {
+            seen += buckets.get(i);
+            if(seen >= rank) {
+                return Math.min(bucketUpperBound(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * @return 50th percentile (median). See {@link #getValueAtPercentile(double)}
+     */
+    public long getP50() {
+        return getValueAtPercentile(50.0);
+    }
+
+    /**
+     * @return 99th percentile. See {@link #getValueAtPercentile(double)}
+     */
+    public long getP99() {
+        return getValueAtPercentile(99.0);
+    }
+
+    /**
+     * @return 99.9th percentile. See {@link #getValueAtPercentile(double)}
+     */
+    public long getP999() {
+        return getValueAtPercentile(99.9);
+    }
+
+    /**
+     * Clears all recorded values. Spans recorded at the same time might be partially lost.
+     */
+    public void reset() {
+        for(int i = 0; i < BUCKET_COUNT; ++i) {
+            buckets.set(i, 0);
+        }
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount()
+                + " p50=" + NkTraceTimings.formatNanos(getP50())
+                + " p99=" + NkTraceTimings.formatNanos(getP99())
+                + " p999=" + NkTraceTimings.formatNanos(getP999())
+                + " max=" + NkTraceTimings.formatNanos(getMaxNanos());
+    }
+
+    static int bucketIndex(final long value) {
+        if(value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketLowerBound(final int index) {
+        if(index < SUB_BUCKETS) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long bucketUpperBound(final int index) {
+        if(index < SUB_BUCKETS) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return bucketLowerBound(index) + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,60 @@
+package net.kawinski.logging;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Log argument evaluated only when the message is formatted.
+ *
+ * SLF4J formats arguments with {@link Object#toString()}, so the supplier runs only if the event
+ * passed all the filters and an appender actually needs the message.
+ * The value is computed once, even if the message is formatted several times.
+ */
+final class LazyArg {
+    private Supplier<?> supplier;
+    private Object value;
+
+    private LazyArg(final Supplier<?> supplier) {
+        this.supplier = supplier;
+    }
+
+    static LazyArg of(final Supplier<?> supplier) {
+        return new LazyArg(supplier);
+    }
+
+    /**
+     * @return Lazy arguments, or null for null array, just like arguments passed as {@code Object...}
+     */
+    static Object[] ofAll(final Supplier<?>[] suppliers) {
+        if(suppliers == null) {
+            return null;
+        }
+        final Object[] args = new Object[suppliers.length];
+        for(int i = 0; i < suppliers.length; ++i) {
+            args[i] = new LazyArg(suppliers[i]);
+        }
+        return args;
+    }
+
+    /**
+     * @return Value returned by the supplier. The supplier is released afterwards
+     */
+    synchronized Object get() {
+        final Supplier<?> s = supplier;
+        if(s != null) {
+            value = s.get();
+            supplier = null;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        final Object v = get();
+        // Same output as SLF4J would produce for the value passed directly
+        if(v instanceof Object[]) {
+            return Arrays.deepToString((Object[]) v);
+        }
+        return String.valueOf(v);
+    }
+}
@@ -3,6 +3,8 @@ package net.kawinski.logging;
 import org.slf4j.Logger;
 import org.slf4j.event.Level;
 
+import java.util.Arrays;
+
 /**
  * Some helper utilities for other classes
  */
@@ -42,4 +44,15 @@ public final class LoggingUtils {
         System.arraycopy(array, 0, newArray, 1, array.length);
         return newArray;
     }
+
+    /**
+     * @param array Elements already in the array
+     * @param element Element which to append
+     * @return New array with element appended
+     */
+    public static Object[] append(final Object[] array, final Object element) {
+        final Object[] newArray = Arrays.copyOf(array, array.length + 1);
+        newArray[array.length] = element;
+        return newArray;
+    }
 }
@@ -0,0 +1,123 @@
+package net.kawinski.logging;
+
+/**
+ * Entry/exit message format precompiled for a single call site.
+ *
+ * Output of NkTrace doesn't change for a given call site, so the final formats are built once
+ * and cached in the {@link CallerInfo}. Templates are immutable, so they can be shared between threads
+ * without synchronization. In the worst case, two threads build the same template at the same time.
+ */
+final class MessageTemplate {
+    private static final String ENTRY_PREFIX = ">> ";
+    private static final String EXIT_PREFIX = "<< ";
+    private static final String RETURNING = " returning({})";
+    private static final String TOOK = " took {}";
+
+    /**
+     * Reusable buffer for building the templates when they're not cached yet
+     */
+    private static final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    private final String userFormat;
+    private final boolean defaultFormatting;
+    private final boolean timed;
+    final String format;
+
+    private MessageTemplate(final String userFormat, final boolean defaultFormatting, final boolean timed, final String format) {
+        this.userFormat = userFormat;
+        this.defaultFormatting = defaultFormatting;
+        this.timed = timed;
+        this.format = format;
+    }
+
+    private boolean matches(final String userFormat, final boolean defaultFormatting, final boolean timed) {
+        //noinspection StringEquality Fast path. Formats are usually string literals
+        return this.defaultFormatting == defaultFormatting
+                && this.timed == timed
+                && (this.userFormat == userFormat || this.userFormat.equals(userFormat));
+    }
+
+    /**
+     * @param caller call site
+     * @param userFormat custom entry message format
+     * @param defaultFormatting whether the ">> Class.method:line" prefix should be added
+     * @return Final format of the entry message
+     */
+    static String entry(final CallerInfo caller, final String userFormat, final boolean defaultFormatting) {
+        if(!defaultFormatting) {
+            return userFormat;
+        }
+        final SiteState site = caller.state();
+        MessageTemplate template = site.entryTemplate;
+        if(template == null || !template.matches(userFormat, true, false)) {
+            final StringBuilder sb = startBuilding(caller, ENTRY_PREFIX);
+            appendUserFormat(sb, userFormat);
+            template = new MessageTemplate(userFormat, true, false, sb.toString());
+            site.entryTemplate = template;
+        }
+        return template.format;
+    }
+
+    /**
+     * @param caller call site
+     * @param returning whether the "returning({})" part should be added
+     * @param userFormat custom exit message format. Null and empty string are equivalent
+     * @param defaultFormatting whether the "&lt;&lt; Class.method:line" prefix should be added
+     * @return Final format of the exit message
+     */
+    static String exit(final CallerInfo caller, final boolean returning, final String userFormat, final boolean defaultFormatting) {
+        return exit(caller, false, returning, userFormat, defaultFormatting);
+    }
+
+    /**
+     * @param caller call site
+     * @param timed whether the "took {}" part should be added
+     * @param returning whether the "returning({})" part should be added
+     * @param userFormat custom exit message format. Null and empty string are equivalent
+     * @param defaultFormatting whether the "&lt;&lt; Class.method:line" prefix should be added
+     * @return Final format of the exit message
+     */
+    static String exit(final CallerInfo caller, final boolean timed, final boolean returning, final String userFormat, final boolean defaultFormatting) {
+        final String nonNullUserFormat = userFormat != null ? userFormat : "";
+        final SiteState site = caller.state();
+        MessageTemplate template = returning ? site.exitReturningTemplate : site.exitTemplate;
+        if(template == null || !template.matches(nonNullUserFormat, defaultFormatting, timed)) {
+            final StringBuilder sb = startBuilding(caller, defaultFormatting ? EXIT_PREFIX : null);
+            if(timed) {
+                sb.append(TOOK);
+            }
+            if(returning) {
+                sb.append(RETURNING);
+            }
+            appendUserFormat(sb, nonNullUserFormat);
+            template = new MessageTemplate(nonNullUserFormat, defaultFormatting, timed, sb.toString());
+            if(returning) {
+                site.exitReturningTemplate = template;
+            } else {
+                site.exitTemplate = template;
+            }
+        }
+        return template.format;
+    }
+
+    private static StringBuilder startBuilding(final CallerInfo caller, final String prefix) {
+        final StringBuilder sb = buffers.get();
+        sb.setLength(0);
+        if(prefix != null) {
+            sb.append(prefix);
+            sb.append(caller.shortClassName);
+            sb.append('.');
+            sb.append(caller.methodName);
+            sb.append(':');
+            sb.append(caller.lineNumber);
+        }
+        return sb;
+    }
+
+    private static void appendUserFormat(final StringBuilder sb, final String userFormat) {
+        if(!userFormat.isEmpty()) {
+            sb.append(' ');
+            sb.append(userFormat);
+        }
+    }
+}
@@ -4,21 +4,40 @@ import org.slf4j.Logger;
 import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 import org.slf4j.event.Level;
-import org.slf4j.spi.LocationAwareLogger;
+
+import java.util.function.Supplier;
 
 /**
  * Main class used for creating entry/exit message logs.
  *
  * Provides a closeable resource which can be conveniently used within try-with-resources blocks.
  * When created, it increments an indentation level for new logs.
+ *
+ * If the level is disabled, factory methods (e.g. {@link #debug(Logger)}) return a shared no-op tracer.
+ * It doesn't allocate anything, and {@link #returning(Object)}/{@link #setExitMsg(String, Object...)} called on it are free.
+ *
+ * Arguments which are expensive to compute can be passed as {@link Supplier}s (e.g. {@link #debug(Logger, String, Supplier)}).
+ * They're evaluated only if the message is actually formatted.
+ *
+ * A single primitive argument (e.g. {@link #debug(Logger, String, double)}) is boxed only if the span is created.
+ * Spans with more primitive arguments can be guarded with e.g. {@link #isDebugEnabled(Logger)}, so they don't box when disabled.
+ *
+ * With {@link NkTraceFlightRecorder} or {@link NkTraceProfiler} enabled, spans of disabled levels aren't no-ops.
+ * They're recorded or profiled, but not logged.
  */
-public class NkTrace implements AutoCloseable {
+public class NkTrace extends SpanPipeline implements AutoCloseable {
 	/**
 	 * To reduce configuration effort, NkTrace provides default formatting.
 	 * If you want, you can disable this feature and configure the pattern yourself.
 	 */
 	public static boolean useDefaultFormatting = Boolean.parseBoolean(System.getProperty("NKTRACE_USE_DEFAULT_FORMATTING", "true"));
 
+	/**
+	 * Strategy used to find out where the trace was created.
+	 * Can be chosen with "NKTRACE_CALLER_RESOLVER" property. See {@link CallerResolvers#fromName(String)}.
+	 */
+	public static CallerResolver callerResolver = CallerResolvers.fromName(System.getProperty("NKTRACE_CALLER_RESOLVER", "interning"));
+
 	private static final String DEFAULT_FQCN = NkTrace.class.getName();
 
 	/**
@@ -45,14 +64,31 @@ public class NkTrace implements AutoCloseable {
 	 */
 	public static final Marker MARKER_TRACE_EXIT = MarkerFactory.getMarker(MARKER_TRACE_EXIT_NAME);
 
-	private final String fqcn;
-	private final LocationAwareLogger logger;
-	private final Level level;
-	private final boolean canLog;
-	private final CallerInfo caller;
-	private Object returning = null;
-	private String exitMsgFormat = "";
-	private Object[] exitMsgFormatArgs = {};
+	static final Object[] NO_ARGS = {};
+
+	// Type of the value passed to returning(...). Primitives are kept unboxed in returningBits until the exit log
+	static final byte RETURNING_OBJECT = 0;
+	static final byte RETURNING_INT = 1;
+	static final byte RETURNING_LONG = 2;
+	static final byte RETURNING_DOUBLE = 3;
+	static final byte RETURNING_FLOAT = 4;
+	static final byte RETURNING_BOOLEAN = 5;
+	static final byte RETURNING_CHAR = 6;
+
+	/**
+	 * Shared tracer returned by the factory methods when the level is disabled.
+	 * It's stateless. All methods are no-ops, so using it costs (almost) nothing.
+	 */
+	private static final NkTrace DISABLED = new NkTrace();
+
+	/**
+	 * Creates disabled NkTrace. See {@link #DISABLED}
+	 */
+	private NkTrace() {
+		this.fqcn = DEFAULT_FQCN;
+		this.level = Level.TRACE;
+		this.caller = CallerInfo.UNKNOWN;
+	}
 
 	/**
 	 * Produces "entry" message and increments indentation for log messages.
@@ -64,18 +100,27 @@ public class NkTrace implements AutoCloseable {
 	 * @param entryFormatArgs Arguments to use when formatting the message
 	 */
 	public NkTrace(final String fqcn, final Logger logger, final Level level, final String entryFormat, final Object... entryFormatArgs) {
-		this.fqcn = fqcn;
-		this.logger = (LocationAwareLogger) logger;
-		this.level = level;
-		this.canLog = LoggingUtils.canLog(logger, level);
-		if(!canLog) {
-			caller = CallerInfo.UNKNOWN;
-			return;
-		}
-		caller = CallerInfo.getCaller(fqcn);
+		this(fqcn, null, logger, level, entryFormat, entryFormatArgs);
+	}
+
+	/**
+	 * Produces "entry" message and increments indentation for log messages.
+	 *
+	 * @param fqcn Fully Qualified Class Name of the logger
+	 * @param caller Location of the trace. If null, it's found by {@link #callerResolver}
+	 * @param logger Logger to use when producing entry/exit messages
+	 * @param level Level to use when producing entry/exit messages
+	 * @param entryFormat Format of the message conforming to SLF4J formatting
+	 * @param entryFormatArgs Arguments to use when formatting the message
+	 */
+	public NkTrace(final String fqcn, final CallerInfo caller, final Logger logger, final Level level, final String entryFormat, final Object... entryFormatArgs) {
+		this(fqcn, caller, logger, level, shouldLogOrCount(caller, logger, level), entryFormat, entryFormatArgs);
+	}
 
-		doEntryLog(entryFormat, entryFormatArgs);
-		NkTraceIndent.increment();
+	private NkTrace(final String fqcn, final CallerInfo caller, final Logger logger, final Level level, final boolean canLog, final String entryFormat, final Object[] entryFormatArgs) {
+		final boolean profiled = NkTraceProfiler.enabled;
+		// Profiled spans aren't logged
+		open(fqcn, caller, logger, level, canLog && !profiled, NkTraceFlightRecorder.enabled, profiled, entryFormat, entryFormatArgs);
 	}
 
 	/**
@@ -83,23 +128,100 @@ public class NkTrace implements AutoCloseable {
 	 */
 	@Override
 	public void close() {
-		if(!canLog) {
+		if(active) {
+			exit();
+		}
+	}
+
+	/**
+	 * Marks the span as failed with given error. When the span is closed, the recording of {@link NkTraceFlightRecorder}
+	 * (if enabled) is dumped to the logger of the span.
+	 *
+	 * Usage:
+	 * catch(final IOException e) {
+	 *     throw trace.throwing(e);
+	 * }
+	 *
+	 * @param throwable error
+	 * @param <T> error type
+	 * @return error from the argument
+	 */
+	public <T extends Throwable> T throwing(final T throwable) {
+		if(active) {
+			error = throwable;
+		}
+		return throwable;
+	}
+
+	/**
+	 * Specifies custom message to append to "exit" log.
+	 *
+	 * @param exitMsgFormat Format of the custom message
+	 */
+	public void setExitMsg(final String exitMsgFormat) {
+		if(!active) {
+			return;
+		}
+		this.exitMsgFormat = exitMsgFormat;
+		this.exitMsgFormatArgs = NO_ARGS;
+	}
+
+	/**
+	 * Specifies custom message with a single argument to append to "exit" log.
+	 *
+	 * @param exitMsgFormat Format of the custom message
+	 * @param exitMsgFormatArg Argument for the custom message
+	 */
+	public void setExitMsg(final String exitMsgFormat, final Object exitMsgFormatArg) {
+		if(!active) {
 			return;
 		}
+		this.exitMsgFormat = exitMsgFormat;
+		this.exitMsgFormatArgs = toArgs(exitMsgFormatArg);
+	}
 
-		NkTraceIndent.decrement();
-		doExitLog();
+	/**
+	 * Specifies custom message with two arguments to append to "exit" log.
+	 *
+	 * @param exitMsgFormat Format of the custom message
+	 * @param exitMsgFormatArg1 First argument for the custom message
+	 * @param exitMsgFormatArg2 Second argument for the custom message
+	 */
+	public void setExitMsg(final String exitMsgFormat, final Object exitMsgFormatArg1, final Object exitMsgFormatArg2) {
+		if(!active) {
+			return;
+		}
+		this.exitMsgFormat = exitMsgFormat;
+		this.exitMsgFormatArgs = new Object[]{exitMsgFormatArg1, exitMsgFormatArg2};
 	}
 
 	/**
 	 * Specifies custom message to append to "exit" log.
+	 * Note that the arguments array isn't copied. Don't modify it until the trace is closed.
 	 *
 	 * @param exitMsgFormat Format of the custom message
 	 * @param exitMsgFormatArgs Arguments for the custom message
 	 */
 	public void setExitMsg(final String exitMsgFormat, final Object... exitMsgFormatArgs) {
+		if(!active) {
+			return;
+		}
+		this.exitMsgFormat = exitMsgFormat;
+		this.exitMsgFormatArgs = exitMsgFormatArgs;
+	}
+
+	/**
+	 * Specifies custom message with lazily computed arguments to append to "exit" log.
+	 *
+	 * @param exitMsgFormat Format of the custom message
+	 * @param exitMsgFormatArgSuppliers Suppliers of the arguments. Called only if the message is formatted
+	 */
+	public void setExitMsg(final String exitMsgFormat, final Supplier<?>... exitMsgFormatArgSuppliers) {
+		if(!active) {
+			return;
+		}
 		this.exitMsgFormat = exitMsgFormat;
-		this.exitMsgFormatArgs = exitMsgFormatArgs.clone();
+		this.exitMsgFormatArgs = LazyArg.ofAll(exitMsgFormatArgSuppliers);
 	}
 
 	/**
@@ -110,12 +232,107 @@ public class NkTrace implements AutoCloseable {
 	 * @return function result from the argument
 	 */
 	public <T> T returning(final T result) {
-		returning = result;
+		if(active) {
+			returning = result;
+			returningType = RETURNING_OBJECT;
+		}
+		return result;
+	}
+
+	/**
+	 * Same as {@link #returning(Object)}, but the result isn't boxed unless the exit log is produced.
+	 *
+	 * @param result function result
+	 * @return function result from the argument
+	 */
+	public int returning(final int result) {
+		if(active) {
+			setReturningPrimitive(RETURNING_INT, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Same as {@link #returning(Object)}, but the result isn't boxed unless the exit log is produced.
+	 *
+	 * @param result function result
+	 * @return function result from the argument
+	 */
+	public long returning(final long result) {
+		if(active) {
+			setReturningPrimitive(RETURNING_LONG, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Same as {@link #returning(Object)}, but the result isn't boxed unless the exit log is produced.
+	 *
+	 * @param result function result
+	 * @return function result from the argument
+	 */
+	public double returning(final double result) {
+		if(active) {
+			setReturningPrimitive(RETURNING_DOUBLE, Double.doubleToRawLongBits(result));
+		}
+		return result;
+	}
+
+	/**
+	 * Same as {@link #returning(Object)}, but the result isn't boxed unless the exit log is produced.
+	 *
+	 * @param result function result
+	 * @return function result from the argument
+	 */
+	public float returning(final float result) {
+		if(active) {
+			setReturningPrimitive(RETURNING_FLOAT, Float.floatToRawIntBits(result));
+		}
+		return result;
+	}
+
+	/**
+	 * Same as {@link #returning(Object)}, but the result isn't boxed unless the exit log is produced.
+	 *
+	 * @param result function result
+	 * @return function result from the argument
+	 */
+	public boolean returning(final boolean result) {
+		if(active) {
+			setReturningPrimitive(RETURNING_BOOLEAN, result ? 1 : 0);
+		}
+		return result;
+	}
+
+	/**
+	 * Same as {@link #returning(Object)}, but the result isn't boxed unless the exit log is produced.
+	 *
+	 * @param result function result
+	 * @return function result from the argument
+	 */
+	public char returning(final char result) {
+		if(active) {
+			setReturningPrimitive(RETURNING_CHAR, result);
+		}
 		return result;
 	}
 
+	/**
+	 * Same as {@link #returning(Object)}, but the result description is computed only if the "exit" log is formatted.
+	 * Use it if the result is big, or expensive to print, and there's no need to keep it until the trace is closed.
+	 *
+	 * @param resultSupplier supplier of the function result (or its description)
+	 */
+	public void returningLazily(final Supplier<?> resultSupplier) {
+		if(active) {
+			returning = LazyArg.of(resultSupplier);
+			returningType = RETURNING_OBJECT;
+		}
+	}
+
 	/**
 	 * Convenience method with the functionality of both {@link #returning(Object)} and {@link #setExitMsg(String, Object...)}
+	 * Note that the arguments array isn't copied. Don't modify it until the trace is closed.
 	 *
 	 * @param result function result
 	 * @param exitMsgFormat Format of the custom message
@@ -124,47 +341,52 @@ public class NkTrace implements AutoCloseable {
 	 * @return function result from the argument
 	 */
 	public <T> T returning(final T result, final String exitMsgFormat, final Object... exitMsgFormatArgs) {
+		if(!active) {
+			return result;
+		}
 		returning = result;
+		returningType = RETURNING_OBJECT;
 		this.exitMsgFormat = exitMsgFormat;
-		this.exitMsgFormatArgs = exitMsgFormatArgs.clone();
+		this.exitMsgFormatArgs = exitMsgFormatArgs;
 		return result;
 	}
 
-	private void doEntryLog(final String extraMsgFormat, final Object[] extraMsgFormatArgs) {
-		String finalFormat;
-		if(useDefaultFormatting) {
-			finalFormat = ">> " + caller.shortClassName + "." + caller.methodName + ":" + caller.lineNumber +
-					(extraMsgFormat.isEmpty() ? "" : " " + extraMsgFormat);
-		} else {
-			finalFormat = extraMsgFormat;
-		}
-		this.logger.log(MARKER_TRACE_ENTRY, fqcn, level.toInt(), finalFormat, extraMsgFormatArgs, null);
+	private void setReturningPrimitive(final byte type, final long bits) {
+		returning = null;
+		returningType = type;
+		returningBits = bits;
 	}
 
-	private void doExitLog() {
-		final StringBuilder finalExitFormat = new StringBuilder();
-		Object[] finalExitFormatArgs = exitMsgFormatArgs;
-
-		if(useDefaultFormatting) {
-			finalExitFormat.append("<< ");
-			finalExitFormat.append(caller.shortClassName);
-			finalExitFormat.append(".");
-			finalExitFormat.append(caller.methodName);
-			finalExitFormat.append(":");
-			finalExitFormat.append(caller.lineNumber);
+	/**
+	 * @return Value passed to returning(...) or null if it wasn't called. Primitives are boxed here
+	 */
+	static Object unpackReturning(final byte returningType, final long returningBits, final Object returning) {
+		switch(returningType) {
+			case RETURNING_OBJECT: return returning;
+			case RETURNING_INT: return (int) returningBits;
+			case RETURNING_LONG: return returningBits;
+			case RETURNING_DOUBLE: return Double.longBitsToDouble(returningBits);
+			case RETURNING_FLOAT: return Float.intBitsToFloat((int) returningBits);
+			case RETURNING_BOOLEAN: return returningBits != 0;
+			case RETURNING_CHAR: return (char) returningBits;
 		}
+		return returning;
+	}
 
-		if(returning != null) {
-			finalExitFormat.append(" returning({})");
-			finalExitFormatArgs = LoggingUtils.prepend(exitMsgFormatArgs, returning);
+	/**
+	 * @return Arguments of the "exit" log: duration (if timed), returned value (if any) and the custom message arguments
+	 */
+	static Object[] exitArgs(final long elapsedNanos, final Object returnValue, final Object[] exitMsgFormatArgs) {
+		// Logback keeps the array in the event and formats it later (possibly on another thread).
+		// That's why we can't reuse it
+		Object[] finalExitFormatArgs = exitMsgFormatArgs;
+		if(returnValue != null) {
+			finalExitFormatArgs = LoggingUtils.prepend(finalExitFormatArgs, returnValue);
 		}
-
-		if(exitMsgFormat != null && !exitMsgFormat.isEmpty()) {
-			finalExitFormat.append(" ");
-			finalExitFormat.append(exitMsgFormat);
+		if(elapsedNanos != NkTraceTimings.NOT_TIMED) {
+			finalExitFormatArgs = LoggingUtils.prepend(finalExitFormatArgs, NkTraceTimings.formatNanos(elapsedNanos));
 		}
-
-		logger.log(MARKER_TRACE_EXIT, fqcn, level.toInt(), finalExitFormat.toString(), finalExitFormatArgs, null);
+		return finalExitFormatArgs;
 	}
 
 	/**
@@ -173,7 +395,119 @@ public class NkTrace implements AutoCloseable {
 	 * @return NkTrace
 	 */
 	public static NkTrace trace(final Logger logger) {
-		return new NkTrace(DEFAULT_FQCN, logger, Level.TRACE, "");
+		return create(null, logger, Level.TRACE, "", NO_ARGS);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message without arguments
+	 * @param logger logger
+	 * @param format message format
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final Logger logger, final String format) {
+		return create(null, logger, Level.TRACE, format, NO_ARGS);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final Logger logger, final String format, final Object formatArg) {
+		return isEnabled(null, logger, Level.TRACE) ? span(null, logger, Level.TRACE, format, toArgs(formatArg)) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final Logger logger, final String format, final boolean formatArg) {
+		return isEnabled(null, logger, Level.TRACE) ? span(null, logger, Level.TRACE, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final Logger logger, final String format, final char formatArg) {
+		return isEnabled(null, logger, Level.TRACE) ? span(null, logger, Level.TRACE, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final Logger logger, final String format, final int formatArg) {
+		return isEnabled(null, logger, Level.TRACE) ? span(null, logger, Level.TRACE, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final Logger logger, final String format, final long formatArg) {
+		return isEnabled(null, logger, Level.TRACE) ? span(null, logger, Level.TRACE, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final Logger logger, final String format, final float formatArg) {
+		return isEnabled(null, logger, Level.TRACE) ? span(null, logger, Level.TRACE, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final Logger logger, final String format, final double formatArg) {
+		return isEnabled(null, logger, Level.TRACE) ? span(null, logger, Level.TRACE, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with two arguments
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg1 first message format arg
+	 * @param formatArg2 second message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final Logger logger, final String format, final Object formatArg1, final Object formatArg2) {
+		return isEnabled(null, logger, Level.TRACE) ? span(null, logger, Level.TRACE, format, new Object[]{formatArg1, formatArg2}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with three arguments
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg1 first message format arg
+	 * @param formatArg2 second message format arg
+	 * @param formatArg3 third message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final Logger logger, final String format, final Object formatArg1, final Object formatArg2, final Object formatArg3) {
+		return isEnabled(null, logger, Level.TRACE) ? span(null, logger, Level.TRACE, format, new Object[]{formatArg1, formatArg2, formatArg3}) : DISABLED;
 	}
 
 	/**
@@ -184,7 +518,18 @@ public class NkTrace implements AutoCloseable {
 	 * @return NkTrace
 	 */
 	public static NkTrace trace(final Logger logger, final String format, final Object... formatArgs) {
-		return new NkTrace(DEFAULT_FQCN, logger, Level.TRACE, format, formatArgs);
+		return create(null, logger, Level.TRACE, format, formatArgs);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with lazily computed arguments
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgSuppliers suppliers of the message format args. Called only if the message is formatted
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final Logger logger, final String format, final Supplier<?>... formatArgSuppliers) {
+		return isEnabled(null, logger, Level.TRACE) ? span(null, logger, Level.TRACE, format, LazyArg.ofAll(formatArgSuppliers)) : DISABLED;
 	}
 
 	/**
@@ -193,37 +538,856 @@ public class NkTrace implements AutoCloseable {
 	 * @return NkTrace
 	 */
 	public static NkTrace debug(final Logger logger) {
-		return new NkTrace(DEFAULT_FQCN, logger, Level.DEBUG, "");
+		return create(null, logger, Level.DEBUG, "", NO_ARGS);
 	}
 
 	/**
-	 * Convenience method that creates NkTrace with "debug" log level and extra message
+	 * Convenience method that creates NkTrace with "debug" log level and extra message without arguments
 	 * @param logger logger
 	 * @param format message format
-	 * @param formatArgs message format args
 	 * @return NkTrace
 	 */
-	public static NkTrace debug(final Logger logger, final String format, final Object... formatArgs) {
-		return new NkTrace(DEFAULT_FQCN, logger, Level.DEBUG, format, formatArgs);
+	public static NkTrace debug(final Logger logger, final String format) {
+		return create(null, logger, Level.DEBUG, format, NO_ARGS);
 	}
 
 	/**
-	 * Convenience method that creates NkTrace with "info" log level
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single argument
 	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg
 	 * @return NkTrace
 	 */
-	public static NkTrace info(final Logger logger) {
-		return new NkTrace(DEFAULT_FQCN, logger, Level.INFO, "");
+	public static NkTrace debug(final Logger logger, final String format, final Object formatArg) {
+		return isEnabled(null, logger, Level.DEBUG) ? span(null, logger, Level.DEBUG, format, toArgs(formatArg)) : DISABLED;
 	}
 
 	/**
-	 * Convenience method that creates NkTrace with "info" log level and extra message
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single primitive argument
 	 * @param logger logger
 	 * @param format message format
-	 * @param formatArgs message format args
+	 * @param formatArg message format arg. Boxed only if the span is created
 	 * @return NkTrace
 	 */
-	public static NkTrace info(final Logger logger, final String format, final Object... formatArgs) {
-		return new NkTrace(DEFAULT_FQCN, logger, Level.INFO, format, formatArgs);
+	public static NkTrace debug(final Logger logger, final String format, final boolean formatArg) {
+		return isEnabled(null, logger, Level.DEBUG) ? span(null, logger, Level.DEBUG, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final Logger logger, final String format, final char formatArg) {
+		return isEnabled(null, logger, Level.DEBUG) ? span(null, logger, Level.DEBUG, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final Logger logger, final String format, final int formatArg) {
+		return isEnabled(null, logger, Level.DEBUG) ? span(null, logger, Level.DEBUG, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final Logger logger, final String format, final long formatArg) {
+		return isEnabled(null, logger, Level.DEBUG) ? span(null, logger, Level.DEBUG, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final Logger logger, final String format, final float formatArg) {
+		return isEnabled(null, logger, Level.DEBUG) ? span(null, logger, Level.DEBUG, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final Logger logger, final String format, final double formatArg) {
+		return isEnabled(null, logger, Level.DEBUG) ? span(null, logger, Level.DEBUG, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with two arguments
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg1 first message format arg
+	 * @param formatArg2 second message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final Logger logger, final String format, final Object formatArg1, final Object formatArg2) {
+		return isEnabled(null, logger, Level.DEBUG) ? span(null, logger, Level.DEBUG, format, new Object[]{formatArg1, formatArg2}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with three arguments
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg1 first message format arg
+	 * @param formatArg2 second message format arg
+	 * @param formatArg3 third message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final Logger logger, final String format, final Object formatArg1, final Object formatArg2, final Object formatArg3) {
+		return isEnabled(null, logger, Level.DEBUG) ? span(null, logger, Level.DEBUG, format, new Object[]{formatArg1, formatArg2, formatArg3}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgs message format args
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final Logger logger, final String format, final Object... formatArgs) {
+		return create(null, logger, Level.DEBUG, format, formatArgs);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with lazily computed arguments
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgSuppliers suppliers of the message format args. Called only if the message is formatted
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final Logger logger, final String format, final Supplier<?>... formatArgSuppliers) {
+		return isEnabled(null, logger, Level.DEBUG) ? span(null, logger, Level.DEBUG, format, LazyArg.ofAll(formatArgSuppliers)) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level
+	 * @param logger logger
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final Logger logger) {
+		return create(null, logger, Level.INFO, "", NO_ARGS);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message without arguments
+	 * @param logger logger
+	 * @param format message format
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final Logger logger, final String format) {
+		return create(null, logger, Level.INFO, format, NO_ARGS);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final Logger logger, final String format, final Object formatArg) {
+		return isEnabled(null, logger, Level.INFO) ? span(null, logger, Level.INFO, format, toArgs(formatArg)) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final Logger logger, final String format, final boolean formatArg) {
+		return isEnabled(null, logger, Level.INFO) ? span(null, logger, Level.INFO, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final Logger logger, final String format, final char formatArg) {
+		return isEnabled(null, logger, Level.INFO) ? span(null, logger, Level.INFO, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final Logger logger, final String format, final int formatArg) {
+		return isEnabled(null, logger, Level.INFO) ? span(null, logger, Level.INFO, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final Logger logger, final String format, final long formatArg) {
+		return isEnabled(null, logger, Level.INFO) ? span(null, logger, Level.INFO, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final Logger logger, final String format, final float formatArg) {
+		return isEnabled(null, logger, Level.INFO) ? span(null, logger, Level.INFO, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single primitive argument
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final Logger logger, final String format, final double formatArg) {
+		return isEnabled(null, logger, Level.INFO) ? span(null, logger, Level.INFO, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with two arguments
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg1 first message format arg
+	 * @param formatArg2 second message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final Logger logger, final String format, final Object formatArg1, final Object formatArg2) {
+		return isEnabled(null, logger, Level.INFO) ? span(null, logger, Level.INFO, format, new Object[]{formatArg1, formatArg2}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with three arguments
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg1 first message format arg
+	 * @param formatArg2 second message format arg
+	 * @param formatArg3 third message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final Logger logger, final String format, final Object formatArg1, final Object formatArg2, final Object formatArg3) {
+		return isEnabled(null, logger, Level.INFO) ? span(null, logger, Level.INFO, format, new Object[]{formatArg1, formatArg2, formatArg3}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgs message format args
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final Logger logger, final String format, final Object... formatArgs) {
+		return create(null, logger, Level.INFO, format, formatArgs);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with lazily computed arguments
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgSuppliers suppliers of the message format args. Called only if the message is formatted
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final Logger logger, final String format, final Supplier<?>... formatArgSuppliers) {
+		return isEnabled(null, logger, Level.INFO) ? span(null, logger, Level.INFO, format, LazyArg.ofAll(formatArgSuppliers)) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final CallerInfo caller, final Logger logger) {
+		return create(caller, logger, Level.TRACE, "", NO_ARGS);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message without arguments at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final CallerInfo caller, final Logger logger, final String format) {
+		return create(caller, logger, Level.TRACE, format, NO_ARGS);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final CallerInfo caller, final Logger logger, final String format, final Object formatArg) {
+		return isEnabled(caller, logger, Level.TRACE) ? span(caller, logger, Level.TRACE, format, toArgs(formatArg)) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final CallerInfo caller, final Logger logger, final String format, final boolean formatArg) {
+		return isEnabled(caller, logger, Level.TRACE) ? span(caller, logger, Level.TRACE, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final CallerInfo caller, final Logger logger, final String format, final char formatArg) {
+		return isEnabled(caller, logger, Level.TRACE) ? span(caller, logger, Level.TRACE, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final CallerInfo caller, final Logger logger, final String format, final int formatArg) {
+		return isEnabled(caller, logger, Level.TRACE) ? span(caller, logger, Level.TRACE, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final CallerInfo caller, final Logger logger, final String format, final long formatArg) {
+		return isEnabled(caller, logger, Level.TRACE) ? span(caller, logger, Level.TRACE, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final CallerInfo caller, final Logger logger, final String format, final float formatArg) {
+		return isEnabled(caller, logger, Level.TRACE) ? span(caller, logger, Level.TRACE, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final CallerInfo caller, final Logger logger, final String format, final double formatArg) {
+		return isEnabled(caller, logger, Level.TRACE) ? span(caller, logger, Level.TRACE, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with two arguments at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg1 first message format arg
+	 * @param formatArg2 second message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final CallerInfo caller, final Logger logger, final String format, final Object formatArg1, final Object formatArg2) {
+		return isEnabled(caller, logger, Level.TRACE) ? span(caller, logger, Level.TRACE, format, new Object[]{formatArg1, formatArg2}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message with three arguments at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg1 first message format arg
+	 * @param formatArg2 second message format arg
+	 * @param formatArg3 third message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final CallerInfo caller, final Logger logger, final String format, final Object formatArg1, final Object formatArg2, final Object formatArg3) {
+		return isEnabled(caller, logger, Level.TRACE) ? span(caller, logger, Level.TRACE, format, new Object[]{formatArg1, formatArg2, formatArg3}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "trace" log level and extra message at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgs message format args
+	 * @return NkTrace
+	 */
+	public static NkTrace trace(final CallerInfo caller, final Logger logger, final String format, final Object... formatArgs) {
+		return create(caller, logger, Level.TRACE, format, formatArgs);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final CallerInfo caller, final Logger logger) {
+		return create(caller, logger, Level.DEBUG, "", NO_ARGS);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message without arguments at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final CallerInfo caller, final Logger logger, final String format) {
+		return create(caller, logger, Level.DEBUG, format, NO_ARGS);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final CallerInfo caller, final Logger logger, final String format, final Object formatArg) {
+		return isEnabled(caller, logger, Level.DEBUG) ? span(caller, logger, Level.DEBUG, format, toArgs(formatArg)) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final CallerInfo caller, final Logger logger, final String format, final boolean formatArg) {
+		return isEnabled(caller, logger, Level.DEBUG) ? span(caller, logger, Level.DEBUG, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final CallerInfo caller, final Logger logger, final String format, final char formatArg) {
+		return isEnabled(caller, logger, Level.DEBUG) ? span(caller, logger, Level.DEBUG, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final CallerInfo caller, final Logger logger, final String format, final int formatArg) {
+		return isEnabled(caller, logger, Level.DEBUG) ? span(caller, logger, Level.DEBUG, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final CallerInfo caller, final Logger logger, final String format, final long formatArg) {
+		return isEnabled(caller, logger, Level.DEBUG) ? span(caller, logger, Level.DEBUG, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final CallerInfo caller, final Logger logger, final String format, final float formatArg) {
+		return isEnabled(caller, logger, Level.DEBUG) ? span(caller, logger, Level.DEBUG, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final CallerInfo caller, final Logger logger, final String format, final double formatArg) {
+		return isEnabled(caller, logger, Level.DEBUG) ? span(caller, logger, Level.DEBUG, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with two arguments at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg1 first message format arg
+	 * @param formatArg2 second message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final CallerInfo caller, final Logger logger, final String format, final Object formatArg1, final Object formatArg2) {
+		return isEnabled(caller, logger, Level.DEBUG) ? span(caller, logger, Level.DEBUG, format, new Object[]{formatArg1, formatArg2}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message with three arguments at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg1 first message format arg
+	 * @param formatArg2 second message format arg
+	 * @param formatArg3 third message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final CallerInfo caller, final Logger logger, final String format, final Object formatArg1, final Object formatArg2, final Object formatArg3) {
+		return isEnabled(caller, logger, Level.DEBUG) ? span(caller, logger, Level.DEBUG, format, new Object[]{formatArg1, formatArg2, formatArg3}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "debug" log level and extra message at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgs message format args
+	 * @return NkTrace
+	 */
+	public static NkTrace debug(final CallerInfo caller, final Logger logger, final String format, final Object... formatArgs) {
+		return create(caller, logger, Level.DEBUG, format, formatArgs);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final CallerInfo caller, final Logger logger) {
+		return create(caller, logger, Level.INFO, "", NO_ARGS);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message without arguments at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final CallerInfo caller, final Logger logger, final String format) {
+		return create(caller, logger, Level.INFO, format, NO_ARGS);
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final CallerInfo caller, final Logger logger, final String format, final Object formatArg) {
+		return isEnabled(caller, logger, Level.INFO) ? span(caller, logger, Level.INFO, format, toArgs(formatArg)) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final CallerInfo caller, final Logger logger, final String format, final boolean formatArg) {
+		return isEnabled(caller, logger, Level.INFO) ? span(caller, logger, Level.INFO, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final CallerInfo caller, final Logger logger, final String format, final char formatArg) {
+		return isEnabled(caller, logger, Level.INFO) ? span(caller, logger, Level.INFO, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final CallerInfo caller, final Logger logger, final String format, final int formatArg) {
+		return isEnabled(caller, logger, Level.INFO) ? span(caller, logger, Level.INFO, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final CallerInfo caller, final Logger logger, final String format, final long formatArg) {
+		return isEnabled(caller, logger, Level.INFO) ? span(caller, logger, Level.INFO, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final CallerInfo caller, final Logger logger, final String format, final float formatArg) {
+		return isEnabled(caller, logger, Level.INFO) ? span(caller, logger, Level.INFO, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with a single primitive argument at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg message format arg. Boxed only if the span is created
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final CallerInfo caller, final Logger logger, final String format, final double formatArg) {
+		return isEnabled(caller, logger, Level.INFO) ? span(caller, logger, Level.INFO, format, new Object[]{formatArg}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with two arguments at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg1 first message format arg
+	 * @param formatArg2 second message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final CallerInfo caller, final Logger logger, final String format, final Object formatArg1, final Object formatArg2) {
+		return isEnabled(caller, logger, Level.INFO) ? span(caller, logger, Level.INFO, format, new Object[]{formatArg1, formatArg2}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message with three arguments at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArg1 first message format arg
+	 * @param formatArg2 second message format arg
+	 * @param formatArg3 third message format arg
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final CallerInfo caller, final Logger logger, final String format, final Object formatArg1, final Object formatArg2, final Object formatArg3) {
+		return isEnabled(caller, logger, Level.INFO) ? span(caller, logger, Level.INFO, format, new Object[]{formatArg1, formatArg2, formatArg3}) : DISABLED;
+	}
+
+	/**
+	 * Convenience method that creates NkTrace with "info" log level and extra message at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgs message format args
+	 * @return NkTrace
+	 */
+	public static NkTrace info(final CallerInfo caller, final Logger logger, final String format, final Object... formatArgs) {
+		return create(caller, logger, Level.INFO, format, formatArgs);
+	}
+
+	/**
+	 * Guard for "trace" spans with several primitive arguments, which would be boxed before the level is checked.
+	 * See {@link #disabled()}
+	 * @param logger logger
+	 * @return Whether trace(logger, ...) may return an active span
+	 */
+	public static boolean isTraceEnabled(final Logger logger) {
+		return isEnabled(null, logger, Level.TRACE);
+	}
+
+	/**
+	 * Same as {@link #isTraceEnabled(Logger)} for spans at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @return Whether trace(caller, logger, ...) may return an active span
+	 */
+	public static boolean isTraceEnabled(final CallerInfo caller, final Logger logger) {
+		return isEnabled(caller, logger, Level.TRACE);
+	}
+
+	/**
+	 * Guard for "debug" spans with several primitive arguments, which would be boxed before the level is checked.
+	 * See {@link #disabled()}
+	 * @param logger logger
+	 * @return Whether debug(logger, ...) may return an active span
+	 */
+	public static boolean isDebugEnabled(final Logger logger) {
+		return isEnabled(null, logger, Level.DEBUG);
+	}
+
+	/**
+	 * Same as {@link #isDebugEnabled(Logger)} for spans at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @return Whether debug(caller, logger, ...) may return an active span
+	 */
+	public static boolean isDebugEnabled(final CallerInfo caller, final Logger logger) {
+		return isEnabled(caller, logger, Level.DEBUG);
+	}
+
+	/**
+	 * Guard for "info" spans with several primitive arguments, which would be boxed before the level is checked.
+	 * See {@link #disabled()}
+	 * @param logger logger
+	 * @return Whether info(logger, ...) may return an active span
+	 */
+	public static boolean isInfoEnabled(final Logger logger) {
+		return isEnabled(null, logger, Level.INFO);
+	}
+
+	/**
+	 * Same as {@link #isInfoEnabled(Logger)} for spans at explicitly provided location
+	 * @param caller location of the trace
+	 * @param logger logger
+	 * @return Whether info(caller, logger, ...) may return an active span
+	 */
+	public static boolean isInfoEnabled(final CallerInfo caller, final Logger logger) {
+		return isEnabled(caller, logger, Level.INFO);
+	}
+
+	/**
+	 * Shared no-op tracer, for use with the guards (e.g. {@link #isDebugEnabled(Logger)}):
+	 * try(final NkTrace trace = NkTrace.isDebugEnabled(logger) ? NkTrace.debug(logger, "{} {}", a, b) : NkTrace.disabled())
+	 * @return NkTrace which doesn't do anything
+	 */
+	public static NkTrace disabled() {
+		return DISABLED;
+	}
+
+	/**
+	 * @return Whether a span of given level may be active. If not because of the level, it's counted in {@link NkTraceStats} like a disabled span.
+	 * Spans at explicitly provided location which is switched off (see {@link NkTraceSwitches}) aren't active either
+	 */
+	static boolean isEnabled(final CallerInfo caller, final Logger logger, final Level level) {
+		if(!LoggingUtils.canLog(logger, level)) {
+			if(capturesDisabledLevels()) {
+				return true;
+			}
+			NkTraceStats.notLogged(caller);
+			return false;
+		}
+		// Other spans are switched off only after their caller is found
+		return caller == null || !NkTraceSwitches.isOff(caller) || capturesDisabledLevels();
+	}
+
+	/**
+	 * Creates NkTrace if the level is enabled.
+	 * Otherwise, returns shared {@link #DISABLED} tracer without allocating anything.
+	 * Factories with fixed arity do the same, but build the arguments only after {@link #isEnabled}.
+	 */
+	private static NkTrace create(final CallerInfo caller, final Logger logger, final Level level, final String format, final Object[] formatArgs) {
+		return isEnabled(caller, logger, level) ? span(caller, logger, level, format, formatArgs) : DISABLED;
+	}
+
+	/**
+	 * Creates NkTrace which passed {@link #isEnabled}, unless it's too deep (see {@link NkTraceDepth#maxDepth})
+	 */
+	private static NkTrace span(final CallerInfo caller, final Logger logger, final Level level, final String format, final Object[] formatArgs) {
+		final boolean canLog = shouldLogEnabled(caller, logger, level);
+		return canLog || capturesDisabledLevels() ? new NkTrace(DEFAULT_FQCN, caller, logger, level, canLog, format, formatArgs) : DISABLED;
+	}
+
+	/**
+	 * @return Whether the span should be logged: its level is enabled and it's not too deep (see {@link NkTraceDepth#maxDepth})
+	 */
+	static boolean shouldLog(final Logger logger, final Level level) {
+		return LoggingUtils.canLog(logger, level) && NkTraceDepth.admits();
+	}
+
+	/**
+	 * Same as {@link #shouldLog}, but also counts the span in {@link NkTraceStats} if it won't be logged
+	 */
+	private static boolean shouldLogOrCount(final CallerInfo caller, final Logger logger, final Level level) {
+		if(!LoggingUtils.canLog(logger, level)) {
+			NkTraceStats.notLogged(caller);
+			return false;
+		}
+		return NkTraceDepth.admits();
+	}
+
+	/**
+	 * Same as {@link #shouldLogOrCount} for a span which passed {@link #isEnabled}, so its level has to be checked again
+	 * only if spans of disabled levels are created too
+	 */
+	static boolean shouldLogEnabled(final CallerInfo caller, final Logger logger, final Level level) {
+		return capturesDisabledLevels() ? shouldLogOrCount(caller, logger, level) : NkTraceDepth.admits();
+	}
+
+	/**
+	 * @return Whether spans of disabled levels have to be created anyway (see {@link NkTraceFlightRecorder}, {@link NkTraceProfiler})
+	 */
+	static boolean capturesDisabledLevels() {
+		return NkTraceFlightRecorder.enabled || NkTraceProfiler.enabled;
+	}
+
+	static Object[] toArgs(final Object formatArg) {
+		// Before single-argument overloads existed, arrays were passed as varargs.
+		// Let's keep it that way
+		return formatArg instanceof Object[] ? (Object[]) formatArg : new Object[]{formatArg};
 	}
 }
@@ -0,0 +1,272 @@
+package net.kawinski.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.spi.LocationAwareLogger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous mode for NkTrace.
+ *
+ * When enabled, tracing threads don't format nor write the "entry"/"exit" logs. They only capture the raw parts
+ * (call site, level, depth, time, format and arguments) into a bounded lock-free ring buffer.
+ * A single background thread ("NkTrace-async") builds the messages and passes them to SLF4J
+ * with the original indentation and marker. Arguments are formatted ({@link Object#toString()}) on that thread too,
+ * so they must be safe to read after the span ended.
+ *
+ * When the buffer is full, {@link #backPressure} decides what happens.
+ * While there's nothing to write, the background thread parks for exponentially longer, up to 4ms,
+ * so an idle application doesn't keep waking it up.
+ *
+ * Limitations:
+ * - Loggers see the background thread, so %thread, timestamps and MDC (except the indent) are those of the background thread.
+ * - NkTrace logs may get reordered with regular logs written directly by the tracing thread.
+ */
+public final class NkTraceAsync {
+    /**
+     * What to do with a new log when the buffer is full
+     */
+    public enum BackPressure {
+        /**
+         * Wait until the background thread makes some space. Nothing is lost
+         */
+        BLOCK,
+        /**
+         * Drop the new log
+         */
+        DROP,
+        /**
+         * Once the buffer is 3/4 full, keep only every {@link #sampleRate}-th log. Drop the new log if it's full
+         */
+        SAMPLE,
+    }
+
+    /**
+     * Whether the asynchronous mode is enabled. Can be enabled with "NKTRACE_ASYNC" property.
+     */
+    public static boolean enabled = Boolean.parseBoolean(System.getProperty("NKTRACE_ASYNC", "false"));
+
+    /**
+     * Can be set with "NKTRACE_ASYNC_BACK_PRESSURE" property (block, drop or sample). Default: block
+     */
+    public static BackPressure backPressure = parseBackPressure(System.getProperty("NKTRACE_ASYNC_BACK_PRESSURE", "block"));
+
+    /**
+     * See {@link BackPressure#SAMPLE}. Can be set with "NKTRACE_ASYNC_SAMPLE_RATE" property. Default: 10
+     */
+    public static int sampleRate = Integer.getInteger("NKTRACE_ASYNC_SAMPLE_RATE", 10);
+
+    /**
+     * Number of logs the buffer can hold. Read once, when the background thread starts.
+     * Can be set with "NKTRACE_ASYNC_CAPACITY" property. Default: 8192
+     */
+    static final int CAPACITY = Integer.getInteger("NKTRACE_ASYNC_CAPACITY", 8192);
+
+    // Waiting threads first yield, then park for exponentially longer, up to the max
+    private static final int YIELDS = 16;
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(4);
+    private static final long MAX_BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong sampled = new AtomicLong();
+    private static volatile long maxLagNanos;
+
+    private NkTraceAsync() {
+    }
+
+    /**
+     * @return Number of logs lost because the buffer was full (or the background thread failed to write them)
+     */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The longest time a log waited in the buffer
+     */
+    public static long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    /**
+     * Waits until all logs published so far are written.
+     *
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return Whether all logs were written before the timeout
+     */
+    public static boolean flush(final long timeout, final TimeUnit unit) {
+        final AsyncRing ring = Worker.RING;
+        final long target = ring.claimedPosition();
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int attempt = 0;
+        while(ring.consumedPosition() < target) {
+            if(System.nanoTime() - deadline >= 0 || !Worker.THREAD.isAlive()) {
+                return false;
+            }
+            // Don't wait for the idle background thread to wake up by itself
+            LockSupport.unpark(Worker.THREAD);
+            backOff(attempt++, MAX_BLOCKED_PARK_NANOS);
+        }
+        return true;
+    }
+
+    static void publishEntry(final LocationAwareLogger logger, final String fqcn, final int level, final CallerInfo caller,
+                             final String format, final Object[] args) {
+        final AsyncRing.Event event = claim(logger, fqcn, level, args);
+        if(event == null) {
+            return;
+        }
+        event.kind = AsyncRing.ENTRY;
+        event.caller = caller;
+        event.format = format;
+        Worker.RING.publish(event);
+    }
+
+    static void publishExit(final LocationAwareLogger logger, final String fqcn, final int level, final CallerInfo caller,
+                            final long elapsedNanos, final Object returnValue, final String format, final Object[] args) {
+        final AsyncRing.Event event = claim(logger, fqcn, level, args);
+        if(event == null) {
+            return;
+        }
+        event.kind = AsyncRing.EXIT;
+        event.caller = caller;
+        event.elapsedNanos = elapsedNanos;
+        event.returnValue = returnValue;
+        event.format = format;
+        Worker.RING.publish(event);
+    }
+
+    /**
+     * Publishes a log whose final format is already known (e.g. replayed by {@link NkTraceSlowSpans})
+     */
+    static void publishFormatted(final LocationAwareLogger logger, final Marker marker, final String fqcn, final int level,
+                                 final String format, final Object[] args, final int depth) {
+        final AsyncRing.Event event = claim(logger, fqcn, level, args);
+        if(event == null) {
+            return;
+        }
+        event.kind = AsyncRing.FORMATTED;
+        event.marker = marker;
+        event.format = format;
+        event.depth = depth;
+        Worker.RING.publish(event);
+    }
+
+    private static AsyncRing.Event claim(final LocationAwareLogger logger, final String fqcn, final int level, final Object[] args) {
+        final AsyncRing ring = Worker.RING;
+        AsyncRing.Event event;
+        switch(backPressure) {
+            case BLOCK:
+                int attempt = 0;
+                while((event = ring.claim()) == null) {
+                    if(Thread.currentThread() == Worker.THREAD || !Worker.THREAD.isAlive()) {
+                        // Waiting for ourselves (e.g. toString() of an argument is traced) would never end
+                        dropped.incrementAndGet();
+                        return null;
+                    }
+                    if(attempt == 0) {
+                        LockSupport.unpark(Worker.THREAD);
+                    }
+                    backOff(attempt++, MAX_BLOCKED_PARK_NANOS);
+                }
+                break;
+            default:
+                if(backPressure == BackPressure.SAMPLE && ring.size() >= ring.capacity() / 4 * 3
+                        && sampled.getAndIncrement() % Math.max(sampleRate, 1) != 0) {
+                    dropped.incrementAndGet();
+                    return null;
+                }
+                event = ring.claim();
+                if(event == null) {
+                    dropped.incrementAndGet();
+                    return null;
+                }
+        }
+        event.logger = logger;
+        event.fqcn = fqcn;
+        event.level = level;
+        event.args = args;
+        event.depth = NkTraceIndent.getIndentLevel();
+        event.nanoTime = System.nanoTime();
+        return event;
+    }
+
+    private static void write(final AsyncRing.Event event) {
+        NkTraceIndent.setEventIndentLevel(event.depth);
+        switch(event.kind) {
+            case AsyncRing.ENTRY:
+                SpanPipeline.writeEntry(event.logger, event.fqcn, event.level, event.caller, event.format, event.args);
+                break;
+            case AsyncRing.EXIT:
+                SpanPipeline.writeExit(event.logger, event.fqcn, event.level, event.caller, event.elapsedNanos, event.returnValue, event.format, event.args);
+                break;
+            default:
+                event.logger.log(event.marker, event.fqcn, event.level, event.format, event.args, null);
+        }
+        final long lag = System.nanoTime() - event.nanoTime;
+        if(lag > maxLagNanos) {
+            maxLagNanos = lag;
+        }
+    }
+
+    private static void run() {
+        final AsyncRing ring = Worker.RING;
+        int idleAttempt = 0;
+        while(true) {
+            try {
+                if(ring.consume(NkTraceAsync::write)) {
+                    idleAttempt = 0;
+                } else {
+                    backOff(idleAttempt++, MAX_IDLE_PARK_NANOS);
+                }
+            } catch(final RuntimeException e) {
+                // The logging backend failed. Let's not kill the thread because of a single log
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Waits a bit before the next attempt: yields the CPU a few times, then parks for exponentially longer.
+     *
+     * @param attempt number of attempts made so far
+     * @param maxParkNanos longest park
+     */
+    private static void backOff(final int attempt, final long maxParkNanos) {
+        if(attempt < YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << Math.min(attempt - YIELDS, 20), maxParkNanos));
+        }
+    }
+
+    private static BackPressure parseBackPressure(final String name) {
+        for(final BackPressure value : BackPressure.values()) {
+            if(value.name().equalsIgnoreCase(name)) {
+                return value;
+            }
+        }
+        // Unknown name. Let's not fail in the logger code and just use the default.
+        return BackPressure.BLOCK;
+    }
+
+    /**
+     * Started on first use, so applications which don't enable the asynchronous mode don't get an extra thread.
+     */
+    private static final class Worker {
+        private static final AsyncRing RING = new AsyncRing(CAPACITY);
+        private static final Thread THREAD = startThread();
+
+        private static Thread startThread() {
+            final Thread thread = new Thread(NkTraceAsync::run, "NkTrace-async");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1, TimeUnit.SECONDS), "NkTrace-async-shutdown"));
+            return thread;
+        }
+    }
+}
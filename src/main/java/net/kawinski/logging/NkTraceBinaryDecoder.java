@@ -0,0 +1,309 @@
+package net.kawinski.logging;
+
+import org.slf4j.event.Level;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns a file written by {@link NkTraceBinarySink} back into text, e.g.:
+ * 12:00:00.000 [main] DEBUG &gt;&gt; Foo.bar:12 id=5
+ * 12:00:00.001 [main] DEBUG &lt;&lt; Foo.bar:12 took 1.234ms returning(42)
+ *
+ * Logs are grouped by thread. Durations are computed from the timestamps of the "entry" and "exit" records,
+ * so they're present even if timing (see {@link NkTraceTimings}) was disabled.
+ *
+ * Usage: java -cp nktrace.jar:slf4j-api.jar net.kawinski.logging.NkTraceBinaryDecoder trace.bin
+ */
+public final class NkTraceBinaryDecoder {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final ByteBuffer file;
+    private final Map<Integer, CallerInfo> sites = new HashMap<>();
+    private final Map<Integer, String> formats = new HashMap<>();
+
+    private NkTraceBinaryDecoder(final ByteBuffer file) {
+        this.file = file;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if(args.length != 1) {
+            System.err.println("Usage: NkTraceBinaryDecoder <file>");
+            System.exit(1);
+        }
+        final Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        decode(Paths.get(args[0]), out);
+        out.flush();
+    }
+
+    /**
+     * @param file file written by {@link NkTraceBinarySink}
+     * @param out where to write the text. One line per record
+     * @throws IOException if the file can't be read or isn't a NkTrace binary file
+     */
+    public static void decode(final Path file, final Appendable out) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.BIG_ENDIAN);
+            new NkTraceBinaryDecoder(mapped).decode(out);
+        }
+    }
+
+    private void decode(final Appendable out) throws IOException {
+        if(file.limit() < NkTraceBinarySink.FILE_HEADER_SIZE || file.getInt(0) != NkTraceBinarySink.MAGIC) {
+            throw new IOException("Not a NkTrace binary file");
+        }
+        if(file.getInt(4) != NkTraceBinarySink.VERSION) {
+            throw new IOException("Unsupported NkTrace binary file version: " + file.getInt(4));
+        }
+        final int regionSize = file.getInt(8);
+        final int regionCount = file.getInt(12);
+        final long startMillis = file.getLong(16);
+        final long startNanos = file.getLong(24);
+
+        // Definitions may be in any region, so let's read them all first
+        final Map<Long, List<ByteBuffer>> regionsByThread = new LinkedHashMap<>();
+        for(int i = 0; i < regionCount; ++i) {
+            final int offset = NkTraceBinarySink.FILE_HEADER_SIZE + i * regionSize;
+            if(offset + regionSize > file.limit()) {
+                break;
+            }
+            final ByteBuffer region = region(offset, regionSize);
+            if(region == null) {
+                continue;
+            }
+            regionsByThread.computeIfAbsent(region.getLong(0), id -> new ArrayList<>()).add(region);
+            readRecords(region, null, null);
+        }
+
+        for(final List<ByteBuffer> regions : regionsByThread.values()) {
+            final ThreadState thread = new ThreadState(threadName(regions.get(0)), startMillis, startNanos);
+            for(final ByteBuffer region : regions) {
+                thread.lastNanos = region.getLong(12);
+                readRecords(region.duplicate(), thread, out);
+            }
+        }
+    }
+
+    /**
+     * @return Used part of the region or null if it was never claimed
+     */
+    private ByteBuffer region(final int offset, final int regionSize) {
+        final int used = file.getInt(offset + 8);
+        if(used < NkTraceBinarySink.REGION_HEADER_SIZE || used > regionSize) {
+            return null;
+        }
+        final ByteBuffer view = file.duplicate();
+        view.position(offset).limit(offset + used);
+        final ByteBuffer region = view.slice();
+        region.position(NkTraceBinarySink.REGION_HEADER_SIZE);
+        return region;
+    }
+
+    private static String threadName(final ByteBuffer region) {
+        final byte[] name = new byte[region.get(20)];
+        for(int i = 0; i < name.length; ++i) {
+            name[i] = region.get(21 + i);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads records of the region. Collects definitions if thread is null or writes the logs otherwise.
+     */
+    private void readRecords(final ByteBuffer region, final ThreadState thread, final Appendable out) throws IOException {
+        region.position(NkTraceBinarySink.REGION_HEADER_SIZE);
+        while(region.hasRemaining()) {
+            final byte type = region.get();
+            switch(type) {
+                case NkTraceBinarySink.SITE: {
+                    final int id = getVarint(region);
+                    final String className = getString(region);
+                    final String methodName = getString(region);
+                    final int lineNumber = getVarint(region);
+                    if(thread == null) {
+                        sites.put(id, new CallerInfo(className, methodName, lineNumber));
+                    }
+                    break;
+                }
+                case NkTraceBinarySink.FORMAT: {
+                    final int id = getVarint(region);
+                    final String format = getString(region);
+                    if(thread == null) {
+                        formats.put(id, format);
+                    }
+                    break;
+                }
+                case NkTraceBinarySink.ENTRY:
+                case NkTraceBinarySink.EXIT:
+                    readSpanRecord(region, type, thread, out);
+                    break;
+                default:
+                    throw new IOException("Corrupted NkTrace binary file. Unknown record type: " + type);
+            }
+        }
+    }
+
+    private void readSpanRecord(final ByteBuffer region, final byte type, final ThreadState thread, final Appendable out) throws IOException {
+        final int siteId = getVarint(region);
+        final int level = region.get();
+        final int depth = getVarint(region);
+        final long delta = getVarlong(region);
+        final int formatId = getVarint(region);
+        final boolean returning = type == NkTraceBinarySink.EXIT && region.get() != 0;
+        final Object returnValue = returning ? getValue(region) : null;
+        final Object[] args = new Object[getVarint(region)];
+        for(int i = 0; i < args.length; ++i) {
+            args[i] = getValue(region);
+        }
+        if(thread == null) {
+            return;
+        }
+
+        thread.lastNanos += delta;
+        final CallerInfo caller = sites.computeIfAbsent(siteId, id -> new CallerInfo("site#" + id, "unknown", 0));
+        final String format = formats.computeIfAbsent(formatId, id -> "format#" + id);
+        final String message;
+        if(type == NkTraceBinarySink.ENTRY) {
+            thread.enter(depth, thread.lastNanos);
+            message = MessageFormatter.arrayFormat(MessageTemplate.entry(caller, format, true), args).getMessage();
+        } else {
+            final long elapsed = thread.exit(depth, thread.lastNanos);
+            final boolean timed = elapsed != NkTraceTimings.NOT_TIMED;
+            Object[] finalArgs = args;
+            if(returning) {
+                finalArgs = LoggingUtils.prepend(finalArgs, returnValue);
+            }
+            if(timed) {
+                finalArgs = LoggingUtils.prepend(finalArgs, NkTraceTimings.formatNanos(elapsed));
+            }
+            message = MessageFormatter.arrayFormat(MessageTemplate.exit(caller, timed, returning, format, true), finalArgs).getMessage();
+        }
+
+        out.append(TIME_FORMAT.format(thread.timeOf(thread.lastNanos)))
+                .append(" [").append(thread.name).append("] ")
+                .append(String.format("%5s", levelName(level))).append(' ')
+                .append(NkTraceIndent.getIndent(depth))
+                .append(message)
+                .append(System.lineSeparator());
+    }
+
+    private static String levelName(final int level) {
+        for(final Level value : Level.values()) {
+            if(value.toInt() == level) {
+                return value.name();
+            }
+        }
+        return Integer.toString(level);
+    }
+
+    private static Object getValue(final ByteBuffer buffer) throws IOException {
+        final byte tag = buffer.get();
+        switch(tag) {
+            case NkTraceBinarySink.NULL:
+                return null;
+            case NkTraceBinarySink.INT:
+                return (int) unZigZag(getVarlong(buffer));
+            case NkTraceBinarySink.LONG:
+                return unZigZag(getVarlong(buffer));
+            case NkTraceBinarySink.DOUBLE:
+                return buffer.getDouble();
+            case NkTraceBinarySink.FLOAT:
+                return buffer.getFloat();
+            case NkTraceBinarySink.BOOLEAN:
+                return buffer.get() != 0;
+            case NkTraceBinarySink.CHAR:
+                return buffer.getChar();
+            case NkTraceBinarySink.STRING:
+                return getString(buffer);
+            default:
+                throw new IOException("Corrupted NkTrace binary file. Unknown value type: " + tag);
+        }
+    }
+
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static int getVarint(final ByteBuffer buffer) {
+        return (int) getVarlong(buffer);
+    }
+
+    static long getVarlong(final ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while((b & 0x80) != 0);
+        return value;
+    }
+
+    private static String getString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[getVarint(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decoding state of a single thread. Start times of the open spans are kept by depth.
+     */
+    private static final class ThreadState {
+        private final String name;
+        private final long startMillis;
+        private final long startNanos;
+        private long lastNanos;
+        private long[] entryNanos = new long[16];
+        private int openSpans;
+
+        private ThreadState(final String name, final long startMillis, final long startNanos) {
+            this.name = name;
+            this.startMillis = startMillis;
+            this.startNanos = startNanos;
+        }
+
+        private void enter(final int depth, final long nanos) {
+            if(depth >= entryNanos.length) {
+                entryNanos = Arrays.copyOf(entryNanos, Math.max(entryNanos.length * 2, depth + 1));
+            }
+            entryNanos[depth] = nanos;
+            openSpans = depth + 1;
+        }
+
+        /**
+         * @return Duration of the span or {@link NkTraceTimings#NOT_TIMED} if its "entry" record is missing
+         */
+        private long exit(final int depth, final long nanos) {
+            if(depth >= openSpans) {
+                return NkTraceTimings.NOT_TIMED;
+            }
+            openSpans = depth;
+            return nanos - entryNanos[depth];
+        }
+
+        private Instant timeOf(final long nanos) {
+            final long sinceStart = nanos - startNanos;
+            return Instant.ofEpochMilli(startMillis).plusNanos(sinceStart);
+        }
+    }
+}
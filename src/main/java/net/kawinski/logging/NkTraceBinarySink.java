@@ -0,0 +1,425 @@
+package net.kawinski.logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes NkTrace spans as compact binary records into a memory-mapped file instead of text logs.
+ *
+ * Nothing is formatted on the hot path. Call sites and formats are dictionary-encoded (written once per file),
+ * arguments are stored as raw values and timestamps as deltas. Use {@link NkTraceBinaryDecoder}
+ * to turn the file back into the usual indented "&gt;&gt;"/"&lt;&lt;" text.
+ *
+ * The file is split into fixed-size regions. Every thread writes to its own region, so writers don't synchronize.
+ * When a region is full, the thread claims a new one. When the file is full, new records are dropped (see {@link #getDroppedCount()}).
+ * Records are in the page cache as soon as they're written, so they survive a crash of the JVM (but not of the OS).
+ *
+ * Layout (big endian):
+ * - File header ({@link #FILE_HEADER_SIZE} bytes): magic, version, region size, region count, epoch millis and nanoTime at start
+ * - Regions ({@link #REGION_HEADER_SIZE} bytes of header: thread id, used bytes, base nanoTime, thread name; then records)
+ * - Record: type, then for {@link #ENTRY}/{@link #EXIT}: site id, level, depth, nanoTime delta, format id, [returned value], args.
+ *   Numbers are varints. Values are tagged with their type.
+ *
+ * Usage:
+ * try(NkTraceBinarySink sink = NkTraceBinarySink.open(path, 64 * 1024 * 1024)) {
+ *     NkTraceBinarySink.install(sink);
+ *     ...
+ * }
+ */
+public final class NkTraceBinarySink implements Closeable {
+    static final int MAGIC = 0x4E4B5442; // "NKTB"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 32;
+    static final int REGION_HEADER_SIZE = 64;
+    static final int MAX_THREAD_NAME_BYTES = REGION_HEADER_SIZE - 21;
+
+    /**
+     * Default size of a region written by a single thread
+     */
+    public static final int DEFAULT_REGION_SIZE = 1024 * 1024;
+
+    // Record types
+    static final byte ENTRY = 1;
+    static final byte EXIT = 2;
+    static final byte SITE = 3;
+    static final byte FORMAT = 4;
+
+    // Value tags
+    static final byte NULL = 0;
+    static final byte INT = 1;
+    static final byte LONG = 2;
+    static final byte DOUBLE = 3;
+    static final byte FLOAT = 4;
+    static final byte BOOLEAN = 5;
+    static final byte CHAR = 6;
+    static final byte STRING = 7;
+
+    /**
+     * Sink used by NkTrace. Null if none is installed
+     */
+    static volatile NkTraceBinarySink active;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final int regionSize;
+    private final int regionCount;
+    private final AtomicInteger nextRegion = new AtomicInteger();
+    private final AtomicInteger nextSiteId = new AtomicInteger();
+    private final AtomicInteger nextFormatId = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ThreadLocal<Writer> writers = ThreadLocal.withInitial(Writer::new);
+    // Every thread remembers its last format, so repeated spans usually don't even look it up
+    private final ConcurrentHashMap<String, Integer> formatIds = new ConcurrentHashMap<>();
+
+    private NkTraceBinarySink(final FileChannel channel, final MappedByteBuffer mapped, final int regionSize, final int regionCount) {
+        this.channel = channel;
+        this.mapped = mapped;
+        this.regionSize = regionSize;
+        this.regionCount = regionCount;
+    }
+
+    /**
+     * Creates (or overwrites) the file and maps it into memory.
+     *
+     * @param file file to write to
+     * @param sizeBytes size of the file. Rounded down to whole regions
+     * @return Sink. Not installed yet. See {@link #install(NkTraceBinarySink)}
+     * @throws IOException if the file can't be created or mapped
+     */
+    public static NkTraceBinarySink open(final Path file, final long sizeBytes) throws IOException {
+        return open(file, sizeBytes, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * @param file file to write to
+     * @param sizeBytes size of the file. Rounded down to whole regions
+     * @param regionSize size of a region written by a single thread
+     * @return Sink. Not installed yet. See {@link #install(NkTraceBinarySink)}
+     * @throws IOException if the file can't be created or mapped
+     */
+    public static NkTraceBinarySink open(final Path file, final long sizeBytes, final int regionSize) throws IOException {
+        if(regionSize <= REGION_HEADER_SIZE) {
+            throw new IllegalArgumentException("Region size must be bigger than " + REGION_HEADER_SIZE + " bytes");
+        }
+        final long regions = Math.min((sizeBytes - FILE_HEADER_SIZE) / regionSize, (Integer.MAX_VALUE - FILE_HEADER_SIZE) / regionSize);
+        if(regions <= 0) {
+            throw new IllegalArgumentException("File must be big enough for at least one region of " + regionSize + " bytes");
+        }
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER_SIZE + regions * regionSize);
+            mapped.order(ByteOrder.BIG_ENDIAN);
+            mapped.putInt(0, MAGIC);
+            mapped.putInt(4, VERSION);
+            mapped.putInt(8, regionSize);
+            mapped.putInt(12, (int) regions);
+            mapped.putLong(16, System.currentTimeMillis());
+            mapped.putLong(24, System.nanoTime());
+            return new NkTraceBinarySink(channel, mapped, regionSize, (int) regions);
+        } catch(final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Makes NkTrace write spans to given sink instead of the loggers.
+     *
+     * @param sink sink to use or null to go back to the loggers
+     */
+    public static void install(final NkTraceBinarySink sink) {
+        active = sink;
+    }
+
+    /**
+     * @return Number of records lost because the file was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Uninstalls the sink (if it's installed) and flushes the file to disk.
+     * Spans still being written by other threads at this moment may be lost.
+     */
+    @Override
+    public void close() throws IOException {
+        if(active == this) {
+            active = null;
+        }
+        mapped.force();
+        channel.close();
+    }
+
+    void entry(final CallerInfo caller, final int level, final int depth, final String format, final Object[] args) {
+        final Writer writer = writers.get();
+        // Ids first. New ones write their definitions using the same scratch buffer
+        final int siteId = siteId(caller, writer);
+        final int formatId = formatId(format, writer);
+        final ByteBuffer record = writer.startRecord(ENTRY, siteId, level, depth, formatId);
+        if(!putArgs(record, args)) {
+            return;
+        }
+        writer.commit();
+    }
+
+    void exit(final CallerInfo caller, final int level, final int depth, final Object returnValue, final String format, final Object[] args) {
+        final Writer writer = writers.get();
+        final int siteId = siteId(caller, writer);
+        final int formatId = formatId(format, writer);
+        final ByteBuffer record = writer.startRecord(EXIT, siteId, level, depth, formatId);
+        try {
+            if(returnValue != null) {
+                record.put((byte) 1);
+                putValue(record, returnValue);
+            } else {
+                record.put((byte) 0);
+            }
+        } catch(final BufferOverflowException e) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if(!putArgs(record, args)) {
+            return;
+        }
+        writer.commit();
+    }
+
+    private int siteId(final CallerInfo caller, final Writer writer) {
+        final CallerInfo site = caller.intern();
+        final SiteState state = site.state();
+        final SiteState.BinarySiteId existing = state.binarySiteId;
+        if(existing != null && existing.sink == this) {
+            return existing.id;
+        }
+        synchronized(state) {
+            final SiteState.BinarySiteId current = state.binarySiteId;
+            if(current != null && current.sink == this) {
+                return current.id;
+            }
+            final int id = nextSiteId.getAndIncrement();
+            try {
+                final ByteBuffer definition = writer.startDefinition(SITE);
+                putVarint(definition, id);
+                putString(definition, site.fullClassName);
+                putString(definition, site.methodName);
+                putVarint(definition, site.lineNumber);
+                writer.commit();
+            } catch(final BufferOverflowException e) {
+                // Absurdly long name. The decoder will show the id instead
+                dropped.incrementAndGet();
+            }
+            state.binarySiteId = new SiteState.BinarySiteId(this, id);
+            return id;
+        }
+    }
+
+    private int formatId(final String format, final Writer writer) {
+        final String nonNullFormat = format != null ? format : "";
+        if(nonNullFormat == writer.lastFormat) {
+            return writer.lastFormatId;
+        }
+        Integer id = formatIds.get(nonNullFormat);
+        if(id == null) {
+            synchronized(formatIds) {
+                id = formatIds.get(nonNullFormat);
+                if(id == null) {
+                    id = nextFormatId.getAndIncrement();
+                    try {
+                        final ByteBuffer definition = writer.startDefinition(FORMAT);
+                        putVarint(definition, id);
+                        putString(definition, nonNullFormat);
+                        writer.commit();
+                    } catch(final BufferOverflowException e) {
+                        // Absurdly long format. The decoder will show the id instead
+                        dropped.incrementAndGet();
+                    }
+                    formatIds.put(nonNullFormat, id);
+                }
+            }
+        }
+        writer.lastFormat = nonNullFormat;
+        writer.lastFormatId = id;
+        return id;
+    }
+
+    /**
+     * @return false if the arguments didn't fit in the record. It's dropped then
+     */
+    private boolean putArgs(final ByteBuffer record, final Object[] args) {
+        final Object[] nonNullArgs = args != null ? args : NkTrace.NO_ARGS;
+        try {
+            putVarint(record, nonNullArgs.length);
+            for(final Object arg : nonNullArgs) {
+                putValue(record, arg);
+            }
+            return true;
+        } catch(final BufferOverflowException e) {
+            dropped.incrementAndGet();
+            return false;
+        }
+    }
+
+    private static void putValue(final ByteBuffer record, final Object value) {
+        final Object unwrapped = value instanceof LazyArg ? ((LazyArg) value).get() : value;
+        if(unwrapped == null) {
+            record.put(NULL);
+        } else if(unwrapped instanceof Integer || unwrapped instanceof Short || unwrapped instanceof Byte) {
+            record.put(INT);
+            putVarlong(record, zigZag(((Number) unwrapped).longValue()));
+        } else if(unwrapped instanceof Long) {
+            record.put(LONG);
+            putVarlong(record, zigZag((Long) unwrapped));
+        } else if(unwrapped instanceof Double) {
+            record.put(DOUBLE);
+            record.putDouble((Double) unwrapped);
+        } else if(unwrapped instanceof Float) {
+            record.put(FLOAT);
+            record.putFloat((Float) unwrapped);
+        } else if(unwrapped instanceof Boolean) {
+            record.put(BOOLEAN);
+            record.put((byte) ((Boolean) unwrapped ? 1 : 0));
+        } else if(unwrapped instanceof Character) {
+            record.put(CHAR);
+            record.putChar((Character) unwrapped);
+        } else {
+            // Not much we can do about arbitrary objects. Let's at least not format the message
+            record.put(STRING);
+            putString(record, unwrapped instanceof Object[] ? Arrays.deepToString((Object[]) unwrapped) : unwrapped.toString());
+        }
+    }
+
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static void putVarint(final ByteBuffer buffer, final int value) {
+        putVarlong(buffer, value & 0xFFFFFFFFL);
+    }
+
+    static void putVarlong(final ByteBuffer buffer, final long value) {
+        long v = value;
+        while((v & ~0x7FL) != 0) {
+            buffer.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buffer.put((byte) v);
+    }
+
+    private static void putString(final ByteBuffer buffer, final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarint(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Records of a single thread. A record is built in a scratch buffer first,
+     * so it's known whether it fits in the current region before anything is written there.
+     *
+     * Timestamps are deltas from the previous record of the thread. Every region stores the time
+     * the deltas of its first record are relative to, so regions can be decoded independently.
+     */
+    private final class Writer {
+        private final ByteBuffer scratch = ByteBuffer.allocate(4096);
+        private ByteBuffer region;
+        private long lastNanos = System.nanoTime();
+        private String lastFormat;
+        private int lastFormatId;
+
+        private ByteBuffer startRecord(final byte type, final int siteId, final int level, final int depth, final int formatId) {
+            final long now = System.nanoTime();
+            scratch.clear();
+            scratch.put(type);
+            putVarint(scratch, siteId);
+            scratch.put((byte) level);
+            putVarint(scratch, depth);
+            putVarlong(scratch, Math.max(0, now - lastNanos));
+            putVarint(scratch, formatId);
+            return scratch;
+        }
+
+        private ByteBuffer startDefinition(final byte type) {
+            scratch.clear();
+            scratch.put(type);
+            return scratch;
+        }
+
+        private void commit() {
+            scratch.flip();
+            if(region == null || region.remaining() < scratch.remaining()) {
+                if(!claimRegion() || region.remaining() < scratch.remaining()) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+            }
+            final byte type = scratch.get(0);
+            region.put(scratch);
+            region.putInt(8, region.position());
+            if(type == ENTRY || type == EXIT) {
+                lastNanos += readDelta();
+            }
+        }
+
+        /**
+         * @return nanoTime delta of the record that was just written
+         */
+        private long readDelta() {
+            scratch.position(1);
+            skipVarint();
+            scratch.get();
+            skipVarint();
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = scratch.get();
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while((b & 0x80) != 0);
+            return delta;
+        }
+
+        private void skipVarint() {
+            while((scratch.get() & 0x80) != 0) {
+                // Continuation byte
+            }
+        }
+
+        private boolean claimRegion() {
+            final int index = nextRegion.getAndIncrement();
+            if(index >= regionCount) {
+                region = null;
+                return false;
+            }
+            final int offset = FILE_HEADER_SIZE + index * regionSize;
+            final ByteBuffer view = mapped.duplicate();
+            view.position(offset).limit(offset + regionSize);
+            region = view.slice();
+            final Thread thread = Thread.currentThread();
+            region.putLong(0, thread.getId());
+            region.putLong(12, lastNanos);
+            final byte[] name = thread.getName().getBytes(StandardCharsets.UTF_8);
+            final int nameLength = Math.min(name.length, MAX_THREAD_NAME_BYTES);
+            region.put(20, (byte) nameLength);
+            for(int i = 0; i < nameLength; ++i) {
+                region.put(21 + i, name[i]);
+            }
+            region.position(REGION_HEADER_SIZE);
+            region.putInt(8, REGION_HEADER_SIZE);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package net.kawinski.logging;
+
+import java.util.Arrays;
+
+/**
+ * Bounds the output of deep and recursive call trees.
+ *
+ * Depth limit ({@link #maxDepth}): spans opened deeper than the limit aren't logged.
+ * They're only counted, before their caller is resolved or anything is formatted.
+ * The "exit" log of the deepest logged span says how many were skipped:
+ * "&lt;&lt; Foo.bar:12 (skipped 120 spans below max depth)"
+ *
+ * Recursion collapsing ({@link #collapseRecursion}): a span opened directly inside a span of the same call site
+ * isn't logged and doesn't indent. The outermost span of the recursion summarizes it in its "exit" log:
+ * "&lt;&lt; Foo.bar:12 (recursed 4096x, max depth 57)"
+ * Max depth counts the nested spans of the call site, including the logged one.
+ * Spans of other call sites opened inside the recursion are logged as usual.
+ *
+ * Regular logs written inside skipped or collapsed spans are still written, with the indentation of the innermost logged span.
+ * Both settings affect only spans opened afterwards.
+ */
+public final class NkTraceDepth {
+    /**
+     * Maximum indentation level at which spans are still logged. Spans opened deeper are skipped.
+     * Can be set with "NKTRACE_MAX_DEPTH" property. Default: 0 (unlimited)
+     */
+    public static int maxDepth = Integer.getInteger("NKTRACE_MAX_DEPTH", 0);
+
+    /**
+     * Whether directly recursive spans of the same call site should be collapsed into a single one.
+     * Can be enabled with "NKTRACE_COLLAPSE_RECURSION" property. Default: false
+     */
+    public static boolean collapseRecursion = Boolean.parseBoolean(System.getProperty("NKTRACE_COLLAPSE_RECURSION", "false"));
+
+    private static final ThreadLocal<Levels> levelsByThread = ThreadLocal.withInitial(Levels::new);
+
+    private NkTraceDepth() {
+    }
+
+    /**
+     * Checked before a span of an enabled level is created. A span which isn't admitted is counted as skipped.
+     *
+     * @return Whether the span may be logged
+     */
+    static boolean admits() {
+        final int limit = maxDepth;
+        if(limit <= 0) {
+            return true;
+        }
+        final int indentLevel = NkTraceIndent.getIndentLevel();
+        if(indentLevel < limit) {
+            return true;
+        }
+        final Levels levels = levelsByThread.get();
+        if(indentLevel - 1 < levels.callers.length && levels.callers[indentLevel - 1] != null) {
+            ++levels.skipped[indentLevel - 1];
+        }
+        return false;
+    }
+
+    /**
+     * Called when a logged span is opened, before the indentation is incremented.
+     *
+     * @return Whether the span directly recurses into the innermost logged span and has to be collapsed.
+     * Collapsed spans aren't logged and have to call {@link #exitCollapsed()} instead of {@link #exit()}
+     */
+    static boolean enter(final CallerInfo caller) {
+        if(maxDepth <= 0 && !collapseRecursion) {
+            return false;
+        }
+        final Levels levels = levelsByThread.get();
+        final int indentLevel = NkTraceIndent.getIndentLevel();
+        if(collapseRecursion && indentLevel > 0 && indentLevel - 1 < levels.callers.length) {
+            final int parent = indentLevel - 1;
+            final CallerInfo parentCaller = levels.callers[parent];
+            //noinspection ObjectEquality Fast path. Call sites are usually constants or interned
+            if(parentCaller != null && (parentCaller == caller || parentCaller.equals(caller))) {
+                ++levels.recursed[parent];
+                final int recursion = ++levels.openRecursion[parent];
+                if(recursion >= levels.maxRecursion[parent]) {
+                    levels.maxRecursion[parent] = recursion + 1;
+                }
+                return true;
+            }
+        }
+        levels.ensureCapacity(indentLevel + 1);
+        levels.callers[indentLevel] = caller;
+        levels.openRecursion[indentLevel] = 0;
+        levels.recursed[indentLevel] = 0;
+        levels.maxRecursion[indentLevel] = 0;
+        levels.skipped[indentLevel] = 0;
+        return false;
+    }
+
+    /**
+     * Called when a collapsed span is closed.
+     */
+    static void exitCollapsed() {
+        final Levels levels = levelsByThread.get();
+        final int parent = NkTraceIndent.getIndentLevel() - 1;
+        if(parent >= 0 && parent < levels.callers.length && levels.openRecursion[parent] > 0) {
+            --levels.openRecursion[parent];
+        }
+    }
+
+    /**
+     * Called when a logged span is closed, after the indentation is decremented.
+     *
+     * @return Summary of the spans collapsed into or skipped below the closed one, e.g. "recursed 4096x, max depth 57".
+     * Null if there were none
+     */
+    static String exit() {
+        if(maxDepth <= 0 && !collapseRecursion) {
+            return null;
+        }
+        final Levels levels = levelsByThread.get();
+        final int indentLevel = NkTraceIndent.getIndentLevel();
+        if(indentLevel >= levels.callers.length || levels.callers[indentLevel] == null) {
+            return null;
+        }
+        levels.callers[indentLevel] = null;
+        final int recursed = levels.recursed[indentLevel];
+        final long skipped = levels.skipped[indentLevel];
+        if(recursed == 0 && skipped == 0) {
+            return null;
+        }
+        final StringBuilder sb = new StringBuilder(64);
+        if(recursed > 0) {
+            sb.append("recursed ").append(recursed).append("x, max depth ").append(levels.maxRecursion[indentLevel]);
+        }
+        if(skipped > 0) {
+            if(sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append("skipped ").append(skipped).append(" spans below max depth");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the summary returned by {@link #exit()} to the "exit" message format.
+     */
+    static String withSummary(final String exitMsgFormat) {
+        return exitMsgFormat == null || exitMsgFormat.isEmpty() ? "({})" : exitMsgFormat + " ({})";
+    }
+
+    /**
+     * Logged spans of a single thread, indexed by their indentation level.
+     */
+    private static final class Levels {
+        private CallerInfo[] callers = new CallerInfo[16];
+        // Collapsed spans currently open inside the logged one
+        private int[] openRecursion = new int[16];
+        private int[] recursed = new int[16];
+        private int[] maxRecursion = new int[16];
+        private long[] skipped = new long[16];
+
+        private void ensureCapacity(final int capacity) {
+            if(capacity <= callers.length) {
+                return;
+            }
+            final int newLength = Math.max(capacity, callers.length * 2);
+            callers = Arrays.copyOf(callers, newLength);
+            openRecursion = Arrays.copyOf(openRecursion, newLength);
+            recursed = Arrays.copyOf(recursed, newLength);
+            maxRecursion = Arrays.copyOf(maxRecursion, newLength);
+            skipped = Arrays.copyOf(skipped, newLength);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package net.kawinski.logging;
+
+import org.slf4j.event.Level;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exports completed NkTrace spans to a {@link NkTraceSpanExporter} (e.g. {@link ChromeTraceExporter}, {@link OtlpJsonExporter}).
+ *
+ * Closing a logged span puts it in a bounded queue. A background thread ("NkTrace-export") takes them out
+ * in batches of up to {@link #batchSize} spans, at least every {@link #flushIntervalMillis}, and passes them to the exporter.
+ * When the queue is full, spans are dropped (see {@link #getDroppedCount()}).
+ *
+ * Usage:
+ * NkTraceExport.start(new ChromeTraceExporter(Paths.get("trace.json")));
+ * ...
+ * NkTraceExport.stop(5, TimeUnit.SECONDS);
+ */
+public final class NkTraceExport {
+    /**
+     * Maximum number of spans passed to the exporter at once. Can be set with "NKTRACE_EXPORT_BATCH_SIZE" property. Default: 512
+     */
+    public static int batchSize = Integer.getInteger("NKTRACE_EXPORT_BATCH_SIZE", 512);
+
+    /**
+     * Maximum time a span waits for its batch. Can be set with "NKTRACE_EXPORT_FLUSH_INTERVAL_MS" property. Default: 1000
+     */
+    public static long flushIntervalMillis = Long.getLong("NKTRACE_EXPORT_FLUSH_INTERVAL_MS", 1000L);
+
+    /**
+     * Number of spans the queue can hold. Read when the export starts.
+     * Can be set with "NKTRACE_EXPORT_QUEUE_SIZE" property. Default: 65536
+     */
+    public static int queueCapacity = Integer.getInteger("NKTRACE_EXPORT_QUEUE_SIZE", 65536);
+
+    // Converts nanoTime to epoch nanos. Precise enough for trace viewers
+    private static final long EPOCH_OFFSET_NANOS = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - System.nanoTime();
+
+    private static final ThreadLocal<NkTraceSpan[]> currentSpans = ThreadLocal.withInitial(() -> new NkTraceSpan[1]);
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private static volatile Pipeline active;
+
+    private NkTraceExport() {
+    }
+
+    /**
+     * Starts exporting spans to given exporter. Stops the previous export first.
+     *
+     * @param exporter exporter
+     */
+    public static synchronized void start(final NkTraceSpanExporter exporter) {
+        stop(flushIntervalMillis * 2, TimeUnit.MILLISECONDS);
+        final Pipeline pipeline = new Pipeline(exporter);
+        active = pipeline;
+        pipeline.thread.start();
+    }
+
+    /**
+     * Stops exporting spans. Spans queued so far are exported and the exporter is closed.
+     *
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return Whether everything was exported and the exporter was closed before the timeout
+     */
+    public static synchronized boolean stop(final long timeout, final TimeUnit unit) {
+        final Pipeline pipeline = active;
+        if(pipeline == null) {
+            return true;
+        }
+        active = null;
+        pipeline.running = false;
+        try {
+            pipeline.thread.join(Math.max(1, unit.toMillis(timeout)));
+        } catch(final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !pipeline.thread.isAlive();
+    }
+
+    /**
+     * @return Whether spans are being exported
+     */
+    public static boolean isEnabled() {
+        return active != null;
+    }
+
+    /**
+     * @return Number of spans lost because the queue was full or the exporter failed
+     */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return Span which is just starting or null if spans aren't exported
+     */
+    static NkTraceSpan begin(final CallerInfo caller, final Level level, final int depth, final String format, final Object[] args) {
+        if(active == null) {
+            return null;
+        }
+        final NkTraceSpan[] current = currentSpans.get();
+        final NkTraceSpan parent = current[0];
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final String traceId = parent != null ? parent.getTraceId() : toHex(random.nextLong(), random.nextLong());
+        final NkTraceSpan span = new NkTraceSpan(traceId, nonZero(random.nextLong()), parent, caller, level, Thread.currentThread(),
+                depth, System.nanoTime() + EPOCH_OFFSET_NANOS, format, args);
+        current[0] = span;
+        return span;
+    }
+
+    /**
+     * Completes the span and queues it for the export.
+     */
+    static void end(final NkTraceSpan span, final Object returnValue) {
+        final long endNanos = System.nanoTime() + EPOCH_OFFSET_NANOS;
+        // If spans were closed out of order, the enclosing span becomes the current one anyway
+        currentSpans.get()[0] = span.parent;
+        span.end(endNanos - span.getStartEpochNanos(), returnValue);
+        final Pipeline pipeline = active;
+        if(pipeline == null || !pipeline.queue.offer(span)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Forgets the span which will never end (see {@link NkTraceFrame}). It isn't exported.
+     */
+    static void abandon(final NkTraceSpan span) {
+        currentSpans.get()[0] = span.parent;
+        span.parent = null;
+    }
+
+    private static long nonZero(final long id) {
+        return id != 0 ? id : 1;
+    }
+
+    private static String toHex(final long high, final long low) {
+        return hex16(high) + hex16(low);
+    }
+
+    /**
+     * @return Id as 16 hex digits
+     */
+    static String hex16(final long id) {
+        final String hex = Long.toHexString(id);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * Queue and background thread of a single exporter.
+     */
+    private static final class Pipeline {
+        private final NkTraceSpanExporter exporter;
+        private final BlockingQueue<NkTraceSpan> queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+        private final Thread thread = new Thread(this::run, "NkTrace-export");
+        private volatile boolean running = true;
+
+        private Pipeline(final NkTraceSpanExporter exporter) {
+            this.exporter = exporter;
+            thread.setDaemon(true);
+        }
+
+        private void run() {
+            final List<NkTraceSpan> batch = new ArrayList<>();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+            try {
+                while(running || !queue.isEmpty()) {
+                    final NkTraceSpan span = running ? queue.poll(Math.min(flushIntervalMillis, 100), TimeUnit.MILLISECONDS) : queue.poll();
+                    if(span != null) {
+                        batch.add(span);
+                        queue.drainTo(batch, Math.max(batchSize, 1) - batch.size());
+                    }
+                    if(batch.size() >= batchSize || (!batch.isEmpty() && (System.nanoTime() - deadline >= 0 || !running))) {
+                        export(batch);
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                    }
+                }
+                export(batch);
+            } catch(final InterruptedException e) {
+                // Someone wants this thread gone. Let's just close the exporter
+            } finally {
+                try {
+                    exporter.close();
+                } catch(final IOException | RuntimeException e) {
+                    // Nothing we can do about it
+                }
+            }
+        }
+
+        private void export(final List<NkTraceSpan> batch) {
+            if(batch.isEmpty()) {
+                return;
+            }
+            try {
+                exporter.export(batch);
+            } catch(final IOException | RuntimeException e) {
+                dropped.addAndGet(batch.size());
+            }
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package net.kawinski.logging;
+
+import org.slf4j.event.Level;
+import org.slf4j.helpers.MessageFormatter;
+import org.slf4j.spi.LocationAwareLogger;
+
+/**
+ * Flight recorder mode for NkTrace.
+ *
+ * When enabled, every span is recorded, including the ones whose level is disabled.
+ * Recording is cheap: call site, level, depth, format and argument references are stored
+ * in a fixed-size per-thread ring buffer ({@link #capacity} events). Nothing is formatted until the recording is dumped.
+ *
+ * The recording of the current thread can be dumped with {@link #dump()}. It's also dumped automatically
+ * (as a single ERROR log of the span's logger) when a span marked with {@link NkTrace#throwing(Throwable)}
+ * (or {@link NkTraceFrame#throwing(Throwable)}) is closed. That's the only trigger: a span left by an exception
+ * which wasn't passed to throwing(...) is closed like any other one, so rethrow errors through it:
+ * <pre>
+ * try(final NkTrace trace = NkTrace.info(logger)) {
+ *     try {
+ *         ...
+ *     } catch(final IOException e) {
+ *         throw trace.throwing(e);
+ *     }
+ * }
+ * </pre>
+ * This way, failures come with TRACE-level context, even though the application runs at INFO.
+ *
+ * Disabled spans don't change the indentation of regular logs. The recording keeps its own depth.
+ *
+ * Limitations:
+ * - Arguments and returned values are kept until their events are overwritten, so they live a bit longer.
+ *   They're formatted when dumped, so mutable objects show their state at that moment.
+ * - Spans whose level is disabled and whose call site isn't passed explicitly (e.g. constants generated by nktrace-processor
+ *   or nktrace-agent) find their caller with a stack walk, like logged spans. That's the main cost of recording them.
+ *   It can be avoided with {@link #resolveCallers}, at the price of recording them as "unknown.unknown:0".
+ */
+public final class NkTraceFlightRecorder {
+    /**
+     * Whether spans should be recorded. Can be enabled with "NKTRACE_FLIGHT_RECORDER" property.
+     * Changing it affects only spans opened afterwards.
+     */
+    public static boolean enabled = Boolean.parseBoolean(System.getProperty("NKTRACE_FLIGHT_RECORDER", "false"));
+
+    /**
+     * Number of events (span entries and exits) kept for every thread. Read when a thread records its first event.
+     * Can be set with "NKTRACE_FLIGHT_RECORDER_SIZE" property. Default: 256
+     */
+    public static int capacity = Integer.getInteger("NKTRACE_FLIGHT_RECORDER_SIZE", 256);
+
+    /**
+     * Whether call sites of spans whose level is disabled should be found by {@link NkTrace#callerResolver}
+     * when they aren't passed explicitly. Makes every such span walk the stack. Otherwise, they're recorded as "unknown.unknown:0".
+     * Can be disabled with "NKTRACE_FLIGHT_RECORDER_RESOLVE" property. Default: true
+     */
+    public static boolean resolveCallers = Boolean.parseBoolean(System.getProperty("NKTRACE_FLIGHT_RECORDER_RESOLVE", "true"));
+
+    private static final ThreadLocal<Recording> recordings = ThreadLocal.withInitial(Recording::new);
+
+    private NkTraceFlightRecorder() {
+    }
+
+    /**
+     * @return Recorded events of the current thread (oldest first) in the usual NkTrace format, one per line
+     */
+    public static String dump() {
+        return recordings.get().format();
+    }
+
+    /**
+     * Forgets all events recorded by the current thread.
+     */
+    public static void clear() {
+        recordings.get().clear();
+    }
+
+    static void recordEntry(final CallerInfo caller, final Level level, final String format, final Object[] args) {
+        final Recording recording = recordings.get();
+        final Event event = recording.next();
+        event.exit = false;
+        event.caller = caller;
+        event.level = level;
+        event.depth = recording.depth++;
+        event.format = format;
+        event.args = args;
+        event.returning = null;
+        event.returningType = NkTrace.RETURNING_OBJECT;
+    }
+
+    static void recordExit(final CallerInfo caller, final Level level, final byte returningType, final long returningBits, final Object returning,
+                           final String format, final Object[] args) {
+        final Recording recording = recordings.get();
+        final Event event = recording.next();
+        recording.depth = Math.max(0, recording.depth - 1);
+        event.exit = true;
+        event.caller = caller;
+        event.level = level;
+        event.depth = recording.depth;
+        event.format = format;
+        event.args = args;
+        event.returning = returning;
+        event.returningType = returningType;
+        event.returningBits = returningBits;
+    }
+
+    /**
+     * Called instead of {@link #recordExit} for spans which were never closed (see {@link NkTraceFrame}).
+     */
+    static void skipExit() {
+        final Recording recording = recordings.get();
+        recording.depth = Math.max(0, recording.depth - 1);
+    }
+
+    /**
+     * Dumps the recording of the current thread, unless it was already dumped because of the same error
+     * (e.g. every span the exception went through was marked with it).
+     */
+    static void dumpOnError(final LocationAwareLogger logger, final String fqcn, final Throwable error) {
+        final Recording recording = recordings.get();
+        if(recording.lastDumpedError == error) {
+            return;
+        }
+        recording.lastDumpedError = error;
+        final String events = recording.format();
+        final String message = "NkTrace flight recorder. Last " + recording.size + " events of thread " + Thread.currentThread().getName()
+                + " before " + error + ":" + System.lineSeparator() + events.substring(0, events.length() - System.lineSeparator().length());
+        try {
+            logger.log(null, fqcn, LocationAwareLogger.ERROR_INT, message, null, null);
+        } catch(final RuntimeException e) {
+            // The logging backend failed. Let's not replace the original error with ours
+        }
+    }
+
+    /**
+     * Events of a single thread. Event holders are reused, so recording doesn't allocate.
+     */
+    private static final class Recording {
+        private final Event[] events = new Event[Math.max(capacity, 1)];
+        // Index of the oldest event
+        private int head;
+        private int size;
+        private int depth;
+        private Throwable lastDumpedError;
+
+        private Recording() {
+            for(int i = 0; i < events.length; ++i) {
+                events[i] = new Event();
+            }
+        }
+
+        private Event next() {
+            final int index = (head + size) % events.length;
+            if(size == events.length) {
+                head = (head + 1) % events.length;
+            } else {
+                ++size;
+            }
+            return events[index];
+        }
+
+        private void clear() {
+            for(final Event event : events) {
+                event.caller = null;
+                event.args = null;
+                event.returning = null;
+            }
+            head = 0;
+            size = 0;
+            lastDumpedError = null;
+        }
+
+        private String format() {
+            final StringBuilder sb = new StringBuilder(size * 64);
+            for(int i = 0; i < size; ++i) {
+                final Event event = events[(head + i) % events.length];
+                try {
+                    event.appendTo(sb);
+                } catch(final RuntimeException e) {
+                    // toString() of some argument failed. The rest of the recording is still useful
+                    sb.append("<failed to format: ").append(e).append('>');
+                }
+                sb.append(System.lineSeparator());
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final class Event {
+        private boolean exit;
+        private CallerInfo caller;
+        private Level level;
+        private int depth;
+        private String format;
+        private Object[] args;
+        private Object returning;
+        private byte returningType;
+        private long returningBits;
+
+        private void appendTo(final StringBuilder sb) {
+            final String levelName = level.name();
+            for(int i = levelName.length(); i < 5; ++i) {
+                sb.append(' ');
+            }
+            sb.append(levelName).append(' ').append(NkTraceIndent.getIndent(depth));
+            if(!exit) {
+                sb.append(MessageFormatter.arrayFormat(MessageTemplate.entry(caller, format, true), args).getMessage());
+                return;
+            }
+            final Object returnValue = NkTrace.unpackReturning(returningType, returningBits, returning);
+            final Object[] finalArgs = returnValue != null ? LoggingUtils.prepend(args, returnValue) : args;
+            sb.append(MessageFormatter.arrayFormat(MessageTemplate.exit(caller, returnValue != null, format, true), finalArgs).getMessage());
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package net.kawinski.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.spi.LocationAwareLogger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sibling folding mode for NkTrace.
+ *
+ * When a method calls a traced helper in a loop, every call produces its own "entry" and "exit" logs.
+ * With folding enabled, consecutive spans of the same call site at the same depth and without nested spans
+ * are folded into a single line with their count, total and max duration:
+ * "&lt;&lt; Foo.bar:12 (folded 1000x, total 12.345ms, max 45.100us) first returning(1), last returning(1000)"
+ *
+ * To find out whether a span has nested spans, its "entry" log is held back until the span ends
+ * or another span is opened inside it. Spans that can't be folded are written exactly as without folding.
+ * Regular logs count as nested output too, but only the logging backend sees them. So spans are folded only when
+ * a backend hook reports them to {@link #nestedOutput()}:
+ * - Logback: net.kawinski.logging.logback.NkTraceFoldTurboFilter from nktrace-logback,
+ * - Log4j2: net.kawinski.logging.log4j2.NkTraceFoldFilter from nktrace-log4j2.
+ * A regular log writes the held back "entry" log before itself, so its span isn't folded, and ends the fold before it.
+ * A fold is written when a span of another call site arrives at its depth, when a span opens inside
+ * the last folded one's sibling, or when the enclosing span ends. Top-level spans have no enclosing span,
+ * so they're written as soon as they end and only spans inside them are folded.
+ *
+ * Limitations:
+ * - Without a backend hook, {@link #enabled} has no effect and every span is written as usual.
+ * - Logs written by other threads (e.g. tasks started inside a span) aren't nested output of the span.
+ * - Held back logs are passed to the logger when written, so their timestamps are those of the write.
+ * - Not applied in the slow-span-only mode ({@link NkTraceSlowSpans}) and with {@link NkTraceBinarySink}.
+ */
+public final class NkTraceFold {
+    /**
+     * Whether sibling spans should be folded. Can be enabled with "NKTRACE_FOLD" property.
+     * Has no effect unless a logging backend hook reports regular logs (see the class description).
+     * Changing it affects only spans opened afterwards.
+     */
+    public static boolean enabled = Boolean.parseBoolean(System.getProperty("NKTRACE_FOLD", "false"));
+
+
+    /**
+     * Whether the folded line should include the first and the last returned value.
+     * Can be disabled with "NKTRACE_FOLD_RETURNING" property. Default: true
+     */
+    public static boolean foldReturning = Boolean.parseBoolean(System.getProperty("NKTRACE_FOLD_RETURNING", "true"));
+
+    private static final String FOLDED = "(folded {}x, total {}, max {})";
+    private static final String FOLDED_RETURNING = FOLDED + " first returning({}), last returning({})";
+
+    // Identifiers of held back "entry" logs are below NkTraceSlowSpans.NOT_DEFERRED, so they aren't mistaken for its own
+    private static final long NO_ENTRY = NkTraceSlowSpans.NOT_DEFERRED;
+    private static final long FIRST_ID = NO_ENTRY - 1;
+
+    private static final ThreadLocal<State> states = ThreadLocal.withInitial(State::new);
+
+    // Number of running logging backend hooks reporting regular logs to nestedOutput(). Spans aren't folded without one
+    private static final AtomicInteger nestedOutputHooks = new AtomicInteger();
+
+    private NkTraceFold() {
+    }
+
+    /**
+     * Writes the fold and the held back "entry" log of the current thread, if any.
+     * Spans which are still open are written as without folding.
+     */
+    public static void flush() {
+        final State state = states.get();
+        state.flushFold();
+        state.writeEntry();
+    }
+
+    /**
+     * Called by logging backend hooks before a log which isn't an NkTrace "entry" or "exit" log is written.
+     * Writes the fold and the held back "entry" log of the current thread first, so the log comes after them.
+     */
+    public static void nestedOutput() {
+        if(!enabled) {
+            return;
+        }
+        final State state = states.get();
+        if(state.fold.count > 0 || state.entry.id != NO_ENTRY) {
+            state.flushFold();
+            state.writeEntry();
+        }
+    }
+
+    /**
+     * Called by a logging backend hook when it starts reporting regular logs to {@link #nestedOutput()}.
+     * Counted, because a reconfigured backend starts the new hook before stopping the old one.
+     */
+    public static void nestedOutputHookStarted() {
+        nestedOutputHooks.incrementAndGet();
+    }
+
+    /**
+     * Called by a logging backend hook started with {@link #nestedOutputHookStarted()} when it stops.
+     */
+    public static void nestedOutputHookStopped() {
+        nestedOutputHooks.decrementAndGet();
+    }
+
+    /**
+     * @return Whether "entry" logs should be held back. Requires a running hook reporting regular logs
+     */
+    static boolean isActive() {
+        return enabled && nestedOutputHooks.get() > 0;
+    }
+
+    /**
+     * @return Whether given "entry" log identifier was returned by {@link #defer}
+     */
+    static boolean isDeferred(final long deferredEntry) {
+        return deferredEntry < NO_ENTRY;
+    }
+
+    /**
+     * Holds back "entry" log of a span until it's known whether the span can be folded.
+     *
+     * @return Identifier of the held back log. Pass it to {@link #exit} when the span ends
+     */
+    static long defer(final LocationAwareLogger logger, final String fqcn, final int level, final CallerInfo caller,
+                      final String format, final Object[] args) {
+        final State state = states.get();
+        final int depth = NkTraceIndent.getIndentLevel();
+        if(state.entry.id != NO_ENTRY) {
+            // The held back span has a nested span, so it can't be folded. Neither can its predecessors
+            state.flushFold();
+            state.writeEntry();
+        }
+        final Fold fold = state.fold;
+        if(fold.count > 0 && !fold.matches(logger, fqcn, level, caller, depth)) {
+            state.flushFold();
+        }
+        final long id = state.nextId--;
+        state.entry.set(id, logger, fqcn, level, caller, format, args, depth);
+        return id;
+    }
+
+    /**
+     * Called when a span with held back "entry" log ends. Folds the span if it had no nested spans.
+     *
+     * @param deferredEntry value returned by {@link #defer}
+     * @return Whether the span was folded. If not, the "exit" log has to be written as usual
+     */
+    static boolean exit(final long deferredEntry, final long elapsedNanos, final Object returnValue,
+                        final String exitMsgFormat, final Object[] exitMsgFormatArgs) {
+        final State state = states.get();
+        final Entry entry = state.entry;
+        final Fold fold = state.fold;
+        if(entry.id != deferredEntry) {
+            // "Entry" log was written, because the span had nested spans. Those could be folded
+            state.flushFold();
+            state.writeEntry();
+            return false;
+        }
+        final long durationNanos = System.nanoTime() - entry.startNanos;
+        if(fold.count > 0 && fold.matches(entry.logger, entry.fqcn, entry.level, entry.caller, entry.depth)) {
+            fold.add(durationNanos, returnValue);
+        } else {
+            state.flushFold();
+            fold.start(entry, durationNanos, elapsedNanos, returnValue, exitMsgFormat, exitMsgFormatArgs);
+        }
+        final boolean topLevel = entry.depth == 0;
+        entry.clear();
+        if(topLevel) {
+            // Nothing may come after it, e.g. the thread goes idle
+            state.flushFold();
+        }
+        return true;
+    }
+
+    /**
+     * @return Number of spans in the fold of the current thread
+     */
+    static int getFoldedCount() {
+        return states.get().fold.count;
+    }
+
+    private static void write(final LocationAwareLogger logger, final Marker marker, final String fqcn, final int level,
+                              final String format, final Object[] args, final int depth) {
+        if(NkTraceAsync.enabled) {
+            NkTraceAsync.publishFormatted(logger, marker, fqcn, level, format, args, depth);
+            return;
+        }
+        try {
+            NkTraceIndent.setEventIndentLevel(depth);
+            logger.log(marker, fqcn, level, format, args, null);
+        } finally {
+            NkTraceIndent.setEventIndentLevel(NkTraceIndent.getIndentLevel());
+        }
+    }
+
+    /**
+     * Held back "entry" log and the fold of a single thread. Holders are reused, so folding doesn't allocate in the steady state.
+     */
+    private static final class State {
+        private final Entry entry = new Entry();
+        private final Fold fold = new Fold();
+        private long nextId = FIRST_ID;
+
+        private void writeEntry() {
+            if(entry.id == NO_ENTRY) {
+                return;
+            }
+            final String format = MessageTemplate.entry(entry.caller, entry.format, NkTrace.useDefaultFormatting);
+            write(entry.logger, NkTrace.MARKER_TRACE_ENTRY, entry.fqcn, entry.level, format, entry.args, entry.depth);
+            entry.clear();
+        }
+
+        private void flushFold() {
+            if(fold.count == 0) {
+                return;
+            }
+            try {
+                if(fold.count == 1) {
+                    // Nothing to fold. Let's write the span as it was
+                    final String entryFormat = MessageTemplate.entry(fold.caller, fold.entryFormat, NkTrace.useDefaultFormatting);
+                    write(fold.logger, NkTrace.MARKER_TRACE_ENTRY, fold.fqcn, fold.level, entryFormat, fold.entryArgs, fold.depth);
+                    final boolean timed = fold.elapsedNanos != NkTraceTimings.NOT_TIMED;
+                    final String exitFormat = MessageTemplate.exit(fold.caller, timed, fold.firstReturning != null, fold.exitFormat, NkTrace.useDefaultFormatting);
+                    write(fold.logger, NkTrace.MARKER_TRACE_EXIT, fold.fqcn, fold.level, exitFormat,
+                            NkTrace.exitArgs(fold.elapsedNanos, fold.firstReturning, fold.exitArgs), fold.depth);
+                } else {
+                    writeFolded();
+                }
+            } finally {
+                fold.clear();
+            }
+        }
+
+        private void writeFolded() {
+            final String prefix = MessageTemplate.exit(fold.caller, false, false, "", NkTrace.useDefaultFormatting);
+            final boolean returning = foldReturning && (fold.firstReturning != null || fold.lastReturning != null);
+            final String suffix = returning ? FOLDED_RETURNING : FOLDED;
+            final String format = prefix.isEmpty() ? suffix : prefix + ' ' + suffix;
+            final Object[] args = returning
+                    ? new Object[]{fold.count, NkTraceTimings.formatNanos(fold.totalNanos), NkTraceTimings.formatNanos(fold.maxNanos), fold.firstReturning, fold.lastReturning}
+                    : new Object[]{fold.count, NkTraceTimings.formatNanos(fold.totalNanos), NkTraceTimings.formatNanos(fold.maxNanos)};
+            write(fold.logger, NkTrace.MARKER_TRACE_EXIT, fold.fqcn, fold.level, format, args, fold.depth);
+        }
+    }
+
+    /**
+     * Held back "entry" log of the innermost open span.
+     */
+    private static final class Entry {
+        private long id = NO_ENTRY;
+        private LocationAwareLogger logger;
+        private String fqcn;
+        private int level;
+        private CallerInfo caller;
+        private String format;
+        private Object[] args;
+        private int depth;
+        private long startNanos;
+
+        private void set(final long id, final LocationAwareLogger logger, final String fqcn, final int level, final CallerInfo caller,
+                         final String format, final Object[] args, final int depth) {
+            this.id = id;
+            this.logger = logger;
+            this.fqcn = fqcn;
+            this.level = level;
+            this.caller = caller;
+            this.format = format;
+            this.args = args;
+            this.depth = depth;
+            this.startNanos = System.nanoTime();
+        }
+
+        private void clear() {
+            id = NO_ENTRY;
+            logger = null;
+            caller = null;
+            args = null;
+        }
+    }
+
+    /**
+     * Consecutive spans of the same call site. The first one is kept whole, in case it's the only one.
+     */
+    private static final class Fold {
+        private int count;
+        private LocationAwareLogger logger;
+        private String fqcn;
+        private int level;
+        private CallerInfo caller;
+        private int depth;
+        private String entryFormat;
+        private Object[] entryArgs;
+        private long elapsedNanos;
+        private String exitFormat;
+        private Object[] exitArgs;
+        private Object firstReturning;
+        private Object lastReturning;
+        private long totalNanos;
+        private long maxNanos;
+
+        private boolean matches(final LocationAwareLogger logger, final String fqcn, final int level, final CallerInfo caller, final int depth) {
+            //noinspection StringEquality,ObjectEquality Fast path. Call sites are usually constants or interned
+            return this.depth == depth
+                    && this.level == level
+                    && this.logger == logger
+                    && (this.caller == caller || this.caller.equals(caller))
+                    && this.fqcn.equals(fqcn);
+        }
+
+        private void start(final Entry entry, final long durationNanos, final long elapsedNanos, final Object returnValue,
+                           final String exitFormat, final Object[] exitArgs) {
+            this.count = 1;
+            this.logger = entry.logger;
+            this.fqcn = entry.fqcn;
+            this.level = entry.level;
+            this.caller = entry.caller;
+            this.depth = entry.depth;
+            this.entryFormat = entry.format;
+            this.entryArgs = entry.args;
+            this.elapsedNanos = elapsedNanos;
+            this.exitFormat = exitFormat;
+            this.exitArgs = exitArgs;
+            this.firstReturning = returnValue;
+            this.lastReturning = returnValue;
+            this.totalNanos = durationNanos;
+            this.maxNanos = durationNanos;
+        }
+
+        private void add(final long durationNanos, final Object returnValue) {
+            ++count;
+            lastReturning = returnValue;
+            totalNanos += durationNanos;
+            if(durationNanos > maxNanos) {
+                maxNanos = durationNanos;
+            }
+        }
+
+        private void clear() {
+            count = 0;
+            logger = null;
+            caller = null;
+            entryArgs = null;
+            exitArgs = null;
+            firstReturning = null;
+            lastReturning = null;
+        }
+    }
+}
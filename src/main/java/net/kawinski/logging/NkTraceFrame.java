@@ -0,0 +1,500 @@
+package net.kawinski.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Pooled alternative to {@link NkTrace}.
+ *
+ * Traces are strictly nested within a thread, so instead of allocating a new object for every span,
+ * frames are taken from a per-thread stack and given back on {@link #close()}.
+ * Output is exactly the same as {@link NkTrace}'s.
+ *
+ * A frame is valid only until it's closed. It must be closed on the thread which created it,
+ * in the reverse order of creation. Using it in any other way is a bug in the calling code.
+ * With {@link #checkMisuse} enabled (e.g. in tests) such bugs throw {@link IllegalStateException}.
+ * Then every span gets its own small handle, so a frame used after close is detected even if its pooled slot
+ * already holds another span. Otherwise, NkTraceFrame does its best to keep the indentation right and never throws,
+ * but a frame used after close can't be told apart from a later span in the same slot.
+ *
+ * Usage:
+ * try(final NkTraceFrame frame = NkTraceFrame.debug(logger, "id: {}", id)) {
+ *     return frame.returning(compute(id));
+ * }
+ */
+public final class NkTraceFrame extends SpanPipeline implements AutoCloseable {
+	/**
+	 * Whether closing frames out of order and using them after close should throw.
+	 * Meant for tests. Can be enabled with "NKTRACE_FRAME_CHECKS" property.
+	 */
+	public static boolean checkMisuse = Boolean.parseBoolean(System.getProperty("NKTRACE_FRAME_CHECKS", "false"));
+
+	/**
+	 * Number of frames preallocated for every thread. Deeper traces grow the stack.
+	 */
+	static final int INITIAL_STACK_SIZE = 32;
+
+	private static final String FQCN = NkTraceFrame.class.getName();
+
+	/**
+	 * Shared frame returned when the level is disabled. All methods are no-ops.
+	 */
+	private static final NkTraceFrame DISABLED = new NkTraceFrame(null, -1);
+
+	private static final ThreadLocal<Stack> stacks = ThreadLocal.withInitial(Stack::new);
+
+	private final Stack owner;
+	private final int index;
+	// Frame holding the state: this for pooled frames, the pooled frame for handles (see checkMisuse), null for DISABLED
+	private final NkTraceFrame target;
+	// Generation of the target when this handle was returned
+	private final int openedGeneration;
+	// Incremented whenever the frame is given back to the pool, so stale handles can be told apart from the current span
+	private int generation;
+
+	private NkTraceFrame(final Stack owner, final int index) {
+		this.owner = owner;
+		this.index = index;
+		this.target = owner != null ? this : null;
+		this.openedGeneration = 0;
+	}
+
+	/**
+	 * Creates a handle of the currently open span of given frame
+	 */
+	private NkTraceFrame(final NkTraceFrame target) {
+		this.owner = target.owner;
+		this.index = target.index;
+		this.target = target;
+		this.openedGeneration = target.generation;
+	}
+
+	/**
+	 * Produces "exit" message, reduces indentation for log messages and gives the frame back to the pool.
+	 */
+	@Override
+	public void close() {
+		final NkTraceFrame frame = use("close");
+		if(frame != null) {
+			frame.closeOpen();
+		}
+	}
+
+	private void closeOpen() {
+		if(owner.depth != index + 1) {
+			if(checkMisuse) {
+				throw new IllegalStateException("NkTrace frame " + caller + " closed out of order. Innermost open frame: " + owner.frames[owner.depth - 1].caller);
+			}
+			// Frames opened later were never closed. Let's drop them, so the indentation gets back in sync
+			owner.unwindTo(index + 1);
+		}
+
+		exit();
+		release();
+		owner.depth = index;
+	}
+
+	/**
+	 * Same as {@link NkTrace#throwing(Throwable)}
+	 *
+	 * @param throwable error
+	 * @param <T> error type
+	 * @return error from the argument
+	 */
+	public <T extends Throwable> T throwing(final T throwable) {
+		final NkTraceFrame frame = use("throwing");
+		if(frame != null) {
+			frame.error = throwable;
+		}
+		return throwable;
+	}
+
+	/**
+	 * Specifies custom message to append to "exit" log.
+	 *
+	 * @param exitMsgFormat Format of the custom message
+	 */
+	public void setExitMsg(final String exitMsgFormat) {
+		final NkTraceFrame frame = use("setExitMsg");
+		if(frame != null) {
+			frame.exitMsgFormat = exitMsgFormat;
+			frame.exitMsgFormatArgs = NkTrace.NO_ARGS;
+		}
+	}
+
+	/**
+	 * Specifies custom message with a single argument to append to "exit" log.
+	 *
+	 * @param exitMsgFormat Format of the custom message
+	 * @param exitMsgFormatArg Argument for the custom message
+	 */
+	public void setExitMsg(final String exitMsgFormat, final Object exitMsgFormatArg) {
+		final NkTraceFrame frame = use("setExitMsg");
+		if(frame != null) {
+			frame.exitMsgFormat = exitMsgFormat;
+			frame.exitMsgFormatArgs = NkTrace.toArgs(exitMsgFormatArg);
+		}
+	}
+
+	/**
+	 * Specifies custom message to append to "exit" log.
+	 * Note that the arguments array isn't copied. Don't modify it until the frame is closed.
+	 *
+	 * @param exitMsgFormat Format of the custom message
+	 * @param exitMsgFormatArgs Arguments for the custom message
+	 */
+	public void setExitMsg(final String exitMsgFormat, final Object... exitMsgFormatArgs) {
+		final NkTraceFrame frame = use("setExitMsg");
+		if(frame != null) {
+			frame.exitMsgFormat = exitMsgFormat;
+			frame.exitMsgFormatArgs = exitMsgFormatArgs;
+		}
+	}
+
+	/**
+	 * Specifies custom message with lazily computed arguments to append to "exit" log.
+	 *
+	 * @param exitMsgFormat Format of the custom message
+	 * @param exitMsgFormatArgSuppliers Suppliers of the arguments. Called only if the message is formatted
+	 */
+	public void setExitMsg(final String exitMsgFormat, final Supplier<?>... exitMsgFormatArgSuppliers) {
+		final NkTraceFrame frame = use("setExitMsg");
+		if(frame != null) {
+			frame.exitMsgFormat = exitMsgFormat;
+			frame.exitMsgFormatArgs = LazyArg.ofAll(exitMsgFormatArgSuppliers);
+		}
+	}
+
+	/**
+	 * See {@link NkTrace#returning(Object)}
+	 *
+	 * @param result function result
+	 * @param <T> result type
+	 * @return function result from the argument
+	 */
+	public <T> T returning(final T result) {
+		final NkTraceFrame frame = use("returning");
+		if(frame != null) {
+			frame.returning = result;
+			frame.returningType = NkTrace.RETURNING_OBJECT;
+		}
+		return result;
+	}
+
+	/**
+	 * See {@link NkTrace#returning(int)}
+	 *
+	 * @param result function result
+	 * @return function result from the argument
+	 */
+	public int returning(final int result) {
+		setReturningPrimitive(NkTrace.RETURNING_INT, result);
+		return result;
+	}
+
+	/**
+	 * See {@link NkTrace#returning(long)}
+	 *
+	 * @param result function result
+	 * @return function result from the argument
+	 */
+	public long returning(final long result) {
+		setReturningPrimitive(NkTrace.RETURNING_LONG, result);
+		return result;
+	}
+
+	/**
+	 * See {@link NkTrace#returning(double)}
+	 *
+	 * @param result function result
+	 * @return function result from the argument
+	 */
+	public double returning(final double result) {
+		setReturningPrimitive(NkTrace.RETURNING_DOUBLE, Double.doubleToRawLongBits(result));
+		return result;
+	}
+
+	/**
+	 * See {@link NkTrace#returning(float)}
+	 *
+	 * @param result function result
+	 * @return function result from the argument
+	 */
+	public float returning(final float result) {
+		setReturningPrimitive(NkTrace.RETURNING_FLOAT, Float.floatToRawIntBits(result));
+		return result;
+	}
+
+	/**
+	 * See {@link NkTrace#returning(boolean)}
+	 *
+	 * @param result function result
+	 * @return function result from the argument
+	 */
+	public boolean returning(final boolean result) {
+		setReturningPrimitive(NkTrace.RETURNING_BOOLEAN, result ? 1 : 0);
+		return result;
+	}
+
+	/**
+	 * See {@link NkTrace#returning(char)}
+	 *
+	 * @param result function result
+	 * @return function result from the argument
+	 */
+	public char returning(final char result) {
+		setReturningPrimitive(NkTrace.RETURNING_CHAR, result);
+		return result;
+	}
+
+	/**
+	 * See {@link NkTrace#returningLazily(Supplier)}
+	 *
+	 * @param resultSupplier supplier of the function result (or its description)
+	 */
+	public void returningLazily(final Supplier<?> resultSupplier) {
+		final NkTraceFrame frame = use("returningLazily");
+		if(frame != null) {
+			frame.returning = LazyArg.of(resultSupplier);
+			frame.returningType = NkTrace.RETURNING_OBJECT;
+		}
+	}
+
+	private void setReturningPrimitive(final byte type, final long bits) {
+		final NkTraceFrame frame = use("returning");
+		if(frame != null) {
+			frame.returning = null;
+			frame.returningType = type;
+			frame.returningBits = bits;
+		}
+	}
+
+	/**
+	 * @return Pooled frame of the span this handle was returned for or null if it can't be used.
+	 * Always null for the disabled frame
+	 */
+	private NkTraceFrame use(final String operation) {
+		final NkTraceFrame frame = target;
+		if(frame == null) {
+			return null;
+		}
+		//noinspection ObjectEquality Pooled frames are their own handles
+		if(frame.active && (frame == this || frame.generation == openedGeneration)) {
+			if(checkMisuse && owner != stacks.get()) {
+				throw new IllegalStateException("NkTrace frame " + frame.caller + " used on a different thread: " + operation);
+			}
+			return frame;
+		}
+		if(checkMisuse) {
+			throw new IllegalStateException("NkTrace frame used after close: " + operation);
+		}
+		return null;
+	}
+
+	/**
+	 * Drops all references, so pooled frames don't keep user objects alive.
+	 */
+	private void release() {
+		active = false;
+		++generation;
+		collapsed = false;
+		logger = null;
+		caller = null;
+		returning = null;
+		exitMsgFormatArgs = null;
+		error = null;
+		jfrEvent = null;
+		exportedSpan = null;
+	}
+
+	private static NkTraceFrame create(final CallerInfo caller, final Logger logger, final Level level, final String format, final Object[] formatArgs) {
+		if(!NkTrace.isEnabled(caller, logger, level)) {
+			return DISABLED;
+		}
+		final boolean profiled = NkTraceProfiler.enabled;
+		// Profiled spans aren't logged
+		final boolean canLog = NkTrace.shouldLogEnabled(caller, logger, level) && !profiled;
+		final boolean recorded = NkTraceFlightRecorder.enabled;
+		if(!canLog && !recorded && !profiled) {
+			return DISABLED;
+		}
+		final NkTraceFrame frame = stacks.get().push();
+		frame.open(FQCN, caller, logger, level, canLog, recorded, profiled, format, formatArgs);
+		// Pooled frames are reused, so only a handle knows whether it's still its span. Handles cost an allocation
+		return checkMisuse ? new NkTraceFrame(frame) : frame;
+	}
+
+	/**
+	 * Pooled equivalent of {@link NkTrace#trace(Logger)}
+	 * @param logger logger
+	 * @return NkTraceFrame
+	 */
+	public static NkTraceFrame trace(final Logger logger) {
+		return create(null, logger, Level.TRACE, "", NkTrace.NO_ARGS);
+	}
+
+	/**
+	 * Pooled equivalent of {@link NkTrace#trace(Logger, String)}
+	 * @param logger logger
+	 * @param format message format
+	 * @return NkTraceFrame
+	 */
+	public static NkTraceFrame trace(final Logger logger, final String format) {
+		return create(null, logger, Level.TRACE, format, NkTrace.NO_ARGS);
+	}
+
+	/**
+	 * Pooled equivalent of {@link NkTrace#trace(Logger, String, Object...)}
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgs message format args
+	 * @return NkTraceFrame
+	 */
+	public static NkTraceFrame trace(final Logger logger, final String format, final Object... formatArgs) {
+		return create(null, logger, Level.TRACE, format, formatArgs);
+	}
+
+	/**
+	 * Pooled equivalent of {@link NkTrace#trace(CallerInfo, Logger, String, Object...)}
+	 * @param caller call site
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgs message format args
+	 * @return NkTraceFrame
+	 */
+	public static NkTraceFrame trace(final CallerInfo caller, final Logger logger, final String format, final Object... formatArgs) {
+		return create(caller, logger, Level.TRACE, format, formatArgs);
+	}
+
+	/**
+	 * Pooled equivalent of {@link NkTrace#debug(Logger)}
+	 * @param logger logger
+	 * @return NkTraceFrame
+	 */
+	public static NkTraceFrame debug(final Logger logger) {
+		return create(null, logger, Level.DEBUG, "", NkTrace.NO_ARGS);
+	}
+
+	/**
+	 * Pooled equivalent of {@link NkTrace#debug(Logger, String)}
+	 * @param logger logger
+	 * @param format message format
+	 * @return NkTraceFrame
+	 */
+	public static NkTraceFrame debug(final Logger logger, final String format) {
+		return create(null, logger, Level.DEBUG, format, NkTrace.NO_ARGS);
+	}
+
+	/**
+	 * Pooled equivalent of {@link NkTrace#debug(Logger, String, Object...)}
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgs message format args
+	 * @return NkTraceFrame
+	 */
+	public static NkTraceFrame debug(final Logger logger, final String format, final Object... formatArgs) {
+		return create(null, logger, Level.DEBUG, format, formatArgs);
+	}
+
+	/**
+	 * Pooled equivalent of {@link NkTrace#debug(CallerInfo, Logger, String, Object...)}
+	 * @param caller call site
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgs message format args
+	 * @return NkTraceFrame
+	 */
+	public static NkTraceFrame debug(final CallerInfo caller, final Logger logger, final String format, final Object... formatArgs) {
+		return create(caller, logger, Level.DEBUG, format, formatArgs);
+	}
+
+	/**
+	 * Pooled equivalent of {@link NkTrace#info(Logger)}
+	 * @param logger logger
+	 * @return NkTraceFrame
+	 */
+	public static NkTraceFrame info(final Logger logger) {
+		return create(null, logger, Level.INFO, "", NkTrace.NO_ARGS);
+	}
+
+	/**
+	 * Pooled equivalent of {@link NkTrace#info(Logger, String)}
+	 * @param logger logger
+	 * @param format message format
+	 * @return NkTraceFrame
+	 */
+	public static NkTraceFrame info(final Logger logger, final String format) {
+		return create(null, logger, Level.INFO, format, NkTrace.NO_ARGS);
+	}
+
+	/**
+	 * Pooled equivalent of {@link NkTrace#info(Logger, String, Object...)}
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgs message format args
+	 * @return NkTraceFrame
+	 */
+	public static NkTraceFrame info(final Logger logger, final String format, final Object... formatArgs) {
+		return create(null, logger, Level.INFO, format, formatArgs);
+	}
+
+	/**
+	 * Pooled equivalent of {@link NkTrace#info(CallerInfo, Logger, String, Object...)}
+	 * @param caller call site
+	 * @param logger logger
+	 * @param format message format
+	 * @param formatArgs message format args
+	 * @return NkTraceFrame
+	 */
+	public static NkTraceFrame info(final CallerInfo caller, final Logger logger, final String format, final Object... formatArgs) {
+		return create(caller, logger, Level.INFO, format, formatArgs);
+	}
+
+	/**
+	 * @return Number of open frames of the current thread
+	 */
+	static int getDepth() {
+		return stacks.get().depth;
+	}
+
+	/**
+	 * Frames of a single thread. Slots are created on first use and reused afterwards.
+	 */
+	private static final class Stack {
+		private NkTraceFrame[] frames = new NkTraceFrame[INITIAL_STACK_SIZE];
+		private int depth;
+
+		private Stack() {
+			for(int i = 0; i < frames.length; ++i) {
+				frames[i] = new NkTraceFrame(this, i);
+			}
+		}
+
+		private NkTraceFrame push() {
+			if(depth == frames.length) {
+				final NkTraceFrame[] grown = Arrays.copyOf(frames, frames.length * 2);
+				for(int i = frames.length; i < grown.length; ++i) {
+					grown[i] = new NkTraceFrame(this, i);
+				}
+				frames = grown;
+			}
+			return frames[depth++];
+		}
+
+		/**
+		 * Drops frames which weren't closed, without logging their "exit" messages.
+		 */
+		private void unwindTo(final int newDepth) {
+			while(depth > newDepth) {
+				final NkTraceFrame frame = frames[--depth];
+				if(frame.active) {
+					frame.abandon();
+					frame.release();
+				}
+			}
+		}
+	}
+}
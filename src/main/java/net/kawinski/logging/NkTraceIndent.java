@@ -2,6 +2,8 @@ package net.kawinski.logging;
 
 import org.slf4j.MDC;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Indents module for NkTrace.
  * It exposes 'indent' variable to logger's context via ThreadLocal variables and MDC.
@@ -14,6 +16,9 @@ import org.slf4j.MDC;
  *
  * Defaults:
  * - WildFly: %d{HH:mm:ss,SSS} %-5p [%c] (%t) %s%e%n
+ *
+ * Logging backends which can read the indentation directly (e.g. %nkindent of "nktrace-logback")
+ * don't need the MDC. Set {@link #useMdc} to false then, so changing the indentation doesn't touch the MDC.
  */
 public final class NkTraceIndent {
 	/**
@@ -27,9 +32,24 @@ public final class NkTraceIndent {
 	 */
 	public static final String SINGLE_INDENT = "   ";
 
-	private static String[] indentsByLevel = pregenerateIndents(16);
+	/**
+	 * Whether the indent should be put into MDC under {@link #MDC_INDENT_KEY}.
+	 * Can be disabled with "NKTRACE_INDENT_MDC" property. Default: true
+	 */
+	public static boolean useMdc = Boolean.parseBoolean(System.getProperty("NKTRACE_INDENT_MDC", "true"));
 
-	private static final ThreadLocal<Integer> indentLevelByThread = ThreadLocal.withInitial(() -> 0);
+	/**
+	 * Indents deeper than this aren't cached.
+	 * Cached indents take quadratic memory, so we don't want pathological recursion to blow it up.
+	 */
+	static final int MAX_CACHED_INDENT_LEVEL = 512;
+
+	/**
+	 * Published arrays are never modified. Growing the table replaces the whole array.
+	 */
+	private static final AtomicReference<String[]> indentsByLevel = new AtomicReference<>(pregenerateIndents(new String[]{""}, 16));
+
+	private static final ThreadLocal<Depth> indentLevelByThread = ThreadLocal.withInitial(Depth::new);
 
 	private NkTraceIndent() {
 	}
@@ -44,46 +64,83 @@ public final class NkTraceIndent {
 	 * - But even then, killing a thread could leave the indentation unbalanced as finally{} blocks won't be called
 	 */
 	public static void reset() {
-		indentLevelByThread.remove();
-		updateMDC();
+		final Depth depth = indentLevelByThread.get();
+		depth.level = 0;
+		depth.eventLevel = 0;
+		updateMDC(0);
 	}
 
 	/**
 	 * Increases the log indentation by one level
 	 */
 	public static void increment() {
-		indentLevelByThread.set(indentLevelByThread.get() + 1);
-		updateMDC();
+		final Depth depth = indentLevelByThread.get();
+		depth.eventLevel = ++depth.level;
+		updateMDC(depth.level);
 	}
 
 	/**
-	 * Decreases the log indentation by one level
+	 * Decreases the log indentation by one level.
+	 * Unbalanced decrements (below 0) are ignored.
 	 */
 	public static void decrement() {
-		indentLevelByThread.set(indentLevelByThread.get() - 1);
-		updateMDC();
+		final Depth depth = indentLevelByThread.get();
+		if(depth.level > 0) {
+			--depth.level;
+		}
+		depth.eventLevel = depth.level;
+		updateMDC(depth.level);
+	}
+
+	/**
+	 * Sets the indentation of logs written by the current thread from now on, without changing the indentation level.
+	 * Used to write logs captured earlier (see {@link NkTraceAsync}, {@link NkTraceSlowSpans}) with their original indentation.
+	 * Next increment, decrement or reset restores it.
+	 *
+	 * @param indentLevel indentation level of the logs
+	 */
+	static void setEventIndentLevel(final int indentLevel) {
+		indentLevelByThread.get().eventLevel = indentLevel;
+		updateMDC(indentLevel);
 	}
 
-	private static void updateMDC() {
-		MDC.put(MDC_INDENT_KEY, getCurrentIndent());
+	private static void updateMDC(final int indentLevel) {
+		if(useMdc) {
+			MDC.put(MDC_INDENT_KEY, getIndent(indentLevel));
+		}
 	}
 
 	/**
 	 * @return current indentation level
 	 */
 	public static int getIndentLevel() {
-		return indentLevelByThread.get();
+		return indentLevelByThread.get().level;
+	}
+
+	/**
+	 * @return indentation level of logs written by the current thread at this moment.
+	 * It's the current indentation level, unless NkTrace is writing logs captured earlier
+	 */
+	public static int getEventIndentLevel() {
+		return indentLevelByThread.get().eventLevel;
 	}
 
 	/**
 	 * @param indentLevel indentation level for which to retrieve the indentation string
-	 * @return indentation string
+	 * @return indentation string. Empty for negative levels
 	 */
 	public static String getIndent(final int indentLevel) {
-		if(indentLevel >= indentsByLevel.length) {
-			indentsByLevel = pregenerateIndents(indentLevel * 2);
+		if(indentLevel <= 0) {
+			return "";
+		}
+		final String[] indents = indentsByLevel.get();
+		if(indentLevel < indents.length) {
+			return indents[indentLevel];
+		}
+		if(indentLevel >= MAX_CACHED_INDENT_LEVEL) {
+			return SINGLE_INDENT.repeat(indentLevel);
 		}
-		return indentsByLevel[indentLevel];
+		return growIndents(indentLevel)[indentLevel];
 	}
 
 	/**
@@ -93,12 +150,35 @@ public final class NkTraceIndent {
 		return getIndent(getIndentLevel());
 	}
 
-	private static String[] pregenerateIndents(int depth) {
+	private static String[] growIndents(final int indentLevel) {
+		while(true) {
+			final String[] current = indentsByLevel.get();
+			if(indentLevel < current.length) {
+				// Some other thread was faster
+				return current;
+			}
+			final int newLength = Math.min(Math.max(indentLevel + 1, current.length * 2), MAX_CACHED_INDENT_LEVEL);
+			final String[] grown = pregenerateIndents(current, newLength);
+			if(indentsByLevel.compareAndSet(current, grown)) {
+				return grown;
+			}
+		}
+	}
+
+	private static String[] pregenerateIndents(final String[] existing, final int depth) {
 		final String[] indents = new String[depth];
-		indents[0] = "";
-		for(int i = 1; i < depth; ++i) {
+		System.arraycopy(existing, 0, indents, 0, existing.length);
+		for(int i = existing.length; i < depth; ++i) {
 			indents[i] = indents[i-1] + SINGLE_INDENT;
 		}
 		return indents;
 	}
+
+	/**
+	 * Mutable per-thread depth, so changing it doesn't box an Integer or call ThreadLocal.set()
+	 */
+	private static final class Depth {
+		private int level;
+		private int eventLevel;
+	}
 }
\ No newline at end of file
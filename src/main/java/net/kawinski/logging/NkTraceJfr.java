@@ -0,0 +1,101 @@
+package net.kawinski.logging;
+
+import org.slf4j.event.Level;
+
+/**
+ * Java Flight Recorder integration for NkTrace.
+ *
+ * When enabled, every logged span is also committed as a JFR event ("net.kawinski.logging.NkTraceSpan")
+ * with its call site, level, depth, duration and returned value. This puts the application call structure
+ * into the same timeline as GC, lock and I/O events.
+ *
+ * Events are created only while a JFR recording with this event enabled is running. Their usual settings
+ * (e.g. "threshold") apply, and the returned value is formatted only if the event is actually committed.
+ * Spans of disabled levels aren't traced at all, so they don't produce events either.
+ *
+ * Requires the jdk.jfr module.
+ */
+public final class NkTraceJfr {
+    /**
+     * Where the spans go
+     */
+    public enum Mode {
+        /**
+         * SLF4J only
+         */
+        OFF,
+        /**
+         * SLF4J and JFR
+         */
+        ALSO,
+        /**
+         * JFR only. "Entry"/"exit" logs aren't written, but the indentation of regular logs is still maintained
+         */
+        ONLY,
+    }
+
+    /**
+     * Can be set with "NKTRACE_JFR" property (off, also or only). Default: off.
+     * Changing it affects only spans opened afterwards.
+     */
+    public static Mode mode = parseMode(System.getProperty("NKTRACE_JFR", "off"));
+
+    private NkTraceJfr() {
+    }
+
+    /**
+     * @return Event of a span which is just starting or null if it shouldn't be recorded
+     */
+    static NkTraceSpanEvent begin() {
+        if(mode == Mode.OFF) {
+            return null;
+        }
+        final NkTraceSpanEvent event = new NkTraceSpanEvent();
+        if(!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it, unless JFR settings (e.g. threshold) filter it out.
+     */
+    static void commit(final NkTraceSpanEvent event, final CallerInfo caller, final Level level, final int depth, final Object returnValue) {
+        event.end();
+        if(!event.shouldCommit()) {
+            return;
+        }
+        event.className = caller.fullClassName;
+        event.methodName = caller.methodName;
+        event.lineNumber = caller.lineNumber;
+        event.level = level.name();
+        event.depth = depth;
+        if(returnValue != null) {
+            try {
+                event.returnValue = returnValue.toString();
+            } catch(final RuntimeException e) {
+                // Event without the value is still better than no event
+                event.returnValue = "<failed to format: " + e + ">";
+            }
+        }
+        event.commit();
+    }
+
+    /**
+     * @return Whether "entry"/"exit" logs should be written to SLF4J
+     */
+    static boolean isTextEnabled() {
+        return mode != Mode.ONLY;
+    }
+
+    private static Mode parseMode(final String name) {
+        for(final Mode value : Mode.values()) {
+            if(value.name().equalsIgnoreCase(name)) {
+                return value;
+            }
+        }
+        // Unknown name. Let's not fail in the logger code and just use the default.
+        return Mode.OFF;
+    }
+}
@@ -0,0 +1,304 @@
+package net.kawinski.logging;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Profiling mode for NkTrace.
+ *
+ * When enabled, spans aren't logged. Instead, nested spans of every thread build a call tree keyed by {@link CallerInfo},
+ * with invocation count, total time and self time (total minus time of the nested spans) of every node.
+ * Spans of all levels are profiled, so the usual DEBUG/TRACE instrumentation works at any logger level.
+ *
+ * Every thread updates only its own tree, so profiling doesn't synchronize. Trees are merged on demand
+ * ({@link #snapshot()}, {@link #dumpTree()}, {@link #dumpCollapsed()}). Memory is bounded by the number of distinct
+ * call paths, not by the number of calls. Trees of finished threads are folded into a shared one when merging,
+ * and every {@link #PRUNE_INTERVAL} new threads, so pools replacing their threads don't pile up trees.
+ *
+ * Snapshot taken while threads are running may be slightly inconsistent (e.g. count already updated, time not yet).
+ */
+public final class NkTraceProfiler {
+    /**
+     * Whether the profiling mode is enabled. Can be enabled with "NKTRACE_PROFILER" property.
+     * Changing it affects only spans opened afterwards.
+     */
+    public static boolean enabled = Boolean.parseBoolean(System.getProperty("NKTRACE_PROFILER", "false"));
+
+    // Number of new threads after which trees of finished threads are folded
+    static final int PRUNE_INTERVAL = 64;
+
+    private static final List<ThreadTree> trees = new ArrayList<>();
+    // Trees of finished threads. Guarded by trees
+    private static final Node retired = new Node(null, null);
+    // Guarded by trees
+    private static int registrations;
+
+    private static final ThreadLocal<ThreadTree> threadTrees = ThreadLocal.withInitial(() -> {
+        final ThreadTree tree = new ThreadTree(Thread.currentThread());
+        synchronized(trees) {
+            if(++registrations % PRUNE_INTERVAL == 0) {
+                retireFinishedThreads();
+            }
+            trees.add(tree);
+        }
+        return tree;
+    });
+
+    private NkTraceProfiler() {
+    }
+
+    /**
+     * Merges trees of all threads.
+     *
+     * @return Root of the merged tree. It has no call site. Its children are the outermost spans
+     */
+    public static Node snapshot() {
+        final Node merged = new Node(null, null);
+        synchronized(trees) {
+            retireFinishedThreads();
+            for(final ThreadTree tree : trees) {
+                merged.mergeFrom(tree.root);
+            }
+            merged.mergeFrom(retired);
+        }
+        return merged;
+    }
+
+    /**
+     * @return Number of threads whose trees are kept separately
+     */
+    static int threadCount() {
+        synchronized(trees) {
+            return trees.size();
+        }
+    }
+
+    /**
+     * Clears trees of all threads. Spans open at this moment are still counted when they end.
+     */
+    public static void reset() {
+        synchronized(trees) {
+            retireFinishedThreads();
+            for(final ThreadTree tree : trees) {
+                tree.root.clear();
+            }
+            // Nobody enters nodes of finished threads, so they can be dropped
+            retired.clear();
+            retired.children.clear();
+        }
+    }
+
+    // Guarded by trees
+    private static void retireFinishedThreads() {
+        final Iterator<ThreadTree> it = trees.iterator();
+        while(it.hasNext()) {
+            final ThreadTree tree = it.next();
+            final Thread thread = tree.thread.get();
+            if(thread == null || !thread.isAlive()) {
+                retired.mergeFrom(tree.root);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @return Merged tree as indented text. One line per node, e.g. "Foo.bar:12 count=10 total=1.234ms self=0.500ms".
+     * Children are sorted by total time
+     */
+    public static String dumpTree() {
+        final StringBuilder sb = new StringBuilder();
+        for(final Node child : snapshot().getChildrenByTotalTime()) {
+            appendTree(sb, child, 0);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return Merged tree in collapsed stack format, accepted by flame graph tools (e.g. flamegraph.pl, speedscope).
+     * One line per call path: "Outer.a:1;Inner.b:2 selfNanos"
+     */
+    public static String dumpCollapsed() {
+        final StringBuilder sb = new StringBuilder();
+        for(final Node child : snapshot().getChildrenByTotalTime()) {
+            appendCollapsed(sb, child, new StringBuilder());
+        }
+        return sb.toString();
+    }
+
+    private static void appendTree(final StringBuilder sb, final Node node, final int depth) {
+        sb.append(NkTraceIndent.getIndent(depth)).append(node.caller)
+                .append(" count=").append(node.count)
+                .append(" total=").append(NkTraceTimings.formatNanos(node.totalNanos))
+                .append(" self=").append(NkTraceTimings.formatNanos(node.getSelfNanos()))
+                .append(System.lineSeparator());
+        for(final Node child : node.getChildrenByTotalTime()) {
+            appendTree(sb, child, depth + 1);
+        }
+    }
+
+    private static void appendCollapsed(final StringBuilder sb, final Node node, final StringBuilder path) {
+        final int pathLength = path.length();
+        if(pathLength > 0) {
+            path.append(';');
+        }
+        path.append(node.caller);
+        final long self = node.getSelfNanos();
+        if(self > 0) {
+            sb.append(path).append(' ').append(self).append(System.lineSeparator());
+        }
+        for(final Node child : node.getChildrenByTotalTime()) {
+            appendCollapsed(sb, child, path);
+        }
+        path.setLength(pathLength);
+    }
+
+    static void enter(final CallerInfo caller) {
+        threadTrees.get().enter(caller);
+    }
+
+    static void exit() {
+        threadTrees.get().exit(true);
+    }
+
+    /**
+     * Called instead of {@link #exit()} for spans which were never closed (see {@link NkTraceFrame}).
+     */
+    static void abandon() {
+        threadTrees.get().exit(false);
+    }
+
+    /**
+     * Node of a call tree. In per-thread trees, it's written only by its thread. Merged trees aren't shared at all.
+     */
+    public static final class Node {
+        private final CallerInfo caller;
+        private final Node parent;
+        private final Map<CallerInfo, Node> children = new ConcurrentHashMap<>();
+        private volatile long count;
+        private volatile long totalNanos;
+        private volatile long childrenNanos;
+
+        private Node(final CallerInfo caller, final Node parent) {
+            this.caller = caller;
+            this.parent = parent;
+        }
+
+        /**
+         * @return Call site of the span. Null for the root
+         */
+        public CallerInfo getCaller() {
+            return caller;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return Total time minus the time of the nested spans
+         */
+        public long getSelfNanos() {
+            return Math.max(0, totalNanos - childrenNanos);
+        }
+
+        public Collection<Node> getChildren() {
+            return Collections.unmodifiableCollection(children.values());
+        }
+
+        /**
+         * @param caller call site
+         * @return Child with given call site or null
+         */
+        public Node getChild(final CallerInfo caller) {
+            return children.get(caller);
+        }
+
+        private List<Node> getChildrenByTotalTime() {
+            final List<Node> sorted = new ArrayList<>(children.values());
+            sorted.sort(Comparator.comparingLong(Node::getTotalNanos).reversed());
+            return sorted;
+        }
+
+        private Node child(final CallerInfo caller) {
+            Node child = children.get(caller);
+            if(child == null) {
+                child = new Node(caller, this);
+                children.put(caller, child);
+            }
+            return child;
+        }
+
+        private void mergeFrom(final Node other) {
+            count += other.count;
+            totalNanos += other.totalNanos;
+            childrenNanos += other.childrenNanos;
+            for(final Node otherChild : other.children.values()) {
+                child(otherChild.caller).mergeFrom(otherChild);
+            }
+        }
+
+        private void clear() {
+            count = 0;
+            totalNanos = 0;
+            childrenNanos = 0;
+            for(final Node child : children.values()) {
+                child.clear();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return caller + " count=" + count + " total=" + totalNanos + "ns self=" + getSelfNanos() + "ns";
+        }
+    }
+
+    /**
+     * Call tree of a single thread and start times of its open spans.
+     */
+    private static final class ThreadTree {
+        private final WeakReference<Thread> thread;
+        private final Node root = new Node(null, null);
+        private Node current = root;
+        private long[] startNanos = new long[32];
+        private int depth;
+
+        private ThreadTree(final Thread thread) {
+            this.thread = new WeakReference<>(thread);
+        }
+
+        private void enter(final CallerInfo caller) {
+            current = current.child(caller);
+            if(depth == startNanos.length) {
+                startNanos = Arrays.copyOf(startNanos, depth * 2);
+            }
+            startNanos[depth++] = System.nanoTime();
+        }
+
+        private void exit(final boolean completed) {
+            if(current == root) {
+                // More exits than entries. Spans were closed out of order
+                return;
+            }
+            final long elapsed = System.nanoTime() - startNanos[--depth];
+            final Node node = current;
+            current = node.parent;
+            if(completed) {
+                node.count = node.count + 1;
+                node.totalNanos = node.totalNanos + elapsed;
+                current.childrenNanos = current.childrenNanos + elapsed;
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package net.kawinski.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.spi.LocationAwareLogger;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Per-call-site rate limiting of logged spans.
+ *
+ * Every call site gets a token bucket of {@link #burst} spans, refilled at the configured rate.
+ * The limit is {@link #spansPerSecond} or, if set, the limit of the span's logger (see {@link #setLoggerLimit(String, double)}).
+ * Spans over the limit aren't logged and don't indent, so the logs of nested spans stay balanced.
+ * They're checked before anything is formatted, with a single compare-and-set in the common case
+ * (the bucket is kept as a "theoretical arrival time", like in GCRA).
+ *
+ * Suppressed spans are counted. At most every {@link #summaryIntervalNanos}, the count of a call site is written
+ * as a WARN log of its logger: "suppressed 1234 spans from Foo.bar:12". It's written by the next span of the call site
+ * (suppressed or not) or, if the call site went quiet, by a daemon thread started with the first rate limited span.
+ * Counts not written yet are written by {@link #reset()} and at shutdown.
+ */
+public final class NkTraceRateLimit {
+    /**
+     * Maximum rate of logged spans of a single call site. Can be set with "NKTRACE_RATE_LIMIT" property.
+     * Default: 0 (unlimited)
+     */
+    public static double spansPerSecond = Double.parseDouble(System.getProperty("NKTRACE_RATE_LIMIT", "0"));
+
+    /**
+     * Number of spans a call site can log at once, after it was quiet for a while.
+     * Can be set with "NKTRACE_RATE_LIMIT_BURST" property. Default: 100
+     */
+    public static int burst = Integer.getInteger("NKTRACE_RATE_LIMIT_BURST", 100);
+
+    /**
+     * Minimum time between summaries of suppressed spans of a call site.
+     * Can be set with "NKTRACE_RATE_LIMIT_SUMMARY_MS" property. Default: 1000
+     */
+    public static long summaryIntervalNanos = Long.getLong("NKTRACE_RATE_LIMIT_SUMMARY_MS", 1000L) * 1_000_000L;
+
+    private static final String SUMMARY_FORMAT = "suppressed {} spans from {}";
+    // Summaries of quiet call sites are checked at least this often
+    private static final long MIN_REPORT_PARK_NANOS = 100_000_000L;
+
+    private static final ConcurrentMap<String, Double> loggerLimits = new ConcurrentHashMap<>();
+    // Spares the map lookup while no logger limits are set
+    private static volatile boolean hasLoggerLimits;
+
+    private NkTraceRateLimit() {
+    }
+
+    /**
+     * Sets the rate limit of spans logged by given logger. It overrides {@link #spansPerSecond}.
+     *
+     * @param loggerName name of the logger (not a prefix)
+     * @param spansPerSecond maximum rate of logged spans of a single call site. 0 means unlimited
+     */
+    public static void setLoggerLimit(final String loggerName, final double spansPerSecond) {
+        loggerLimits.put(loggerName, spansPerSecond);
+        hasLoggerLimits = true;
+    }
+
+    /**
+     * Removes the rate limit of given logger. Its spans are limited by {@link #spansPerSecond} again.
+     *
+     * @param loggerName name of the logger
+     */
+    public static void removeLoggerLimit(final String loggerName) {
+        loggerLimits.remove(loggerName);
+        hasLoggerLimits = !loggerLimits.isEmpty();
+    }
+
+    /**
+     * @param caller call site
+     * @return Number of spans of the call site suppressed since the last summary
+     */
+    public static long getSuppressedCount(final CallerInfo caller) {
+        final Bucket bucket = caller.state().rateLimitBucket;
+        return bucket != null ? bucket.suppressed.sum() : 0;
+    }
+
+    /**
+     * Writes summaries of all call sites with suppressed spans, even if {@link #summaryIntervalNanos} hasn't passed.
+     */
+    public static void writeSummaries() {
+        writeSummaries(true);
+    }
+
+    /**
+     * Removes all logger limits and forgets the buckets of all call sites. Their suppressed counts are written first.
+     */
+    public static void reset() {
+        writeSummaries(true);
+        loggerLimits.clear();
+        hasLoggerLimits = false;
+        for(final CallerInfo caller : CallerInfo.allInterned()) {
+            caller.state().rateLimitBucket = null;
+        }
+    }
+
+    /**
+     * Checked when a span of an enabled level is opened, before its "entry" log is formatted.
+     *
+     * @return Whether the span may be logged
+     */
+    static boolean admits(final CallerInfo caller, final LocationAwareLogger logger, final String fqcn) {
+        final double rate = rateOf(logger);
+        if(rate <= 0) {
+            return true;
+        }
+        final Bucket bucket = bucketOf(caller, rate, logger, fqcn);
+        final long now = System.nanoTime();
+        final boolean admitted = bucket.tryAcquire(now);
+        if(!admitted) {
+            bucket.suppressed.increment();
+        }
+        writeSummary(caller, bucket, now, false);
+        return admitted;
+    }
+
+    private static void writeSummaries(final boolean force) {
+        final long now = System.nanoTime();
+        for(final CallerInfo caller : CallerInfo.allInterned()) {
+            final Bucket bucket = caller.state().rateLimitBucket;
+            if(bucket != null) {
+                writeSummary(caller, bucket, now, force);
+            }
+        }
+    }
+
+    private static void writeSummary(final CallerInfo caller, final Bucket bucket, final long now, final boolean force) {
+        final long lastSummary = bucket.lastSummaryNanos.get();
+        if((force || now - lastSummary >= summaryIntervalNanos) && bucket.lastSummaryNanos.compareAndSet(lastSummary, now)) {
+            final long suppressed = bucket.suppressed.sumThenReset();
+            final LocationAwareLogger logger = bucket.logger;
+            if(suppressed > 0 && logger != null) {
+                try {
+                    logger.log(null, bucket.fqcn, LocationAwareLogger.WARN_INT, SUMMARY_FORMAT, new Object[]{suppressed, caller}, null);
+                } catch(final RuntimeException e) {
+                    // Logging framework may be already stopped at shutdown
+                }
+            }
+        }
+    }
+
+    private static double rateOf(final Logger logger) {
+        if(hasLoggerLimits) {
+            final Double loggerLimit = loggerLimits.get(logger.getName());
+            if(loggerLimit != null) {
+                return loggerLimit;
+            }
+        }
+        return spansPerSecond;
+    }
+
+    private static Bucket bucketOf(final CallerInfo caller, final double rate, final LocationAwareLogger logger, final String fqcn) {
+        final SiteState site = caller.state();
+        Bucket bucket = site.rateLimitBucket;
+        //noinspection FloatingPointEquality Rate is copied, not computed
+        if(bucket == null || bucket.rate != rate || bucket.burst != burst) {
+            // Racing threads may replace each other's buckets. Only a few spans more or less get through
+            bucket = new Bucket(rate, burst, bucket);
+            site.rateLimitBucket = bucket;
+            Reporter.start();
+        }
+        if(bucket.logger != logger) {
+            bucket.fqcn = fqcn;
+            bucket.logger = logger;
+        }
+        return bucket;
+    }
+
+    /**
+     * Token bucket of a single call site, kept as the time at which it would be full again
+     */
+    static final class Bucket {
+        private final double rate;
+        private final int burst;
+        // Summaries are written by the logger of the last span. Null until the bucket is first used
+        private volatile LocationAwareLogger logger;
+        private volatile String fqcn;
+        private final long intervalNanos;
+        // How far ahead of now the theoretical arrival time can be, for the span to be admitted
+        private final long toleranceNanos;
+        private final AtomicLong theoreticalArrivalNanos;
+        private final LongAdder suppressed;
+        private final AtomicLong lastSummaryNanos;
+
+        private Bucket(final double rate, final int burst, final Bucket previous) {
+            this.rate = rate;
+            this.burst = burst;
+            this.intervalNanos = Math.max((long) (1_000_000_000L / rate), 1L);
+            this.toleranceNanos = intervalNanos * (Math.max(burst, 1) - 1);
+            final long now = System.nanoTime();
+            this.theoreticalArrivalNanos = new AtomicLong(now);
+            // Counts survive configuration changes
+            this.suppressed = previous != null ? previous.suppressed : new LongAdder();
+            this.lastSummaryNanos = previous != null ? previous.lastSummaryNanos : new AtomicLong(now);
+        }
+
+        private boolean tryAcquire(final long now) {
+            while(true) {
+                final long tat = theoreticalArrivalNanos.get();
+                final long ahead = Math.max(tat - now, 0L);
+                if(ahead > toleranceNanos) {
+                    return false;
+                }
+                if(theoreticalArrivalNanos.compareAndSet(tat, now + ahead + intervalNanos)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes summaries of call sites which went quiet.
+     * Started with the first rate limited span, so applications which don't limit spans don't get an extra thread.
+     */
+    private static final class Reporter {
+        private static final Thread THREAD = startThread();
+
+        private static void start() {
+            // Loading the class starts the thread
+        }
+
+        private static Thread startThread() {
+            final Thread thread = new Thread(Reporter::run, "NkTrace-rate-limit");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(NkTraceRateLimit::writeSummaries, "NkTrace-rate-limit-shutdown"));
+            return thread;
+        }
+
+        private static void run() {
+            while(true) {
+                LockSupport.parkNanos(Math.max(summaryIntervalNanos, MIN_REPORT_PARK_NANOS));
+                writeSummaries(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package net.kawinski.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.spi.LocationAwareLogger;
+
+import java.util.Arrays;
+
+/**
+ * Slow-span-only mode for NkTrace.
+ *
+ * When enabled, "entry" logs of spans aren't written immediately. They're kept in a per-thread buffer until the span ends.
+ * If the span took at least {@link #thresholdNanos}, the buffer is flushed (with the original indentation)
+ * and the "exit" log is written. Otherwise, the span and the spans nested in it are dropped.
+ *
+ * This way, only slow spans and the spans enclosing them end up in the log:
+ * - outer (slow)
+ *   - inner1 (fast) - dropped
+ *   - inner2 (slow) - written together with the "entry" log of outer
+ *
+ * Only NkTrace "entry" logs are buffered. Regular logs aren't part of this mode:
+ * - they're written immediately, so their order relative to the spans is lost. A log inside a slow span comes
+ *   before the "entry" logs of the spans enclosing it, and is indented as if they were written,
+ * - they're written even if the span they're in turns out to be fast and is dropped.
+ * So the log shows which spans were slow and the spans around them, but not what was logged in which span.
+ *
+ * Limitations:
+ * - Buffered logs are passed to the logger when flushed, so their timestamps (and caller data, if the pattern uses it)
+ *   are those of the flush.
+ */
+public final class NkTraceSlowSpans {
+    /**
+     * Whether the slow-span-only mode is enabled. Can be enabled with "NKTRACE_SLOW_SPANS" property.
+     * Changing it affects only spans opened afterwards.
+     */
+    public static boolean enabled = Boolean.parseBoolean(System.getProperty("NKTRACE_SLOW_SPANS", "false"));
+
+    /**
+     * Spans shorter than this are dropped. Can be set with "NKTRACE_SLOW_SPAN_THRESHOLD_MS" property (default: 10).
+     */
+    public static long thresholdNanos = Long.getLong("NKTRACE_SLOW_SPAN_THRESHOLD_MS", 10L) * 1_000_000L;
+
+    /**
+     * Maximum number of logs buffered by a single thread. When exceeded, the buffer is flushed
+     * as if the enclosing spans were slow. We'd rather write too much than lose logs or run out of memory.
+     */
+    public static int maxBufferedEvents = Integer.getInteger("NKTRACE_SLOW_SPAN_BUFFER_SIZE", 4096);
+
+    /**
+     * Returned by {@link #defer} when the log wasn't buffered
+     */
+    static final long NOT_DEFERRED = -1;
+
+    private static final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(Buffer::new);
+
+    private NkTraceSlowSpans() {
+    }
+
+    /**
+     * Buffers "entry" log of a span instead of writing it.
+     *
+     * @return Identifier of the buffered log. Pass it to {@link #shouldLogExit(long)} when the span ends
+     */
+    static long defer(final LocationAwareLogger logger, final Marker marker, final String fqcn, final int level,
+                      final String format, final Object[] args) {
+        final Buffer buffer = buffers.get();
+        if(buffer.size == maxBufferedEvents) {
+            buffer.flush();
+        }
+        final long id = buffer.flushedCount + buffer.size;
+        buffer.add(logger, marker, fqcn, level, format, args, NkTraceIndent.getIndentLevel(), System.nanoTime());
+        return id;
+    }
+
+    /**
+     * Called when a span with deferred "entry" log ends.
+     * Flushes buffered logs if the span was slow or drops the span if it was fast.
+     *
+     * @param deferredEntry value returned by {@link #defer}
+     * @return Whether the "exit" log should be written
+     */
+    static boolean shouldLogExit(final long deferredEntry) {
+        final Buffer buffer = buffers.get();
+        if(deferredEntry < buffer.flushedCount) {
+            // "Entry" log was already written, because some nested span was slow
+            return true;
+        }
+        final int index = (int) (deferredEntry - buffer.flushedCount);
+        if(index >= buffer.size) {
+            // Spans were closed out of order and this one is already gone. Nothing sensible to do
+            return false;
+        }
+        if(System.nanoTime() - buffer.events[index].startNanos >= thresholdNanos) {
+            buffer.flush();
+            return true;
+        }
+        buffer.truncate(index);
+        return false;
+    }
+
+    /**
+     * @return Number of logs buffered by the current thread
+     */
+    static int getBufferedCount() {
+        return buffers.get().size;
+    }
+
+    /**
+     * Logs buffered by a single thread. Event holders are reused, so buffering doesn't allocate in the steady state.
+     */
+    private static final class Buffer {
+        private Event[] events = new Event[16];
+        private int size;
+        // Number of events flushed so far. Used to tell flushed events from buffered ones
+        private long flushedCount;
+
+        private void add(final LocationAwareLogger logger, final Marker marker, final String fqcn, final int level,
+                         final String format, final Object[] args, final int depth, final long startNanos) {
+            if(size == events.length) {
+                events = Arrays.copyOf(events, size * 2);
+            }
+            Event event = events[size];
+            if(event == null) {
+                event = new Event();
+                events[size] = event;
+            }
+            event.logger = logger;
+            event.marker = marker;
+            event.fqcn = fqcn;
+            event.level = level;
+            event.format = format;
+            event.args = args;
+            event.depth = depth;
+            event.startNanos = startNanos;
+            ++size;
+        }
+
+        private void flush() {
+            try {
+                for(int i = 0; i < size; ++i) {
+                    final Event event = events[i];
+                    if(NkTraceAsync.enabled) {
+                        NkTraceAsync.publishFormatted(event.logger, event.marker, event.fqcn, event.level, event.format, event.args, event.depth);
+                    } else {
+                        NkTraceIndent.setEventIndentLevel(event.depth);
+                        event.logger.log(event.marker, event.fqcn, event.level, event.format, event.args, null);
+                    }
+                }
+            } finally {
+                NkTraceIndent.setEventIndentLevel(NkTraceIndent.getIndentLevel());
+                flushedCount += size;
+                truncate(0);
+            }
+        }
+
+        private void truncate(final int newSize) {
+            for(int i = newSize; i < size; ++i) {
+                events[i].clear();
+            }
+            size = newSize;
+        }
+    }
+
+    private static final class Event {
+        private LocationAwareLogger logger;
+        private Marker marker;
+        private String fqcn;
+        private int level;
+        private String format;
+        private Object[] args;
+        private int depth;
+        private long startNanos;
+
+        private void clear() {
+            logger = null;
+            marker = null;
+            args = null;
+        }
+    }
+}
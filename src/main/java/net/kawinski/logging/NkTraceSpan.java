@@ -0,0 +1,123 @@
+package net.kawinski.logging;
+
+import org.slf4j.event.Level;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * Completed span passed to {@link NkTraceSpanExporter}s.
+ *
+ * Spans of a thread form a tree: every span knows its parent (0 for roots) and all spans of a tree share the trace id.
+ * Ids are random, so they can be used as OpenTelemetry trace/span ids.
+ */
+public final class NkTraceSpan {
+    private final String traceId;
+    private final long spanId;
+    private final long parentSpanId;
+    private final CallerInfo caller;
+    private final Level level;
+    private final long threadId;
+    private final String threadName;
+    private final int depth;
+    private final long startEpochNanos;
+    private final String format;
+    private final Object[] args;
+    private long durationNanos;
+    private Object returnValue;
+    // Span which was open when this one started. Only needed until this span ends
+    NkTraceSpan parent;
+
+    NkTraceSpan(final String traceId, final long spanId, final NkTraceSpan parent, final CallerInfo caller, final Level level, final Thread thread,
+                final int depth, final long startEpochNanos, final String format, final Object[] args) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parent = parent;
+        this.parentSpanId = parent != null ? parent.spanId : 0;
+        this.caller = caller;
+        this.level = level;
+        this.threadId = thread.getId();
+        this.threadName = thread.getName();
+        this.depth = depth;
+        this.startEpochNanos = startEpochNanos;
+        this.format = format;
+        this.args = args;
+    }
+
+    void end(final long durationNanos, final Object returnValue) {
+        this.durationNanos = durationNanos;
+        this.returnValue = returnValue;
+        this.parent = null;
+    }
+
+    /**
+     * @return Trace id as 32 hex digits
+     */
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public long getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * @return Id of the enclosing span or 0 if this is a root span
+     */
+    public long getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public CallerInfo getCaller() {
+        return caller;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * @return Nesting level of the span within its thread. 0 for roots
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getStartEpochNanos() {
+        return startEpochNanos;
+    }
+
+    public long getEndEpochNanos() {
+        return startEpochNanos + durationNanos;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return Value passed to returning(...) or null
+     */
+    public Object getReturnValue() {
+        return returnValue;
+    }
+
+    /**
+     * Formats the "entry" message of the span (without the call site). Arguments are formatted here,
+     * so exporters should call it on their own thread.
+     *
+     * @return Formatted message. Empty if the span had none
+     */
+    public String formatMessage() {
+        if(format == null || format.isEmpty()) {
+            return "";
+        }
+        return MessageFormatter.arrayFormat(format, args).getMessage();
+    }
+}
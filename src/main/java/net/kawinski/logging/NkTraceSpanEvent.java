@@ -0,0 +1,41 @@
+package net.kawinski.logging;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of a single NkTrace span. See {@link NkTraceJfr}.
+ * Duration and thread are recorded by JFR itself.
+ */
+@Name(NkTraceSpanEvent.NAME)
+@Label("NkTrace Span")
+@Category("NkTrace")
+@Description("Span traced with NkTrace")
+@StackTrace(false)
+final class NkTraceSpanEvent extends Event {
+    static final String NAME = "net.kawinski.logging.NkTraceSpan";
+
+    @Label("Class")
+    String className;
+
+    @Label("Method")
+    String methodName;
+
+    @Label("Line")
+    int lineNumber;
+
+    @Label("Level")
+    String level;
+
+    @Label("Depth")
+    @Description("Nesting level of the span within its thread")
+    int depth;
+
+    @Label("Returning")
+    @Description("Value passed to returning(...)")
+    String returnValue;
+}
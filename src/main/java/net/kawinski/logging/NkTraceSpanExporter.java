@@ -0,0 +1,24 @@
+package net.kawinski.logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives spans completed by NkTrace. See {@link NkTraceExport#start(NkTraceSpanExporter)}.
+ *
+ * Methods are called by a single background thread ("NkTrace-export"), so implementations don't need to be thread-safe.
+ */
+public interface NkTraceSpanExporter extends Closeable {
+    /**
+     * @param spans completed spans in the order they ended. The list is reused after the call
+     * @throws IOException if the spans couldn't be exported. They're counted as dropped
+     */
+    void export(List<NkTraceSpan> spans) throws IOException;
+
+    /**
+     * Called after the last batch. Should flush and release everything the exporter holds.
+     */
+    @Override
+    void close() throws IOException;
+}
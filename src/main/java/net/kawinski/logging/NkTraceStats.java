@@ -0,0 +1,278 @@
+package net.kawinski.logging;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-call-site counters showing which spans drive the log volume.
+ *
+ * For every call site it counts:
+ * - entries and exits of logged spans,
+ * - exceptional exits: spans closed after {@link NkTrace#throwing(Throwable)},
+ * - spans suppressed by level: spans not logged because their level was disabled.
+ *   Counted only for spans at explicitly provided location (e.g. {@code NkTrace.info(CALLER, logger)}, nktrace-processor, nktrace-agent),
+ *   as resolving the caller of a disabled span would cost more than the span itself,
+ * - characters (UTF-16 code units, not bytes: the encoding is up to the backend) of the formatted "entry" and "exit" messages,
+ *   without the indentation and the layout of the backend. Counted only with {@link #measureMessages}.
+ *   Not counted in the slow-span-only mode ({@link NkTraceSlowSpans}), for folded spans ({@link NkTraceFold})
+ *   and with {@link NkTraceBinarySink}.
+ *
+ * Counters are striped ({@link LongAdder}), so threads tracing the same call site don't contend.
+ * They can be read with {@link #snapshot()} or over JMX, see {@link #registerMBean()} and {@link NkTraceStatsMXBean}.
+ */
+public final class NkTraceStats {
+    /**
+     * Whether spans should be counted. Can be enabled with "NKTRACE_STATS" property.
+     */
+    public static boolean enabled = Boolean.parseBoolean(System.getProperty("NKTRACE_STATS", "false"));
+
+    /**
+     * Whether length of formatted messages should be counted. Can be enabled with "NKTRACE_STATS_MESSAGES" property.
+     * Messages are then formatted on the tracing thread (lazy arguments included) and passed to the logger already formatted,
+     * so appenders which need the arguments themselves don't get them.
+     */
+    public static boolean measureMessages = Boolean.parseBoolean(System.getProperty("NKTRACE_STATS_MESSAGES", "false"));
+
+    /**
+     * Name of the MBean registered by {@link #registerMBean()}
+     */
+    public static final String MBEAN_NAME = "net.kawinski.logging:type=NkTraceStats";
+
+    private static final AtomicReferenceFieldUpdater<SiteState, Counters> countersUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(SiteState.class, Counters.class, "statsCounters");
+
+    // The most verbose call sites first
+    private static final Comparator<SiteStats> BY_VOLUME = Comparator
+            .comparingLong(SiteStats::getFormattedChars)
+            .thenComparingLong(SiteStats::getEntries)
+            .reversed()
+            .thenComparing(SiteStats::getCallSite);
+
+    static {
+        if(Boolean.parseBoolean(System.getProperty("NKTRACE_JMX", "false"))) {
+            try {
+                registerMBean();
+            } catch(final JMException | RuntimeException e) {
+                // JMX is optional. Tracing works without it
+            }
+        }
+    }
+
+    private NkTraceStats() {
+    }
+
+    /**
+     * @return Counters of all call sites with any spans, the most verbose ones first
+     */
+    public static List<SiteStats> snapshot() {
+        return collect(false);
+    }
+
+    /**
+     * Same as {@link #snapshot()}, but also resets the counters.
+     * Spans counted while the snapshot is taken are either in this snapshot or in the next one.
+     */
+    public static List<SiteStats> snapshotAndReset() {
+        return collect(true);
+    }
+
+    /**
+     * @param caller call site
+     * @return Counters of given call site
+     */
+    public static SiteStats of(final CallerInfo caller) {
+        final CallerInfo site = caller.intern();
+        final Counters counters = site.state().statsCounters;
+        return counters != null ? counters.snapshot(site, false) : new SiteStats(site, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Resets counters of all call sites.
+     */
+    public static void reset() {
+        collect(true);
+    }
+
+    /**
+     * Registers {@link NkTraceStatsMXBean} in the platform MBean server, under {@link #MBEAN_NAME}.
+     * Done at startup if "NKTRACE_JMX" property is true.
+     *
+     * @throws JMException if the MBean can't be registered, e.g. it's already registered
+     */
+    public static void registerMBean() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(MBEAN_NAME));
+    }
+
+    /**
+     * Called when "entry" log of a span is written or handed over to {@link NkTraceFold} or {@link NkTraceSlowSpans}.
+     */
+    static void entry(final CallerInfo caller) {
+        if(enabled) {
+            countersOf(caller).entries.increment();
+        }
+    }
+
+    /**
+     * Called when a logged span is closed.
+     */
+    static void exit(final CallerInfo caller, final boolean exceptional) {
+        if(enabled) {
+            final Counters counters = countersOf(caller);
+            counters.exits.increment();
+            if(exceptional) {
+                counters.exceptionalExits.increment();
+            }
+        }
+    }
+
+    /**
+     * Called when a span isn't logged because of its level.
+     *
+     * @param caller location of the span or null if it isn't known. Such spans aren't counted
+     */
+    static void notLogged(final CallerInfo caller) {
+        if(enabled && caller != null) {
+            countersOf(caller).suppressedByLevel.increment();
+        }
+    }
+
+    /**
+     * @return Whether messages should be formatted before they're passed to the logger, so they can be measured
+     */
+    static boolean measuresMessages() {
+        return enabled && measureMessages;
+    }
+
+    /**
+     * Called when a message formatted because of {@link #measuresMessages()} is passed to the logger.
+     */
+    static void formatted(final CallerInfo caller, final String message) {
+        countersOf(caller).formattedChars.add(message != null ? message.length() : 0);
+    }
+
+    private static Counters countersOf(final CallerInfo caller) {
+        final SiteState site = caller.state();
+        final Counters counters = site.statsCounters;
+        if(counters != null) {
+            return counters;
+        }
+        final Counters created = new Counters();
+        return countersUpdater.compareAndSet(site, null, created) ? created : site.statsCounters;
+    }
+
+    private static List<SiteStats> collect(final boolean reset) {
+        final List<SiteStats> result = new ArrayList<>();
+        for(final CallerInfo site : CallerInfo.allInterned()) {
+            final Counters counters = site.state().statsCounters;
+            if(counters != null) {
+                final SiteStats stats = counters.snapshot(site, reset);
+                if(!stats.isEmpty()) {
+                    result.add(stats);
+                }
+            }
+        }
+        result.sort(BY_VOLUME);
+        return result;
+    }
+
+    /**
+     * Counters of a single call site
+     */
+    static final class Counters {
+        private final LongAdder entries = new LongAdder();
+        private final LongAdder exits = new LongAdder();
+        private final LongAdder exceptionalExits = new LongAdder();
+        private final LongAdder suppressedByLevel = new LongAdder();
+        private final LongAdder formattedChars = new LongAdder();
+
+        private SiteStats snapshot(final CallerInfo site, final boolean reset) {
+            if(reset) {
+                return new SiteStats(site, entries.sumThenReset(), exits.sumThenReset(), exceptionalExits.sumThenReset(),
+                        suppressedByLevel.sumThenReset(), formattedChars.sumThenReset());
+            }
+            return new SiteStats(site, entries.sum(), exits.sum(), exceptionalExits.sum(), suppressedByLevel.sum(), formattedChars.sum());
+        }
+    }
+
+    /**
+     * Counters of a single call site at a point in time
+     */
+    public static final class SiteStats {
+        private final CallerInfo caller;
+        private final long entries;
+        private final long exits;
+        private final long exceptionalExits;
+        private final long suppressedByLevel;
+        private final long formattedChars;
+
+        SiteStats(final CallerInfo caller, final long entries, final long exits, final long exceptionalExits,
+                  final long suppressedByLevel, final long formattedChars) {
+            this.caller = caller;
+            this.entries = entries;
+            this.exits = exits;
+            this.exceptionalExits = exceptionalExits;
+            this.suppressedByLevel = suppressedByLevel;
+            this.formattedChars = formattedChars;
+        }
+
+        /**
+         * @return Call site, e.g. "com.example.Foo.bar:12"
+         */
+        public String getCallSite() {
+            return caller.fullClassName + '.' + caller.methodName + ':' + caller.lineNumber;
+        }
+
+        public long getEntries() {
+            return entries;
+        }
+
+        public long getExits() {
+            return exits;
+        }
+
+        public long getExceptionalExits() {
+            return exceptionalExits;
+        }
+
+        public long getSuppressedByLevel() {
+            return suppressedByLevel;
+        }
+
+        public long getFormattedChars() {
+            return formattedChars;
+        }
+
+        private boolean isEmpty() {
+            return entries == 0 && exits == 0 && suppressedByLevel == 0 && formattedChars == 0;
+        }
+
+        @Override
+        public String toString() {
+            return caller + " entries=" + entries + " exits=" + exits + " exceptionalExits=" + exceptionalExits
+                    + " suppressedByLevel=" + suppressedByLevel + " formattedChars=" + formattedChars;
+        }
+    }
+
+    private static final class Bean implements NkTraceStatsMXBean {
+        @Override
+        public List<SiteStats> getSites() {
+            return snapshot();
+        }
+
+        @Override
+        public List<SiteStats> snapshotAndReset() {
+            return NkTraceStats.snapshotAndReset();
+        }
+
+        @Override
+        public void reset() {
+            NkTraceStats.reset();
+        }
+    }
+}
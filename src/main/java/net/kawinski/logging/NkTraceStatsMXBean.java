@@ -0,0 +1,25 @@
+package net.kawinski.logging;
+
+import java.util.List;
+
+/**
+ * JMX interface of {@link NkTraceStats}.
+ */
+public interface NkTraceStatsMXBean {
+    /**
+     * Spans suppressed by level are counted only for spans at explicitly provided location, see {@link NkTraceStats}.
+     *
+     * @return Counters of all call sites with any spans, the most verbose ones first
+     */
+    List<NkTraceStats.SiteStats> getSites();
+
+    /**
+     * Same as {@link #getSites()}, but also resets the counters.
+     */
+    List<NkTraceStats.SiteStats> snapshotAndReset();
+
+    /**
+     * Resets counters of all call sites.
+     */
+    void reset();
+}
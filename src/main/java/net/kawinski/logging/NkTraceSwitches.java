@@ -0,0 +1,219 @@
+package net.kawinski.logging;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MutableCallSite;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Runtime switches turning tracing on and off for call sites, methods, classes and packages.
+ *
+ * The most specific switch wins: call site ("com.example.Foo.bar:12"), method ("com.example.Foo.bar"),
+ * class ("com.example.Foo"), then its packages from the innermost one, then "*". Call sites without a switch are on.
+ * Switched off spans aren't logged and don't indent, like spans of a disabled level. Logger levels still apply to spans switched on.
+ *
+ * While there are no switches, the check is a constant the JIT folds away.
+ * Changing the switches deoptimizes the code which checked them. Afterwards, every call site computes its state once
+ * and keeps it until the switches change again.
+ *
+ * Spans at explicitly provided location (e.g. generated by nktrace-processor or nktrace-agent) are checked before anything is allocated,
+ * so switched off ones cost as much as spans of a disabled level. Other spans are switched off only after their caller is found
+ * by {@link NkTrace#callerResolver}, which takes a stack walk: switching them off saves the output, but not the walk.
+ *
+ * The switches can be changed at runtime over JMX, see {@link #registerMBean()} and {@link NkTraceSwitchesMBean}.
+ */
+public final class NkTraceSwitches {
+    /**
+     * Name of the MBean registered by {@link #registerMBean()}
+     */
+    public static final String MBEAN_NAME = "net.kawinski.logging:type=NkTraceSwitches";
+
+    private static final String ALL = "*";
+
+    private static final ConcurrentMap<String, Boolean> switches = new ConcurrentHashMap<>();
+    // Incremented on every change. Call sites keep their state together with the generation it was computed in
+    private static volatile int generation = 1;
+
+    // Target is a constant handle, so the JIT treats the result as a constant until the target is changed
+    private static final MutableCallSite anySwitch = new MutableCallSite(MethodHandles.constant(boolean.class, false));
+    private static final MethodHandle anySwitchInvoker = anySwitch.dynamicInvoker();
+
+    static {
+        if(Boolean.parseBoolean(System.getProperty("NKTRACE_JMX", "false"))) {
+            try {
+                registerMBean();
+            } catch(final JMException | RuntimeException e) {
+                // JMX is optional. Tracing works without it
+            }
+        }
+    }
+
+    private NkTraceSwitches() {
+    }
+
+    /**
+     * Turns tracing on for given call sites. Spans are still logged only if the logger level allows it.
+     *
+     * @param name call site, method, class, package or "*"
+     */
+    public static void enable(final String name) {
+        set(name, true);
+    }
+
+    /**
+     * Turns tracing off for given call sites.
+     *
+     * @param name call site, method, class, package or "*"
+     */
+    public static void disable(final String name) {
+        set(name, false);
+    }
+
+    /**
+     * Removes the switch of given name.
+     *
+     * @param name call site, method, class, package or "*"
+     */
+    public static synchronized void clear(final String name) {
+        switches.remove(name);
+        changed();
+    }
+
+    /**
+     * Removes all switches.
+     */
+    public static synchronized void clearAll() {
+        switches.clear();
+        changed();
+    }
+
+    /**
+     * @param caller call site
+     * @return Whether tracing is on for given call site
+     */
+    public static boolean isOn(final CallerInfo caller) {
+        return !isOff(caller);
+    }
+
+    /**
+     * Registers {@link NkTraceSwitchesMBean} in the platform MBean server, under {@link #MBEAN_NAME}.
+     * Done at startup if "NKTRACE_JMX" property is true.
+     *
+     * @throws JMException if the MBean can't be registered, e.g. it's already registered
+     */
+    public static void registerMBean() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(
+                new StandardMBean(new Bean(), NkTraceSwitchesMBean.class), new ObjectName(MBEAN_NAME));
+    }
+
+    /**
+     * Checked when a span of an enabled level is created, if its call site is explicitly provided, or opened otherwise.
+     *
+     * @return Whether the span is switched off
+     */
+    static boolean isOff(final CallerInfo caller) {
+        return anySwitch() && isSwitchedOff(caller);
+    }
+
+    private static boolean anySwitch() {
+        try {
+            return (boolean) anySwitchInvoker.invokeExact();
+        } catch(final Throwable e) {
+            return true;
+        }
+    }
+
+    private static boolean isSwitchedOff(final CallerInfo caller) {
+        final CallerInfo site = caller.intern();
+        final SiteState siteState = site.state();
+        final int currentGeneration = generation;
+        final int state = siteState.switchState;
+        if(state >>> 1 == currentGeneration) {
+            return (state & 1) != 0;
+        }
+        final boolean off = !resolve(site);
+        siteState.switchState = currentGeneration << 1 | (off ? 1 : 0);
+        return off;
+    }
+
+    private static boolean resolve(final CallerInfo site) {
+        final String method = site.fullClassName + '.' + site.methodName;
+        Boolean on = switches.get(method + ':' + site.lineNumber);
+        if(on == null) {
+            on = switches.get(method);
+        }
+        String name = site.fullClassName;
+        while(on == null && !name.isEmpty()) {
+            on = switches.get(name);
+            name = name.substring(0, Math.max(name.lastIndexOf('.'), 0));
+        }
+        if(on == null) {
+            on = switches.get(ALL);
+        }
+        return on == null || on;
+    }
+
+    private static synchronized void set(final String name, final boolean on) {
+        switches.put(name, on);
+        changed();
+    }
+
+    private static void changed() {
+        ++generation;
+        final boolean any = !switches.isEmpty();
+        if(anySwitch() != any) {
+            anySwitch.setTarget(MethodHandles.constant(boolean.class, any));
+            MutableCallSite.syncAll(new MutableCallSite[]{anySwitch});
+        }
+    }
+
+    private static final class Bean implements NkTraceSwitchesMBean {
+        @Override
+        public void enable(final String name) {
+            NkTraceSwitches.enable(name);
+        }
+
+        @Override
+        public void disable(final String name) {
+            NkTraceSwitches.disable(name);
+        }
+
+        @Override
+        public void clear(final String name) {
+            NkTraceSwitches.clear(name);
+        }
+
+        @Override
+        public void clearAll() {
+            NkTraceSwitches.clearAll();
+        }
+
+        @Override
+        public String[] getSwitches() {
+            final List<String> result = new ArrayList<>();
+            for(final Map.Entry<String, Boolean> entry : switches.entrySet()) {
+                result.add(entry.getKey() + (entry.getValue() ? "=on" : "=off"));
+            }
+            result.sort(null);
+            return result.toArray(new String[0]);
+        }
+
+        @Override
+        public String[] getCallSites() {
+            final List<String> result = new ArrayList<>();
+            for(final CallerInfo site : CallerInfo.allInterned()) {
+                result.add(site.fullClassName + '.' + site.methodName + ':' + site.lineNumber + (isOff(site) ? " off" : " on"));
+            }
+            result.sort(null);
+            return result.toArray(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package net.kawinski.logging;
+
+/**
+ * JMX interface of {@link NkTraceSwitches}.
+ * Names are call sites ("com.example.Foo.bar:12"), methods ("com.example.Foo.bar"), classes ("com.example.Foo"),
+ * packages ("com.example") or "*" for all call sites.
+ */
+public interface NkTraceSwitchesMBean {
+    /**
+     * Turns tracing on for given call sites. Spans are still logged only if the logger level allows it.
+     */
+    void enable(String name);
+
+    /**
+     * Turns tracing off for given call sites.
+     */
+    void disable(String name);
+
+    /**
+     * Removes the switch of given name. Its call sites follow the switch of the enclosing method, class or package again.
+     */
+    void clear(String name);
+
+    /**
+     * Removes all switches.
+     */
+    void clearAll();
+
+    /**
+     * @return Switches, e.g. "com.example=off"
+     */
+    String[] getSwitches();
+
+    /**
+     * @return Known call sites with their state, e.g. "com.example.Foo.bar:12 off"
+     */
+    String[] getCallSites();
+}
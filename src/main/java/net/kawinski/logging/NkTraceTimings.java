@@ -0,0 +1,132 @@
+package net.kawinski.logging;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Span duration measurement for NkTrace.
+ *
+ * When enabled, every logged span measures its duration with {@link System#nanoTime()},
+ * prints it in the "exit" log (e.g. "&lt;&lt; Foo.bar:12 took 1.234ms") and records it
+ * in the {@link LatencyHistogram} of its call site.
+ *
+ * Histograms are created on the first timed span of a call site and live as long as the application.
+ */
+public final class NkTraceTimings {
+    /**
+     * Whether spans should be timed. Can be enabled with "NKTRACE_TIMING" property.
+     * Spans opened while timing was disabled aren't timed.
+     */
+    public static boolean enabled = Boolean.parseBoolean(System.getProperty("NKTRACE_TIMING", "false"));
+
+    /**
+     * Value passed instead of the duration of spans which weren't timed
+     */
+    static final long NOT_TIMED = -1;
+
+    private NkTraceTimings() {
+    }
+
+    /**
+     * @param caller call site
+     * @return Histogram of the call site or null if none of its spans was timed yet
+     */
+    public static LatencyHistogram get(final CallerInfo caller) {
+        return caller.state().latencyHistogram;
+    }
+
+    /**
+     * @return Histograms of all call sites with timed spans
+     */
+    public static Map<CallerInfo, LatencyHistogram> getAll() {
+        final Map<CallerInfo, LatencyHistogram> result = new LinkedHashMap<>();
+        for(final CallerInfo caller : CallerInfo.allInterned()) {
+            final LatencyHistogram histogram = caller.state().latencyHistogram;
+            if(histogram != null) {
+                result.put(caller, histogram);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Clears histograms of all call sites.
+     */
+    public static void resetAll() {
+        for(final CallerInfo caller : CallerInfo.allInterned()) {
+            final LatencyHistogram histogram = caller.state().latencyHistogram;
+            if(histogram != null) {
+                histogram.reset();
+            }
+        }
+    }
+
+    /**
+     * @return Start time of the span or {@link #NOT_TIMED}
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * Records the duration of the span in its call site histogram.
+     *
+     * @param caller call site
+     * @param startNanos value returned by {@link #start()}
+     * @return Duration of the span or {@link #NOT_TIMED}
+     */
+    static long stop(final CallerInfo caller, final long startNanos) {
+        if(startNanos == NOT_TIMED) {
+            return NOT_TIMED;
+        }
+        // nanoTime() can return -1 too. We'll lose a single measurement, so who cares
+        final long elapsed = System.nanoTime() - startNanos;
+        histogramOf(caller).record(elapsed);
+        return elapsed;
+    }
+
+    private static LatencyHistogram histogramOf(final CallerInfo caller) {
+        final SiteState site = caller.state();
+        LatencyHistogram histogram = site.latencyHistogram;
+        if(histogram == null) {
+            synchronized(site) {
+                histogram = site.latencyHistogram;
+                if(histogram == null) {
+                    histogram = new LatencyHistogram();
+                    site.latencyHistogram = histogram;
+                }
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @param nanos duration
+     * @return Human readable duration with 3 decimal places, e.g. "523ns", "12.345us", "1.234ms", "2.000s"
+     */
+    public static String formatNanos(final long nanos) {
+        if(nanos < 1_000L) {
+            return nanos + "ns";
+        }
+        if(nanos < 1_000_000L) {
+            return format(nanos, 1_000L, "us");
+        }
+        if(nanos < 1_000_000_000L) {
+            return format(nanos, 1_000_000L, "ms");
+        }
+        return format(nanos, 1_000_000_000L, "s");
+    }
+
+    private static String format(final long nanos, final long unit, final String unitName) {
+        final long fraction = nanos % unit * 1000 / unit;
+        final StringBuilder sb = new StringBuilder(16);
+        sb.append(nanos / unit).append('.');
+        if(fraction < 100) {
+            sb.append('0');
+        }
+        if(fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction).append(unitName).toString();
+    }
+}
@@ -0,0 +1,46 @@
+package net.kawinski.logging;
+
+import org.slf4j.event.Level;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method traced with NkTrace, so its call site can be computed at compile time.
+ *
+ * With the "nktrace-processor" annotation processor on the compiler's path, every class with annotated methods
+ * gets a generated companion class "&lt;Class&gt;_NkTrace" in the same package. For every annotated method it contains:
+ * - a {@link CallerInfo} constant of the method (class, method and line of its declaration),
+ * - a constant entry format listing the method's parameters, e.g. "a: {}, b: {}",
+ * - a factory opening the span with both, so no stack walking happens at runtime.
+ *
+ * Example:
+ * {@code @NkTraced}
+ * int compute(int a, int b) {
+ *     try(final NkTrace trace = Calculator_NkTrace.compute(log, a, b)) {
+ *         return trace.returning(a + b);
+ *     }
+ * }
+ *
+ * The "nktrace-agent" java agent can instrument annotated methods instead, without touching their code.
+ *
+ * Without the processor or the agent, the annotation does nothing.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target({ElementType.METHOD, ElementType.CONSTRUCTOR})
+public @interface NkTraced {
+    /**
+     * @return Level of the span. Like {@link NkTrace} factories, only TRACE, DEBUG and INFO are supported.
+     * The processor rejects higher levels, the agent opens them as INFO
+     */
+    Level level() default Level.DEBUG;
+
+    /**
+     * @return Whether the parameters should be logged by the generated factory. If not, the entry format is empty
+     */
+    boolean logArgs() default true;
+}
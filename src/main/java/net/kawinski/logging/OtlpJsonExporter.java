@@ -0,0 +1,103 @@
+package net.kawinski.logging;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Writes spans to a file in OTLP/JSON format: one ExportTraceServiceRequest per line (per batch),
+ * the same as OpenTelemetry Collector's file exporter writes and its file-based receivers read.
+ *
+ * Every span is an INTERNAL span named "Class.method". Call site, thread, level, message and returned value
+ * are its attributes ("code.*", "thread.*" and "nktrace.*").
+ */
+public final class OtlpJsonExporter implements NkTraceSpanExporter {
+    private static final int SPAN_KIND_INTERNAL = 1;
+
+    private final Writer writer;
+    private final String serviceName;
+    private final StringBuilder sb = new StringBuilder(4096);
+
+    /**
+     * @param file file to write to. Overwritten if it exists
+     * @param serviceName value of "service.name" resource attribute
+     * @throws IOException if the file can't be created
+     */
+    public OtlpJsonExporter(final Path file, final String serviceName) throws IOException {
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        this.serviceName = serviceName;
+    }
+
+    @Override
+    public void export(final List<NkTraceSpan> spans) throws IOException {
+        sb.setLength(0);
+        sb.append("{\"resourceSpans\":[{\"resource\":{\"attributes\":[");
+        appendStringAttribute("service.name", serviceName);
+        sb.append("]},\"scopeSpans\":[{\"scope\":{\"name\":\"nktrace\"},\"spans\":[");
+        for(int i = 0; i < spans.size(); ++i) {
+            if(i > 0) {
+                sb.append(',');
+            }
+            appendSpan(spans.get(i));
+        }
+        sb.append("]}]}]}\n");
+        writer.append(sb);
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void appendSpan(final NkTraceSpan span) {
+        final CallerInfo caller = span.getCaller();
+        sb.append("{\"traceId\":\"").append(span.getTraceId())
+                .append("\",\"spanId\":\"").append(NkTraceExport.hex16(span.getSpanId())).append('"');
+        if(span.getParentSpanId() != 0) {
+            sb.append(",\"parentSpanId\":\"").append(NkTraceExport.hex16(span.getParentSpanId())).append('"');
+        }
+        sb.append(",\"name\":");
+        Json.appendString(sb, caller.shortClassName + '.' + caller.methodName);
+        sb.append(",\"kind\":").append(SPAN_KIND_INTERNAL)
+                // 64-bit integers are strings in OTLP/JSON
+                .append(",\"startTimeUnixNano\":\"").append(span.getStartEpochNanos())
+                .append("\",\"endTimeUnixNano\":\"").append(span.getEndEpochNanos())
+                .append("\",\"attributes\":[");
+        appendStringAttribute("code.namespace", caller.fullClassName);
+        sb.append(',');
+        appendStringAttribute("code.function", caller.methodName);
+        sb.append(',');
+        appendIntAttribute("code.lineno", caller.lineNumber);
+        sb.append(',');
+        appendIntAttribute("thread.id", span.getThreadId());
+        sb.append(',');
+        appendStringAttribute("thread.name", span.getThreadName());
+        sb.append(',');
+        appendStringAttribute("nktrace.level", span.getLevel().name());
+        sb.append(',');
+        appendIntAttribute("nktrace.depth", span.getDepth());
+        final String message = span.formatMessage();
+        if(!message.isEmpty()) {
+            sb.append(',');
+            appendStringAttribute("nktrace.message", message);
+        }
+        if(span.getReturnValue() != null) {
+            sb.append(',');
+            appendStringAttribute("nktrace.returning", Json.toString(span.getReturnValue()));
+        }
+        sb.append("]}");
+    }
+
+    private void appendStringAttribute(final String key, final String value) {
+        sb.append("{\"key\":\"").append(key).append("\",\"value\":{\"stringValue\":");
+        Json.appendString(sb, value).append("}}");
+    }
+
+    private void appendIntAttribute(final String key, final long value) {
+        sb.append("{\"key\":\"").append(key).append("\",\"value\":{\"intValue\":\"").append(value).append("\"}}");
+    }
+}
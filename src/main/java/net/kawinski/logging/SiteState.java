@@ -0,0 +1,43 @@
+package net.kawinski.logging;
+
+/**
+ * Mutable state of a single call site, kept by its shared {@link CallerInfo} (see {@link CallerInfo#state()}).
+ * Features keeping something per call site keep it here, so CallerInfo itself stays a plain value.
+ *
+ * Everything is created lazily by the feature which needs it, so unused features cost a null field.
+ */
+final class SiteState {
+    // Precompiled entry/exit message formats of this call site. See MessageTemplate
+    MessageTemplate entryTemplate;
+    MessageTemplate exitTemplate;
+    MessageTemplate exitReturningTemplate;
+
+    // Created on first timed span of this call site. See NkTraceTimings
+    volatile LatencyHistogram latencyHistogram;
+
+    // Id of this call site in the file of the given NkTraceBinarySink
+    volatile BinarySiteId binarySiteId;
+
+    // Created on first span of this call site with a rate limit. See NkTraceRateLimit
+    volatile NkTraceRateLimit.Bucket rateLimitBucket;
+
+    // Whether this call site is switched off (lowest bit) and the generation of switches it was computed for. See NkTraceSwitches
+    volatile int switchState;
+
+    // Created on first counted span of this call site. See NkTraceStats
+    volatile NkTraceStats.Counters statsCounters;
+
+    /**
+     * Dictionary id of a call site in the file written by {@link NkTraceBinarySink}.
+     * Ids are valid only within a single file, hence the sink.
+     */
+    static final class BinarySiteId {
+        final NkTraceBinarySink sink;
+        final int id;
+
+        BinarySiteId(final NkTraceBinarySink sink, final int id) {
+            this.sink = sink;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package net.kawinski.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.Marker;
+import org.slf4j.event.Level;
+import org.slf4j.helpers.FormattingTuple;
+import org.slf4j.helpers.MessageFormatter;
+import org.slf4j.spi.LocationAwareLogger;
+
+/**
+ * State of a single span and its "entry"/"exit" pipeline, shared by {@link NkTrace} and {@link NkTraceFrame}.
+ * Both go through the same steps in the same order, so their output and side effects can't drift apart.
+ */
+abstract class SpanPipeline {
+	String fqcn;
+	LocationAwareLogger logger;
+	Level level;
+	CallerInfo caller;
+	// Logged or recorded
+	boolean active;
+	// "Entry" log was written or handed over, so the "exit" one has to follow
+	boolean logged;
+	boolean recorded;
+	boolean profiled;
+	// Recursion collapsed into the enclosing span. See NkTraceDepth
+	boolean collapsed;
+	Object returning;
+	byte returningType = NkTrace.RETURNING_OBJECT;
+	long returningBits;
+	String exitMsgFormat = "";
+	Object[] exitMsgFormatArgs = NkTrace.NO_ARGS;
+	long startNanos = NkTraceTimings.NOT_TIMED;
+	long deferredEntry = NkTraceSlowSpans.NOT_DEFERRED;
+	Throwable error;
+	NkTraceSpanEvent jfrEvent;
+	NkTraceSpan exportedSpan;
+
+	/**
+	 * Opens the span: records and profiles it, then produces "entry" log and increments indentation,
+	 * unless the span is switched off, over the rate limit or collapsed into the enclosing span.
+	 *
+	 * @param caller explicitly provided location or null
+	 * @param canLog whether the level is enabled (see {@link NkTrace#shouldLog}). Always false for profiled spans
+	 */
+	final void open(final String fqcn, final CallerInfo caller, final Logger logger, final Level level, final boolean canLog,
+					final boolean recorded, final boolean profiled, final String format, final Object[] formatArgs) {
+		this.fqcn = fqcn;
+		this.logger = (LocationAwareLogger) logger;
+		this.level = level;
+		this.recorded = recorded;
+		this.profiled = profiled;
+		this.active = canLog || recorded || profiled;
+		this.logged = false;
+		this.collapsed = false;
+		this.returning = null;
+		this.returningType = NkTrace.RETURNING_OBJECT;
+		this.exitMsgFormat = "";
+		this.exitMsgFormatArgs = NkTrace.NO_ARGS;
+		this.startNanos = NkTraceTimings.NOT_TIMED;
+		this.deferredEntry = NkTraceSlowSpans.NOT_DEFERRED;
+		this.error = null;
+		this.jfrEvent = null;
+		this.exportedSpan = null;
+		if(!active) {
+			this.caller = CallerInfo.UNKNOWN;
+			return;
+		}
+		this.caller = resolveCaller(caller, fqcn, !canLog && !profiled);
+		if(recorded) {
+			NkTraceFlightRecorder.recordEntry(this.caller, level, format, formatArgs);
+		}
+		if(profiled) {
+			NkTraceProfiler.enter(this.caller);
+		}
+		if(!canLog || NkTraceSwitches.isOff(this.caller) || !NkTraceRateLimit.admits(this.caller, this.logger, fqcn)) {
+			return;
+		}
+		if(NkTraceDepth.enter(this.caller)) {
+			collapsed = true;
+			return;
+		}
+
+		logged = true;
+		deferredEntry = logEntry(this.logger, fqcn, level, this.caller, format, formatArgs);
+		NkTraceStats.entry(this.caller);
+		exportedSpan = NkTraceExport.begin(this.caller, level, NkTraceIndent.getIndentLevel(), format, formatArgs);
+		NkTraceIndent.increment();
+		startNanos = NkTraceTimings.start();
+		jfrEvent = NkTraceJfr.begin();
+	}
+
+	/**
+	 * Closes the opened span: reduces indentation and produces "exit" log, if the span was logged.
+	 */
+	final void exit() {
+		if(profiled) {
+			NkTraceProfiler.exit();
+		}
+		if(logged) {
+			NkTraceIndent.decrement();
+			final long elapsedNanos = NkTraceTimings.stop(caller, startNanos);
+			final Object returnValue = NkTrace.unpackReturning(returningType, returningBits, returning);
+			if(jfrEvent != null) {
+				NkTraceJfr.commit(jfrEvent, caller, level, NkTraceIndent.getIndentLevel(), returnValue);
+			}
+			if(exportedSpan != null) {
+				NkTraceExport.end(exportedSpan, returnValue);
+			}
+			final String summary = NkTraceDepth.exit();
+			if(summary != null) {
+				logExit(logger, fqcn, level, caller, deferredEntry, elapsedNanos, returnValue, NkTraceDepth.withSummary(exitMsgFormat), LoggingUtils.append(exitMsgFormatArgs, summary));
+			} else {
+				logExit(logger, fqcn, level, caller, deferredEntry, elapsedNanos, returnValue, exitMsgFormat, exitMsgFormatArgs);
+			}
+			NkTraceStats.exit(caller, error != null);
+		} else if(collapsed) {
+			NkTraceDepth.exitCollapsed();
+		}
+		if(recorded) {
+			NkTraceFlightRecorder.recordExit(caller, level, returningType, returningBits, returning, exitMsgFormat, exitMsgFormatArgs);
+			if(error != null) {
+				NkTraceFlightRecorder.dumpOnError(logger, fqcn, error);
+			}
+		}
+	}
+
+	/**
+	 * Drops the opened span without "exit" log, keeping the indentation right. For spans which were never closed
+	 */
+	final void abandon() {
+		if(logged) {
+			NkTraceIndent.decrement();
+			NkTraceDepth.exit();
+		} else if(collapsed) {
+			NkTraceDepth.exitCollapsed();
+		}
+		if(recorded) {
+			NkTraceFlightRecorder.skipExit();
+		}
+		if(profiled) {
+			NkTraceProfiler.abandon();
+		}
+		if(exportedSpan != null) {
+			NkTraceExport.abandon(exportedSpan);
+		}
+	}
+
+	/**
+	 * @return Identifier of the entry log if it was deferred by {@link NkTraceSlowSpans}. {@link NkTraceSlowSpans#NOT_DEFERRED} otherwise
+	 */
+	static long logEntry(final LocationAwareLogger logger, final String fqcn, final Level level, final CallerInfo caller,
+						 final String extraMsgFormat, final Object[] extraMsgFormatArgs) {
+		if(!NkTraceJfr.isTextEnabled()) {
+			return NkTraceSlowSpans.NOT_DEFERRED;
+		}
+		final NkTraceBinarySink binarySink = NkTraceBinarySink.active;
+		if(binarySink != null) {
+			binarySink.entry(caller, level.toInt(), NkTraceIndent.getIndentLevel(), extraMsgFormat, extraMsgFormatArgs);
+			return NkTraceSlowSpans.NOT_DEFERRED;
+		}
+		if(NkTraceSlowSpans.enabled) {
+			final String finalFormat = MessageTemplate.entry(caller, extraMsgFormat, NkTrace.useDefaultFormatting);
+			return NkTraceSlowSpans.defer(logger, NkTrace.MARKER_TRACE_ENTRY, fqcn, level.toInt(), finalFormat, extraMsgFormatArgs);
+		}
+		if(NkTraceFold.isActive()) {
+			return NkTraceFold.defer(logger, fqcn, level.toInt(), caller, extraMsgFormat, extraMsgFormatArgs);
+		}
+		if(NkTraceAsync.enabled) {
+			NkTraceAsync.publishEntry(logger, fqcn, level.toInt(), caller, extraMsgFormat, extraMsgFormatArgs);
+		} else {
+			writeEntry(logger, fqcn, level.toInt(), caller, extraMsgFormat, extraMsgFormatArgs);
+		}
+		return NkTraceSlowSpans.NOT_DEFERRED;
+	}
+
+	static void logExit(final LocationAwareLogger logger, final String fqcn, final Level level, final CallerInfo caller, final long deferredEntry,
+						final long elapsedNanos, final Object returnValue, final String exitMsgFormat, final Object[] exitMsgFormatArgs) {
+		if(NkTraceFold.isDeferred(deferredEntry)) {
+			if(NkTraceFold.exit(deferredEntry, elapsedNanos, returnValue, exitMsgFormat, exitMsgFormatArgs)) {
+				return;
+			}
+		} else if(deferredEntry != NkTraceSlowSpans.NOT_DEFERRED && !NkTraceSlowSpans.shouldLogExit(deferredEntry)) {
+			return;
+		}
+		if(!NkTraceJfr.isTextEnabled()) {
+			return;
+		}
+		final NkTraceBinarySink binarySink = NkTraceBinarySink.active;
+		if(binarySink != null) {
+			binarySink.exit(caller, level.toInt(), NkTraceIndent.getIndentLevel(), returnValue, exitMsgFormat, exitMsgFormatArgs);
+			return;
+		}
+		if(NkTraceAsync.enabled) {
+			NkTraceAsync.publishExit(logger, fqcn, level.toInt(), caller, elapsedNanos, returnValue, exitMsgFormat, exitMsgFormatArgs);
+		} else {
+			writeExit(logger, fqcn, level.toInt(), caller, elapsedNanos, returnValue, exitMsgFormat, exitMsgFormatArgs);
+		}
+	}
+
+	/**
+	 * Formats and writes the "entry" log. Called on the tracing thread or by {@link NkTraceAsync}
+	 */
+	static void writeEntry(final LocationAwareLogger logger, final String fqcn, final int level, final CallerInfo caller,
+						   final String extraMsgFormat, final Object[] extraMsgFormatArgs) {
+		final String finalFormat = MessageTemplate.entry(caller, extraMsgFormat, NkTrace.useDefaultFormatting);
+		write(logger, NkTrace.MARKER_TRACE_ENTRY, fqcn, level, caller, finalFormat, extraMsgFormatArgs);
+	}
+
+	/**
+	 * Formats and writes the "exit" log. Called on the tracing thread or by {@link NkTraceAsync}
+	 */
+	static void writeExit(final LocationAwareLogger logger, final String fqcn, final int level, final CallerInfo caller,
+						  final long elapsedNanos, final Object returnValue, final String exitMsgFormat, final Object[] exitMsgFormatArgs) {
+		final boolean timed = elapsedNanos != NkTraceTimings.NOT_TIMED;
+		final String finalExitFormat = MessageTemplate.exit(caller, timed, returnValue != null, exitMsgFormat, NkTrace.useDefaultFormatting);
+		final Object[] finalExitFormatArgs = NkTrace.exitArgs(elapsedNanos, returnValue, exitMsgFormatArgs);
+		write(logger, NkTrace.MARKER_TRACE_EXIT, fqcn, level, caller, finalExitFormat, finalExitFormatArgs);
+	}
+
+	private static void write(final LocationAwareLogger logger, final Marker marker, final String fqcn, final int level, final CallerInfo caller,
+							  final String format, final Object[] args) {
+		if(!NkTraceStats.measuresMessages()) {
+			logger.log(marker, fqcn, level, format, args, null);
+			return;
+		}
+		// Formatted once, for both the logger and the stats
+		final FormattingTuple message = MessageFormatter.arrayFormat(format, args);
+		logger.log(marker, fqcn, level, message.getMessage(), null, message.getThrowable());
+		NkTraceStats.formatted(caller, message.getMessage());
+	}
+
+	/**
+	 * @param caller explicitly provided location or null
+	 * @param onlyRecorded whether the span is only recorded by {@link NkTraceFlightRecorder}
+	 * @return Location of the span. Found by {@link NkTrace#callerResolver} unless a stack walk would cost more than the span itself
+	 * (see {@link NkTraceFlightRecorder#resolveCallers})
+	 */
+	private static CallerInfo resolveCaller(final CallerInfo caller, final String fqcn, final boolean onlyRecorded) {
+		if(caller != null) {
+			return caller;
+		}
+		if(onlyRecorded && !NkTraceFlightRecorder.resolveCallers) {
+			return CallerInfo.UNKNOWN;
+		}
+		return NkTrace.callerResolver.resolve(fqcn);
+	}
+}
@@ -0,0 +1,103 @@
+package net.kawinski.logging;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AsyncRingTest {
+
+    @Test
+    public void capacity_should_be_rounded_up_to_power_of_2() {
+        assertThat(new AsyncRing(1).capacity(), is(2));
+        assertThat(new AsyncRing(3).capacity(), is(4));
+        assertThat(new AsyncRing(1024).capacity(), is(1024));
+    }
+
+    @Test
+    public void full_ring_should_refuse_new_events_until_consumed() {
+        final AsyncRing ring = new AsyncRing(4);
+        for(int i = 0; i < 4; ++i) {
+            final AsyncRing.Event event = ring.claim();
+            event.depth = i;
+            ring.publish(event);
+        }
+        assertThat(ring.size(), is(4));
+        assertThat(ring.claim(), is(nullValue()));
+
+        final List<Integer> consumed = new ArrayList<>();
+        assertThat(ring.consume(event -> consumed.add(event.depth)), is(true));
+        assertThat(consumed, is(List.of(0)));
+        assertThat(ring.size(), is(3));
+
+        final AsyncRing.Event event = ring.claim();
+        event.depth = 4;
+        ring.publish(event);
+        while(ring.consume(e -> consumed.add(e.depth))) {
+        }
+        assertThat(consumed, is(List.of(0, 1, 2, 3, 4)));
+        assertThat(ring.consumedPosition(), is(5L));
+    }
+
+    @Test
+    public void claimed_but_unpublished_event_should_stop_the_consumer() {
+        final AsyncRing ring = new AsyncRing(4);
+        final AsyncRing.Event event = ring.claim();
+        event.depth = 7;
+        assertThat(ring.consume(e -> { }), is(false));
+        ring.publish(event);
+        final List<Integer> consumed = new ArrayList<>();
+        assertThat(ring.consume(e -> consumed.add(e.depth)), is(true));
+        assertThat(consumed, is(List.of(7)));
+    }
+
+    @Test
+    public void concurrent_producers_should_not_lose_nor_reorder_their_events() throws InterruptedException {
+        final AsyncRing ring = new AsyncRing(64);
+        final int producers = 4;
+        final int eventsPerProducer = 10_000;
+        final Thread[] threads = new Thread[producers];
+        for(int p = 0; p < producers; ++p) {
+            final int producer = p;
+            threads[p] = new Thread(() -> {
+                for(int i = 0; i < eventsPerProducer; ++i) {
+                    AsyncRing.Event event;
+                    while((event = ring.claim()) == null) {
+                        // Yield, so the test doesn't starve the other threads on a single CPU
+                        Thread.yield();
+                    }
+                    event.level = producer;
+                    event.depth = i;
+                    ring.publish(event);
+                }
+            });
+            threads[p].start();
+        }
+
+        final int[] expectedNext = new int[producers];
+        int consumed = 0;
+        boolean ordered = true;
+        while(consumed < producers * eventsPerProducer) {
+            final int[] seen = new int[2];
+            if(ring.consume(event -> {
+                seen[0] = event.level;
+                seen[1] = event.depth;
+            })) {
+                ordered &= expectedNext[seen[0]] == seen[1];
+                expectedNext[seen[0]] = seen[1] + 1;
+                ++consumed;
+            } else {
+                Thread.yield();
+            }
+        }
+        for(final Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(ordered, is(true));
+        assertThat(ring.size(), is(0));
+    }
+}
@@ -1,5 +1,6 @@
 package net.kawinski.logging;
 
+import net.kawinski.logging.utils.TestUtils;
 import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -18,7 +19,7 @@ public class CallerInfoTest {
     @Test
     public void getCaller_should_return_caller() {
         final CallerInfo callerInfo = deep1();
-        assertThat(callerInfo.toString(), is("CallerInfoTest.deep1:11"));
+        assertThat(callerInfo.toString(), is("CallerInfoTest.deep1:12"));
     }
 
     private static class InnerClass1 {
@@ -41,7 +42,7 @@ public class CallerInfoTest {
     @Test
     public void getCaller_with_FQCN_should_return_caller_after_FQCN() {
         final CallerInfo callerInfo = new InnerClass1().innerMethod();
-        assertThat(callerInfo.toString(), is("CallerInfoTest$InnerClass1.innerMethod:26"));
+        assertThat(callerInfo.toString(), is("CallerInfoTest$InnerClass1.innerMethod:27"));
     }
 
     @Test
@@ -49,4 +50,48 @@ public class CallerInfoTest {
         final CallerInfo callerInfo = CallerInfo.getCaller("absent.fqcn.that.does.not.Exist");
         assertThat(callerInfo, is(CallerInfo.UNKNOWN));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void of_should_return_the_same_instance_for_the_same_call_site() {
+        final CallerInfo first = CallerInfo.of("net.kawinski.Foo", "bar", 12);
+        final CallerInfo second = CallerInfo.of("net.kawinski.Foo", "bar", 12);
+        assertThat(first == second, is(true));
+        assertThat(first.toString(), is("Foo.bar:12"));
+        assertThat(CallerInfo.of("net.kawinski.Foo", "bar", 13) == first, is(false));
+    }
+
+    @Test
+    public void of_should_not_allocate_for_interned_call_site() {
+        final String className = "net.kawinski.Foo";
+        // Warm up, so class loading and JIT compilation don't count
+        lookUp(className, 100_000);
+
+        long minAllocated = Long.MAX_VALUE;
+        for(int run = 0; run < 3; ++run) {
+            final long before = TestUtils.allocatedBytes();
+            lookUp(className, 10_000);
+            minAllocated = Math.min(minAllocated, TestUtils.allocatedBytes() - before);
+        }
+        assertThat(minAllocated, is(0L));
+    }
+
+    private static int lookUp(final String className, final int count) {
+        int result = 0;
+        for(int i = 0; i < count; ++i) {
+            result += CallerInfo.of(className, "bar", 12).lineNumber;
+        }
+        return result;
+    }
+
+    @Test
+    public void of_should_return_UNKNOWN_for_unknown_call_site() {
+        assertThat(CallerInfo.of("unknown", "unknown", 0) == CallerInfo.UNKNOWN, is(true));
+    }
+
+    @Test
+    public void caller_infos_of_the_same_call_site_should_be_equal() {
+        final CallerInfo callerInfo = new InnerClass1().innerMethod();
+        assertThat(callerInfo, is(CallerInfo.of(InnerClass1.class.getName(), "innerMethod", 27)));
+        assertThat(callerInfo.hashCode(), is(CallerInfo.of(InnerClass1.class.getName(), "innerMethod", 27).hashCode()));
+    }
+}
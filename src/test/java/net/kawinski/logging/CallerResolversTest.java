@@ -0,0 +1,107 @@
+package net.kawinski.logging;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CallerResolversTest {
+
+    private static class Tracer {
+        private final CallerResolver resolver;
+
+        private Tracer(final CallerResolver resolver) {
+            this.resolver = resolver;
+        }
+
+        private CallerInfo resolve() {
+            return resolver.resolve(Tracer.class.getName());
+        }
+
+        private CallerInfo resolveDeep(final int depth) {
+            return resolveFrom(resolver, depth);
+        }
+    }
+
+    private CallerInfo callThrough(final CallerResolver resolver) {
+        return new Tracer(resolver).resolve();
+    }
+
+    private static CallerInfo resolveFrom(final CallerResolver resolver, final int depth) {
+        if(depth == 0)
+            return resolver.resolve(Tracer.class.getName());
+        return resolveFrom(resolver, depth - 1);
+    }
+
+    private CallerInfo callThroughDeep(final CallerResolver resolver, final int depth) {
+        return new Tracer(resolver).resolveDeep(depth);
+    }
+
+    @Test
+    public void stackWalker_should_find_the_same_caller_as_legacy() {
+        final CallerInfo legacy = callThrough(CallerResolvers.legacy());
+        final CallerInfo walker = callThrough(CallerResolvers.stackWalker());
+        assertThat(legacy.toString(), is("CallerResolversTest.callThrough:29"));
+        assertThat(walker, is(legacy));
+        assertThat(walker.fullClassName, is(CallerResolversTest.class.getName()));
+    }
+
+    @Test
+    public void stackWalker_should_create_new_caller_info_each_time() {
+        final CallerInfo first = callThrough(CallerResolvers.stackWalker());
+        final CallerInfo second = callThrough(CallerResolvers.stackWalker());
+        assertThat(first, is(second));
+        assertThat(first, not(sameInstance(second)));
+    }
+
+    @Test
+    public void interning_should_return_shared_caller_info_for_the_same_call_site() {
+        final CallerInfo first = callThrough(CallerResolvers.interning());
+        final CallerInfo second = callThrough(CallerResolvers.interning());
+        assertThat(first.toString(), is("CallerResolversTest.callThrough:29"));
+        assertThat(first, sameInstance(second));
+        assertThat(first, sameInstance(CallerInfo.of(CallerResolversTest.class.getName(), "callThrough", 29)));
+    }
+
+    @Test
+    public void resolver_should_give_up_after_frame_budget() {
+        assertThat(callThroughDeep(CallerResolvers.interning(4), 0).toString(), is("CallerResolversTest.callThroughDeep:39"));
+        assertThat(callThroughDeep(CallerResolvers.interning(4), 10), is(CallerInfo.UNKNOWN));
+        assertThat(callThroughDeep(CallerResolvers.stackWalker(4), 10), is(CallerInfo.UNKNOWN));
+        assertThat(callThroughDeep(CallerResolvers.interning(), 10).toString(), is("CallerResolversTest.callThroughDeep:39"));
+    }
+
+    @Test
+    public void resolver_should_return_unknown_for_absent_fqcn() {
+        assertThat(CallerResolvers.interning().resolve("absent.fqcn.that.does.not.Exist"), is(CallerInfo.UNKNOWN));
+    }
+
+    @Test
+    public void none_should_always_return_unknown() {
+        assertThat(callThrough(CallerResolvers.none()), sameInstance(CallerInfo.UNKNOWN));
+    }
+
+    @Test
+    public void fromName_should_pick_resolver_by_name() {
+        assertThat(CallerResolvers.fromName("legacy"), sameInstance(CallerResolvers.legacy()));
+        assertThat(CallerResolvers.fromName("StackWalker"), sameInstance(CallerResolvers.stackWalker()));
+        assertThat(CallerResolvers.fromName("interning"), sameInstance(CallerResolvers.interning()));
+        assertThat(CallerResolvers.fromName("none"), sameInstance(CallerResolvers.none()));
+        assertThat(CallerResolvers.fromName("unknown-resolver"), sameInstance(CallerResolvers.interning()));
+    }
+
+    @Test
+    public void fromName_should_not_depend_on_default_locale() {
+        final java.util.Locale defaultLocale = java.util.Locale.getDefault();
+        try {
+            // Turkish upper case I lowercases to dotless i
+            java.util.Locale.setDefault(new java.util.Locale("tr", "TR"));
+            assertThat(CallerResolvers.fromName("LEGACY"), sameInstance(CallerResolvers.legacy()));
+            assertThat(CallerResolvers.fromName("INTERNING"), sameInstance(CallerResolvers.interning()));
+        } finally {
+            java.util.Locale.setDefault(defaultLocale);
+        }
+    }
+}
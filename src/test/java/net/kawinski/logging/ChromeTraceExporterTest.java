@@ -0,0 +1,51 @@
+package net.kawinski.logging;
+
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ChromeTraceExporterTest {
+    private static final CallerInfo SITE = CallerInfo.of("net.kawinski.Chrome", "span", 7);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void stopExport() {
+        NkTraceExport.stop(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void spans_should_be_written_as_complete_events() throws IOException {
+        final Logger logger = TestUtils.getFreshLogger();
+        final Path file = folder.newFile("trace.json").toPath();
+        NkTraceExport.start(new ChromeTraceExporter(file));
+        try(final NkTrace trace = NkTrace.debug(SITE, logger, "name: {}", "\"quoted\"\n")) {
+            trace.returning(1.5);
+        }
+        assertThat(NkTraceExport.stop(5, TimeUnit.SECONDS), is(true));
+
+        final String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        final String pid = Long.toString(ProcessHandle.current().pid());
+        final String tid = Long.toString(Thread.currentThread().getId());
+        assertThat(json.startsWith("[\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":" + pid + ",\"tid\":" + tid
+                + ",\"args\":{\"name\":\"" + Thread.currentThread().getName() + "\"}},\n"), is(true));
+        final String event = json.substring(json.indexOf("},\n{") + 3, json.lastIndexOf("\n]"));
+        assertThat(event.matches("\\{\"name\":\"Chrome.span:7\",\"cat\":\"DEBUG\",\"ph\":\"X\",\"ts\":[0-9]+\\.[0-9]{3},\"dur\":[0-9]+\\.[0-9]{3},"
+                + "\"pid\":" + pid + ",\"tid\":" + tid + ",\"args\":\\{\"class\":\"net.kawinski.Chrome\","
+                + "\"message\":\"name: \\\\\"quoted\\\\\"\\\\n\",\"returning\":\"1.5\"}}"), is(true));
+        assertThat(json.endsWith("\n]\n"), is(true));
+    }
+}
@@ -0,0 +1,91 @@
+package net.kawinski.logging;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void every_value_should_fall_into_bucket_with_matching_bounds() {
+        final Random random = new Random(42);
+        final List<Long> values = new ArrayList<>(List.of(0L, 1L, 15L, 16L, 17L, 31L, 32L, 1_000_000L, Long.MAX_VALUE));
+        for(int i = 0; i < 10_000; ++i) {
+            values.add((random.nextLong() >>> 1) >>> random.nextInt(63));
+        }
+        for(final long value : values) {
+            final int index = LatencyHistogram.bucketIndex(value);
+            assertThat(index < LatencyHistogram.BUCKET_COUNT, is(true));
+            assertThat(LatencyHistogram.bucketLowerBound(index) <= value, is(true));
+            assertThat(LatencyHistogram.bucketUpperBound(index) >= value, is(true));
+        }
+    }
+
+    @Test
+    public void buckets_should_be_contiguous() {
+        for(int i = 1; i < LatencyHistogram.BUCKET_COUNT; ++i) {
+            assertThat(LatencyHistogram.bucketLowerBound(i), is(LatencyHistogram.bucketUpperBound(i - 1) + 1));
+        }
+        assertThat(LatencyHistogram.bucketUpperBound(LatencyHistogram.BUCKET_COUNT - 1), is(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentiles_should_be_within_bucket_precision() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for(long i = 1; i <= 100_000; ++i) {
+            histogram.record(i * 1000);
+        }
+        assertThat(histogram.getCount(), is(100_000L));
+        assertThat(histogram.getMaxNanos(), is(100_000_000L));
+        assertWithinPrecision(histogram.getP50(), 50_000_000L);
+        assertWithinPrecision(histogram.getP99(), 99_000_000L);
+        assertWithinPrecision(histogram.getP999(), 99_900_000L);
+        assertThat(histogram.getValueAtPercentile(100), is(100_000_000L));
+    }
+
+    private static void assertWithinPrecision(final long actual, final long expected) {
+        assertThat(actual + " >= " + expected, actual >= expected, is(true));
+        assertThat(actual + " <= " + expected + " + 1/" + LatencyHistogram.SUB_BUCKETS, actual <= expected + expected / LatencyHistogram.SUB_BUCKETS, is(true));
+    }
+
+    @Test
+    public void empty_and_reset_histogram_should_report_zeros() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getP99(), is(0L));
+        histogram.record(123);
+        histogram.record(-5);
+        assertThat(histogram.getCount(), is(2L));
+        assertThat(histogram.getValueAtPercentile(0), is(0L));
+        assertThat(histogram.getMaxNanos(), is(123L));
+        histogram.reset();
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getMaxNanos(), is(0L));
+        assertThat(histogram.getP50(), is(0L));
+    }
+
+    @Test
+    public void concurrent_recording_should_not_lose_values() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final Thread[] threads = new Thread[8];
+        for(int t = 0; t < threads.length; ++t) {
+            final long value = t * 1000L;
+            threads[t] = new Thread(() -> {
+                for(int i = 0; i < 10_000; ++i) {
+                    histogram.record(value);
+                }
+            });
+            threads[t].start();
+        }
+        for(final Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(histogram.getCount(), is(80_000L));
+        assertThat(histogram.getMaxNanos(), is(7000L));
+        assertThat(histogram.getTotalNanos(), is(10_000L * 28_000L));
+    }
+}
@@ -0,0 +1,36 @@
+package net.kawinski.logging;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class LazyArgTest {
+
+    @Test
+    public void supplier_should_be_called_once_and_only_when_formatted() {
+        final AtomicInteger calls = new AtomicInteger();
+        final LazyArg arg = LazyArg.of(() -> "value" + calls.incrementAndGet());
+        assertThat(calls.get(), is(0));
+        assertThat(arg.toString(), is("value1"));
+        assertThat(arg.toString(), is("value1"));
+        assertThat(calls.get(), is(1));
+    }
+
+    @Test
+    public void null_values_and_arrays_should_be_printed_like_slf4j_does() {
+        assertThat(LazyArg.of(() -> null).toString(), is("null"));
+        assertThat(LazyArg.of((java.util.function.Supplier<?>) null).toString(), is("null"));
+        assertThat(LazyArg.of(() -> new Object[]{1, new int[]{2, 3}}).toString(), is("[1, [2, 3]]"));
+    }
+
+    @Test
+    public void every_supplier_should_be_wrapped() {
+        final Object[] args = LazyArg.ofAll(new java.util.function.Supplier<?>[]{() -> 1, () -> "a"});
+        assertThat(args.length, is(2));
+        assertThat(args[0].toString(), is("1"));
+        assertThat(args[1].toString(), is("a"));
+    }
+}
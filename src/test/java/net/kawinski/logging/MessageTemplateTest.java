@@ -0,0 +1,47 @@
+package net.kawinski.logging;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MessageTemplateTest {
+    private static final CallerInfo SITE = CallerInfo.of("net.kawinski.templates.Foo", "bar", 12);
+
+    @Test
+    public void entry_should_prepend_caller_to_user_format() {
+        assertThat(MessageTemplate.entry(SITE, "", true), is(">> Foo.bar:12"));
+        assertThat(MessageTemplate.entry(SITE, "a: {}", true), is(">> Foo.bar:12 a: {}"));
+        assertThat(MessageTemplate.entry(SITE, "a: {}", false), is("a: {}"));
+    }
+
+    @Test
+    public void exit_should_contain_returning_and_user_format() {
+        assertThat(MessageTemplate.exit(SITE, false, "", true), is("<< Foo.bar:12"));
+        assertThat(MessageTemplate.exit(SITE, false, null, true), is("<< Foo.bar:12"));
+        assertThat(MessageTemplate.exit(SITE, true, "", true), is("<< Foo.bar:12 returning({})"));
+        assertThat(MessageTemplate.exit(SITE, true, "b: {}", true), is("<< Foo.bar:12 returning({}) b: {}"));
+        assertThat(MessageTemplate.exit(SITE, false, "b: {}", true), is("<< Foo.bar:12 b: {}"));
+        assertThat(MessageTemplate.exit(SITE, true, "b: {}", false), is(" returning({}) b: {}"));
+        assertThat(MessageTemplate.exit(SITE, false, "", false), is(""));
+    }
+
+    @Test
+    public void templates_should_be_cached_per_call_site() {
+        final String entry = MessageTemplate.entry(SITE, "cached {}", true);
+        assertThat(MessageTemplate.entry(SITE, "cached {}", true), sameInstance(entry));
+        final String exit = MessageTemplate.exit(SITE, true, "cached {}", true);
+        assertThat(MessageTemplate.exit(SITE, true, "cached {}", true), sameInstance(exit));
+    }
+
+    @Test
+    public void templates_should_be_rebuilt_when_format_changes() {
+        final CallerInfo site = CallerInfo.of("net.kawinski.templates.Foo", "baz", 1);
+        assertThat(MessageTemplate.entry(site, "first", true), is(">> Foo.baz:1 first"));
+        assertThat(MessageTemplate.entry(site, "second", true), is(">> Foo.baz:1 second"));
+        assertThat(MessageTemplate.entry(site, "second", false), is("second"));
+        assertThat(MessageTemplate.exit(site, false, "first", true), is("<< Foo.baz:1 first"));
+        assertThat(MessageTemplate.exit(site, false, "first", false), is(" first"));
+    }
+}
@@ -0,0 +1,107 @@
+package net.kawinski.logging;
+
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceAsyncTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Async", "outer", 1);
+    private static final CallerInfo INNER = CallerInfo.of("net.kawinski.Async", "inner", 2);
+
+    private Logger logger;
+
+    @Before
+    public void enableAsync() {
+        logger = TestUtils.getFreshLogger();
+        NkTraceAsync.enabled = true;
+    }
+
+    @After
+    public void disableAsync() {
+        NkTraceAsync.flush(5, TimeUnit.SECONDS);
+        NkTraceAsync.enabled = false;
+        NkTraceSlowSpans.enabled = false;
+    }
+
+    @Test
+    public void async_logs_should_look_like_sync_ones() {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger, "a: {}", 1)) {
+            try(final NkTraceFrame innerFrame = NkTraceFrame.debug(INNER, logger, "b: {}", LazyArg.of(() -> 2))) {
+                innerFrame.setExitMsg("c: {}", 3);
+                innerFrame.returning(4);
+            }
+            trace.returning("x");
+        }
+        assertThat(NkTraceAsync.flush(5, TimeUnit.SECONDS), is(true));
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Async.outer:1 a: 1",
+                "DEBUG    >> Async.inner:2 b: 2",
+                "DEBUG    << Async.inner:2 returning(4) c: 3",
+                " INFO << Async.outer:1 returning(x)");
+    }
+
+    @Test
+    public void arguments_should_be_formatted_on_background_thread() {
+        final AtomicReference<String> formattingThread = new AtomicReference<>();
+        try(final NkTrace trace = NkTrace.info(OUTER, logger, "{}", LazyArg.of(() -> {
+            formattingThread.set(Thread.currentThread().getName());
+            return "lazy";
+        }))) {
+        }
+        assertThat(NkTraceAsync.flush(5, TimeUnit.SECONDS), is(true));
+        assertThat(formattingThread.get(), is("NkTrace-async"));
+    }
+
+    @Test
+    public void slow_spans_should_be_replayed_through_background_thread() {
+        NkTraceSlowSpans.enabled = true;
+        final long previousThreshold = NkTraceSlowSpans.thresholdNanos;
+        NkTraceSlowSpans.thresholdNanos = 0;
+        try {
+            try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+                try(final NkTrace innerTrace = NkTrace.info(INNER, logger)) {
+                }
+            }
+        } finally {
+            NkTraceSlowSpans.thresholdNanos = previousThreshold;
+        }
+        assertThat(NkTraceAsync.flush(5, TimeUnit.SECONDS), is(true));
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Async.outer:1",
+                " INFO    >> Async.inner:2",
+                " INFO    << Async.inner:2",
+                " INFO << Async.outer:1");
+    }
+
+    @Test
+    public void logs_from_many_threads_should_all_be_written() throws InterruptedException {
+        TestUtils.setLoggerLevel(ch.qos.logback.classic.Level.INFO);
+        final long droppedBefore = NkTraceAsync.getDroppedCount();
+        final Thread[] threads = new Thread[4];
+        final java.util.concurrent.atomic.AtomicInteger written = new java.util.concurrent.atomic.AtomicInteger();
+        for(int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread(() -> {
+                for(int i = 0; i < 5_000; ++i) {
+                    try(final NkTrace trace = NkTrace.info(OUTER, logger, "{}", LazyArg.of(written::incrementAndGet))) {
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(final Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(NkTraceAsync.flush(10, TimeUnit.SECONDS), is(true));
+        assertThat(written.get(), is(20_000));
+        assertThat(NkTraceAsync.getDroppedCount(), is(droppedBefore));
+    }
+}
@@ -0,0 +1,166 @@
+package net.kawinski.logging;
+
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceBinarySinkTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Binary", "outer", 1);
+    private static final CallerInfo INNER = CallerInfo.of("net.kawinski.Binary", "inner", 2);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Logger logger;
+    private Path file;
+
+    @Before
+    public void createFile() throws IOException {
+        logger = TestUtils.getFreshLogger();
+        file = folder.newFile("trace.bin").toPath();
+    }
+
+    @After
+    public void uninstallSink() {
+        NkTraceBinarySink.install(null);
+    }
+
+    @Test
+    public void decoded_spans_should_look_like_text_logs() throws IOException {
+        try(final NkTraceBinarySink sink = NkTraceBinarySink.open(file, 1024 * 1024, 64 * 1024)) {
+            NkTraceBinarySink.install(sink);
+            try(final NkTrace trace = NkTrace.info(OUTER, logger, "a: {}, b: {}", 1, "two")) {
+                try(final NkTraceFrame innerFrame = NkTraceFrame.debug(INNER, logger, "{} {} {}", 3L, LazyArg.of(() -> 4.5), null)) {
+                    innerFrame.setExitMsg("c: {}", 'c');
+                    innerFrame.returning(true);
+                }
+                trace.returning(-42);
+            }
+        }
+        // Nothing goes to the loggers
+        TestUtils.assertLoggerOutputEqual("");
+        assertDecoded(
+                " INFO >> Binary.outer:1 a: 1, b: two",
+                "DEBUG    >> Binary.inner:2 3 4.5 null",
+                "DEBUG    << Binary.inner:2 took * returning(true) c: c",
+                " INFO << Binary.outer:1 took * returning(-42)");
+    }
+
+    @Test
+    public void spans_should_continue_in_next_region_when_region_is_full() throws IOException {
+        try(final NkTraceBinarySink sink = NkTraceBinarySink.open(file, 1024 * 1024, 256)) {
+            NkTraceBinarySink.install(sink);
+            for(int i = 0; i < 100; ++i) {
+                try(final NkTrace trace = NkTrace.info(OUTER, logger, "{}", i)) {
+                }
+            }
+            assertThat(sink.getDroppedCount(), is(0L));
+        }
+        final List<String> lines = decode();
+        assertThat(lines.size(), is(200));
+        assertThat(lines.get(198), is(" INFO >> Binary.outer:1 99"));
+    }
+
+    @Test
+    public void records_should_be_dropped_when_file_is_full() throws IOException {
+        try(final NkTraceBinarySink sink = NkTraceBinarySink.open(file, NkTraceBinarySink.FILE_HEADER_SIZE + 256, 256)) {
+            NkTraceBinarySink.install(sink);
+            for(int i = 0; i < 100; ++i) {
+                try(final NkTrace trace = NkTrace.info(OUTER, logger, "{}", i)) {
+                }
+            }
+            assertThat(sink.getDroppedCount() > 0, is(true));
+            assertThat(decode().size() + sink.getDroppedCount(), is(200L));
+        }
+    }
+
+    @Test
+    public void spans_of_different_threads_should_be_grouped_by_thread() throws Exception {
+        try(final NkTraceBinarySink sink = NkTraceBinarySink.open(file, 1024 * 1024, 64 * 1024)) {
+            NkTraceBinarySink.install(sink);
+            try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+                final Thread thread = new Thread(() -> {
+                    try(final NkTrace innerTrace = NkTrace.info(INNER, logger)) {
+                    }
+                }, "other");
+                thread.start();
+                thread.join();
+            }
+        }
+        final StringBuilder sb = new StringBuilder();
+        NkTraceBinaryDecoder.decode(file, sb);
+        final String[] lines = sb.toString().split(System.lineSeparator());
+        assertThat(lines.length, is(4));
+        assertThat(lines[0].contains("[" + Thread.currentThread().getName() + "]  INFO >> Binary.outer:1"), is(true));
+        assertThat(lines[1].contains("[" + Thread.currentThread().getName() + "]  INFO << Binary.outer:1"), is(true));
+        assertThat(lines[2].contains("[other]  INFO >> Binary.inner:2"), is(true));
+        assertThat(lines[3].contains("[other]  INFO << Binary.inner:2"), is(true));
+    }
+
+    @Test
+    public void sink_should_write_less_than_text_logs() throws IOException {
+        final int spans = 1000;
+        try(final NkTraceBinarySink sink = NkTraceBinarySink.open(file, 1024 * 1024, 64 * 1024)) {
+            NkTraceBinarySink.install(sink);
+            for(int i = 0; i < spans; ++i) {
+                try(final NkTrace trace = NkTrace.info(OUTER, logger, "id: {}, name: {}", i, "name")) {
+                    trace.returning(i);
+                }
+            }
+        }
+        final StringBuilder text = new StringBuilder();
+        NkTraceBinaryDecoder.decode(file, text);
+        final long binaryBytes = usedBytes();
+        assertThat(binaryBytes * 3 < text.length(), is(true));
+    }
+
+    @Test(expected = IOException.class)
+    public void decoder_should_reject_other_files() throws IOException {
+        Files.write(file, new byte[64]);
+        NkTraceBinaryDecoder.decode(file, new StringBuilder());
+    }
+
+    private long usedBytes() throws IOException {
+        final java.nio.ByteBuffer content = java.nio.ByteBuffer.wrap(Files.readAllBytes(file));
+        final int regionSize = content.getInt(8);
+        long used = NkTraceBinarySink.FILE_HEADER_SIZE;
+        for(int i = 0; i < content.getInt(12); ++i) {
+            used += content.getInt(NkTraceBinarySink.FILE_HEADER_SIZE + i * regionSize + 8);
+        }
+        return used;
+    }
+
+    private List<String> decode() throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        NkTraceBinaryDecoder.decode(file, sb);
+        // Drop the time and thread name
+        return Arrays.stream(sb.toString().split(System.lineSeparator()))
+                .map(line -> line.substring(line.indexOf("] ") + 2))
+                .collect(Collectors.toList());
+    }
+
+    private void assertDecoded(final String... expectedLines) throws IOException {
+        final List<String> lines = decode();
+        assertThat(lines.size(), is(expectedLines.length));
+        for(int i = 0; i < expectedLines.length; ++i) {
+            final String expected = expectedLines[i].replace("took *", "took ");
+            final String actual = lines.get(i).replaceAll("took [0-9.]+[nums]+", "took ");
+            assertThat(actual, is(expected));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package net.kawinski.logging;
+
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceDepthTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Deep", "outer", 1);
+    private static final CallerInfo RECURSIVE = CallerInfo.of("net.kawinski.Deep", "recursive", 2);
+    private static final CallerInfo OTHER = CallerInfo.of("net.kawinski.Deep", "other", 3);
+
+    private Logger logger;
+
+    @Before
+    public void setUp() {
+        logger = TestUtils.getFreshLogger();
+    }
+
+    @After
+    public void tearDown() {
+        NkTraceDepth.maxDepth = 0;
+        NkTraceDepth.collapseRecursion = false;
+    }
+
+    @Test
+    public void spans_below_max_depth_should_be_skipped() {
+        NkTraceDepth.maxDepth = 2;
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            try(final NkTrace recursiveTrace = NkTrace.info(RECURSIVE, logger)) {
+                try(final NkTrace skipped = NkTrace.info(OTHER, logger)) {
+                    logger.info("inside");
+                    try(final NkTraceFrame skippedFrame = NkTraceFrame.info(OTHER, logger, "")) {
+                    }
+                }
+                try(final NkTrace skipped = NkTrace.info(logger)) {
+                }
+            }
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Deep.outer:1",
+                " INFO    >> Deep.recursive:2",
+                " INFO       inside",
+                " INFO    << Deep.recursive:2 (skipped 3 spans below max depth)",
+                " INFO << Deep.outer:1");
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+    }
+
+    @Test
+    public void direct_recursion_should_be_collapsed() {
+        NkTraceDepth.collapseRecursion = true;
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            assertThat(recurse(4), is(4));
+            assertThat(recurse(2), is(2));
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Deep.outer:1",
+                " INFO    >> Deep.recursive:2 n: 4",
+                " INFO       >> Deep.other:3",
+                " INFO       << Deep.other:3",
+                " INFO    << Deep.recursive:2 returning(4) (recursed 4x, max depth 5)",
+                " INFO    >> Deep.recursive:2 n: 2",
+                " INFO       >> Deep.other:3",
+                " INFO       << Deep.other:3",
+                " INFO    << Deep.recursive:2 returning(2) (recursed 2x, max depth 3)",
+                " INFO << Deep.outer:1");
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+    }
+
+    @Test
+    public void recursion_through_other_site_should_not_be_collapsed() {
+        NkTraceDepth.collapseRecursion = true;
+        try(final NkTraceFrame frame = NkTraceFrame.info(RECURSIVE, logger, "")) {
+            try(final NkTraceFrame otherFrame = NkTraceFrame.info(OTHER, logger, "")) {
+                try(final NkTraceFrame recursiveFrame = NkTraceFrame.info(RECURSIVE, logger, "")) {
+                    try(final NkTraceFrame collapsedFrame = NkTraceFrame.info(RECURSIVE, logger, "")) {
+                        collapsedFrame.returning(1);
+                    }
+                }
+            }
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Deep.recursive:2",
+                " INFO    >> Deep.other:3",
+                " INFO       >> Deep.recursive:2",
+                " INFO       << Deep.recursive:2 (recursed 1x, max depth 2)",
+                " INFO    << Deep.other:3",
+                " INFO << Deep.recursive:2");
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+    }
+
+    @Test
+    public void spans_should_be_logged_normally_when_disabled() {
+        try(final NkTrace trace = NkTrace.info(RECURSIVE, logger)) {
+            try(final NkTrace recursiveTrace = NkTrace.info(RECURSIVE, logger)) {
+            }
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Deep.recursive:2",
+                " INFO    >> Deep.recursive:2",
+                " INFO    << Deep.recursive:2",
+                " INFO << Deep.recursive:2");
+    }
+
+    private int recurse(final int n) {
+        try(final NkTrace trace = NkTrace.info(RECURSIVE, logger, "n: {}", n)) {
+            if(n == 0) {
+                try(final NkTrace otherTrace = NkTrace.info(OTHER, logger)) {
+                }
+                return trace.returning(0);
+            }
+            return trace.returning(recurse(n - 1) + 1);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package net.kawinski.logging;
+
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceExportTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Export", "outer", 1);
+    private static final CallerInfo INNER = CallerInfo.of("net.kawinski.Export", "inner", 2);
+
+    private Logger logger;
+    private CollectingExporter exporter;
+
+    @Before
+    public void startExport() {
+        logger = TestUtils.getFreshLogger();
+        exporter = new CollectingExporter();
+        NkTraceExport.start(exporter);
+    }
+
+    @After
+    public void stopExport() {
+        NkTraceExport.stop(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void nested_spans_should_be_exported_as_a_tree() {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger, "a: {}", 1)) {
+            try(final NkTraceFrame innerFrame = NkTraceFrame.debug(INNER, logger, "")) {
+                innerFrame.returning(42);
+            }
+            try(final NkTrace innerTrace = NkTrace.debug(INNER, logger)) {
+            }
+        }
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+        }
+        assertThat(NkTraceExport.stop(5, TimeUnit.SECONDS), is(true));
+        assertThat(exporter.closed, is(true));
+
+        final List<NkTraceSpan> spans = exporter.spans;
+        assertThat(spans.size(), is(4));
+        final NkTraceSpan inner1 = spans.get(0);
+        final NkTraceSpan inner2 = spans.get(1);
+        final NkTraceSpan outer = spans.get(2);
+        final NkTraceSpan secondRoot = spans.get(3);
+
+        assertThat(outer.getCaller(), is(OUTER));
+        assertThat(outer.getParentSpanId(), is(0L));
+        assertThat(outer.getDepth(), is(0));
+        assertThat(outer.formatMessage(), is("a: 1"));
+        assertThat(outer.getReturnValue(), is(nullValue()));
+        assertThat(outer.getTraceId().length(), is(32));
+
+        assertThat(inner1.getParentSpanId(), is(outer.getSpanId()));
+        assertThat(inner1.getTraceId(), is(outer.getTraceId()));
+        assertThat(inner1.getDepth(), is(1));
+        assertThat(inner1.getReturnValue(), is(42));
+        assertThat(inner1.formatMessage(), is(""));
+        assertThat(inner2.getParentSpanId(), is(outer.getSpanId()));
+        assertThat(inner2.getSpanId(), is(not(inner1.getSpanId())));
+
+        assertThat(inner1.getStartEpochNanos() >= outer.getStartEpochNanos(), is(true));
+        assertThat(inner2.getEndEpochNanos() <= outer.getEndEpochNanos(), is(true));
+
+        assertThat(secondRoot.getParentSpanId(), is(0L));
+        assertThat(secondRoot.getTraceId(), is(not(outer.getTraceId())));
+    }
+
+    @Test
+    public void spans_should_be_exported_in_batches() {
+        final int previousBatchSize = NkTraceExport.batchSize;
+        NkTraceExport.batchSize = 10;
+        try {
+            NkTraceExport.start(exporter);
+            for(int i = 0; i < 95; ++i) {
+                try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+                }
+            }
+            assertThat(NkTraceExport.stop(5, TimeUnit.SECONDS), is(true));
+        } finally {
+            NkTraceExport.batchSize = previousBatchSize;
+        }
+        assertThat(exporter.spans.size(), is(95));
+        for(final int batchSize : exporter.batchSizes) {
+            assertThat(batchSize <= 10, is(true));
+        }
+    }
+
+    @Test
+    public void disabled_spans_should_not_be_exported() {
+        TestUtils.setLoggerLevel(ch.qos.logback.classic.Level.INFO);
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger)) {
+        }
+        NkTraceExport.stop(5, TimeUnit.SECONDS);
+        assertThat(exporter.spans.size(), is(0));
+    }
+
+    @Test
+    public void failed_batches_should_be_counted_as_dropped() {
+        exporter.fail = true;
+        final long droppedBefore = NkTraceExport.getDroppedCount();
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+        }
+        NkTraceExport.stop(5, TimeUnit.SECONDS);
+        assertThat(NkTraceExport.getDroppedCount() - droppedBefore, is(1L));
+    }
+
+    private static final class CollectingExporter implements NkTraceSpanExporter {
+        private final List<NkTraceSpan> spans = new CopyOnWriteArrayList<>();
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private volatile boolean fail;
+        private volatile boolean closed;
+
+        @Override
+        public void export(final List<NkTraceSpan> batch) throws IOException {
+            if(fail) {
+                throw new IOException("Failed");
+            }
+            batchSizes.add(batch.size());
+            spans.addAll(new ArrayList<>(batch));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package net.kawinski.logging;
+
+import ch.qos.logback.classic.Level;
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceFlightRecorderTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Recorder", "outer", 1);
+    private static final CallerInfo INNER = CallerInfo.of("net.kawinski.Recorder", "inner", 2);
+
+    private static final String NL = System.lineSeparator();
+
+    private Logger logger;
+
+    @Before
+    public void enableRecorder() {
+        logger = TestUtils.getFreshLogger();
+        TestUtils.setLoggerLevel(Level.INFO);
+        NkTraceFlightRecorder.enabled = true;
+        NkTraceFlightRecorder.clear();
+    }
+
+    @After
+    public void disableRecorder() {
+        NkTraceFlightRecorder.enabled = false;
+        NkTraceFlightRecorder.clear();
+    }
+
+    @Test
+    public void disabled_spans_should_be_recorded_but_not_logged() {
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger, "a: {}", 1)) {
+            logger.info("Not indented");
+            try(final NkTraceFrame innerFrame = NkTraceFrame.trace(INNER, logger, "b: {}", 2)) {
+                innerFrame.returning(3);
+            }
+            trace.setExitMsg("c: {}", LazyArg.of(() -> 4));
+        }
+        TestUtils.assertLoggerOutputEqual(" INFO Not indented");
+        assertThat(NkTraceFlightRecorder.dump(), is(
+                "DEBUG >> Recorder.outer:1 a: 1" + NL
+                + "TRACE    >> Recorder.inner:2 b: 2" + NL
+                + "TRACE    << Recorder.inner:2 returning(3)" + NL
+                + "DEBUG << Recorder.outer:1 c: 4" + NL));
+    }
+
+    @Test
+    public void logged_spans_should_be_recorded_too() {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            try(final NkTrace innerTrace = NkTrace.debug(INNER, logger)) {
+            }
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Recorder.outer:1",
+                " INFO << Recorder.outer:1");
+        assertThat(NkTraceFlightRecorder.dump(), is(
+                " INFO >> Recorder.outer:1" + NL
+                + "DEBUG    >> Recorder.inner:2" + NL
+                + "DEBUG    << Recorder.inner:2" + NL
+                + " INFO << Recorder.outer:1" + NL));
+    }
+
+    @Test
+    public void recording_should_be_dumped_once_when_span_closes_with_error() {
+        final IllegalStateException error = new IllegalStateException("boom");
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger)) {
+            try {
+                try(final NkTraceFrame innerFrame = NkTraceFrame.debug(INNER, logger, "{}", 1)) {
+                    throw innerFrame.throwing(error);
+                }
+            } catch(final IllegalStateException e) {
+                // Same error goes through the outer span
+                throw trace.throwing(e);
+            }
+        } catch(final IllegalStateException e) {
+            assertThat(e, is(error));
+        }
+        TestUtils.assertLoggerOutputEqual(
+                "ERROR NkTrace flight recorder. Last 3 events of thread " + Thread.currentThread().getName()
+                        + " before java.lang.IllegalStateException: boom:",
+                "DEBUG >> Recorder.outer:1",
+                "DEBUG    >> Recorder.inner:2 1",
+                "DEBUG    << Recorder.inner:2");
+    }
+
+    @Test
+    public void oldest_events_should_be_overwritten() throws InterruptedException {
+        final int previousCapacity = NkTraceFlightRecorder.capacity;
+        NkTraceFlightRecorder.capacity = 3;
+        final AtomicReference<String> dump = new AtomicReference<>();
+        try {
+            // Capacity is read by new threads only
+            final Thread thread = new Thread(() -> {
+                for(int i = 0; i < 3; ++i) {
+                    try(final NkTrace trace = NkTrace.debug(OUTER, logger, "{}", i)) {
+                    }
+                }
+                dump.set(NkTraceFlightRecorder.dump());
+            });
+            thread.start();
+            thread.join();
+        } finally {
+            NkTraceFlightRecorder.capacity = previousCapacity;
+        }
+        assertThat(dump.get(), is(
+                "DEBUG << Recorder.outer:1" + NL
+                + "DEBUG >> Recorder.outer:1 2" + NL
+                + "DEBUG << Recorder.outer:1" + NL));
+    }
+
+    @Test
+    public void spans_should_be_noops_when_recorder_is_disabled() {
+        NkTraceFlightRecorder.enabled = false;
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger)) {
+            trace.throwing(new IllegalStateException());
+        }
+        assertThat(NkTraceFlightRecorder.dump(), is(""));
+        TestUtils.assertLoggerOutputEqual("");
+    }
+
+    @Test
+    public void disabled_spans_without_explicit_caller_should_resolve_it_unless_turned_off() {
+        try(final NkTrace trace = NkTrace.debug(logger, "a: {}", 1)) {
+        }
+        assertThat(NkTraceFlightRecorder.dump(), startsWith(
+                "DEBUG >> NkTraceFlightRecorderTest.disabled_spans_without_explicit_caller_should_resolve_it_unless_turned_off:"));
+
+        NkTraceFlightRecorder.clear();
+        NkTraceFlightRecorder.resolveCallers = false;
+        try {
+            try(final NkTraceFrame frame = NkTraceFrame.debug(logger, "b: {}", 2)) {
+            }
+        } finally {
+            NkTraceFlightRecorder.resolveCallers = true;
+        }
+        assertThat(NkTraceFlightRecorder.dump(), is(
+                "DEBUG >> unknown.unknown:0 b: 2" + NL
+                + "DEBUG << unknown.unknown:0" + NL));
+    }
+}
@@ -0,0 +1,177 @@
+package net.kawinski.logging;
+
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceFoldTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Batch", "outer", 1);
+    private static final CallerInfo HELPER = CallerInfo.of("net.kawinski.Batch", "helper", 2);
+    private static final CallerInfo OTHER = CallerInfo.of("net.kawinski.Batch", "other", 3);
+
+    private static final String DURATION = "\\d+\\.\\d{3}[mun]?s|\\d+ns";
+
+    private Logger logger;
+
+    @Before
+    public void enableFolding() {
+        logger = TestUtils.getFreshLogger();
+        NkTraceFold.enabled = true;
+        NkTraceFold.nestedOutputHookStarted();
+    }
+
+    @After
+    public void disableFolding() {
+        NkTraceFold.flush();
+        NkTraceFold.enabled = false;
+        NkTraceFold.nestedOutputHookStopped();
+        NkTraceFold.foldReturning = true;
+    }
+
+    @Test
+    public void repeated_siblings_should_be_folded_until_parent_closes() {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            for(int i = 1; i <= 100; ++i) {
+                try(final NkTrace helperTrace = NkTrace.info(HELPER, logger, "i: {}", i)) {
+                    helperTrace.returning(i * 2);
+                }
+            }
+            assertThat(NkTraceFold.getFoldedCount(), is(100));
+        }
+        TestUtils.assertLoggerOutputMatches(
+                " INFO >> Batch\\.outer:1",
+                " INFO    << Batch\\.helper:2 \\(folded 100x, total (" + DURATION + "), max (" + DURATION + ")\\) first returning\\(2\\), last returning\\(200\\)",
+                " INFO << Batch\\.outer:1");
+        assertThat(NkTraceFold.getFoldedCount(), is(0));
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+    }
+
+    @Test
+    public void different_site_should_flush_fold() {
+        NkTraceFold.foldReturning = false;
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            for(int i = 0; i < 3; ++i) {
+                try(final NkTraceFrame frame = NkTraceFrame.info(HELPER, logger, "")) {
+                }
+            }
+            try(final NkTrace otherTrace = NkTrace.info(OTHER, logger, "a: {}", 1)) {
+                otherTrace.returning("x");
+            }
+            try(final NkTraceFrame frame = NkTraceFrame.info(HELPER, logger, "")) {
+                frame.returning(5);
+            }
+        }
+        TestUtils.assertLoggerOutputMatches(
+                " INFO >> Batch\\.outer:1",
+                " INFO    << Batch\\.helper:2 \\(folded 3x, total (" + DURATION + "), max (" + DURATION + ")\\)",
+                " INFO    >> Batch\\.other:3 a: 1",
+                " INFO    << Batch\\.other:3 returning\\(x\\)",
+                " INFO    >> Batch\\.helper:2",
+                " INFO    << Batch\\.helper:2 returning\\(5\\)",
+                " INFO << Batch\\.outer:1");
+    }
+
+    @Test
+    public void span_with_nested_spans_should_not_be_folded() {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+            }
+            try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+                try(final NkTrace otherTrace = NkTrace.info(OTHER, logger)) {
+                }
+                try(final NkTrace otherTrace = NkTrace.info(OTHER, logger)) {
+                }
+            }
+        }
+        TestUtils.assertLoggerOutputMatches(
+                " INFO >> Batch\\.outer:1",
+                " INFO    >> Batch\\.helper:2",
+                " INFO    << Batch\\.helper:2",
+                " INFO    >> Batch\\.helper:2",
+                " INFO       << Batch\\.other:3 \\(folded 2x, total (" + DURATION + "), max (" + DURATION + ")\\)",
+                " INFO    << Batch\\.helper:2",
+                " INFO << Batch\\.outer:1");
+    }
+
+    @Test
+    public void top_level_span_should_be_written_when_it_ends() {
+        try(final NkTrace trace = NkTrace.info(HELPER, logger, "i: {}", 1)) {
+            trace.returning(2);
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Batch.helper:2 i: 1",
+                " INFO << Batch.helper:2 returning(2)");
+        assertThat(NkTraceFold.getFoldedCount(), is(0));
+    }
+
+    @Test
+    public void flush_should_write_held_entry_before_regular_log() {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            NkTraceFold.flush();
+            logger.info("inside");
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Batch.outer:1",
+                " INFO    inside",
+                " INFO << Batch.outer:1");
+    }
+
+    @Test
+    public void spans_should_not_be_folded_without_nested_output_hook() {
+        NkTraceFold.nestedOutputHookStopped();
+        try {
+            try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+                for(int i = 0; i < 2; ++i) {
+                    try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+                        logger.info("inside");
+                    }
+                }
+                assertThat(NkTraceFold.getFoldedCount(), is(0));
+            }
+            TestUtils.assertLoggerOutputEqual(
+                    " INFO >> Batch.outer:1",
+                    " INFO    >> Batch.helper:2",
+                    " INFO       inside",
+                    " INFO    << Batch.helper:2",
+                    " INFO    >> Batch.helper:2",
+                    " INFO       inside",
+                    " INFO    << Batch.helper:2",
+                    " INFO << Batch.outer:1");
+        } finally {
+            NkTraceFold.nestedOutputHookStarted();
+        }
+    }
+
+    @Test
+    public void reported_nested_output_should_keep_its_span_and_end_fold() {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            for(int i = 0; i < 2; ++i) {
+                try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+                }
+            }
+            try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+                // What a backend hook does before a regular log
+                NkTraceFold.nestedOutput();
+                logger.info("inside");
+            }
+            for(int i = 0; i < 2; ++i) {
+                try(final NkTrace helperTrace = NkTrace.info(HELPER, logger)) {
+                }
+            }
+        }
+        TestUtils.assertLoggerOutputMatches(
+                " INFO >> Batch\\.outer:1",
+                " INFO    << Batch\\.helper:2 \\(folded 2x, total (" + DURATION + "), max (" + DURATION + ")\\)",
+                " INFO    >> Batch\\.helper:2",
+                " INFO       inside",
+                " INFO    << Batch\\.helper:2",
+                " INFO    << Batch\\.helper:2 \\(folded 2x, total (" + DURATION + "), max (" + DURATION + ")\\)",
+                " INFO << Batch\\.outer:1");
+    }
+}
@@ -0,0 +1,163 @@
+package net.kawinski.logging;
+
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceFrameTest {
+    private Logger logger;
+
+    @Before
+    public void resetLogger() {
+        logger = TestUtils.getFreshLogger();
+    }
+
+    @After
+    public void disableChecks() {
+        NkTraceFrame.checkMisuse = false;
+    }
+
+    @Test
+    public void frame_should_print_the_same_messages_as_nktrace() {
+        try(final NkTraceFrame frame = NkTraceFrame.info(logger, "a: {}", 1)) {
+            try(final NkTraceFrame innerFrame = NkTraceFrame.debug(logger)) {
+                innerFrame.setExitMsg("b: {}", 2);
+                innerFrame.returning(3);
+            }
+            frame.returning("x");
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> NkTraceFrameTest.frame_should_print_the_same_messages_as_nktrace:30 a: 1",
+                "DEBUG    >> NkTraceFrameTest.frame_should_print_the_same_messages_as_nktrace:31",
+                "DEBUG    << NkTraceFrameTest.frame_should_print_the_same_messages_as_nktrace:31 returning(3) b: 2",
+                " INFO << NkTraceFrameTest.frame_should_print_the_same_messages_as_nktrace:30 returning(x)");
+        assertThat(NkTraceFrame.getDepth(), is(0));
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+    }
+
+    @Test
+    public void sibling_frames_should_be_reused() {
+        NkTraceFrame first;
+        NkTraceFrame second;
+        NkTraceFrame nested;
+        try(final NkTraceFrame frame = NkTraceFrame.trace(logger)) {
+            first = frame;
+            try(final NkTraceFrame innerFrame = NkTraceFrame.trace(logger)) {
+                nested = innerFrame;
+            }
+        }
+        try(final NkTraceFrame frame = NkTraceFrame.trace(logger)) {
+            second = frame;
+        }
+        assertThat(second, is(sameInstance(first)));
+        assertThat(nested, is(not(sameInstance(first))));
+    }
+
+    @Test
+    public void disabled_frames_should_be_shared_and_not_logged() {
+        TestUtils.setLoggerLevel(ch.qos.logback.classic.Level.INFO);
+        NkTraceFrame.checkMisuse = true;
+        try(final NkTraceFrame frame = NkTraceFrame.debug(logger, "x {}", 1)) {
+            try(final NkTraceFrame innerFrame = NkTraceFrame.trace(logger)) {
+                assertThat(innerFrame, is(sameInstance(frame)));
+                assertThat(innerFrame.returning("result"), is("result"));
+            }
+            frame.setExitMsg("ignored");
+        }
+        TestUtils.assertLoggerOutputEqual("");
+        assertThat(NkTraceFrame.getDepth(), is(0));
+    }
+
+    @Test
+    public void deep_frames_should_grow_the_stack() {
+        final int depth = NkTraceFrame.INITIAL_STACK_SIZE * 2 + 1;
+        recurse(depth);
+        assertThat(NkTraceFrame.getDepth(), is(0));
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+    }
+
+    private int recurse(final int depth) {
+        try(final NkTraceFrame frame = NkTraceFrame.trace(logger)) {
+            assertThat(NkTraceFrame.getDepth(), is(NkTraceIndent.getIndentLevel()));
+            return frame.returning(depth == 0 ? 0 : recurse(depth - 1) + 1);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closing_out_of_order_should_throw_when_checks_are_enabled() {
+        NkTraceFrame.checkMisuse = true;
+        final NkTraceFrame outer = NkTraceFrame.debug(logger);
+        final NkTraceFrame inner = NkTraceFrame.debug(logger);
+        try {
+            outer.close();
+        } finally {
+            NkTraceFrame.checkMisuse = false;
+            inner.close();
+            outer.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void using_closed_frame_should_throw_when_checks_are_enabled() {
+        NkTraceFrame.checkMisuse = true;
+        final NkTraceFrame frame = NkTraceFrame.debug(logger);
+        frame.close();
+        frame.returning(1);
+    }
+
+    @Test
+    public void closing_out_of_order_should_unwind_when_checks_are_disabled() {
+        final NkTraceFrame outer = NkTraceFrame.info(logger);
+        final NkTraceFrame inner = NkTraceFrame.info(logger);
+        outer.close();
+        assertThat(NkTraceFrame.getDepth(), is(0));
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+
+        // Closing the leaked frame or closing twice must be harmless
+        inner.close();
+        outer.close();
+        inner.setExitMsg("ignored");
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> NkTraceFrameTest.closing_out_of_order_should_unwind_when_checks_are_disabled:118",
+                " INFO    >> NkTraceFrameTest.closing_out_of_order_should_unwind_when_checks_are_disabled:119",
+                " INFO << NkTraceFrameTest.closing_out_of_order_should_unwind_when_checks_are_disabled:118");
+        assertThat(NkTraceFrame.getDepth(), is(0));
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+    }
+
+    @Test
+    public void using_stale_frame_should_throw_even_if_its_slot_is_reused() {
+        NkTraceFrame.checkMisuse = true;
+        final NkTraceFrame stale = NkTraceFrame.info(logger, "first");
+        stale.close();
+        try(final NkTraceFrame current = NkTraceFrame.info(logger, "second")) {
+            try {
+                stale.setExitMsg("stale");
+                throw new AssertionError("stale frame was used");
+            } catch(final IllegalStateException e) {
+                assertThat(e.getMessage(), is("NkTrace frame used after close: setExitMsg"));
+            }
+            try {
+                stale.close();
+                throw new AssertionError("stale frame was closed");
+            } catch(final IllegalStateException e) {
+                assertThat(NkTraceFrame.getDepth(), is(1));
+            }
+            current.setExitMsg("current");
+        }
+        TestUtils.assertLoggerOutputMatches(
+                " INFO >> NkTraceFrameTest.using_stale_frame_should_throw_even_if_its_slot_is_reused:\\d+ first",
+                " INFO << NkTraceFrameTest.using_stale_frame_should_throw_even_if_its_slot_is_reused:\\d+",
+                " INFO >> NkTraceFrameTest.using_stale_frame_should_throw_even_if_its_slot_is_reused:\\d+ second",
+                " INFO << NkTraceFrameTest.using_stale_frame_should_throw_even_if_its_slot_is_reused:\\d+ current");
+        assertThat(NkTraceFrame.getDepth(), is(0));
+    }
+}
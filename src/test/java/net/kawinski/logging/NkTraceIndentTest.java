@@ -5,8 +5,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.MDC;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 
 public class NkTraceIndentTest {
 
@@ -88,4 +91,80 @@ public class NkTraceIndentTest {
         assertThat(NkTraceIndent.getCurrentIndent(), is("         "));
     }
 
+    @Test
+    public void decrement_below_zero_should_be_ignored() {
+        NkTraceIndent.decrement();
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+        assertThat(MDC.get(NkTraceIndent.MDC_INDENT_KEY), is(""));
+        NkTraceIndent.increment();
+        assertThat(NkTraceIndent.getIndentLevel(), is(1));
+    }
+
+    @Test
+    public void indent_should_not_touch_MDC_when_disabled() {
+        NkTraceIndent.useMdc = false;
+        try {
+            NkTraceIndent.increment();
+            NkTraceIndent.increment();
+            assertThat(NkTraceIndent.getIndentLevel(), is(2));
+            assertThat(MDC.get(NkTraceIndent.MDC_INDENT_KEY), is(""));
+        } finally {
+            NkTraceIndent.useMdc = true;
+        }
+    }
+
+    @Test
+    public void event_indent_should_follow_indent_until_overridden() {
+        NkTraceIndent.increment();
+        assertThat(NkTraceIndent.getEventIndentLevel(), is(1));
+        NkTraceIndent.setEventIndentLevel(4);
+        assertThat(NkTraceIndent.getEventIndentLevel(), is(4));
+        assertThat(NkTraceIndent.getIndentLevel(), is(1));
+        assertThat(MDC.get(NkTraceIndent.MDC_INDENT_KEY), is(NkTraceIndent.getIndent(4)));
+        NkTraceIndent.decrement();
+        assertThat(NkTraceIndent.getEventIndentLevel(), is(0));
+    }
+
+    @Test
+    public void getIndent_should_return_empty_string_for_negative_depth() {
+        assertThat(NkTraceIndent.getIndent(-1), is(""));
+    }
+
+    @Test
+    public void getIndent_should_support_depths_above_cached_ones() {
+        final int depth = NkTraceIndent.MAX_CACHED_INDENT_LEVEL + 10;
+        assertThat(NkTraceIndent.getIndent(depth).length(), is(depth * NkTraceIndent.SINGLE_INDENT.length()));
+        assertThat(NkTraceIndent.getIndent(100).length(), is(100 * NkTraceIndent.SINGLE_INDENT.length()));
+    }
+
+    @Test
+    public void indents_should_be_correct_when_growing_concurrently() throws InterruptedException {
+        final int threadCount = 8;
+        final int maxDepth = NkTraceIndent.MAX_CACHED_INDENT_LEVEL;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread[] threads = new Thread[threadCount];
+        for(int t = 0; t < threadCount; ++t) {
+            threads[t] = new Thread(() -> {
+                try {
+                    for(int depth = 1; depth <= maxDepth; ++depth) {
+                        NkTraceIndent.increment();
+                        assertThat(NkTraceIndent.getIndentLevel(), is(depth));
+                        assertThat(NkTraceIndent.getCurrentIndent().length(), is(depth * NkTraceIndent.SINGLE_INDENT.length()));
+                    }
+                    for(int depth = maxDepth - 1; depth >= 0; --depth) {
+                        NkTraceIndent.decrement();
+                        assertThat(NkTraceIndent.getIndentLevel(), is(depth));
+                    }
+                } catch(final Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+        }
+        for(final Thread thread : threads)
+            thread.start();
+        for(final Thread thread : threads)
+            thread.join();
+        assertThat(failure.get(), is(nullValue()));
+    }
+
 }
@@ -0,0 +1,112 @@
+package net.kawinski.logging;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceJfrTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Jfr", "outer", 1);
+    private static final CallerInfo INNER = CallerInfo.of("net.kawinski.Jfr", "inner", 2);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Logger logger;
+    private Recording recording;
+
+    @Before
+    public void startRecording() {
+        logger = TestUtils.getFreshLogger();
+        recording = new Recording();
+        recording.enable(NkTraceSpanEvent.NAME).withoutThreshold();
+        recording.start();
+    }
+
+    @After
+    public void stopRecording() {
+        NkTraceJfr.mode = NkTraceJfr.Mode.OFF;
+        recording.close();
+    }
+
+    @Test
+    public void jfr_only_mode_should_record_events_instead_of_logs() throws IOException {
+        NkTraceJfr.mode = NkTraceJfr.Mode.ONLY;
+        try(final NkTrace trace = NkTrace.info(OUTER, logger, "a: {}", 1)) {
+            logger.info("Indented");
+            try(final NkTraceFrame innerFrame = NkTraceFrame.debug(INNER, logger, "")) {
+                innerFrame.returning(42);
+            }
+        }
+        TestUtils.assertLoggerOutputEqual(" INFO    Indented");
+
+        final List<RecordedEvent> events = stopAndRead();
+        assertThat(events.size(), is(2));
+        // Inner span ends first
+        final RecordedEvent inner = events.get(0);
+        assertThat(inner.getString("className"), is("net.kawinski.Jfr"));
+        assertThat(inner.getString("methodName"), is("inner"));
+        assertThat(inner.getInt("lineNumber"), is(2));
+        assertThat(inner.getString("level"), is("DEBUG"));
+        assertThat(inner.getInt("depth"), is(1));
+        assertThat(inner.getString("returnValue"), is("42"));
+        final RecordedEvent outer = events.get(1);
+        assertThat(outer.getString("methodName"), is("outer"));
+        assertThat(outer.getInt("depth"), is(0));
+        assertThat(outer.getString("returnValue"), is(nullValue()));
+        assertThat(outer.getDuration().compareTo(inner.getDuration()) >= 0, is(true));
+    }
+
+    @Test
+    public void also_mode_should_record_events_and_logs() throws IOException {
+        NkTraceJfr.mode = NkTraceJfr.Mode.ALSO;
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Jfr.outer:1",
+                " INFO << Jfr.outer:1");
+        assertThat(stopAndRead().size(), is(1));
+    }
+
+    @Test
+    public void disabled_spans_should_not_record_events() throws IOException {
+        NkTraceJfr.mode = NkTraceJfr.Mode.ONLY;
+        TestUtils.setLoggerLevel(ch.qos.logback.classic.Level.INFO);
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger)) {
+        }
+        assertThat(stopAndRead().size(), is(0));
+    }
+
+    @Test
+    public void off_mode_should_not_record_events() throws IOException {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+        }
+        assertThat(stopAndRead().size(), is(0));
+    }
+
+    private List<RecordedEvent> stopAndRead() throws IOException {
+        recording.stop();
+        final Path file = folder.newFile("recording.jfr").toPath();
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(NkTraceSpanEvent.NAME))
+                .sorted((a, b) -> a.getEndTime().compareTo(b.getEndTime()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,158 @@
+package net.kawinski.logging;
+
+import ch.qos.logback.classic.Level;
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceProfilerTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Profiled", "outer", 1);
+    private static final CallerInfo INNER = CallerInfo.of("net.kawinski.Profiled", "inner", 2);
+    private static final CallerInfo OTHER = CallerInfo.of("net.kawinski.Profiled", "other", 3);
+
+    private static final String NL = System.lineSeparator();
+
+    private Logger logger;
+
+    @Before
+    public void enableProfiler() {
+        logger = TestUtils.getFreshLogger();
+        TestUtils.setLoggerLevel(Level.INFO);
+        NkTraceProfiler.enabled = true;
+        NkTraceProfiler.reset();
+    }
+
+    @After
+    public void disableProfiler() {
+        NkTraceProfiler.enabled = false;
+        NkTraceProfiler.reset();
+    }
+
+    @Test
+    public void nested_spans_should_build_call_tree_without_logging() throws InterruptedException {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            for(int i = 0; i < 3; ++i) {
+                try(final NkTrace innerTrace = NkTrace.trace(INNER, logger)) {
+                    Thread.sleep(2);
+                }
+            }
+            try(final NkTraceFrame frame = NkTraceFrame.debug(OTHER, logger, "")) {
+            }
+        }
+        TestUtils.assertLoggerOutputEqual("");
+
+        final NkTraceProfiler.Node outer = NkTraceProfiler.snapshot().getChild(OUTER);
+        assertThat(outer, is(notNullValue()));
+        assertThat(outer.getCount(), is(1L));
+        final NkTraceProfiler.Node inner = outer.getChild(INNER);
+        assertThat(inner.getCount(), is(3L));
+        assertThat(outer.getChild(OTHER).getCount(), is(1L));
+        assertTrue(inner.getTotalNanos() >= 6_000_000L);
+        assertTrue(outer.getTotalNanos() >= inner.getTotalNanos());
+        assertTrue(outer.getSelfNanos() <= outer.getTotalNanos() - inner.getTotalNanos());
+        assertThat(inner.getSelfNanos(), is(inner.getTotalNanos()));
+    }
+
+    @Test
+    public void same_site_under_different_parents_should_be_separate_nodes() {
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger)) {
+            try(final NkTrace innerTrace = NkTrace.debug(INNER, logger)) {
+            }
+        }
+        try(final NkTrace trace = NkTrace.debug(INNER, logger)) {
+        }
+        final NkTraceProfiler.Node root = NkTraceProfiler.snapshot();
+        assertThat(root.getChild(INNER).getCount(), is(1L));
+        assertThat(root.getChild(OUTER).getChild(INNER).getCount(), is(1L));
+        assertThat(root.getChild(OUTER).getChild(OUTER), is(nullValue()));
+    }
+
+    @Test
+    public void trees_of_finished_threads_should_be_merged() throws InterruptedException {
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger)) {
+        }
+        final Thread thread = new Thread(() -> {
+            for(int i = 0; i < 2; ++i) {
+                try(final NkTrace trace = NkTrace.debug(OUTER, logger)) {
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        assertThat(NkTraceProfiler.snapshot().getChild(OUTER).getCount(), is(3L));
+        // Retired trees are kept
+        assertThat(NkTraceProfiler.snapshot().getChild(OUTER).getCount(), is(3L));
+    }
+
+    @Test
+    public void dumps_should_describe_every_call_path() {
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger)) {
+            try(final NkTrace innerTrace = NkTrace.debug(INNER, logger)) {
+            }
+        }
+        final String[] tree = NkTraceProfiler.dumpTree().split(NL);
+        assertThat(tree.length, is(2));
+        assertTrue(tree[0], tree[0].startsWith("Profiled.outer:1 count=1 total="));
+        assertTrue(tree[1], tree[1].startsWith("   Profiled.inner:2 count=1 total="));
+        for(final String line : NkTraceProfiler.dumpCollapsed().split(NL)) {
+            assertTrue(line, line.matches("Profiled\\.outer:1(;Profiled\\.inner:2)? \\d+"));
+        }
+    }
+
+    @Test
+    public void unclosed_frames_should_not_be_counted() {
+        try(final NkTraceFrame frame = NkTraceFrame.debug(OUTER, logger, "")) {
+            NkTraceFrame.debug(INNER, logger, "");
+        }
+        final NkTraceProfiler.Node outer = NkTraceProfiler.snapshot().getChild(OUTER);
+        assertThat(outer.getCount(), is(1L));
+        assertThat(outer.getChild(INNER).getCount(), is(0L));
+        try(final NkTrace trace = NkTrace.debug(OTHER, logger)) {
+        }
+        assertThat(NkTraceProfiler.snapshot().getChild(OTHER).getCount(), is(1L));
+    }
+
+    @Test
+    public void reset_should_clear_counters() {
+        try(final NkTrace trace = NkTrace.debug(OUTER, logger)) {
+        }
+        NkTraceProfiler.reset();
+        assertThat(NkTraceProfiler.snapshot().getChild(OUTER).getCount(), is(0L));
+        assertThat(NkTraceProfiler.dumpCollapsed(), is(""));
+    }
+
+    @Test
+    public void spans_should_be_logged_when_profiler_is_disabled() {
+        NkTraceProfiler.enabled = false;
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Profiled.outer:1",
+                " INFO << Profiled.outer:1");
+        assertThat(NkTraceProfiler.snapshot().getChild(OUTER), is(nullValue()));
+    }
+
+    @Test
+    public void trees_of_finished_threads_should_be_folded_without_snapshots() throws InterruptedException {
+        final int threads = NkTraceProfiler.PRUNE_INTERVAL * 4;
+        for(int i = 0; i < threads; ++i) {
+            final Thread thread = new Thread(() -> {
+                try(final NkTrace trace = NkTrace.debug(OTHER, logger)) {
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+        assertTrue(NkTraceProfiler.threadCount() < NkTraceProfiler.PRUNE_INTERVAL * 2);
+        assertThat(NkTraceProfiler.snapshot().getChild(OTHER).getCount(), is((long) threads));
+    }
+}
@@ -0,0 +1,123 @@
+package net.kawinski.logging;
+
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceRateLimitTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Busy", "outer", 1);
+    private static final CallerInfo HOT = CallerInfo.of("net.kawinski.Busy", "hot", 2);
+
+    // Low enough for the bucket not to refill during a test
+    private static final double RATE = 0.001;
+
+    private Logger logger;
+
+    @Before
+    public void setUp() {
+        logger = TestUtils.getFreshLogger();
+        NkTraceRateLimit.reset();
+        NkTraceRateLimit.burst = 2;
+        NkTraceRateLimit.summaryIntervalNanos = Long.MAX_VALUE;
+    }
+
+    @After
+    public void tearDown() {
+        NkTraceRateLimit.reset();
+        NkTraceRateLimit.spansPerSecond = 0;
+        NkTraceRateLimit.burst = 100;
+        NkTraceRateLimit.summaryIntervalNanos = 1_000_000_000L;
+    }
+
+    @Test
+    public void spans_over_limit_should_be_suppressed_without_breaking_indentation() {
+        NkTraceRateLimit.spansPerSecond = RATE;
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            for(int i = 1; i <= 4; ++i) {
+                try(final NkTrace hotTrace = NkTrace.info(HOT, logger, "i: {}", i)) {
+                    logger.info("inside {}", i);
+                }
+            }
+            try(final NkTraceFrame frame = NkTraceFrame.info(HOT, logger, "")) {
+                logger.info("inside frame");
+            }
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Busy.outer:1",
+                " INFO    >> Busy.hot:2 i: 1",
+                " INFO       inside 1",
+                " INFO    << Busy.hot:2",
+                " INFO    >> Busy.hot:2 i: 2",
+                " INFO       inside 2",
+                " INFO    << Busy.hot:2",
+                " INFO    inside 3",
+                " INFO    inside 4",
+                " INFO    inside frame",
+                " INFO << Busy.outer:1");
+        assertThat(NkTraceRateLimit.getSuppressedCount(HOT), is(3L));
+        assertThat(NkTraceRateLimit.getSuppressedCount(OUTER), is(0L));
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+    }
+
+    @Test
+    public void summary_should_report_suppressed_spans() {
+        NkTraceRateLimit.spansPerSecond = RATE;
+        for(int i = 0; i < 5; ++i) {
+            try(final NkTrace trace = NkTrace.info(HOT, logger)) {
+            }
+        }
+        TestUtils.resetLogger();
+        NkTraceRateLimit.summaryIntervalNanos = 0;
+        try(final NkTrace trace = NkTrace.info(HOT, logger)) {
+        }
+        TestUtils.assertLoggerOutputEqual(" WARN suppressed 4 spans from Busy.hot:2");
+        assertThat(NkTraceRateLimit.getSuppressedCount(HOT), is(0L));
+    }
+
+    @Test
+    public void logger_limit_should_override_global_limit() {
+        NkTraceRateLimit.setLoggerLimit(logger.getName(), RATE);
+        for(int i = 0; i < 3; ++i) {
+            try(final NkTrace trace = NkTrace.info(HOT, logger)) {
+            }
+        }
+        assertThat(NkTraceRateLimit.getSuppressedCount(HOT), is(1L));
+
+        NkTraceRateLimit.spansPerSecond = RATE;
+        NkTraceRateLimit.setLoggerLimit(logger.getName(), 0);
+        TestUtils.resetLogger();
+        try(final NkTrace trace = NkTrace.info(HOT, logger)) {
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Busy.hot:2",
+                " INFO << Busy.hot:2");
+    }
+
+    @Test
+    public void spans_should_not_be_limited_by_default() {
+        for(int i = 0; i < 200; ++i) {
+            try(final NkTraceFrame frame = NkTraceFrame.info(HOT, logger, "")) {
+            }
+        }
+        assertThat(NkTraceRateLimit.getSuppressedCount(HOT), is(0L));
+    }
+
+    @Test
+    public void summary_of_quiet_call_site_should_be_written_on_reset() {
+        NkTraceRateLimit.spansPerSecond = RATE;
+        for(int i = 0; i < 5; ++i) {
+            try(final NkTrace trace = NkTrace.info(HOT, logger)) {
+            }
+        }
+        TestUtils.resetLogger();
+        NkTraceRateLimit.reset();
+        TestUtils.assertLoggerOutputEqual(" WARN suppressed 3 spans from Busy.hot:2");
+        assertThat(NkTraceRateLimit.getSuppressedCount(HOT), is(0L));
+    }
+}
@@ -0,0 +1,105 @@
+package net.kawinski.logging;
+
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceSlowSpansTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Slow", "outer", 1);
+    private static final CallerInfo INNER = CallerInfo.of("net.kawinski.Slow", "inner", 2);
+    private static final CallerInfo SLEEPING = CallerInfo.of("net.kawinski.Slow", "sleeping", 3);
+
+    private Logger logger;
+
+    @Before
+    public void enableSlowSpans() {
+        logger = TestUtils.getFreshLogger();
+        NkTraceSlowSpans.enabled = true;
+        NkTraceSlowSpans.thresholdNanos = 50_000_000L;
+    }
+
+    @After
+    public void disableSlowSpans() {
+        NkTraceSlowSpans.enabled = false;
+        NkTraceSlowSpans.thresholdNanos = 10_000_000L;
+        NkTraceSlowSpans.maxBufferedEvents = 4096;
+    }
+
+    @Test
+    public void fast_spans_should_be_dropped() {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger, "a: {}", 1)) {
+            try(final NkTrace innerTrace = NkTrace.info(INNER, logger)) {
+                innerTrace.returning(2);
+            }
+        }
+        TestUtils.assertLoggerOutputEqual("");
+        assertThat(NkTraceSlowSpans.getBufferedCount(), is(0));
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+    }
+
+    @Test
+    public void slow_span_should_be_written_with_enclosing_spans_only() throws InterruptedException {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger, "a: {}", 1)) {
+            try(final NkTrace innerTrace = NkTrace.info(INNER, logger)) {
+            }
+            try(final NkTrace sleepingTrace = NkTrace.info(SLEEPING, logger)) {
+                try(final NkTraceFrame innerFrame = NkTraceFrame.info(INNER, logger, "")) {
+                }
+                Thread.sleep(60);
+                sleepingTrace.setExitMsg("b");
+            }
+            try(final NkTraceFrame innerFrame = NkTraceFrame.info(INNER, logger, "")) {
+            }
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Slow.outer:1 a: 1",
+                " INFO    >> Slow.sleeping:3",
+                " INFO    << Slow.sleeping:3 b",
+                " INFO << Slow.outer:1");
+        assertThat(NkTraceSlowSpans.getBufferedCount(), is(0));
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+    }
+
+    @Test
+    public void full_buffer_should_be_flushed() {
+        NkTraceSlowSpans.thresholdNanos = Long.MAX_VALUE;
+        NkTraceSlowSpans.maxBufferedEvents = 2;
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            try(final NkTrace innerTrace = NkTrace.info(INNER, logger)) {
+                try(final NkTrace sleepingTrace = NkTrace.info(SLEEPING, logger)) {
+                }
+            }
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Slow.outer:1",
+                " INFO    >> Slow.inner:2",
+                " INFO    << Slow.inner:2",
+                " INFO << Slow.outer:1");
+    }
+
+    @Test
+    public void spans_should_be_written_immediately_when_disabled() {
+        NkTraceSlowSpans.enabled = false;
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            assertThat(NkTraceSlowSpans.getBufferedCount(), is(0));
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Slow.outer:1",
+                " INFO << Slow.outer:1");
+    }
+
+    @Test
+    public void regular_logs_should_be_written_immediately_even_in_fast_spans() {
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            logger.info("inside");
+        }
+        TestUtils.assertLoggerOutputEqual(" INFO    inside");
+        assertThat(NkTraceSlowSpans.getBufferedCount(), is(0));
+    }
+}
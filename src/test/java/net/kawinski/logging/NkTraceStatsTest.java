@@ -0,0 +1,160 @@
+package net.kawinski.logging;
+
+import ch.qos.logback.classic.Level;
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceStatsTest {
+    private static final CallerInfo VERBOSE = CallerInfo.of("net.kawinski.Counted", "verbose", 1);
+    private static final CallerInfo QUIET = CallerInfo.of("net.kawinski.Counted", "quiet", 2);
+    private static final CallerInfo FAILING = CallerInfo.of("net.kawinski.Counted", "failing", 3);
+
+    private Logger logger;
+
+    @Before
+    public void setUp() {
+        logger = TestUtils.getFreshLogger();
+        NkTraceStats.reset();
+        NkTraceStats.enabled = true;
+    }
+
+    @After
+    public void tearDown() {
+        NkTraceStats.enabled = false;
+        NkTraceStats.measureMessages = false;
+        NkTraceStats.reset();
+    }
+
+    @Test
+    public void spans_should_be_counted_per_call_site() {
+        NkTraceStats.measureMessages = true;
+        for(int i = 0; i < 3; ++i) {
+            try(final NkTrace trace = NkTrace.info(VERBOSE, logger, "i: {}", i)) {
+                trace.returning("abc");
+            }
+        }
+        try(final NkTraceFrame frame = NkTraceFrame.info(QUIET, logger, "")) {
+        }
+
+        final NkTraceStats.SiteStats verbose = NkTraceStats.of(VERBOSE);
+        assertThat(verbose.getEntries(), is(3L));
+        assertThat(verbose.getExits(), is(3L));
+        assertThat(verbose.getExceptionalExits(), is(0L));
+        // ">> Counted.verbose:1 i: 0" and "<< Counted.verbose:1 returning(abc)"
+        assertThat(verbose.getFormattedChars(), is(3L * (25 + 35)));
+        final NkTraceStats.SiteStats quiet = NkTraceStats.of(QUIET);
+        assertThat(quiet.getEntries(), is(1L));
+        assertThat(quiet.getExits(), is(1L));
+
+        final List<NkTraceStats.SiteStats> snapshot = NkTraceStats.snapshot();
+        assertThat(snapshot.size(), is(2));
+        assertThat(snapshot.get(0).getCallSite(), is("net.kawinski.Counted.verbose:1"));
+        assertThat(snapshot.get(1).getCallSite(), is("net.kawinski.Counted.quiet:2"));
+    }
+
+    @Test
+    public void exceptional_exits_and_disabled_levels_should_be_counted() {
+        try(final NkTrace trace = NkTrace.info(FAILING, logger)) {
+            trace.throwing(new IllegalStateException("boom"));
+        }
+        TestUtils.setLoggerLevel(Level.WARN);
+        try(final NkTrace trace = NkTrace.info(FAILING, logger)) {
+        }
+        try(final NkTraceFrame frame = NkTraceFrame.debug(FAILING, logger, "")) {
+        }
+
+        final NkTraceStats.SiteStats failing = NkTraceStats.of(FAILING);
+        assertThat(failing.getEntries(), is(1L));
+        assertThat(failing.getExits(), is(1L));
+        assertThat(failing.getExceptionalExits(), is(1L));
+        assertThat(failing.getSuppressedByLevel(), is(2L));
+    }
+
+    @Test
+    public void snapshot_and_reset_should_start_counting_from_zero() {
+        try(final NkTrace trace = NkTrace.info(VERBOSE, logger)) {
+        }
+        assertThat(NkTraceStats.snapshotAndReset().get(0).getEntries(), is(1L));
+        assertThat(NkTraceStats.snapshot().size(), is(0));
+        assertThat(NkTraceStats.of(VERBOSE).getEntries(), is(0L));
+    }
+
+    @Test
+    public void spans_should_not_be_counted_when_disabled() {
+        NkTraceStats.enabled = false;
+        try(final NkTrace trace = NkTrace.info(VERBOSE, logger)) {
+        }
+        assertThat(NkTraceStats.of(VERBOSE).getEntries(), is(0L));
+    }
+
+    @Test
+    public void counters_should_be_exposed_over_jmx() throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(NkTraceStats.MBEAN_NAME);
+        if(!server.isRegistered(name)) {
+            NkTraceStats.registerMBean();
+        }
+        try(final NkTrace trace = NkTrace.info(QUIET, logger)) {
+        }
+        final CompositeData[] sites = (CompositeData[]) server.getAttribute(name, "Sites");
+        assertThat(sites.length, is(1));
+        assertThat(sites[0].get("callSite"), is("net.kawinski.Counted.quiet:2"));
+        assertThat(sites[0].get("entries"), is(1L));
+
+        server.invoke(name, "reset", new Object[0], new String[0]);
+        assertThat(((CompositeData[]) server.getAttribute(name, "Sites")).length, is(0));
+    }
+
+    @Test
+    public void every_disabled_span_should_be_counted() {
+        TestUtils.setLoggerLevel(Level.WARN);
+        try(final NkTrace trace = NkTrace.debug(QUIET, logger, "a: {}", "x")) {
+        }
+        try(final NkTrace trace = NkTrace.debug(QUIET, logger, "a: {}", 1)) {
+        }
+        try(final NkTrace trace = NkTrace.trace(QUIET, logger, "a: {}, b: {}", 1, 2)) {
+        }
+        assertThat(NkTrace.isInfoEnabled(QUIET, logger), is(false));
+        // Without explicit location, the call site isn't worth resolving, so the span isn't counted
+        try(final NkTrace trace = NkTrace.info(logger, "a: {}", () -> 1)) {
+        }
+        try(final NkTraceFrame frame = NkTraceFrame.debug(logger)) {
+        }
+        assertThat(NkTraceStats.of(QUIET).getSuppressedByLevel(), is(4L));
+        assertThat(NkTraceStats.of(CallerInfo.UNKNOWN).getSuppressedByLevel(), is(0L));
+    }
+
+    @Test
+    public void measured_messages_should_be_formatted_once() {
+        NkTraceStats.measureMessages = true;
+        final AtomicInteger formatted = new AtomicInteger();
+        final Object arg = new Object() {
+            @Override
+            public String toString() {
+                return "call " + formatted.incrementAndGet();
+            }
+        };
+        try(final NkTrace trace = NkTrace.info(VERBOSE, logger, "{}", arg)) {
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Counted.verbose:1 call 1",
+                " INFO << Counted.verbose:1");
+        assertThat(formatted.get(), is(1));
+        // ">> Counted.verbose:1 call 1" and "<< Counted.verbose:1"
+        assertThat(NkTraceStats.of(VERBOSE).getFormattedChars(), is(27L + 20));
+    }
+}
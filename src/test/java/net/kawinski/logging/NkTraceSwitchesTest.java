@@ -0,0 +1,108 @@
+package net.kawinski.logging;
+
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceSwitchesTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.switched.Service", "outer", 1);
+    private static final CallerInfo INNER = CallerInfo.of("net.kawinski.switched.Service", "inner", 2);
+    private static final CallerInfo OTHER = CallerInfo.of("net.kawinski.switched.Other", "other", 3);
+
+    private Logger logger;
+
+    @Before
+    public void setUp() {
+        logger = TestUtils.getFreshLogger();
+    }
+
+    @After
+    public void tearDown() {
+        NkTraceSwitches.clearAll();
+    }
+
+    @Test
+    public void switched_off_spans_should_not_be_logged_nor_indent() {
+        NkTraceSwitches.disable("net.kawinski.switched.Service");
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            logger.info("inside");
+            try(final NkTraceFrame frame = NkTraceFrame.info(INNER, logger, "")) {
+            }
+            try(final NkTrace otherTrace = NkTrace.info(OTHER, logger)) {
+            }
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO inside",
+                " INFO >> Other.other:3",
+                " INFO << Other.other:3");
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+    }
+
+    @Test
+    public void most_specific_switch_should_win() {
+        NkTraceSwitches.disable("*");
+        NkTraceSwitches.enable("net.kawinski.switched");
+        NkTraceSwitches.disable("net.kawinski.switched.Service");
+        NkTraceSwitches.enable("net.kawinski.switched.Service.inner:2");
+        assertThat(NkTraceSwitches.isOn(OUTER), is(false));
+        assertThat(NkTraceSwitches.isOn(INNER), is(true));
+        assertThat(NkTraceSwitches.isOn(OTHER), is(true));
+        assertThat(NkTraceSwitches.isOn(CallerInfo.of("net.kawinski.Unrelated", "run", 4)), is(false));
+
+        NkTraceSwitches.clear("net.kawinski.switched.Service");
+        assertThat(NkTraceSwitches.isOn(OUTER), is(true));
+    }
+
+    @Test
+    public void clearing_switches_should_turn_tracing_back_on() {
+        NkTraceSwitches.disable("net.kawinski.switched.Service.outer");
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+        }
+        NkTraceSwitches.clearAll();
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Service.outer:1",
+                " INFO << Service.outer:1");
+    }
+
+    @Test
+    public void switches_should_be_changed_over_jmx() throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(NkTraceSwitches.MBEAN_NAME);
+        if(!server.isRegistered(name)) {
+            NkTraceSwitches.registerMBean();
+        }
+        server.invoke(name, "disable", new Object[]{"net.kawinski.switched.Other"}, new String[]{String.class.getName()});
+        assertThat(NkTraceSwitches.isOn(OTHER), is(false));
+        final String[] switches = (String[]) server.getAttribute(name, "Switches");
+        assertThat(switches, is(new String[]{"net.kawinski.switched.Other=off"}));
+        final String[] callSites = (String[]) server.getAttribute(name, "CallSites");
+        assertThat(Arrays.asList(callSites), hasItem("net.kawinski.switched.Other.other:3 off"));
+    }
+
+    @Test
+    public void switched_off_spans_at_explicit_location_should_not_be_created() {
+        NkTraceSwitches.disable("net.kawinski.switched.Service.outer");
+        assertThat(NkTrace.info(OUTER, logger, "a: {}", 1) == NkTrace.disabled(), is(true));
+        assertThat(NkTrace.isInfoEnabled(OUTER, logger), is(false));
+        assertThat(NkTrace.isInfoEnabled(INNER, logger), is(true));
+        // Pooled frames of nested spans are different objects, the disabled one is shared
+        try(final NkTraceFrame frame = NkTraceFrame.info(OUTER, logger, "");
+            final NkTraceFrame nested = NkTraceFrame.info(OUTER, logger, "")) {
+            assertThat(frame == nested, is(true));
+        }
+    }
+}
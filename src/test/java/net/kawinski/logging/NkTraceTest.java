@@ -6,8 +6,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 
-// This comment serves only for line-number alignment purposes
-// This comment serves only for line-number alignment purposes
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
 @SuppressWarnings("EmptyTryBlock")
 public class NkTraceTest {
     private Logger logger;
@@ -144,4 +144,219 @@ public class NkTraceTest {
         }
     }
 
+    @Test
+    public void trace_with_explicit_caller_should_not_resolve_it() {
+        final CallerResolver previousResolver = NkTrace.callerResolver;
+        NkTrace.callerResolver = CallerResolvers.none();
+        try {
+            final CallerInfo site = CallerInfo.of("net.kawinski.Foo", "bar", 12);
+            try(final NkTrace trace = NkTrace.info(site, logger, "a: {}", 1)) {
+            }
+            try(final NkTrace trace = NkTrace.debug(logger)) {
+            }
+            TestUtils.assertLoggerOutputEqual(
+                    " INFO >> Foo.bar:12 a: 1",
+                    " INFO << Foo.bar:12",
+                    "DEBUG >> unknown.unknown:0",
+                    "DEBUG << unknown.unknown:0");
+        } finally {
+            NkTrace.callerResolver = previousResolver;
+        }
+    }
+
+    @Test
+    public void disabled_traces_should_be_shared() {
+        TestUtils.setLoggerLevel(Level.INFO);
+        try(final NkTrace trace = NkTrace.debug(logger, "x {}", 1)) {
+            try(final NkTrace innerTrace = NkTrace.trace(logger)) {
+                assertThat(innerTrace == trace, is(true));
+                innerTrace.setExitMsg("ignored {}", 2);
+                assertThat(innerTrace.returning("result"), is("result"));
+            }
+        }
+        TestUtils.assertLoggerOutputEqual("");
+        assertThat(NkTraceIndent.getIndentLevel(), is(0));
+    }
+
+    @Test
+    public void trace_with_single_array_argument_should_use_it_as_varargs() {
+        final Object[] args = {"Peter", 4};
+        try(final NkTrace trace = NkTrace.info(logger, "Hello {}. 2+2={}", (Object) args)) {
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> NkTraceTest.trace_with_single_array_argument_should_use_it_as_varargs:184 Hello Peter. 2+2=4",
+                " INFO << NkTraceTest.trace_with_single_array_argument_should_use_it_as_varargs:184");
+    }
+
+    @Test
+    public void disabled_trace_should_not_allocate() {
+        TestUtils.setLoggerLevel(Level.INFO);
+        final String v = "value";
+        // Warm up, so class loading, lazy initialization and JIT compilation don't count
+        disabledTraces(v, 100_000);
+
+        // Compilation might still kick in during the measurement. It's a one-time cost, so take the best run
+        long minAllocated = Long.MAX_VALUE;
+        for(int run = 0; run < 3; ++run) {
+            final long before = TestUtils.allocatedBytes();
+            disabledTraces(v, 10_000);
+            minAllocated = Math.min(minAllocated, TestUtils.allocatedBytes() - before);
+        }
+        assertThat(minAllocated, is(0L));
+    }
+
+    private String disabledTraces(final String v, final int count) {
+        String result = null;
+        for(int i = 0; i < count; ++i) {
+            try(final NkTrace t = NkTrace.debug(logger, "x {}", v)) {
+                result = t.returning(v);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void trace_exit_should_print_returned_primitives() {
+        try(final NkTrace trace = NkTrace.info(logger, "{} {} {}", 1, 2L, 'c')) {
+            assertThat(trace.returning(42), is(42));
+            assertThat(trace.returning(42L), is(42L));
+            assertThat(trace.returning(0.5f), is(0.5f));
+            assertThat(trace.returning(true), is(true));
+            assertThat(trace.returning('x'), is('x'));
+            assertThat(trace.returning(-1.5), is(-1.5));
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> NkTraceTest.trace_exit_should_print_returned_primitives:220 1 2 c",
+                " INFO << NkTraceTest.trace_exit_should_print_returned_primitives:220 returning(-1.5)");
+    }
+
+    @Test
+    public void trace_exit_should_print_every_primitive_type_like_boxed_one() {
+        final Object[] boxed = {7, 7L, 7.25, 7.25f, false, 'z'};
+        for(final Object value : boxed) {
+            logger = TestUtils.getFreshLogger();
+            try(final NkTrace trace = NkTrace.info(logger, "a")) {
+                if(value instanceof Integer) trace.returning((int) (Integer) value);
+                if(value instanceof Long) trace.returning((long) (Long) value);
+                if(value instanceof Double) trace.returning((double) (Double) value);
+                if(value instanceof Float) trace.returning((float) (Float) value);
+                if(value instanceof Boolean) trace.returning((boolean) (Boolean) value);
+                if(value instanceof Character) trace.returning((char) (Character) value);
+                trace.setExitMsg("b");
+            }
+            TestUtils.assertLoggerOutputEqual(
+                    " INFO >> NkTraceTest.trace_exit_should_print_every_primitive_type_like_boxed_one:238 a",
+                    " INFO << NkTraceTest.trace_exit_should_print_every_primitive_type_like_boxed_one:238 returning(" + value + ") b");
+        }
+    }
+
+    @Test
+    public void trace_with_fixed_arity_arguments_should_print_formatted_message() {
+        try(final NkTrace trace = NkTrace.debug(logger, "{}+{}={}", 2, 2, 4)) {
+            try(final NkTrace innerTrace = NkTrace.trace(logger, "{} {}", "a", "b")) {
+                innerTrace.setExitMsg("c {}", "d");
+            }
+            try(final NkTrace innerTrace = NkTrace.info(logger, "e")) {
+                innerTrace.setExitMsg("f");
+            }
+        }
+        TestUtils.assertLoggerOutputEqual(
+                "DEBUG >> NkTraceTest.trace_with_fixed_arity_arguments_should_print_formatted_message:255 2+2=4",
+                "TRACE    >> NkTraceTest.trace_with_fixed_arity_arguments_should_print_formatted_message:256 a b",
+                "TRACE    << NkTraceTest.trace_with_fixed_arity_arguments_should_print_formatted_message:256 c d",
+                " INFO    >> NkTraceTest.trace_with_fixed_arity_arguments_should_print_formatted_message:259 e",
+                " INFO    << NkTraceTest.trace_with_fixed_arity_arguments_should_print_formatted_message:259 f",
+                "DEBUG << NkTraceTest.trace_with_fixed_arity_arguments_should_print_formatted_message:255");
+    }
+
+    @Test
+    public void disabled_trace_with_primitive_arguments_should_not_allocate() {
+        TestUtils.setLoggerLevel(Level.INFO);
+        // Warm up, so class loading, lazy initialization and JIT compilation don't count
+        disabledPrimitiveTraces(1.5, 100_000);
+
+        long minAllocated = Long.MAX_VALUE;
+        for(int run = 0; run < 3; ++run) {
+            final long before = TestUtils.allocatedBytes();
+            disabledPrimitiveTraces(1.5, 10_000);
+            minAllocated = Math.min(minAllocated, TestUtils.allocatedBytes() - before);
+        }
+        assertThat(minAllocated, is(0L));
+    }
+
+    private double disabledPrimitiveTraces(final double v, final int count) {
+        double result = 0;
+        for(int i = 0; i < count; ++i) {
+            // Single primitive arguments have own overloads
+            try(final NkTrace t = NkTrace.debug(logger, "{}", v * i)) {
+                result += t.returning(v * i);
+            }
+            // More of them need the guard
+            try(final NkTrace t = NkTrace.isDebugEnabled(logger) ? NkTrace.debug(logger, "{} {}", v, i) : NkTrace.disabled()) {
+                result += t.returning(v + i);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void lazy_arguments_should_not_be_computed_if_level_is_disabled() {
+        TestUtils.setLoggerLevel(Level.INFO);
+        final java.util.concurrent.atomic.AtomicInteger calls = new java.util.concurrent.atomic.AtomicInteger();
+        try(final NkTrace trace = NkTrace.debug(logger, "{}", () -> calls.incrementAndGet())) {
+            try(final NkTrace innerTrace = NkTrace.trace(logger, "{} {}", () -> calls.incrementAndGet(), () -> calls.incrementAndGet())) {
+                innerTrace.setExitMsg("{}", () -> calls.incrementAndGet());
+                innerTrace.returningLazily(() -> calls.incrementAndGet());
+            }
+        }
+        TestUtils.assertLoggerOutputEqual("");
+        assertThat(calls.get(), is(0));
+    }
+
+    @Test
+    public void lazy_arguments_should_be_printed_if_level_is_enabled() {
+        try(final NkTrace trace = NkTrace.info(logger, "a: {}", () -> "x")) {
+            try(final NkTrace innerTrace = NkTrace.debug(logger, "b: {} {}", () -> 1, () -> 2)) {
+                innerTrace.setExitMsg("c: {}", () -> 'c');
+                innerTrace.returningLazily(() -> "big result");
+            }
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> NkTraceTest.lazy_arguments_should_be_printed_if_level_is_enabled:318 a: x",
+                "DEBUG    >> NkTraceTest.lazy_arguments_should_be_printed_if_level_is_enabled:319 b: 1 2",
+                "DEBUG    << NkTraceTest.lazy_arguments_should_be_printed_if_level_is_enabled:319 returning(big result) c: c",
+                " INFO << NkTraceTest.lazy_arguments_should_be_printed_if_level_is_enabled:318");
+    }
+
+    @Test
+    public void single_primitive_arguments_should_be_printed_like_boxed_ones() {
+        final CallerInfo caller = CallerInfo.of("net.kawinski.Primitives", "run", 1);
+        try(final NkTrace trace = NkTrace.info(logger, "{}", 'c')) {
+            try(final NkTrace innerTrace = NkTrace.debug(logger, "{}", 0.1f)) {
+            }
+            try(final NkTrace innerTrace = NkTrace.trace(logger, "{}", true)) {
+            }
+            try(final NkTrace innerTrace = NkTrace.info(caller, logger, "{} {}", 1, 2.5)) {
+            }
+        }
+        TestUtils.assertLoggerOutputMatches(
+                " INFO >> NkTraceTest.single_primitive_arguments_should_be_printed_like_boxed_ones:\\d+ c",
+                "DEBUG    >> NkTraceTest.single_primitive_arguments_should_be_printed_like_boxed_ones:\\d+ 0.1",
+                "DEBUG    << NkTraceTest.single_primitive_arguments_should_be_printed_like_boxed_ones:\\d+",
+                "TRACE    >> NkTraceTest.single_primitive_arguments_should_be_printed_like_boxed_ones:\\d+ true",
+                "TRACE    << NkTraceTest.single_primitive_arguments_should_be_printed_like_boxed_ones:\\d+",
+                " INFO    >> Primitives.run:1 1 2.5",
+                " INFO    << Primitives.run:1",
+                " INFO << NkTraceTest.single_primitive_arguments_should_be_printed_like_boxed_ones:\\d+");
+    }
+
+    @Test
+    public void null_argument_should_still_compile_and_be_passed_as_null_array() {
+        try(final NkTrace trace = NkTrace.info(logger, "a: {}", null)) {
+            trace.setExitMsg("b: {}", null);
+        }
+        TestUtils.assertLoggerOutputMatches(
+                " INFO >> NkTraceTest.null_argument_should_still_compile_and_be_passed_as_null_array:\\d+ a: \\{}",
+                " INFO << NkTraceTest.null_argument_should_still_compile_and_be_passed_as_null_array:\\d+ b: \\{}");
+    }
 }
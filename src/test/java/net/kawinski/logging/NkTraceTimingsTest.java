@@ -0,0 +1,90 @@
+package net.kawinski.logging;
+
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class NkTraceTimingsTest {
+    private static final String DURATION = "(\\d+ns|\\d+\\.\\d{3}(us|ms|s))";
+
+    private Logger logger;
+
+    @Before
+    public void enableTimings() {
+        logger = TestUtils.getFreshLogger();
+        NkTraceTimings.enabled = true;
+    }
+
+    @After
+    public void disableTimings() {
+        NkTraceTimings.enabled = false;
+    }
+
+    @Test
+    public void durations_should_be_formatted_with_matching_unit() {
+        assertThat(NkTraceTimings.formatNanos(0), is("0ns"));
+        assertThat(NkTraceTimings.formatNanos(999), is("999ns"));
+        assertThat(NkTraceTimings.formatNanos(1_000), is("1.000us"));
+        assertThat(NkTraceTimings.formatNanos(12_345), is("12.345us"));
+        assertThat(NkTraceTimings.formatNanos(1_002_999), is("1.002ms"));
+        assertThat(NkTraceTimings.formatNanos(2_050_000_000L), is("2.050s"));
+    }
+
+    @Test
+    public void timed_spans_should_print_duration_and_feed_histogram() {
+        final CallerInfo site = CallerInfo.of("net.kawinski.Timed", "run", 1);
+        for(int i = 0; i < 3; ++i) {
+            try(final NkTrace trace = NkTrace.info(site, logger)) {
+                trace.returning(i);
+            }
+        }
+        try(final NkTraceFrame frame = NkTraceFrame.info(site, logger, "a")) {
+            frame.setExitMsg("b");
+        }
+        TestUtils.assertLoggerOutputMatches(
+                " INFO >> Timed.run:1",
+                " INFO << Timed.run:1 took " + DURATION + " returning\\(0\\)",
+                " INFO >> Timed.run:1",
+                " INFO << Timed.run:1 took " + DURATION + " returning\\(1\\)",
+                " INFO >> Timed.run:1",
+                " INFO << Timed.run:1 took " + DURATION + " returning\\(2\\)",
+                " INFO >> Timed.run:1 a",
+                " INFO << Timed.run:1 took " + DURATION + " b");
+
+        final LatencyHistogram histogram = NkTraceTimings.get(site);
+        assertThat(histogram.getCount(), is(4L));
+        assertThat(histogram.getP50() <= histogram.getMaxNanos(), is(true));
+        assertThat(NkTraceTimings.getAll().get(site), sameInstance(histogram));
+
+        NkTraceTimings.resetAll();
+        assertThat(histogram.getCount(), is(0L));
+    }
+
+    @Test
+    public void not_interned_callers_should_share_histogram_of_their_call_site() {
+        final CallerInfo site = CallerInfo.of("net.kawinski.Timed", "run", 2);
+        try(final NkTrace trace = NkTrace.info(new CallerInfo("net.kawinski.Timed", "run", 2), logger)) {
+        }
+        assertThat(NkTraceTimings.get(site).getCount(), is(1L));
+    }
+
+    @Test
+    public void spans_should_not_be_timed_when_disabled() {
+        NkTraceTimings.enabled = false;
+        final CallerInfo site = CallerInfo.of("net.kawinski.Timed", "run", 3);
+        try(final NkTrace trace = NkTrace.info(site, logger)) {
+        }
+        TestUtils.assertLoggerOutputEqual(
+                " INFO >> Timed.run:3",
+                " INFO << Timed.run:3");
+        assertThat(NkTraceTimings.get(site), is(nullValue()));
+    }
+}
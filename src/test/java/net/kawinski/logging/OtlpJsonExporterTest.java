@@ -0,0 +1,66 @@
+package net.kawinski.logging;
+
+import net.kawinski.logging.utils.TestUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@SuppressWarnings("EmptyTryBlock")
+public class OtlpJsonExporterTest {
+    private static final CallerInfo OUTER = CallerInfo.of("net.kawinski.Otlp", "outer", 1);
+    private static final CallerInfo INNER = CallerInfo.of("net.kawinski.Otlp", "inner", 2);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void stopExport() {
+        NkTraceExport.stop(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void batch_should_be_written_as_single_request_line() throws IOException {
+        final Logger logger = TestUtils.getFreshLogger();
+        final Path file = folder.newFile("trace.otlp.json").toPath();
+        NkTraceExport.start(new OtlpJsonExporter(file, "test-service"));
+        try(final NkTrace trace = NkTrace.info(OUTER, logger)) {
+            try(final NkTrace innerTrace = NkTrace.debug(INNER, logger, "id: {}", 5)) {
+                innerTrace.returning("ok");
+            }
+        }
+        assertThat(NkTraceExport.stop(5, TimeUnit.SECONDS), is(true));
+
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertThat(lines.size(), is(1));
+        final String request = lines.get(0);
+        assertThat(request.startsWith("{\"resourceSpans\":[{\"resource\":{\"attributes\":[{\"key\":\"service.name\",\"value\":{\"stringValue\":\"test-service\"}}]},"
+                + "\"scopeSpans\":[{\"scope\":{\"name\":\"nktrace\"},\"spans\":[{\"traceId\":\""), is(true));
+
+        final String hex = "\"[0-9a-f]{16}\"";
+        final String inner = "\\{\"traceId\":\"([0-9a-f]{32})\",\"spanId\":" + hex + ",\"parentSpanId\":(" + hex + "),\"name\":\"Otlp.inner\",\"kind\":1,"
+                + "\"startTimeUnixNano\":\"[0-9]+\",\"endTimeUnixNano\":\"[0-9]+\",\"attributes\":\\["
+                + "\\{\"key\":\"code.namespace\",\"value\":\\{\"stringValue\":\"net.kawinski.Otlp\"}},"
+                + "\\{\"key\":\"code.function\",\"value\":\\{\"stringValue\":\"inner\"}},"
+                + "\\{\"key\":\"code.lineno\",\"value\":\\{\"intValue\":\"2\"}},"
+                + "\\{\"key\":\"thread.id\",\"value\":\\{\"intValue\":\"[0-9]+\"}},"
+                + "\\{\"key\":\"thread.name\",\"value\":\\{\"stringValue\":\"[^\"]+\"}},"
+                + "\\{\"key\":\"nktrace.level\",\"value\":\\{\"stringValue\":\"DEBUG\"}},"
+                + "\\{\"key\":\"nktrace.depth\",\"value\":\\{\"intValue\":\"1\"}},"
+                + "\\{\"key\":\"nktrace.message\",\"value\":\\{\"stringValue\":\"id: 5\"}},"
+                + "\\{\"key\":\"nktrace.returning\",\"value\":\\{\"stringValue\":\"ok\"}}]}";
+        final String outer = "\\{\"traceId\":\"\\1\",\"spanId\":\\2,\"name\":\"Otlp.outer\",\"kind\":1,.*\"nktrace.depth\",\"value\":\\{\"intValue\":\"0\"}}]}";
+        assertThat(request, request.matches(".*\"spans\":\\[" + inner + "," + outer + "]}]}]}"), is(true));
+    }
+}
@@ -8,9 +8,11 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.ConsoleAppender;
 import ch.qos.logback.core.OutputStreamAppender;
 import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import com.sun.management.ThreadMXBean;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -21,6 +23,8 @@ public class TestUtils {
 
     private static final ByteArrayOutputStream loggerOutput = new ByteArrayOutputStream();
 
+    private static final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
     private static final Logger defaultLogger = (Logger) LoggerFactory.getLogger(DEFAULT_LOGGER_NAME);
     private static final Logger customLogger = (Logger) LoggerFactory.getLogger(CUSTOM_LOGGER_NAME);
     @SuppressWarnings("NonConstantLogger")
@@ -64,6 +68,21 @@ public class TestUtils {
         }
     }
 
+    public static void assertLoggerOutputMatches(final String... expectedRegexes) {
+        final String[] output = getLoggerOutput().split(System.lineSeparator());
+        assertThat(output.length, is(expectedRegexes.length));
+        for(int i = 0; i < expectedRegexes.length; ++i) {
+            assertThat(output[i] + " doesn't match " + expectedRegexes[i], output[i].matches(expectedRegexes[i]), is(true));
+        }
+    }
+
+    /**
+     * @return Bytes allocated by the current thread so far
+     */
+    public static long allocatedBytes() {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
     private static void setupRootLogger(final LoggerContext lc) {
         final Logger rootLogger = (Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
         rootLogger.detachAndStopAllAppenders();